@@ -38,6 +38,7 @@ import net.sf.freecol.client.FreeColClient;
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.FreeColSeed;
 import net.sf.freecol.common.debug.FreeColDebugger;
+import net.sf.freecol.common.debug.Metrics;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.io.FreeColDirectories;
 import net.sf.freecol.common.io.FreeColSavegameFile;
@@ -142,6 +143,9 @@ public final class FreeCol {
                            introVideo = true,
                            javaCheck = true,
                            memoryCheck = true,
+                           nioTransport = false,
+                           parallelAI = false,
+                           parallelColonies = false,
                            publicServer = true,
                            sound = true,
                            standAloneServer = false;
@@ -517,12 +521,16 @@ public final class FreeCol {
         { null,  "log-file", "cli.log-file", "cli.arg.name" },
         { null,  "log-level", "cli.log-level", "cli.arg.loglevel" },
         { "m", "meta-server", "cli.meta-server", "cli.arg.metaServer" },
+        { null,  "metrics-file", "cli.metrics-file", "cli.arg.metricsFile" },
         { "n", "name", "cli.name", "cli.arg.name" },
         { null,  "no-intro", "cli.no-intro", null },
         { null,  "no-java-check", "cli.no-java-check", null },
         { null,  "no-memory-check", "cli.no-memory-check", null },
         { null,  "no-sound", "cli.no-sound", null },
         { null,  "no-splash", "cli.no-splash", null },
+        { null,  "nio", "cli.nio", null },
+        { null,  "parallel-ai", "cli.parallel-ai", null },
+        { null,  "parallel-colonies", "cli.parallel-colonies", null },
         { "p", "private", "cli.private", null },
         { "Z", "seed", "cli.seed", "cli.arg.seed" },
         { null,  "server", "cli.server", null },
@@ -709,6 +717,14 @@ public final class FreeCol {
                 }
             }
 
+            if (line.hasOption("metrics-file")) {
+                String arg = line.getOptionValue("metrics-file");
+                if (!Metrics.configureDump(arg)) { // Not fatal.
+                    gripe(StringTemplate.template("cli.error.metrics-file")
+                        .addName("%arg%", arg));
+                }
+            }
+
             if (line.hasOption("name")) {
                 setName(line.getOptionValue("name"));
             }
@@ -729,6 +745,18 @@ public final class FreeCol {
                 splashStream = null;
             }
 
+            if (line.hasOption("nio")) {
+                nioTransport = true;
+            }
+
+            if (line.hasOption("parallel-ai")) {
+                parallelAI = true;
+            }
+
+            if (line.hasOption("parallel-colonies")) {
+                parallelColonies = true;
+            }
+
             if (line.hasOption("private")) {
                 publicServer = false;
             }
@@ -1176,6 +1204,34 @@ public final class FreeCol {
         return freeColRevision;
     }
 
+    /**
+     * Should the server use the non-blocking transport?
+     *
+     * @return True if server connections share the NIO event loops.
+     */
+    public static boolean getNioTransport() {
+        return nioTransport;
+    }
+
+    /**
+     * Should the AI players plan their turns concurrently?
+     *
+     * @return True if AI planning is parallel.
+     */
+    public static boolean getParallelAI() {
+        return parallelAI;
+    }
+
+    /**
+     * Should the colony production be found concurrently at the
+     * start of each player turn?
+     *
+     * @return True if colony turn preparation is parallel.
+     */
+    public static boolean getParallelColonies() {
+        return parallelColonies;
+    }
+
     /**
      * Get the default server host name.
      *
@@ -1105,6 +1105,10 @@ public class DebugUtils {
 
         java.util.Map<String, String> serverStats = sGame.getStatistics();
         serverStats.putAll(server.getAIMain().getAIStatistics());
+        if (server.getServer() != null) {
+            serverStats.putAll(server.getServer().getStatistics());
+        }
+        serverStats.putAll(Metrics.getStatistics());
         java.util.Map<String, String> clientStats = cGame.getStatistics();
         gui.showStatisticsPanel(serverStats, clientStats);
     }
@@ -58,7 +58,9 @@ public class FreeColDebugger {
                // and turn skipping.
         INIT,  // An initial colony is made, and goods added to all
                // native settlements.
-        PATHS  // Display more information on goto paths
+        PATHS, // Display more information on goto paths
+        SEARCH // Cross-check path searches against the location-keyed
+               // search storage, logging any disagreement.
     }
     private static int debugMode = 0;
 
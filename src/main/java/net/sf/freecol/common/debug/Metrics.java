@@ -0,0 +1,403 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.debug;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Named timers, counters and value histograms, cheap enough to be
+ * always on.
+ *
+ * Timers record durations in nanoseconds, histograms record any other
+ * non-negative values such as message sizes.  Both keep their values
+ * in power-of-two buckets, so the percentiles reported are upper
+ * bounds within a factor of two.
+ *
+ * The metrics are shown with the other statistics in the debug menu,
+ * and may be appended to a file at regular intervals with
+ * {@code --metrics-file FILE[,SECONDS]}, one tab separated line per
+ * metric per dump.
+ */
+public final class Metrics {
+
+    private static final Logger logger = Logger.getLogger(Metrics.class.getName());
+
+    /** The default interval between dumps, in seconds. */
+    private static final int DUMP_PERIOD = 60;
+
+    /** The kinds of metric, as named in the dump file. */
+    private static final String TIMER = "timer", HISTOGRAM = "histogram",
+        COUNTER = "counter";
+
+    /** A histogram of non-negative values. */
+    public static final class Histogram {
+
+        /** One bucket per bit length of the value. */
+        private final AtomicLongArray buckets = new AtomicLongArray(64);
+
+        /** The number of values and their sum. */
+        private final LongAdder count = new LongAdder(),
+            total = new LongAdder();
+
+        /** The largest value. */
+        private final AtomicLong max = new AtomicLong();
+
+
+        /**
+         * Record a value.
+         *
+         * @param value The value to record, negative values count as zero.
+         */
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            count.increment();
+            total.add(value);
+            long m;
+            while ((m = max.get()) < value
+                && !max.compareAndSet(m, value));
+        }
+
+        /**
+         * Get the number of values recorded.
+         *
+         * @return The count.
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * Get the sum of the values recorded.
+         *
+         * @return The total.
+         */
+        public long getTotal() {
+            return total.sum();
+        }
+
+        /**
+         * Get the largest value recorded.
+         *
+         * @return The maximum.
+         */
+        public long getMax() {
+            return max.get();
+        }
+
+        /**
+         * Get an upper bound on a percentile of the values.
+         *
+         * @param percent The percentile wanted.
+         * @return The upper bound of the bucket holding the percentile,
+         *     or zero if there are no values.
+         */
+        public long getPercentile(int percent) {
+            final long n = getCount();
+            if (n == 0) return 0;
+            final long want = (n * percent + 99) / 100;
+            long seen = 0;
+            for (int b = 0; b < buckets.length(); b++) {
+                seen += buckets.get(b);
+                if (seen >= want) {
+                    return Math.min((b == 0) ? 0 : (1L << b) - 1, getMax());
+                }
+            }
+            return getMax();
+        }
+    }
+
+    /** The timers, by name. */
+    private static final Map<String, Histogram> timers
+        = new ConcurrentHashMap<>();
+
+    /** The value histograms, by name. */
+    private static final Map<String, Histogram> histograms
+        = new ConcurrentHashMap<>();
+
+    /** The counters, by name. */
+    private static final Map<String, LongAdder> counters
+        = new ConcurrentHashMap<>();
+
+    /** The timer writing the dump file, if any. */
+    private static Timer dumpTimer = null;
+
+    /** The dump file writer, if any. */
+    private static PrintWriter dumpOut = null;
+
+    /** Has the final dump been arranged for shutdown? */
+    private static boolean dumpHooked = false;
+
+
+    /**
+     * Get a start time for {@link #stop}.
+     *
+     * @return The current time in nanoseconds.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Record the time since a start time.
+     *
+     * @param name The timer name.
+     * @param start The time from {@link #start}.
+     */
+    public static void stop(String name, long start) {
+        timers.computeIfAbsent(name, k -> new Histogram())
+            .record(System.nanoTime() - start);
+    }
+
+    /**
+     * Record a value in a histogram.
+     *
+     * @param name The histogram name.
+     * @param value The value to record.
+     */
+    public static void record(String name, long value) {
+        histograms.computeIfAbsent(name, k -> new Histogram()).record(value);
+    }
+
+    /**
+     * Increment a counter.
+     *
+     * @param name The counter name.
+     */
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param name The counter name.
+     * @param amount The amount to add.
+     */
+    public static void add(String name, long amount) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(amount);
+    }
+
+    /**
+     * Get a timer.
+     *
+     * @param name The timer name.
+     * @return The {@code Histogram} of the timer, or null if nothing
+     *     has been timed under that name.
+     */
+    public static Histogram getTimer(String name) {
+        return timers.get(name);
+    }
+
+    /**
+     * Get a value histogram.
+     *
+     * @param name The histogram name.
+     * @return The {@code Histogram}, or null if nothing has been
+     *     recorded under that name.
+     */
+    public static Histogram getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * Get the value of a counter.
+     *
+     * @param name The counter name.
+     * @return The counter value.
+     */
+    public static long getCounter(String name) {
+        final LongAdder a = counters.get(name);
+        return (a == null) ? 0 : a.sum();
+    }
+
+    /**
+     * Discard all the metrics.
+     */
+    public static void reset() {
+        timers.clear();
+        histograms.clear();
+        counters.clear();
+    }
+
+    /**
+     * Get the metrics as statistics for the statistics panel.  Times
+     * are shown in microseconds.
+     *
+     * @return A map of the statistics.
+     */
+    public static Map<String, String> getStatistics() {
+        Map<String, String> stats = new HashMap<>();
+        for (Map.Entry<String, Histogram> e : timers.entrySet()) {
+            final Histogram h = e.getValue();
+            final long n = h.getCount();
+            stats.put("metrics." + e.getKey(), n
+                + " x " + (h.getTotal() / Math.max(1, n) / 1000) + "us"
+                + ", p90 " + (h.getPercentile(90) / 1000) + "us"
+                + ", max " + (h.getMax() / 1000) + "us");
+        }
+        for (Map.Entry<String, Histogram> e : histograms.entrySet()) {
+            final Histogram h = e.getValue();
+            final long n = h.getCount();
+            stats.put("metrics." + e.getKey(), n
+                + " x " + (h.getTotal() / Math.max(1, n))
+                + ", p90 " + h.getPercentile(90)
+                + ", max " + h.getMax());
+        }
+        for (Map.Entry<String, LongAdder> e : counters.entrySet()) {
+            stats.put("metrics." + e.getKey(),
+                      Long.toString(e.getValue().sum()));
+        }
+        return stats;
+    }
+
+    /**
+     * Write the metrics, one line each, sorted by name.  The fields
+     * are the time of the dump in milliseconds, the kind, the name,
+     * the count, the total, the mean, the 50th, 90th and 99th
+     * percentiles and the maximum.  Counters only have a count.
+     *
+     * @param out The {@code PrintWriter} to write to.
+     */
+    public static void dump(PrintWriter out) {
+        final long now = System.currentTimeMillis();
+        for (Map.Entry<String, Histogram> e
+                 : new TreeMap<>(timers).entrySet()) {
+            dumpHistogram(out, now, TIMER, e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, Histogram> e
+                 : new TreeMap<>(histograms).entrySet()) {
+            dumpHistogram(out, now, HISTOGRAM, e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, LongAdder> e
+                 : new TreeMap<>(counters).entrySet()) {
+            out.println(now + "\t" + COUNTER + "\t" + e.getKey()
+                + "\t" + e.getValue().sum());
+        }
+        out.flush();
+    }
+
+    /**
+     * Write one histogram line.
+     *
+     * @param out The {@code PrintWriter} to write to.
+     * @param now The time of the dump.
+     * @param kind The kind of histogram.
+     * @param name The histogram name.
+     * @param h The {@code Histogram} to write.
+     */
+    private static void dumpHistogram(PrintWriter out, long now, String kind,
+                                      String name, Histogram h) {
+        final long n = h.getCount(), total = h.getTotal();
+        out.println(now + "\t" + kind + "\t" + name
+            + "\t" + n + "\t" + total + "\t" + (total / Math.max(1, n))
+            + "\t" + h.getPercentile(50) + "\t" + h.getPercentile(90)
+            + "\t" + h.getPercentile(99) + "\t" + h.getMax());
+    }
+
+    /**
+     * Configure the dump file from the command line option.
+     *
+     * @param option The option value, FILE[,SECONDS].
+     * @return True if the dump was started.
+     */
+    public static boolean configureDump(String option) {
+        int comma = option.lastIndexOf(',');
+        int period = DUMP_PERIOD;
+        if (comma > 0) {
+            try {
+                period = Integer.parseInt(option.substring(comma + 1));
+                option = option.substring(0, comma);
+            } catch (NumberFormatException nfe) {
+                ; // Part of the file name
+            }
+        }
+        if (period <= 0) return false;
+        return startDump(new File(option), period);
+    }
+
+    /**
+     * Start appending the metrics to a file at regular intervals.
+     * Any previous dump is stopped.
+     *
+     * @param file The {@code File} to append to.
+     * @param period The interval between dumps, in seconds.
+     * @return True if the file could be opened.
+     */
+    public static synchronized boolean startDump(File file, int period) {
+        stopDump();
+        final PrintWriter out;
+        try {
+            out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8));
+        } catch (IOException ioe) {
+            logger.log(Level.WARNING, "Can not open metrics file: " + file,
+                       ioe);
+            return false;
+        }
+        dumpOut = out;
+        dumpTimer = new Timer("Metrics", true);
+        dumpTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    dump(out);
+                }
+            }, period * 1000L, period * 1000L);
+        if (!dumpHooked) {
+            Runtime.getRuntime().addShutdownHook(new Thread(Metrics::stopDump,
+                                                            "MetricsDump"));
+            dumpHooked = true;
+        }
+        logger.info("Dumping metrics to " + file + " every " + period + "s");
+        return true;
+    }
+
+    /**
+     * Stop appending the metrics to a file, after a final dump.
+     */
+    public static synchronized void stopDump() {
+        if (dumpTimer != null) {
+            dumpTimer.cancel();
+            dumpTimer = null;
+        }
+        if (dumpOut != null) {
+            dump(dumpOut);
+            dumpOut.close();
+            dumpOut = null;
+        }
+    }
+}
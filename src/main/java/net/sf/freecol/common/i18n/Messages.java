@@ -26,11 +26,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.List;
 import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -83,6 +85,10 @@ import net.sf.freecol.common.util.LogBuilder;
  *   key3={{tag:|acc=viljaa|default={{plural:%amount%|one=ruoka|other=ruokaa|default=Ruoka}}}}
  * </pre>
  *
+ * Each message is parsed once into a {@code CompiledMessage}, its
+ * literal text and choice formats, and the compiled messages are
+ * cached until the message bundle is next loaded.
+ *
  * This class is NOT thread-safe. (CO: I cannot find any place that
  * really has a problem)
  */
@@ -114,6 +120,10 @@ public class Messages {
      */
     private static final Map<String, Selector> tagMap = new HashMap<>();
 
+    /** The compiled form of the messages, by message text. */
+    private static final Map<String, CompiledMessage> compiledMessages
+        = new ConcurrentHashMap<>();
+
 
     // Message bundle initialization
 
@@ -134,6 +144,7 @@ public class Messages {
      */
     public static void setGrammaticalNumber(Numeric number) {
         tagMap.put("plural", number);
+        compiledMessages.clear();
     }
 
     /**
@@ -146,6 +157,7 @@ public class Messages {
      */
     public static void loadMessageBundle(Locale locale) {
         messageBundle.clear(); // Reset the message bundle.
+        compiledMessages.clear();
 
         if (!Locale.getDefault().equals(locale)) {
             Locale.setDefault(locale);
@@ -748,8 +760,10 @@ public class Messages {
             }
             result = replaceChoices(result, template);
             for (String key : template.getKeys()) {
-                result = result.replace(key,
-                                        message(template.getReplacement(key)));
+                if (result.contains(key)) {
+                    result = result.replace(key,
+                        message(template.getReplacement(key)));
+                }
             }
             break;
         case KEY:
@@ -783,138 +797,81 @@ public class Messages {
      * @return a {@code String} value
      */
     private static String replaceChoices(String input, StringTemplate template) {
-        int openChoice = 0;
-        int closeChoice = 0;
-        int highWaterMark = 0;
-        StringBuilder result = new StringBuilder();
-        while ((openChoice = input.indexOf("{{", highWaterMark)) >= 0) {
-            result.append(input, highWaterMark, openChoice);
-            closeChoice = findMatchingBracket(input, openChoice + 2);
-            if (closeChoice < 0) {
-                // no closing brackets found
-                logger.warning("Mismatched brackets: " + input);
-                return result.toString();
-            }
-            highWaterMark = closeChoice + 2;
-            int colonIndex = input.indexOf(':', openChoice + 2);
-            if (colonIndex < 0 || colonIndex > closeChoice) {
-                logger.warning("No tag found: " + input);
-                continue;
-            }
-            String tag = input.substring(openChoice + 2, colonIndex);
-            int pipeIndex = input.indexOf('|', colonIndex + 1);
-            if (pipeIndex < 0 || pipeIndex > closeChoice) {
-                logger.warning("No choices found: " + input);
-                continue;
-            }
-            String selector = input.substring(colonIndex + 1, pipeIndex);
-            if (selector.isEmpty()) {
-                selector = "default";
-            } else if (selector.startsWith("%") && selector.endsWith("%")) {
-                if (template == null) {
-                    selector = "default";
+        return getCompiledMessage(input).evaluate(template);
+    }
+
+    /**
+     * Get the compiled form of a message.
+     *
+     * @param input The message text.
+     * @return The {@code CompiledMessage} for the text.
+     */
+    private static CompiledMessage getCompiledMessage(String input) {
+        CompiledMessage cm = compiledMessages.get(input);
+        if (cm == null) {
+            cm = new CompiledMessage(input);
+            compiledMessages.put(input, cm);
+        }
+        return cm;
+    }
+
+    /**
+     * Append the choice of a choice format whose choices do not
+     * include the selector, so the choices should be a key or a
+     * variable that resolves to another choice format.
+     *
+     * @param result The {@code StringBuilder} to append to.
+     * @param input The message containing the choice format.
+     * @param otherKey The text of the choices.
+     * @param selector The selector to choose with.
+     * @param template The {@code StringTemplate} to use, or null.
+     */
+    private static void appendOtherChoice(StringBuilder result, String input,
+                                          String otherKey, String selector,
+                                          StringTemplate template) {
+        if (otherKey.startsWith("%") && otherKey.endsWith("%")
+            && template != null) {
+            StringTemplate replacement = template.getReplacement(otherKey);
+            if (replacement == null) {
+                logger.warning("Failed to find replacement for "
+                    + selector + "/" + otherKey);
+            } else if (replacement.getTemplateType() == TemplateType.KEY) {
+                otherKey = messageBundle.get(replacement.getId());
+                int keyIndex = otherKey.indexOf("{{");
+                if (keyIndex < 0) {
+                    // not a choice format
+                    result.append(otherKey);
+                } else if (otherKey.indexOf(selector, keyIndex) < 0) {
+                    logger.warning("Failed to find key "
+                        + selector + "/" + otherKey
+                        + " in replacement " + replacement);
                 } else {
-                    StringTemplate replacement
-                        = template.getReplacement(selector);
-                    if (replacement == null) {
-                        logger.warning("Failed to find replacement for "
-                            + selector);
-                        continue;
-                    } else {
-                        selector = message(replacement);
-                        Selector taggedSelector = getSelector(tag);
-                        if (taggedSelector != null) {
-                            selector = taggedSelector.getKey(selector, input);
-                        }
-                    }
+                    result.append(getChoice(otherKey, selector));
                 }
             } else {
-                Selector taggedSelector = getSelector(tag);
-                if (taggedSelector != null) {
-                    selector = taggedSelector.getKey(selector, input);
-                }
+                logger.warning("Choice substitution for "
+                    + selector + "/" + otherKey
+                    + " attempted, but template was " + replacement
+                    + " for input " + input);
             }
-            int keyIndex = input.indexOf(selector, pipeIndex + 1);
-            if (keyIndex < 0 || keyIndex > closeChoice) {
-                // key not found, choice might be a key itself
-                String otherKey = input.substring(pipeIndex + 1, closeChoice);
-                if (otherKey.startsWith("%") && otherKey.endsWith("%")
-                    && template != null) {
-                    StringTemplate replacement
-                        = template.getReplacement(otherKey);
-                    if (replacement == null) {
-                        logger.warning("Failed to find replacement for "
-                            + selector + "/" + otherKey);
-                        continue;
-                    } else if (replacement.getTemplateType() == TemplateType.KEY) {
-                        otherKey = messageBundle.get(replacement.getId());
-                        keyIndex = otherKey.indexOf("{{");
-                        if (keyIndex < 0) {
-                            // not a choice format
-                            result.append(otherKey);
-                        } else {
-                            keyIndex = otherKey.indexOf(selector, keyIndex);
-                            if (keyIndex < 0) {
-                                logger.warning("Failed to find key "
-                                    + selector + "/" + otherKey
-                                    + " in replacement " + replacement);
-                                continue;
-                            } else {
-                                result.append(getChoice(otherKey, selector));
-                            }
-                        }
-                    } else {
-                        logger.warning("Choice substitution for "
-                            + selector + "/" + otherKey
-                            + " attempted, but template was " + replacement
-                            + " for input " + input);
-                        continue;
-                    }
-                } else if (containsKey(otherKey)) {
-                    otherKey = getChoice(messageBundle.get(otherKey), selector);
-                    result.append(otherKey);
-                } else {
-                    logger.warning("Unknown key or untagged choice: '"
-                        + otherKey
-                        + "', selector was '" + selector
-                        + "', trying 'default' instead");
-                    int defaultStart = otherKey.indexOf("default=");
-                    if (defaultStart >= 0) {
-                        defaultStart += 8;
-                        int defaultEnd = otherKey.indexOf('|', defaultStart);
-                        String defaultChoice;
-                        if (defaultEnd < 0) {
-                            defaultChoice = otherKey.substring(defaultStart);
-                        } else {
-                            defaultChoice = otherKey.substring(defaultStart, defaultEnd);
-                        }
-                        result.append(defaultChoice);
-                    } else {
-                        logger.warning("No default choice found.");
-                        continue;
-                    }
-                }
+        } else if (containsKey(otherKey)) {
+            result.append(getChoice(messageBundle.get(otherKey), selector));
+        } else {
+            logger.warning("Unknown key or untagged choice: '"
+                + otherKey
+                + "', selector was '" + selector
+                + "', trying 'default' instead");
+            int defaultStart = otherKey.indexOf("default=");
+            if (defaultStart >= 0) {
+                defaultStart += 8;
+                int defaultEnd = otherKey.indexOf('|', defaultStart);
+                result.append((defaultEnd < 0)
+                    ? otherKey.substring(defaultStart)
+                    : otherKey.substring(defaultStart, defaultEnd));
             } else {
-                int start = keyIndex + selector.length() + 1;
-                int replacementIndex = input.indexOf('|', start);
-                int nextOpenIndex = input.indexOf("{{", start);
-                if (nextOpenIndex >= 0 && nextOpenIndex < replacementIndex) {
-                    replacementIndex = input.indexOf('|',
-                        findMatchingBracket(input, nextOpenIndex + 2) + 2);
-                }
-                int end = (replacementIndex < 0
-                    || replacementIndex > closeChoice) ? closeChoice
-                    : replacementIndex;
-                String replacement = input.substring(start, end);
-                if (!replacement.contains("{{")) {
-                    result.append(replacement);
-                } else {
-                    result.append(replaceChoices(replacement, template));
-                }
+                logger.warning("No default choice found.");
             }
         }
-        result.append(input.substring(highWaterMark));
-        return result.toString();
     }
 
     /**
@@ -984,4 +941,307 @@ public class Messages {
         // found no matching bracket
         return -1;
     }
+
+
+    /**
+     * A message parsed into its literal text and choice formats.
+     *
+     * The scanning for brackets, tags and choices is only done once,
+     * with the same warnings for malformed choice formats.  The choice a
+     * selector picks from a choice format depends only on the text,
+     * so it is remembered for each selector used.
+     */
+    private static final class CompiledMessage {
+
+        /** The largest number of selectors remembered by a choice. */
+        private static final int CHOICE_LIMIT = 16;
+
+        /** The marker for a selector not found among the choices. */
+        private static final Object NO_CHOICE = new Object();
+
+        /** A piece of a compiled message. */
+        private abstract static class Part {
+
+            /**
+             * Append this part of the message.
+             *
+             * @param sb The {@code StringBuilder} to append to.
+             * @param template The {@code StringTemplate} to use, or null.
+             * @return False if the rest of the message is to be dropped.
+             */
+            public abstract boolean append(StringBuilder sb,
+                                           StringTemplate template);
+        }
+
+        /** Literal text. */
+        private static final class Text extends Part {
+
+            private final String text;
+
+
+            /**
+             * Create a literal part.
+             *
+             * @param text The literal text.
+             */
+            public Text(String text) {
+                this.text = text;
+            }
+
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean append(StringBuilder sb, StringTemplate template) {
+                sb.append(this.text);
+                return true;
+            }
+        }
+
+        /** A malformed choice format, which is logged and dropped. */
+        private static final class Malformed extends Part {
+
+            private final String warning;
+
+            private final boolean last;
+
+
+            /**
+             * Create a malformed part.
+             *
+             * @param warning The warning to log.
+             * @param last If true, the rest of the message is dropped.
+             */
+            public Malformed(String warning, boolean last) {
+                this.warning = warning;
+                this.last = last;
+            }
+
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean append(StringBuilder sb, StringTemplate template) {
+                logger.warning(this.warning);
+                return !this.last;
+            }
+        }
+
+        /** A choice format. */
+        private static final class Choice extends Part {
+
+            /** The message containing the choice format. */
+            private final String input;
+
+            /** The tag of the choice format. */
+            private final String tag;
+
+            /** The selector as written. */
+            private final String selector;
+
+            /** Is the selector a variable? */
+            private final boolean variable;
+
+            /** Where the choices start and end in the message. */
+            private final int pipeIndex, closeChoice;
+
+            /**
+             * The choice for each selector used, either a string, a
+             * {@code CompiledMessage}, or {@code NO_CHOICE}.
+             */
+            private final Map<String, Object> choices
+                = new ConcurrentHashMap<>();
+
+
+            /**
+             * Create a choice format part.
+             *
+             * @param input The message containing the choice format.
+             * @param tag The tag.
+             * @param selector The selector as written.
+             * @param pipeIndex The position of the pipe before the choices.
+             * @param closeChoice The position of the closing brackets.
+             */
+            public Choice(String input, String tag, String selector,
+                          int pipeIndex, int closeChoice) {
+                this.input = input;
+                this.tag = tag;
+                this.selector = selector;
+                this.variable = selector.startsWith("%")
+                    && selector.endsWith("%");
+                this.pipeIndex = pipeIndex;
+                this.closeChoice = closeChoice;
+            }
+
+
+            /**
+             * Get the choice for a selector.
+             *
+             * @param key The selector.
+             * @return The choice text, a {@code CompiledMessage} if the
+             *     choice contains further choice formats, or
+             *     {@code NO_CHOICE} if the selector is not found.
+             */
+            private Object getChoice(String key) {
+                Object ret = this.choices.get(key);
+                if (ret == null) {
+                    ret = findChoice(key);
+                    if (this.choices.size() < CHOICE_LIMIT) {
+                        this.choices.put(key, ret);
+                    }
+                }
+                return ret;
+            }
+
+            /**
+             * Find the choice for a selector in the message.
+             *
+             * @param key The selector.
+             * @return The choice, as for {@link #getChoice}.
+             */
+            private Object findChoice(String key) {
+                final String in = this.input;
+                int keyIndex = in.indexOf(key, this.pipeIndex + 1);
+                if (keyIndex < 0 || keyIndex > this.closeChoice) {
+                    return NO_CHOICE;
+                }
+                int start = keyIndex + key.length() + 1;
+                int replacementIndex = in.indexOf('|', start);
+                int nextOpenIndex = in.indexOf("{{", start);
+                if (nextOpenIndex >= 0 && nextOpenIndex < replacementIndex) {
+                    replacementIndex = in.indexOf('|',
+                        findMatchingBracket(in, nextOpenIndex + 2) + 2);
+                }
+                int end = (replacementIndex < 0
+                    || replacementIndex > this.closeChoice) ? this.closeChoice
+                    : replacementIndex;
+                String replacement = in.substring(start, end);
+                return (replacement.contains("{{"))
+                    ? getCompiledMessage(replacement)
+                    : replacement;
+            }
+
+
+            /**
+             * {@inheritDoc}
+             */
+            @Override
+            public boolean append(StringBuilder sb, StringTemplate template) {
+                String key = this.selector;
+                if (key.isEmpty() || (this.variable && template == null)) {
+                    key = "default";
+                } else {
+                    if (this.variable) {
+                        StringTemplate replacement
+                            = template.getReplacement(key);
+                        if (replacement == null) {
+                            logger.warning("Failed to find replacement for "
+                                + key);
+                            return true;
+                        }
+                        key = message(replacement);
+                    }
+                    Selector taggedSelector = getSelector(this.tag);
+                    if (taggedSelector != null) {
+                        key = taggedSelector.getKey(key, this.input);
+                    }
+                }
+                Object choice = getChoice(key);
+                if (choice == NO_CHOICE) {
+                    appendOtherChoice(sb, this.input,
+                        this.input.substring(this.pipeIndex + 1,
+                                             this.closeChoice),
+                        key, template);
+                } else if (choice instanceof CompiledMessage) {
+                    ((CompiledMessage)choice).append(sb, template);
+                } else {
+                    sb.append((String)choice);
+                }
+                return true;
+            }
+        }
+
+        /** The parts of the message. */
+        private final Part[] parts;
+
+        /** The message, if it contains no choice formats. */
+        private final String text;
+
+
+        /**
+         * Compile a message.
+         *
+         * @param input The message text.
+         */
+        public CompiledMessage(String input) {
+            List<Part> pl = new ArrayList<>();
+            int openChoice = 0;
+            int closeChoice = 0;
+            int highWaterMark = 0;
+            while ((openChoice = input.indexOf("{{", highWaterMark)) >= 0) {
+                if (openChoice > highWaterMark) {
+                    pl.add(new Text(input.substring(highWaterMark,
+                                                    openChoice)));
+                }
+                closeChoice = findMatchingBracket(input, openChoice + 2);
+                if (closeChoice < 0) {
+                    pl.add(new Malformed("Mismatched brackets: " + input,
+                                         true));
+                    highWaterMark = -1;
+                    break;
+                }
+                highWaterMark = closeChoice + 2;
+                int colonIndex = input.indexOf(':', openChoice + 2);
+                if (colonIndex < 0 || colonIndex > closeChoice) {
+                    pl.add(new Malformed("No tag found: " + input, false));
+                    continue;
+                }
+                String tag = input.substring(openChoice + 2, colonIndex);
+                int pipeIndex = input.indexOf('|', colonIndex + 1);
+                if (pipeIndex < 0 || pipeIndex > closeChoice) {
+                    pl.add(new Malformed("No choices found: " + input,
+                                         false));
+                    continue;
+                }
+                pl.add(new Choice(input, tag,
+                        input.substring(colonIndex + 1, pipeIndex),
+                        pipeIndex, closeChoice));
+            }
+            if (highWaterMark >= 0 && highWaterMark < input.length()) {
+                pl.add(new Text(input.substring(highWaterMark)));
+            }
+            this.parts = pl.toArray(new Part[0]);
+            this.text = (pl.isEmpty()) ? ""
+                : (this.parts.length == 1 && this.parts[0] instanceof Text)
+                ? input : null;
+        }
+
+
+        /**
+         * Append the message with its choices made.
+         *
+         * @param sb The {@code StringBuilder} to append to.
+         * @param template The {@code StringTemplate} to use, or null.
+         */
+        public void append(StringBuilder sb, StringTemplate template) {
+            for (Part p : this.parts) {
+                if (!p.append(sb, template)) break;
+            }
+        }
+
+        /**
+         * Get the message with its choices made.
+         *
+         * @param template The {@code StringTemplate} to use, or null.
+         * @return The resulting string.
+         */
+        public String evaluate(StringTemplate template) {
+            if (this.text != null) return this.text;
+            StringBuilder sb = new StringBuilder(64);
+            append(sb, template);
+            return sb.toString();
+        }
+    }
 }
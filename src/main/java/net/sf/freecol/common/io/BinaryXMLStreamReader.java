@@ -0,0 +1,223 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import static net.sf.freecol.common.io.BinaryXMLStreamWriter.*;
+
+
+/**
+ * An {@code XMLStreamReader} for documents encoded by
+ * {@link BinaryXMLStreamWriter}.
+ *
+ * The whole document is decoded when the reader is created, so that
+ * the string table is always brought up to date even if the consumer
+ * of the document fails part way through it.
+ */
+public final class BinaryXMLStreamReader extends EventXMLStreamReader {
+
+    /** The maximum acceptable frame length. */
+    public static final int MAX_FRAME = 1 << 28;
+
+
+    /**
+     * Create a new binary reader.
+     *
+     * @param data The encoded document.
+     * @param table The string table for the stream the document was
+     *     read from, which is updated.
+     * @exception XMLStreamException if the document is malformed.
+     */
+    public BinaryXMLStreamReader(byte[] data, List<String> table)
+        throws XMLStreamException {
+        super();
+        final Decoder d = new Decoder(data, table);
+        final List<String> stack = new ArrayList<>();
+        final List<String> attributes = new ArrayList<>();
+        String start = null;
+        while (d.pos < data.length) {
+            final byte op = data[d.pos++];
+            if (op >= ATTR_STRING && op <= ATTR_FALSE) {
+                if (start == null) {
+                    throw new XMLStreamException("Attribute outside start");
+                }
+                attributes.add(d.readString());
+                attributes.add((op == ATTR_STRING) ? d.readString()
+                    : (op == ATTR_INT) ? Integer.toString(d.readZigzag())
+                    : (op == ATTR_TRUE) ? "true" : "false");
+                continue;
+            }
+            if (start != null) {
+                addEvent(START_ELEMENT, start,
+                         attributes.toArray(NO_ATTRIBUTES));
+                attributes.clear();
+                start = null;
+            }
+            switch (op) {
+            case START:
+                start = d.readString();
+                stack.add(start);
+                break;
+            case END:
+                if (stack.isEmpty()) {
+                    throw new XMLStreamException("Unbalanced end");
+                }
+                addEvent(END_ELEMENT, stack.remove(stack.size() - 1),
+                         NO_ATTRIBUTES);
+                break;
+            case TEXT:
+                addEvent(CHARACTERS, d.readString(), NO_ATTRIBUTES);
+                break;
+            default:
+                throw new XMLStreamException("Bad opcode: " + op);
+            }
+        }
+        if (start != null) {
+            addEvent(START_ELEMENT, start, attributes.toArray(NO_ATTRIBUTES));
+        }
+        if (!stack.isEmpty()) {
+            throw new XMLStreamException("Unclosed element: "
+                + stack.get(stack.size() - 1));
+        }
+        addEvent(END_DOCUMENT, null, NO_ATTRIBUTES);
+    }
+
+
+    /**
+     * Read the remainder of a frame written by
+     * {@link BinaryXMLStreamWriter#writeFrame}, after the magic byte.
+     *
+     * @param in The {@code InputStream} to read from.
+     * @return The encoded document.
+     * @exception IOException if the stream fails or the frame is bad.
+     */
+    public static byte[] readFrame(InputStream in) throws IOException {
+        int length = 0;
+        for (int shift = 0;; shift += 7) {
+            final int b = in.read();
+            if (b < 0) throw new EOFException("Truncated frame header");
+            if (shift > 28) throw new IOException("Bad frame header");
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) break;
+        }
+        if (length < 0 || length > MAX_FRAME) {
+            throw new IOException("Bad frame length: " + length);
+        }
+        final byte[] data = new byte[length];
+        int n = 0;
+        while (n < length) {
+            final int r = in.read(data, n, length - n);
+            if (r < 0) throw new EOFException("Truncated frame");
+            n += r;
+        }
+        return data;
+    }
+
+
+    /** Decoding state. */
+    private static final class Decoder {
+
+        /** The encoded document. */
+        private final byte[] data;
+
+        /** The string table. */
+        private final List<String> table;
+
+        /** The read position. */
+        public int pos = 0;
+
+
+        /**
+         * Create a new decoder.
+         *
+         * @param data The encoded document.
+         * @param table The string table.
+         */
+        public Decoder(byte[] data, List<String> table) {
+            this.data = data;
+            this.table = table;
+        }
+
+        /**
+         * Read an unsigned varint.
+         *
+         * @return The value.
+         * @exception XMLStreamException if the varint is truncated.
+         */
+        public int readVarint() throws XMLStreamException {
+            int v = 0;
+            for (int shift = 0; shift <= 28; shift += 7) {
+                if (pos >= data.length) {
+                    throw new XMLStreamException("Truncated varint");
+                }
+                final byte b = data[pos++];
+                v |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new XMLStreamException("Bad varint");
+        }
+
+        /**
+         * Read a zig-zag encoded integer.
+         *
+         * @return The value.
+         * @exception XMLStreamException if the varint is truncated.
+         */
+        public int readZigzag() throws XMLStreamException {
+            final int v = readVarint();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        /**
+         * Read a string.
+         *
+         * @return The string.
+         * @exception XMLStreamException if the string is malformed.
+         */
+        public String readString() throws XMLStreamException {
+            final int header = readVarint();
+            if ((header & 1) != 0) {
+                final int index = header >>> 1;
+                if (index >= table.size()) {
+                    throw new XMLStreamException("Bad string index: "
+                        + index);
+                }
+                return table.get(index);
+            }
+            final int length = header >>> 2;
+            if (length > data.length - pos) {
+                throw new XMLStreamException("Truncated string");
+            }
+            final String s = new String(data, pos, length,
+                                        StandardCharsets.UTF_8);
+            pos += length;
+            if ((header & 2) != 0) table.add(s);
+            return s;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+
+/**
+ * An {@code XMLStreamWriter} that encodes the element structure of a
+ * document in a compact binary form, for use on network connections.
+ * The matching reader is {@link BinaryXMLStreamReader}.
+ *
+ * The encoded document is a sequence of records, each introduced by
+ * an opcode byte:
+ * <ul>
+ *   <li>START name: the start of an element,</li>
+ *   <li>ATTR_* name value: an attribute of the current element,
+ *       with the value typed as a string, an integer (zig-zag varint)
+ *       or a boolean (no value),</li>
+ *   <li>END: the end of an element,</li>
+ *   <li>TEXT string: character data.</li>
+ * </ul>
+ * Strings start with a varint header.  If its low bit is set, the
+ * rest is an index into the string table.  Otherwise the next bit
+ * says whether the string is to be added to the table, and the rest
+ * is the length of the UTF-8 bytes that follow.  The string table
+ * persists across documents, so a writer (and its reader) must be
+ * used for a single ordered stream, such as one direction of a
+ * connection.
+ *
+ * Namespaces, comments and processing instructions are not used by
+ * FreeCol and are dropped.
+ *
+ * The stream of documents must not be interrupted: a document that
+ * can not be completed must be discarded with {@link #reset}.  The
+ * strings a frame adds to the table stay provisional until
+ * {@link #commit}, so a frame that is written but then not delivered
+ * can still be discarded with {@link #reset}.
+ */
+public final class BinaryXMLStreamWriter implements XMLStreamWriter {
+
+    /** The byte introducing a binary frame on a connection. */
+    public static final int FRAME_MAGIC = 0xFB;
+
+    /** Record opcodes. */
+    static final byte START = 1, ATTR_STRING = 2, ATTR_INT = 3,
+        ATTR_TRUE = 4, ATTR_FALSE = 5, END = 6, TEXT = 7;
+
+    /** The maximum number of strings in the table. */
+    static final int MAX_TABLE = 1 << 16;
+
+    /** The maximum length of a string to add to the table. */
+    static final int MAX_INTERNED_LENGTH = 64;
+
+    /** The string table. */
+    private final Map<String, Integer> strings = new HashMap<>();
+
+    /** The strings in the table, in order of addition. */
+    private final List<String> order = new ArrayList<>();
+
+    /** The size of the string table at the last commit. */
+    private int mark = 0;
+
+    /** The encoded document. */
+    private byte[] buf = new byte[1 << 12];
+
+    /** The number of bytes used in the buffer. */
+    private int pos = 0;
+
+    /** Is there an empty element still to be closed? */
+    private boolean pendingEnd = false;
+
+
+    /**
+     * Create a new binary writer.
+     */
+    public BinaryXMLStreamWriter() {}
+
+
+    /**
+     * Get the number of bytes in the current document.
+     *
+     * @return The encoded length.
+     */
+    public int size() {
+        return pos;
+    }
+
+    /**
+     * Write the current document as a frame, and start a new one.
+     *
+     * A frame is {@code FRAME_MAGIC}, the varint document length, and
+     * the document.  The strings the document added to the table
+     * are not committed.
+     *
+     * @param out The {@code OutputStream} to write to.
+     * @exception IOException if the write fails.
+     */
+    public void writeFrame(OutputStream out) throws IOException {
+        closePending();
+        final byte[] header = new byte[6];
+        header[0] = (byte)FRAME_MAGIC;
+        int n = 1, v = pos;
+        while ((v & ~0x7F) != 0) {
+            header[n++] = (byte)((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        header[n++] = (byte)v;
+        out.write(header, 0, n);
+        out.write(buf, 0, pos);
+        pos = 0;
+    }
+
+    /**
+     * Commit the strings added to the table by the frames written
+     * since the last commit, once they are known to reach the reader.
+     */
+    public void commit() {
+        mark = order.size();
+    }
+
+    /**
+     * Discard the current document, and any strings added to the
+     * string table since the last commit.
+     */
+    public void reset() {
+        pos = 0;
+        pendingEnd = false;
+        while (order.size() > mark) {
+            strings.remove(order.remove(order.size() - 1));
+        }
+    }
+
+
+    // Internals
+
+    /**
+     * Ensure there is room in the buffer.
+     *
+     * @param n The number of bytes needed.
+     */
+    private void ensure(int n) {
+        if (pos + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(2 * buf.length, pos + n));
+        }
+    }
+
+    /**
+     * Write a byte.
+     *
+     * @param b The byte to write.
+     */
+    private void writeByte(int b) {
+        ensure(1);
+        buf[pos++] = (byte)b;
+    }
+
+    /**
+     * Write an unsigned varint.
+     *
+     * @param v The value to write.
+     */
+    private void writeVarint(int v) {
+        ensure(5);
+        while ((v & ~0x7F) != 0) {
+            buf[pos++] = (byte)((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        buf[pos++] = (byte)v;
+    }
+
+    /**
+     * Write a string, using the string table if possible.
+     *
+     * @param s The string to write.
+     */
+    private void writeString(String s) {
+        final Integer index = strings.get(s);
+        if (index != null) {
+            writeVarint((index << 1) | 1);
+            return;
+        }
+        final byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        final boolean intern = s.length() <= MAX_INTERNED_LENGTH
+            && order.size() < MAX_TABLE;
+        if (intern) {
+            strings.put(s, order.size());
+            order.add(s);
+        }
+        writeVarint((b.length << 2) | ((intern) ? 2 : 0));
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    /**
+     * Close a pending empty element.
+     */
+    private void closePending() {
+        if (pendingEnd) {
+            pendingEnd = false;
+            writeByte(END);
+        }
+    }
+
+    /**
+     * Parse a canonical decimal integer.
+     *
+     * @param s The string to parse.
+     * @return The value as a long, or {@code Long.MIN_VALUE} if the
+     *     string is not an int that would be written identically by
+     *     {@code Integer.toString}.
+     */
+    private static long parseCanonicalInt(String s) {
+        final int len = s.length();
+        if (len == 0 || len > 11) return Long.MIN_VALUE;
+        final boolean negative = s.charAt(0) == '-';
+        int i = (negative) ? 1 : 0;
+        if (i == len || (s.charAt(i) == '0' && (negative || len > 1))) {
+            return Long.MIN_VALUE;
+        }
+        long n = 0;
+        for (; i < len; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') return Long.MIN_VALUE;
+            n = 10 * n + (c - '0');
+        }
+        if (negative) n = -n;
+        return (n < Integer.MIN_VALUE || n > Integer.MAX_VALUE)
+            ? Long.MIN_VALUE : n;
+    }
+
+
+    // Implement XMLStreamWriter
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String localName) {
+        closePending();
+        writeByte(START);
+        writeString(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String localName) {
+        writeStartElement(localName);
+        pendingEnd = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndElement() {
+        closePending();
+        writeByte(END);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndDocument() {
+        closePending();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String localName, String value) {
+        if ("true".equals(value)) {
+            writeByte(ATTR_TRUE);
+            writeString(localName);
+            return;
+        } else if ("false".equals(value)) {
+            writeByte(ATTR_FALSE);
+            writeString(localName);
+            return;
+        }
+        final long n = parseCanonicalInt(value);
+        if (n != Long.MIN_VALUE) {
+            writeByte(ATTR_INT);
+            writeString(localName);
+            final int i = (int)n;
+            writeVarint((i << 1) ^ (i >> 31));
+        } else {
+            writeByte(ATTR_STRING);
+            writeString(localName);
+            writeString(value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value) {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeComment(String data) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target, String data) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCData(String data) {
+        writeCharacters(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDTD(String dtd) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references not supported: "
+            + name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String version) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String encoding, String version) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(String text) {
+        if (text == null || text.isEmpty()) return;
+        closePending();
+        writeByte(TEXT);
+        final byte[] b = text.getBytes(StandardCharsets.UTF_8);
+        writeVarint(b.length << 2);
+        ensure(b.length);
+        System.arraycopy(b, 0, buf, pos, b.length);
+        pos += b.length;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(char[] text, int start, int len) {
+        writeCharacters(new String(text, start, len));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix(String uri) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPrefix(String prefix, String uri) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultNamespace(String uri) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("No such property: " + name);
+    }
+}
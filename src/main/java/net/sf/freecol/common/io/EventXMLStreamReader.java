@@ -0,0 +1,539 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+
+/**
+ * An {@code XMLStreamReader} that replays a list of events held in
+ * memory.  The events are either decoded by
+ * {@link BinaryXMLStreamReader}, or recorded directly by
+ * {@link EventXMLStreamWriter}.
+ *
+ * Only elements, attributes and characters are supported, without
+ * namespaces, which is all that FreeCol writes.
+ */
+public class EventXMLStreamReader implements XMLStreamReader {
+
+    /** No attributes. */
+    static final String[] NO_ATTRIBUTES = {};
+
+    /** The events, including START_DOCUMENT and END_DOCUMENT. */
+    private final List<Event> events = new ArrayList<>();
+
+    /** The index of the current event. */
+    private int current = 0;
+
+    /** An event. */
+    private static final class Event {
+
+        /** The event type. */
+        public final int type;
+
+        /** The element name, or the text for characters. */
+        public final String value;
+
+        /** The alternating names and values of the attributes. */
+        public final String[] attributes;
+
+
+        /**
+         * Create a new event.
+         *
+         * @param type The event type.
+         * @param value The element name or text.
+         * @param attributes The attribute names and values.
+         */
+        public Event(int type, String value, String[] attributes) {
+            this.type = type;
+            this.value = value;
+            this.attributes = attributes;
+        }
+    }
+
+    /** The static location of all events. */
+    private static final Location LOCATION = new Location() {
+            @Override
+            public int getLineNumber() { return -1; }
+            @Override
+            public int getColumnNumber() { return -1; }
+            @Override
+            public int getCharacterOffset() { return -1; }
+            @Override
+            public String getPublicId() { return null; }
+            @Override
+            public String getSystemId() { return null; }
+        };
+
+
+    /**
+     * Create a new event reader, positioned at the start of the
+     * document.  The events are added by the writer or decoder that
+     * creates the reader, which must end with END_DOCUMENT.
+     */
+    EventXMLStreamReader() {
+        addEvent(START_DOCUMENT, null, NO_ATTRIBUTES);
+    }
+
+
+    /**
+     * Add an event.
+     *
+     * @param type The event type.
+     * @param value The element name or text.
+     * @param attributes The attribute names and values.
+     */
+    final void addEvent(int type, String value, String[] attributes) {
+        events.add(new Event(type, value, attributes));
+    }
+
+
+    // Internals
+
+    /**
+     * Get the current event.
+     *
+     * @return The current {@code Event}.
+     */
+    private Event event() {
+        return events.get(current);
+    }
+
+    /**
+     * Get the current attributes, checking this is a start element.
+     *
+     * @return The attribute names and values.
+     */
+    private String[] attributes() {
+        if (event().type != START_ELEMENT) {
+            throw new IllegalStateException("Not a start element");
+        }
+        return event().attributes;
+    }
+
+
+    // Implement XMLStreamReader
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int next() throws XMLStreamException {
+        if (current >= events.size() - 1) {
+            throw new XMLStreamException("No more events");
+        }
+        return events.get(++current).type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void require(int type, String namespaceURI, String localName)
+        throws XMLStreamException {
+        if (type != getEventType()
+            || (localName != null && !localName.equals(getLocalName()))) {
+            throw new XMLStreamException("Required " + type + "/" + localName
+                + " but found " + getEventType() + "/" + event().value);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getElementText() throws XMLStreamException {
+        if (getEventType() != START_ELEMENT) {
+            throw new XMLStreamException("Not at a start element");
+        }
+        final StringBuilder sb = new StringBuilder();
+        for (;;) {
+            final int type = next();
+            if (type == END_ELEMENT) break;
+            if (type != CHARACTERS) {
+                throw new XMLStreamException("Element text not text");
+            }
+            sb.append(event().value);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int type = next();
+        while (type == CHARACTERS && isWhiteSpace()) type = next();
+        if (type != START_ELEMENT && type != END_ELEMENT) {
+            throw new XMLStreamException("Expected tag, found: " + type);
+        }
+        return type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasNext() {
+        return current < events.size() - 1;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(String prefix) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStartElement() {
+        return getEventType() == START_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isEndElement() {
+        return getEventType() == END_ELEMENT;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isCharacters() {
+        return getEventType() == CHARACTERS;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isWhiteSpace() {
+        return isCharacters() && event().value.trim().isEmpty();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(String namespaceURI, String localName) {
+        final String[] a = attributes();
+        for (int i = 0; i < a.length; i += 2) {
+            if (a[i].equals(localName)) return a[i + 1];
+        }
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getAttributeCount() {
+        return attributes().length / 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QName getAttributeName(int index) {
+        return new QName(getAttributeLocalName(index));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeNamespace(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeLocalName(int index) {
+        return attributes()[2 * index];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributePrefix(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeType(int index) {
+        return "CDATA";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getAttributeValue(int index) {
+        return attributes()[2 * index + 1];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isAttributeSpecified(int index) {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNamespaceCount() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespacePrefix(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI(int index) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getEventType() {
+        return event().type;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getText() {
+        if (!isCharacters()) {
+            throw new IllegalStateException("Not characters");
+        }
+        return event().value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public char[] getTextCharacters() {
+        return getText().toCharArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextCharacters(int sourceStart, char[] target,
+                                 int targetStart, int length) {
+        final String text = getText();
+        final int n = Math.max(0,
+            Math.min(length, text.length() - sourceStart));
+        text.getChars(sourceStart, sourceStart + n, target, targetStart);
+        return n;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextStart() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTextLength() {
+        return getText().length();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getEncoding() {
+        return "UTF-8";
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasText() {
+        return isCharacters();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Location getLocation() {
+        return LOCATION;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public QName getName() {
+        return new QName(getLocalName());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getLocalName() {
+        if (!hasName()) {
+            throw new IllegalStateException("Not an element");
+        }
+        return event().value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasName() {
+        return isStartElement() || isEndElement();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getNamespaceURI() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getVersion() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean isStandalone() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean standaloneSet() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getCharacterEncodingScheme() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPITarget() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPIData() {
+        return null;
+    }
+}
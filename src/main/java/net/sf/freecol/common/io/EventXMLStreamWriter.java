@@ -0,0 +1,365 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import static javax.xml.stream.XMLStreamConstants.*;
+
+
+/**
+ * An {@code XMLStreamWriter} that records the document as events in
+ * memory, to be replayed by an {@link EventXMLStreamReader}.
+ *
+ * This is used to copy objects: the document is written with the
+ * usual {@code toXML} methods, so the copy honours the write scope
+ * exactly as serialization does, but nothing is formatted as text
+ * and nothing is parsed back.  The strings written are shared with
+ * the reader, not copied.
+ */
+public final class EventXMLStreamWriter implements XMLStreamWriter {
+
+    /** The reader the events are added to. */
+    private final EventXMLStreamReader reader = new EventXMLStreamReader();
+
+    /** The names of the open elements. */
+    private final List<String> stack = new ArrayList<>();
+
+    /** The attributes of the start element being written. */
+    private final List<String> attributes = new ArrayList<>();
+
+    /** The name of the start element being written, if any. */
+    private String start = null;
+
+    /** Is the start element being written empty? */
+    private boolean pendingEnd = false;
+
+    /** Text not yet added, so that adjacent text is combined. */
+    private StringBuilder text = null;
+
+    /** Has the document ended? */
+    private boolean ended = false;
+
+
+    /**
+     * Get a reader for the document written.  The document is ended
+     * if it has not been already, and nothing more can be written.
+     *
+     * @return An {@code EventXMLStreamReader} positioned at the
+     *     start of the document.
+     */
+    public EventXMLStreamReader getReader() {
+        writeEndDocument();
+        return reader;
+    }
+
+
+    // Internals
+
+    /**
+     * Add any start element or text being written.
+     */
+    private void flushPending() {
+        if (start != null) {
+            reader.addEvent(START_ELEMENT, start,
+                attributes.toArray(EventXMLStreamReader.NO_ATTRIBUTES));
+            attributes.clear();
+            stack.add(start);
+            start = null;
+            if (pendingEnd) {
+                pendingEnd = false;
+                endElement();
+            }
+        }
+        if (text != null) {
+            reader.addEvent(CHARACTERS, text.toString(),
+                            EventXMLStreamReader.NO_ATTRIBUTES);
+            text = null;
+        }
+    }
+
+    /**
+     * End the innermost open element.
+     */
+    private void endElement() {
+        reader.addEvent(END_ELEMENT, stack.remove(stack.size() - 1),
+                        EventXMLStreamReader.NO_ATTRIBUTES);
+    }
+
+
+    // Implement XMLStreamWriter
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String localName) {
+        flushPending();
+        start = localName;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String localName) {
+        writeStartElement(localName);
+        pendingEnd = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndElement() throws XMLStreamException {
+        flushPending();
+        if (stack.isEmpty()) throw new XMLStreamException("Unbalanced end");
+        endElement();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndDocument() {
+        if (ended) return;
+        flushPending();
+        while (!stack.isEmpty()) endElement();
+        reader.addEvent(END_DOCUMENT, null,
+                        EventXMLStreamReader.NO_ATTRIBUTES);
+        ended = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String localName, String value)
+        throws XMLStreamException {
+        if (start == null) {
+            throw new XMLStreamException("Attribute outside start: "
+                + localName);
+        }
+        attributes.add(localName);
+        attributes.add(value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value)
+        throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) throws XMLStreamException {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeComment(String data) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target, String data) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCData(String data) {
+        writeCharacters(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDTD(String dtd) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references not supported: "
+            + name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String version) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String encoding, String version) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(String data) {
+        if (data == null || data.isEmpty()) return;
+        if (start != null) flushPending();
+        if (text == null) text = new StringBuilder(data.length());
+        text.append(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(char[] data, int start, int len) {
+        writeCharacters(new String(data, start, len));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix(String uri) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPrefix(String prefix, String uri) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultNamespace(String uri) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("No such property: " + name);
+    }
+}
@@ -27,8 +27,6 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -52,6 +50,8 @@ import net.sf.freecol.common.model.Location;
 import net.sf.freecol.common.model.Role;
 import net.sf.freecol.common.model.Specification;
 import static net.sf.freecol.common.util.CollectionUtils.*;
+import net.sf.freecol.common.util.Factory;
+import net.sf.freecol.common.util.Introspector;
 import static net.sf.freecol.common.util.StringUtils.*;
 import net.sf.freecol.server.ai.AIObject;
 import net.sf.freecol.server.ai.AIMain;
@@ -153,6 +153,18 @@ public class FreeColXMLReader extends StreamReaderDelegate
         this.uninterned.clear();
     }
 
+    /**
+     * Creates a new {@code FreeColXMLReader}.
+     *
+     * @param xsr An {@code XMLStreamReader} to wrap.
+     */
+    public FreeColXMLReader(XMLStreamReader xsr) {
+        super(xsr);
+
+        this.inputStream = null;
+        this.readScope = ReadScope.NORMAL;
+    }
+
 
     /**
      * Set the tracing state.
@@ -997,17 +1009,19 @@ public class FreeColXMLReader extends StreamReaderDelegate
             ret = aiMain.getAIObject(id, returnClass);
             if (ret == null) {
                 try {
-                    Constructor<T> c = returnClass.getConstructor(AIMain.class,
-                                                                  String.class);
-                    ret = returnClass.cast(c.newInstance(aiMain, id));
+                    Factory<T> f = Factory.get(returnClass,
+                                               AIMain.class, String.class);
+                    if (f == null) {
+                        throw new XMLStreamException("No constructor for "
+                            + returnClass.getName() + ": " + currentTag());
+                    }
+                    ret = f.create(aiMain, id);
                     if (required && ret == null) {
                         throw new XMLStreamException("Constructed null "
                             + returnClass.getName() + " for " + id
                             + ": " + currentTag());
                     }
-                } catch (NoSuchMethodException | SecurityException 
-                        | InstantiationException | IllegalAccessException 
-                        | IllegalArgumentException | InvocationTargetException 
+                } catch (Introspector.IntrospectorException
                         | XMLStreamException e) {
                     if (required) {
                         throw new XMLStreamException(e);
@@ -117,6 +117,22 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
             return this.player;
         }
 
+        @Override
+        public boolean equals(Object o) {
+            if (o instanceof WriteScope) {
+                WriteScope ws = (WriteScope)o;
+                return this.scopeType == ws.scopeType
+                    && Objects.equals(this.player, ws.player);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * this.scopeType.hashCode()
+                + Objects.hashCode(this.player);
+        }
+
         @Override
         public String toString() {
             String ret = this.scopeType.toString();
@@ -214,6 +230,21 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
     }
 
 
+    /**
+     * Creates a new {@code FreeColXMLWriter} wrapping another
+     * {@code XMLStreamWriter}, which is responsible for its own output.
+     *
+     * @param xsw The {@code XMLStreamWriter} to write to.
+     * @param scope The {@code WriteScope} to use for FreeCol objects.
+     */
+    public FreeColXMLWriter(XMLStreamWriter xsw, WriteScope scope) {
+        this.outputWriter = null;
+        this.stringWriter = null;
+        this.xmlStreamWriter = xsw;
+        this.transformer = null;
+        this.writeScope = (scope == null) ? WriteScope.toSave() : scope;
+    }
+
     /**
      * Get the {@code XMLOutputFactory} to create the output stream with.
      *
@@ -256,10 +287,12 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
     /**
      * Internal flush, returning what was written.
      *
-     * @return The internal buffer containing the flushed data.
+     * @return The internal buffer containing the flushed data, or null
+     *     if wrapping another writer.
      */
     public StringBuffer flushBuffer() throws XMLStreamException {
         this.xmlStreamWriter.flush();
+        if (this.stringWriter == null) return null;
 
         StringBuffer sb = this.stringWriter.getBuffer();
         if (sb.length() > 0) {
@@ -295,7 +328,8 @@ public class FreeColXMLWriter implements Closeable, XMLStreamWriter {
     @Override
     public void flush() throws XMLStreamException {
         // Clear the underlying buffer after flushing it
-        flushBuffer().setLength(0);
+        StringBuffer sb = flushBuffer();
+        if (sb != null) sb.setLength(0);
     }
 
     /**
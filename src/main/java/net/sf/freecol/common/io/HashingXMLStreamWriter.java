@@ -0,0 +1,491 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.io;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Predicate;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+
+import net.sf.freecol.common.model.FreeColObject;
+
+
+/**
+ * An {@code XMLStreamWriter} that writes nothing, but computes 64-bit
+ * hashes of the document structure, so that two serializations of an
+ * object can be compared without keeping either of them.
+ *
+ * Elements with an identifier accepted by a split predicate become
+ * separate <em>nodes</em>: their own hash covers their attributes,
+ * text and unsplit children, but only the tag and identifier of
+ * split children.  So a change deep inside a document changes the
+ * hash of the nearest enclosing node, and no other.  The document
+ * element is always a node.
+ *
+ * Nodes are numbered in the order they end, so the document element
+ * is last, and each node records the number of its parent node.
+ */
+public final class HashingXMLStreamWriter implements XMLStreamWriter {
+
+    /** FNV-1a parameters. */
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L,
+        FNV_PRIME = 0x100000001b3L;
+
+    /** Markers separating the parts of the document. */
+    private static final char START = 1, ATTRIBUTE = 2, END = 3, TEXT = 4,
+        SPLIT = 5;
+
+    /** An element under construction. */
+    private static final class Frame {
+
+        /** The running hash. */
+        public long hash = FNV_OFFSET;
+
+        /** The element identifier, if any. */
+        public String id = null;
+
+        /** The element tag. */
+        public final String tag;
+
+        /** Nodes ended within this element whose parent is not set. */
+        public final List<Integer> pending = new ArrayList<>();
+
+
+        /**
+         * Create a new frame.
+         *
+         * @param tag The element tag.
+         */
+        public Frame(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /** Should an element with a given identifier become a node? */
+    private final Predicate<String> split;
+
+    /** The open elements. */
+    private final Deque<Frame> stack = new ArrayDeque<>();
+
+    /** The node identifiers. */
+    private final List<String> ids = new ArrayList<>();
+
+    /** The node hashes. */
+    private long[] hashes = new long[16];
+
+    /** The node parents, -1 for the document element. */
+    private int[] parents = new int[16];
+
+    /** Is there an empty element still to be closed? */
+    private boolean pendingEnd = false;
+
+
+    /**
+     * Create a new hashing writer.
+     *
+     * @param split A predicate to select the element identifiers
+     *     that define separate nodes.
+     */
+    public HashingXMLStreamWriter(Predicate<String> split) {
+        this.split = split;
+    }
+
+
+    /**
+     * Get the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int getNodeCount() {
+        return ids.size();
+    }
+
+    /**
+     * Get a node identifier.
+     *
+     * @param node The node number.
+     * @return The identifier, which is null only for an unidentified
+     *     document element.
+     */
+    public String getId(int node) {
+        return ids.get(node);
+    }
+
+    /**
+     * Get a node hash.
+     *
+     * @param node The node number.
+     * @return The hash of the node.
+     */
+    public long getHash(int node) {
+        return hashes[node];
+    }
+
+    /**
+     * Get the parent of a node.
+     *
+     * @param node The node number.
+     * @return The parent node number, or -1 for the document element.
+     */
+    public int getParent(int node) {
+        return parents[node];
+    }
+
+
+    // Internals
+
+    /**
+     * Mix a character into a hash.
+     *
+     * @param h The hash.
+     * @param c The character.
+     * @return The new hash.
+     */
+    private static long mix(long h, char c) {
+        h = (h ^ (c & 0xFF)) * FNV_PRIME;
+        return (h ^ (c >>> 8)) * FNV_PRIME;
+    }
+
+    /**
+     * Mix a string into a hash.
+     *
+     * @param h The hash.
+     * @param s The string.
+     * @return The new hash.
+     */
+    private static long mix(long h, String s) {
+        if (s == null) return mix(h, (char)0);
+        final int len = s.length();
+        for (int i = 0; i < len; i++) h = mix(h, s.charAt(i));
+        return mix(mix(h, (char)(len >>> 16)), (char)len);
+    }
+
+    /**
+     * Mix a long into a hash.
+     *
+     * @param h The hash.
+     * @param v The value.
+     * @return The new hash.
+     */
+    private static long mix(long h, long v) {
+        for (int i = 0; i < 64; i += 16) h = mix(h, (char)(v >>> i));
+        return h;
+    }
+
+    /**
+     * Add a node.
+     *
+     * @param f The {@code Frame} of the node.
+     * @return The new node number.
+     */
+    private int addNode(Frame f) {
+        final int n = ids.size();
+        if (n == hashes.length) {
+            hashes = Arrays.copyOf(hashes, 2 * n);
+            parents = Arrays.copyOf(parents, 2 * n);
+        }
+        ids.add(f.id);
+        hashes[n] = f.hash;
+        parents[n] = -1;
+        for (Integer i : f.pending) parents[i] = n;
+        return n;
+    }
+
+    /**
+     * End the current element.
+     */
+    private void endElement() {
+        final Frame f = stack.pop();
+        f.hash = mix(f.hash, END);
+        final Frame parent = stack.peek();
+        if (parent == null) {
+            addNode(f);
+        } else if (f.id != null && split.test(f.id)) {
+            parent.pending.add(addNode(f));
+            parent.hash = mix(mix(mix(parent.hash, SPLIT), f.tag), f.id);
+        } else {
+            parent.pending.addAll(f.pending);
+            parent.hash = mix(parent.hash, f.hash);
+        }
+    }
+
+    /**
+     * Close a pending empty element.
+     */
+    private void closePending() {
+        if (pendingEnd) {
+            pendingEnd = false;
+            endElement();
+        }
+    }
+
+
+    // Implement XMLStreamWriter
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String localName) {
+        closePending();
+        Frame f = new Frame(localName);
+        f.hash = mix(mix(f.hash, START), localName);
+        stack.push(f);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String namespaceURI, String localName) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeStartElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String localName) {
+        writeStartElement(localName);
+        pendingEnd = true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String namespaceURI, String localName) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEmptyElement(String prefix, String localName,
+                                  String namespaceURI) {
+        writeEmptyElement(localName);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndElement() {
+        closePending();
+        endElement();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEndDocument() {
+        closePending();
+        while (!stack.isEmpty()) endElement();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void close() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String localName, String value) {
+        final Frame f = stack.peek();
+        if (FreeColObject.ID_ATTRIBUTE_TAG.equals(localName)) f.id = value;
+        f.hash = mix(mix(mix(f.hash, ATTRIBUTE), localName), value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String prefix, String namespaceURI,
+                               String localName, String value) {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeAttribute(String namespaceURI, String localName,
+                               String value) {
+        writeAttribute(localName, value);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeNamespace(String prefix, String namespaceURI) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDefaultNamespace(String namespaceURI) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeComment(String data) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeProcessingInstruction(String target, String data) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCData(String data) {
+        writeCharacters(data);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeDTD(String dtd) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeEntityRef(String name) throws XMLStreamException {
+        throw new XMLStreamException("Entity references not supported: "
+            + name);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument() {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String version) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStartDocument(String encoding, String version) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(String text) {
+        if (text == null || text.isEmpty()) return;
+        closePending();
+        final Frame f = stack.peek();
+        if (f != null) f.hash = mix(mix(f.hash, TEXT), text);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeCharacters(char[] text, int start, int len) {
+        writeCharacters(new String(text, start, len));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getPrefix(String uri) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setPrefix(String prefix, String uri) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setDefaultNamespace(String uri) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setNamespaceContext(NamespaceContext context) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object getProperty(String name) {
+        throw new IllegalArgumentException("No such property: " + name);
+    }
+}
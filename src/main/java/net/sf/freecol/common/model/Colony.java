@@ -2607,6 +2607,35 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
         this.productionCache.invalidate();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void invalidateCache(GoodsType type) {
+        this.productionCache.invalidate(type);
+    }
+
+    /**
+     * Invalidate the production of a single work location in this
+     * colony.
+     *
+     * @param workLocation The {@code WorkLocation} that changed.
+     */
+    public void invalidateCache(WorkLocation workLocation) {
+        if (workLocation != null) {
+            this.productionCache.invalidate(workLocation);
+        }
+    }
+
+    /**
+     * Get the production cache.  Public for the statistics.
+     *
+     * @return The {@code ProductionCache} for this colony.
+     */
+    public ProductionCache getProductionCache() {
+        return this.productionCache;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -2622,7 +2651,6 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
     @Override
     public boolean addGoods(GoodsType type, int amount) {
         super.addGoods(type, amount);
-        productionCache.invalidate(type);
         modifySpecialGoods(type, amount);
         return true;
     }
@@ -2633,7 +2661,6 @@ public class Colony extends Settlement implements Nameable, TradeLocation {
     @Override
     public Goods removeGoods(GoodsType type, int amount) {
         Goods removed = super.removeGoods(type, amount);
-        productionCache.invalidate(type);
         if (removed != null) modifySpecialGoods(type, -removed.getAmount());
         return removed;
     }
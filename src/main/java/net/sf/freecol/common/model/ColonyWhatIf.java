@@ -0,0 +1,175 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * A sandbox for trying out changes to a colony, such as the AI makes
+ * when assigning workers.
+ *
+ * The colony is copied once (with {@link Colony#copyColony}), and
+ * every unit placement or work type change made through the sandbox
+ * is journalled, so that a trial can be undone back to a
+ * {@link #mark} without copying the colony again.  Production
+ * queries on the copy go through its {@link ProductionCache}, which
+ * only recomputes the work locations a change touched.
+ *
+ * Objects of the real colony are mapped to the copy by identifier,
+ * in constant time.
+ */
+public final class ColonyWhatIf {
+
+    /** The state of a unit before a change. */
+    private static final class Change {
+
+        /** The unit changed, in the copy. */
+        public final Unit unit;
+
+        /** The previous location. */
+        public final Location location;
+
+        /** The previous work type. */
+        public final GoodsType workType;
+
+
+        /**
+         * Record the current state of a unit.
+         *
+         * @param unit The {@code Unit} about to change.
+         */
+        public Change(Unit unit) {
+            this.unit = unit;
+            this.location = unit.getLocation();
+            this.workType = unit.getWorkType();
+        }
+    }
+
+    /** The copy of the colony. */
+    private final Colony scratch;
+
+    /** The objects of the copy by identifier. */
+    private final Map<String, FreeColObject> index = new HashMap<>();
+
+    /** The changes made, in order. */
+    private final List<Change> journal = new ArrayList<>();
+
+
+    /**
+     * Create a new sandbox for a colony.
+     *
+     * @param colony The {@code Colony} to try changes on.
+     */
+    public ColonyWhatIf(Colony colony) {
+        this.scratch = colony.copyColony();
+        final Tile tile = this.scratch.getTile();
+        this.index.put(tile.getId(), tile);
+        for (ColonyTile ct : this.scratch.getColonyTiles()) {
+            Tile wt = ct.getWorkTile();
+            this.index.put(wt.getId(), wt);
+        }
+        for (WorkLocation wl : this.scratch.getAllWorkLocationsList()) {
+            this.index.put(wl.getId(), wl);
+        }
+        for (Unit u : this.scratch.getAllUnitsList()) {
+            this.index.put(u.getId(), u);
+        }
+    }
+
+
+    /**
+     * Get the copy of the colony.
+     *
+     * @return The scratch {@code Colony}.
+     */
+    public Colony getScratch() {
+        return this.scratch;
+    }
+
+    /**
+     * Find the object in the copy corresponding to an object of the
+     * real colony.
+     *
+     * @param <T> The actual return type.
+     * @param fco The {@code FreeColObject} of the real colony.
+     * @return The corresponding object in the copy, or null if not
+     *     found.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends FreeColObject> T getCorresponding(T fco) {
+        FreeColObject ret = this.index.get(fco.getId());
+        return (ret != null && fco.getClass().isInstance(ret)) ? (T)ret
+            : null;
+    }
+
+    /**
+     * Get a mark to roll back to.
+     *
+     * @return The current position in the journal.
+     */
+    public int mark() {
+        return this.journal.size();
+    }
+
+    /**
+     * Move a unit of the copy.
+     *
+     * @param unit The {@code Unit} to move.
+     * @param loc The new {@code Location}.
+     */
+    public void place(Unit unit, Location loc) {
+        this.journal.add(new Change(unit));
+        unit.setLocation(loc);
+    }
+
+    /**
+     * Change the work type of a unit of the copy.
+     *
+     * @param unit The {@code Unit} to change.
+     * @param workType The new work {@code GoodsType}.
+     */
+    public void setWorkType(Unit unit, GoodsType workType) {
+        this.journal.add(new Change(unit));
+        unit.changeWorkType(workType);
+    }
+
+    /**
+     * Undo the changes made since a mark.
+     *
+     * @param mark The mark to roll back to.
+     */
+    public void rollback(int mark) {
+        while (this.journal.size() > mark) {
+            final Change c = this.journal.remove(this.journal.size() - 1);
+            final Unit u = c.unit;
+            if (!Objects.equals(u.getLocation(), c.location)) {
+                u.setLocation(c.location);
+            }
+            if (!Objects.equals(u.getWorkType(), c.workType)) {
+                u.changeWorkType(c.workType);
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static net.sf.freecol.common.util.CollectionUtils.*;
+
+
+/**
+ * A cache of the modifiers and abilities a unit gets from its type,
+ * owner and role, see {@link Unit#getModifiers} and
+ * {@link Unit#getAbilities}.
+ *
+ * These only depend on the feature containers of the type, owner and
+ * role, so units that share all three share the results.  Entries
+ * are keyed by the type, owner and role, the feature identifier and
+ * the optional type the features must apply to.  An entry records
+ * the three containers it was resolved from, their generations (see
+ * {@link FeatureContainer#getGeneration}) and the turn, and is
+ * discarded when any of these differ.  A change of unit type, owner
+ * or role leads to a different key.
+ *
+ * The cache may be used from several threads.  The containers are
+ * resolved outside any lock, against the generations read before
+ * resolving, so a concurrent change invalidates the result.
+ *
+ * Hit and miss counts are kept per feature identifier.
+ */
+public final class FeatureCache {
+
+    /** The key for a cached resolution. */
+    private static final class Key {
+
+        private final UnitType unitType;
+        private final Player owner;
+        private final Role role;
+        private final String id;
+        private final FreeColSpecObjectType fcgot;
+        private final int hash;
+
+
+        /**
+         * Create a new key.
+         *
+         * @param unit The {@code Unit} to resolve features for.
+         * @param id The feature identifier.
+         * @param fcgot An optional {@code FreeColSpecObjectType} the
+         *     features apply to.
+         */
+        public Key(Unit unit, String id, FreeColSpecObjectType fcgot) {
+            this.unitType = unit.getType();
+            this.owner = unit.getOwner();
+            this.role = unit.getRole();
+            this.id = id;
+            this.fcgot = fcgot;
+            this.hash = Objects.hash(unitType, owner, role, id, fcgot);
+        }
+
+
+        // Override Object
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return this.hash == k.hash
+                && Objects.equals(this.unitType, k.unitType)
+                && Objects.equals(this.owner, k.owner)
+                && Objects.equals(this.role, k.role)
+                && Objects.equals(this.id, k.id)
+                && Objects.equals(this.fcgot, k.fcgot);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /** A cached resolution. */
+    private static final class Entry<T> {
+
+        /** The containers the features were resolved from. */
+        private final FeatureContainer typeContainer, ownerContainer,
+            roleContainer;
+
+        /** The generations of the containers. */
+        private final int typeGeneration, ownerGeneration, roleGeneration;
+
+        /** The turn number the features were resolved in. */
+        private final int turn;
+
+        /** The features found. */
+        public final List<T> features;
+
+
+        /**
+         * Create a new entry.
+         *
+         * @param stamp The {@code Entry} holding the containers,
+         *     generations and turn.
+         * @param features The features found.
+         */
+        public Entry(Entry<?> stamp, List<T> features) {
+            this.typeContainer = stamp.typeContainer;
+            this.ownerContainer = stamp.ownerContainer;
+            this.roleContainer = stamp.roleContainer;
+            this.typeGeneration = stamp.typeGeneration;
+            this.ownerGeneration = stamp.ownerGeneration;
+            this.roleGeneration = stamp.roleGeneration;
+            this.turn = stamp.turn;
+            this.features = features;
+        }
+
+        /**
+         * Create a new stamp of the current state of a unit.
+         *
+         * @param unit The {@code Unit} to resolve features for.
+         * @param turn The current turn number.
+         */
+        public Entry(Unit unit, int turn) {
+            this.typeContainer = unit.getType().getFeatureContainer();
+            this.ownerContainer = unit.getOwner().getFeatureContainer();
+            this.roleContainer = unit.getRole().getFeatureContainer();
+            this.typeGeneration = typeContainer.getGeneration();
+            this.ownerGeneration = ownerContainer.getGeneration();
+            this.roleGeneration = roleContainer.getGeneration();
+            this.turn = turn;
+            this.features = null;
+        }
+
+        /**
+         * Is this entry still valid for a given stamp?
+         *
+         * @param stamp The current stamp {@code Entry}.
+         * @return True if the entry is valid.
+         */
+        public boolean isValid(Entry<?> stamp) {
+            return this.typeContainer == stamp.typeContainer
+                && this.ownerContainer == stamp.ownerContainer
+                && this.roleContainer == stamp.roleContainer
+                && this.typeGeneration == stamp.typeGeneration
+                && this.ownerGeneration == stamp.ownerGeneration
+                && this.roleGeneration == stamp.roleGeneration
+                && this.turn == stamp.turn;
+        }
+    }
+
+    /** Hit and miss counts for a feature identifier. */
+    private static final class Counts {
+
+        public final LongAdder hits = new LongAdder();
+        public final LongAdder misses = new LongAdder();
+    }
+
+    /** The cached modifiers. */
+    private final ConcurrentHashMap<Key, Entry<Modifier>> modifiers
+        = new ConcurrentHashMap<>();
+
+    /** The cached abilities. */
+    private final ConcurrentHashMap<Key, Entry<Ability>> abilities
+        = new ConcurrentHashMap<>();
+
+    /** Hit and miss counts, by feature identifier. */
+    private final ConcurrentHashMap<String, Counts> stats
+        = new ConcurrentHashMap<>();
+
+
+    /**
+     * Create a new feature cache.
+     */
+    public FeatureCache() {}
+
+
+    /**
+     * Get the modifiers a unit gets from its type, owner and role.
+     *
+     * @param unit The {@code Unit} to resolve modifiers for.
+     * @param id The modifier identifier.
+     * @param fcgot An optional {@code FreeColSpecObjectType} the
+     *     modifiers apply to.
+     * @param turn An optional applicable {@code Turn}.
+     * @param resolve A {@code Supplier} to find the modifiers on a miss.
+     * @return A stream of {@code Modifier}s, in application order.
+     */
+    public Stream<Modifier> getModifiers(Unit unit, String id,
+                                         FreeColSpecObjectType fcgot,
+                                         Turn turn,
+                                         Supplier<Stream<Modifier>> resolve) {
+        return lookup(modifiers, unit, id, fcgot, turn,
+            () -> sort(resolve.get(), Modifier.ascendingModifierIndexComparator))
+            .stream();
+    }
+
+    /**
+     * Get the abilities a unit gets from its type, owner and role.
+     *
+     * @param unit The {@code Unit} to resolve abilities for.
+     * @param id The ability identifier.
+     * @param fcgot An optional {@code FreeColSpecObjectType} the
+     *     abilities apply to.
+     * @param turn An optional applicable {@code Turn}.
+     * @param resolve A {@code Supplier} to find the abilities on a miss.
+     * @return A stream of {@code Ability}s.
+     */
+    public Stream<Ability> getAbilities(Unit unit, String id,
+                                        FreeColSpecObjectType fcgot,
+                                        Turn turn,
+                                        Supplier<Stream<Ability>> resolve) {
+        return lookup(abilities, unit, id, fcgot, turn,
+                      () -> toList(resolve.get())).stream();
+    }
+
+    /**
+     * Discard all cached features.
+     */
+    public void clear() {
+        modifiers.clear();
+        abilities.clear();
+    }
+
+    /**
+     * Get the hit and miss counts for each feature identifier.
+     *
+     * @return A map of feature identifier to a hits, misses pair.
+     */
+    public java.util.Map<String, long[]> getStatistics() {
+        java.util.Map<String, long[]> ret = new HashMap<>();
+        forEachMapEntry(stats, e -> ret.put(e.getKey(), new long[] {
+                    e.getValue().hits.sum(), e.getValue().misses.sum() }));
+        return ret;
+    }
+
+    /**
+     * Get the number of resolutions currently cached.
+     *
+     * @return The cache size.
+     */
+    public int size() {
+        return modifiers.size() + abilities.size();
+    }
+
+
+    // Internals
+
+    /**
+     * Look up features, resolving and caching them on a miss.
+     *
+     * @param cache The cache to use.
+     * @param unit The {@code Unit} to resolve features for.
+     * @param id The feature identifier.
+     * @param fcgot An optional {@code FreeColSpecObjectType} the
+     *     features apply to.
+     * @param turn An optional applicable {@code Turn}.
+     * @param resolve A {@code Supplier} to find the features on a miss.
+     * @return The list of features found.
+     */
+    private <T> List<T> lookup(ConcurrentHashMap<Key, Entry<T>> cache,
+                               Unit unit, String id,
+                               FreeColSpecObjectType fcgot, Turn turn,
+                               Supplier<List<T>> resolve) {
+        final Key key = new Key(unit, id, fcgot);
+        final Entry<?> stamp = new Entry<>(unit,
+            (turn == null) ? -1 : turn.getNumber());
+        Counts counts = stats.get(id);
+        if (counts == null) {
+            counts = stats.computeIfAbsent(id, k -> new Counts());
+        }
+        final Entry<T> entry = cache.get(key);
+        if (entry != null && entry.isValid(stamp)) {
+            counts.hits.increment();
+            return entry.features;
+        }
+        counts.misses.increment();
+        final List<T> features = resolve.get();
+        cache.put(key, new Entry<>(stamp, features));
+        return features;
+    }
+}
@@ -20,6 +20,7 @@ package net.sf.freecol.common.model;
 
 import java.util.*;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
 
@@ -52,6 +53,12 @@ public final class FeatureContainer {
     /** The modifiers in the container. */
     private Map<String, Set<Modifier>> modifiers = null;
 
+    /**
+     * The generation of the container, bumped whenever an ability or
+     * modifier is added or removed.
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
 
     /**
      * Have the abilities map been created?
@@ -93,6 +100,24 @@ public final class FeatureContainer {
         }
     }
 
+    /**
+     * Get the generation of this container.  This changes whenever
+     * the abilities or modifiers change, so results derived from
+     * them can be checked for staleness, see {@link FeatureCache}.
+     *
+     * @return The container generation.
+     */
+    public int getGeneration() {
+        return this.generation.get();
+    }
+
+    /**
+     * Note that the abilities or modifiers have changed.
+     */
+    private void changed() {
+        this.generation.incrementAndGet();
+    }
+
     protected Collection<Ability> getAbilityValues() {
         Set<Ability> ret = new HashSet<>();
         synchronized (abilitiesLock) {
@@ -199,8 +224,10 @@ public final class FeatureContainer {
                 abilitySet = new HashSet<>();
                 abilities.put(ability.getId(), abilitySet);
             }
-            return abilitySet.add(ability);
+            if (!abilitySet.add(ability)) return false;
         }
+        changed();
+        return true;
     }
 
     /**
@@ -214,10 +241,10 @@ public final class FeatureContainer {
 
         synchronized (abilitiesLock) {
             Set<Ability> abilitySet = abilities.get(ability.getId());
-            return (abilitySet == null
-                || !abilitySet.remove(ability)) ? null
-                : ability;
+            if (abilitySet == null || !abilitySet.remove(ability)) return null;
         }
+        changed();
+        return ability;
     }
 
     /**
@@ -231,6 +258,7 @@ public final class FeatureContainer {
         synchronized (abilitiesLock) {
             abilities.remove(id);
         }
+        changed();
     }
 
 
@@ -344,8 +372,10 @@ public final class FeatureContainer {
                 modifierSet = new HashSet<>();
                 modifiers.put(modifier.getId(), modifierSet);
             }
-            return modifierSet.add(modifier);
+            if (!modifierSet.add(modifier)) return false;
         }
+        changed();
+        return true;
     }
 
     /**
@@ -359,10 +389,12 @@ public final class FeatureContainer {
 
         synchronized (modifiersLock) {
             Set<Modifier> modifierSet = modifiers.get(modifier.getId());
-            return (modifierSet == null
-                || !modifierSet.remove(modifier)) ? null
-                : modifier;
+            if (modifierSet == null || !modifierSet.remove(modifier)) {
+                return null;
+            }
         }
+        changed();
+        return modifier;
     }
 
     /**
@@ -376,6 +408,7 @@ public final class FeatureContainer {
         synchronized (modifiersLock) {
             modifiers.remove(id);
         }
+        changed();
     }
 
     /**
@@ -422,6 +455,7 @@ public final class FeatureContainer {
                     });
             }
         }
+        changed();
     }
 
     /**
@@ -465,6 +499,7 @@ public final class FeatureContainer {
                 }
             }
         }
+        changed();
     }
 
     /**
@@ -492,6 +527,7 @@ public final class FeatureContainer {
                 modifiers.clear();
             }
         }
+        changed();
     }
 
     /**
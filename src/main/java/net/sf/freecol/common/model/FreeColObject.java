@@ -27,11 +27,11 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Stream;
@@ -40,6 +40,7 @@ import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.ObjectWithId;
+import net.sf.freecol.common.io.EventXMLStreamWriter;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.io.FreeColXMLWriter.WriteScope;
@@ -80,6 +81,10 @@ public abstract class FreeColObject
     /** Fallback class index. */
     protected static final int DEFAULT_CLASS_INDEX = 1000;
 
+    /** The classes found for tags by getFreeColObjectClass. */
+    private static final ConcurrentHashMap<String, Class<?>> objectClasses
+        = new ConcurrentHashMap<>();
+
 
     /** The identifier of an object. */
     private String id;
@@ -101,10 +106,15 @@ public abstract class FreeColObject
      */
     @SuppressWarnings("unchecked")
     public static <T extends FreeColObject> Class<T> getFreeColObjectClass(String name) {
+        Class<?> c = objectClasses.get(name);
+        if (c != null) return (Class<T>)c;
         final String type = "net.sf.freecol.common.model."
             + capitalize(name);
-        final Class<T> c = (Class<T>)Introspector.getClassByName(type);
-        if (c != null) return c;
+        c = Introspector.getClassByName(type);
+        if (c != null) {
+            objectClasses.put(name, c);
+            return (Class<T>)c;
+        }
         logger.warning("getFreeColObjectClass could not find: " + type);
         return null;
     }
@@ -1014,15 +1024,7 @@ public abstract class FreeColObject
      * @return The copied object, or null on error.
      */
     public <T extends FreeColObject> T copy(Game game, Class<T> returnClass) {
-        T ret = null;
-        try (
-             FreeColXMLReader xr = new FreeColXMLReader(new StringReader(this.serialize()))
-        ) {
-            ret = xr.copy(game, returnClass);
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Failed to copy: " + getId(), e);
-        }
-        return ret;
+        return copy(game, WriteScope.toServer(), returnClass);
     }
 
     /**
@@ -1035,9 +1037,37 @@ public abstract class FreeColObject
      * @return The copied object, or null on error.
      */
     public <T extends FreeColObject> T copy(Game game, Player player, Class<T> returnClass) {
+        return copy(game, WriteScope.toClient(player), returnClass);
+    }
+
+    /**
+     * Copy a FreeColObject as seen in a given write scope.
+     *
+     * The object is written and read back exactly as it would be
+     * serialized, but through an in-memory event buffer rather than
+     * XML text, which is much cheaper for the frequent AI and
+     * fog-of-war copies.
+     *
+     * @param <T> The actual return type.
+     * @param game The {@code Game} to add the object to.
+     * @param scope The {@code WriteScope} to copy with.
+     * @param returnClass The expected return class.
+     * @return The copied object, or null on error.
+     */
+    public <T extends FreeColObject> T copy(Game game, WriteScope scope,
+                                            Class<T> returnClass) {
         T ret = null;
+        final EventXMLStreamWriter ew = new EventXMLStreamWriter();
+        try (
+             FreeColXMLWriter xw = new FreeColXMLWriter(ew, scope)
+        ) {
+            this.toXML(xw);
+        } catch (XMLStreamException xse) {
+            logger.log(Level.WARNING, "Failed to write copy: " + getId(), xse);
+            return null;
+        }
         try (
-             FreeColXMLReader xr = new FreeColXMLReader(new StringReader(this.serialize(player)))
+             FreeColXMLReader xr = new FreeColXMLReader(ew.getReader())
         ) {
             ret = xr.copy(game, returnClass);
         } catch (Exception e) {
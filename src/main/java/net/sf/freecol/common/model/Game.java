@@ -19,7 +19,6 @@
 
 package net.sf.freecol.common.model;
 
-import java.lang.ref.WeakReference;
 import java.io.StringReader;
 import java.util.*;
 import java.util.Map.Entry;
@@ -36,6 +35,7 @@ import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.model.FreeColObject;
 import net.sf.freecol.common.model.NationOptions.NationState;
 import net.sf.freecol.common.option.OptionGroup;
+import net.sf.freecol.common.util.Factory;
 import net.sf.freecol.common.util.Introspector;
 import net.sf.freecol.common.util.LogBuilder;
 
@@ -64,13 +64,6 @@ public class Game extends FreeColGameObject {
         RECONNECT,  // Implement reconnect
     }
 
-    /** State for the FCGO iterator, out here because it has to be static. */
-    private enum FcgoState {
-        INVALID,
-        VALID,
-        CONSUMED,
-    }
-
     /** Map of all classes with corresponding server classes. */
     private static final java.util.Map<Class<? extends FreeColObject>,
                                        Class<? extends FreeColObject>>
@@ -173,8 +166,8 @@ public class Game extends FreeColGameObject {
      * Serialization is not needed directly as these must be completely
      * within { players, unknownEnemy, map } which are directly serialized.
      */
-    protected final HashMap<String, WeakReference<FreeColGameObject>>
-        freeColGameObjects = new HashMap<>(10000);
+    protected final GameObjectRegistry freeColGameObjects
+        = new GameObjectRegistry();
 
     /**
      * The combat model this game uses. At the moment, the only combat
@@ -186,10 +179,13 @@ public class Game extends FreeColGameObject {
      */
     protected CombatModel combatModel = null;
 
-    /** The number of removed FCGOs that should trigger a cache clean. */
+    /** The modifiers and abilities units get from type, owner and role. */
+    private final FeatureCache featureCache = new FeatureCache();
+
+    /** The number of removed FCGOs that should trigger a collection. */
     private static final int REMOVE_GC_THRESHOLD = 64;
 
-    /** The number of FCGOs removed since last cache clean. */
+    /** The number of FCGOs removed since last collection. */
     private int removeCount = 0;
 
     /**
@@ -302,28 +298,35 @@ public class Game extends FreeColGameObject {
             Class<T> sc = (Class<T>)serverClasses.get(returnClass);
             if (sc != null) returnClass = sc;
         }
-        try {
-            return Introspector.instantiate(returnClass,
-                new Class[] { Game.class, String.class },
-                new Object[] { game, null}); // No intern!
-        } catch (Introspector.IntrospectorException ex) {
-            // Allow another try on failure
+        Factory<T> factory = Factory.get(returnClass,
+                                         Game.class, String.class);
+        if (factory != null) {
+            try {
+                return factory.create(game, null); // No intern!
+            } catch (Introspector.IntrospectorException ex) {
+                // Allow another try on failure
+            }
         }
 
         if (game != null
             && FreeColSpecObject.class.isAssignableFrom(returnClass)) {
+            factory = Factory.get(returnClass, Specification.class);
             try {
-                return Introspector.instantiate(returnClass,
-                    new Class[] { Specification.class },
-                    new Object[] { game.getSpecification() });
+                if (factory != null) {
+                    return factory.create(game.getSpecification());
+                }
+                logger.warning("newInstance(spec) no constructor for: "
+                    + returnClass.getName());
             } catch (Introspector.IntrospectorException ex) {
                 logger.log(Level.WARNING, "newInstance(spec) fail for: "
                     + returnClass.getName(), ex);
             }
         } else { // Or just use the trivial constructor
+            factory = Factory.get(returnClass);
             try {
-                return Introspector.instantiate(returnClass,
-                    new Class[] {}, new Object[] {});
+                if (factory != null) return factory.create();
+                logger.warning("newInstance(trivial) no constructor for: "
+                    + returnClass.getName());
             } catch (Introspector.IntrospectorException ex) {
                 logger.log(Level.WARNING, "newInstance(trivial) fail for: "
                     + returnClass.getName(), ex);
@@ -406,18 +409,8 @@ public class Game extends FreeColGameObject {
      * @return The game object, or null if not found.
      */
     public FreeColGameObject getFreeColGameObject(String id) {
-        if (id == null || id.isEmpty()) return null;
-        final WeakReference<FreeColGameObject> ro;
-        synchronized (freeColGameObjects) {
-            ro = freeColGameObjects.get(id);
-        }
-        if (ro == null) return null;
-        final FreeColGameObject o = ro.get();
-        if (o == null) {
-            removeFreeColGameObject(id, "missed");
-            return null;
-        }
-        return o;
+        return (id == null || id.isEmpty()) ? null
+            : freeColGameObjects.get(id);
     }
 
     /**
@@ -454,10 +447,8 @@ public class Game extends FreeColGameObject {
             throw new RuntimeException("Null FreeColGameObject");
         }
 
-        final WeakReference<FreeColGameObject> wr = new WeakReference<>(fcgo);
-        synchronized (this.freeColGameObjects) {
-            this.freeColGameObjects.put(id, wr);
-        }
+        this.freeColGameObjects.put(id, fcgo);
+        expungeFreeColGameObjects();
     }
         
     /**
@@ -501,21 +492,39 @@ public class Game extends FreeColGameObject {
 
         logger.finest("removeFCGO/" + reason + ": " + id);
         notifyRemoveFreeColGameObject(id);
-        synchronized (freeColGameObjects) {
-            freeColGameObjects.remove(id);
-        }
+        freeColGameObjects.remove(id);
 
         // Garbage collect the FCGOs if enough have been removed.
         if (++removeCount > REMOVE_GC_THRESHOLD) {
-            synchronized (freeColGameObjects) {
-                Iterator<FreeColGameObject> iter = getFreeColGameObjectIterator();
-                while (iter.hasNext()) iter.next();
-            }
+            expungeFreeColGameObjects();
             removeCount = 0;
             System.gc(); // Probably a good opportunity.
         }
     }
 
+    /**
+     * Drop the registry entries of objects that have been garbage
+     * collected, notifying the listener of each.
+     *
+     * @return The number of entries dropped.
+     */
+    public int expungeFreeColGameObjects() {
+        return freeColGameObjects.expunge(id -> {
+                logger.finest("removeFCGO/expire: " + id);
+                notifyRemoveFreeColGameObject(id);
+            });
+    }
+
+    /**
+     * Get the registry of all the {@code FreeColGameObject}s in this
+     * game, for its statistics.
+     *
+     * @return The {@code GameObjectRegistry}.
+     */
+    public GameObjectRegistry getFreeColGameObjectRegistry() {
+        return freeColGameObjects;
+    }
+
     /**
      * Update a {@code FreeColGameObject} from another.
      *
@@ -662,86 +671,14 @@ public class Game extends FreeColGameObject {
         return (fcgo instanceof Location) ? (Location)fcgo : null;
     }
 
-    /**
-     * Gets an {@code Iterator} over every registered
-     * {@code FreeColGameObject}.
-     *
-     * This {@code Iterator} should be iterated once in a while
-     * since it cleans the {@code FreeColGameObject} cache.  Very
-     * few routines call this any more, so there is a thresholded call
-     * in removeFreeColGameObject to ensure the cache is still
-     * cleaned.  Reconsider this if the situation changes.
-     *
-     * Lock freeColGameObjects when using this.
-     *
-     * @return An {@code Iterator} containing every registered
-     *     {@code FreeColGameObject}.
-     */
-    private Iterator<FreeColGameObject> getFreeColGameObjectIterator() {
-        return new Iterator<FreeColGameObject>() {
-
-            /** An iterator over the freeColGameObjects map. */
-            private final Iterator<Entry<String,
-                                         WeakReference<FreeColGameObject>>> it
-                = freeColGameObjects.entrySet().iterator();
-
-            /** Read ahead to this next entry. */
-            private Entry<String, WeakReference<FreeColGameObject>> readAhead
-                = null;
-
-            /** State of the readahead value. */
-            private FcgoState fcgoState = FcgoState.INVALID;
-
-
-            @Override
-            public boolean hasNext() {
-                if (this.fcgoState == FcgoState.VALID) return true;
-                while (this.it.hasNext()) {
-                    this.readAhead = this.it.next();
-                    if (this.readAhead.getValue().get() != null) {
-                        this.fcgoState = FcgoState.VALID;
-                        return true;
-                    }
-                    this.fcgoState = FcgoState.CONSUMED;
-                    remove();
-                }
-                return false;
-            }
-
-            @Override
-            public FreeColGameObject next() {
-                if (!hasNext()) throw new NoSuchElementException();
-                FreeColGameObject fcgo = this.readAhead.getValue().get();
-                this.fcgoState = FcgoState.CONSUMED;
-                return fcgo;
-            }
-
-            @Override
-            public void remove() {
-                if (this.fcgoState == FcgoState.INVALID) {
-                    throw new IllegalStateException("No current entry");
-                }
-                final String key = this.readAhead.getKey();
-                this.fcgoState = FcgoState.INVALID;
-                this.it.remove();
-                logger.finest("removeFCGO/expire: " + key);
-                notifyRemoveFreeColGameObject(key);
-            }
-        };
-    }
-
     /**
      * Get a list of all the {@code FreeColGameObjects}.
      *
      * @return A suitable list.
      */
     public List<FreeColGameObject> getFreeColGameObjectList() {
-        List<FreeColGameObject> ret = new ArrayList<>();
-        synchronized (freeColGameObjects) {
-            Iterator<FreeColGameObject> iter = getFreeColGameObjectIterator();
-            while (iter.hasNext()) ret.add(iter.next());
-        }
-        return ret;
+        expungeFreeColGameObjects();
+        return freeColGameObjects.getObjects();
     }
 
     /**
@@ -1145,6 +1082,10 @@ public class Game extends FreeColGameObject {
                 hs.removeDestination(oldMap);
                 hs.addDestination(this.map);
             }
+            // Tiles may have found their neighbours on the old map
+            if (this.map != null) {
+                this.map.forEachTile(Tile::invalidateNeighbourFlags);
+            }
         }
     }
 
@@ -1434,6 +1375,16 @@ public class Game extends FreeColGameObject {
         return o;
     }
 
+    /**
+     * Get the cache of the modifiers and abilities units get from
+     * their type, owner and role.
+     *
+     * @return The {@code FeatureCache}.
+     */
+    public FeatureCache getFeatureCache() {
+        return featureCache;
+    }
+
     /**
      * Gets the statistics of this game.
      *
@@ -1467,9 +1418,50 @@ public class Game extends FreeColGameObject {
             if (fcgo.isDisposed()) disposed++;
         }
         stats.put("disposed", Long.toString(disposed));
+        stats.put("registrySize", Integer.toString(freeColGameObjects.size()));
+        stats.put("registryTypes",
+                  Integer.toString(freeColGameObjects.getTypeCount()));
+        stats.put("registryAdded", Long.toString(freeColGameObjects.getAdded()));
+        stats.put("registryRemoved",
+                  Long.toString(freeColGameObjects.getRemoved()));
+        stats.put("registryReclaimed",
+                  Long.toString(freeColGameObjects.getReclaimed()));
+
+        // Colony production caches, this turn
+        int full = 0, partial = 0, recomputed = 0, reused = 0;
+        for (Colony colony : getAllColoniesList(null)) {
+            final ProductionCache pc = colony.getProductionCache();
+            full += pc.getFullUpdates();
+            partial += pc.getPartialUpdates();
+            recomputed += pc.getRecomputed();
+            reused += pc.getReused();
+        }
+        stats.put("productionFullUpdates", Integer.toString(full));
+        stats.put("productionPartialUpdates", Integer.toString(partial));
+        stats.put("productionRecomputed", Integer.toString(recomputed));
+        stats.put("productionReused", Integer.toString(reused));
+        if (this.map != null) {
+            stats.put("mapSearches", Long.toString(this.map.getSearchCount()));
+            stats.put("mapSearchMillis",
+                      Long.toString(this.map.getSearchNanos() / 1000000L));
+        }
         forEachMapEntry(objStats,
                 e -> stats.put(e.getKey(), Long.toString(e.getValue())));
 
+        // Unit feature resolutions, by identifier
+        long hits = 0, misses = 0;
+        for (java.util.Map.Entry<String, long[]> e
+                 : featureCache.getStatistics().entrySet()) {
+            final long[] s = e.getValue();
+            hits += s[0];
+            misses += s[1];
+            stats.put("featureCache." + e.getKey(),
+                      s[0] + "/" + (s[0] + s[1]));
+        }
+        stats.put("featureCacheHits", Long.toString(hits));
+        stats.put("featureCacheMisses", Long.toString(misses));
+        stats.put("featureCacheSize", Integer.toString(featureCache.size()));
+
         return stats;
     }
 
@@ -1517,24 +1509,16 @@ public class Game extends FreeColGameObject {
     public int checkIntegrity(boolean fix, LogBuilder lb) {
         int result = super.checkIntegrity(fix, lb);
         lb.mark();
-        synchronized (freeColGameObjects) {
-            Iterator<FreeColGameObject> iterator = getFreeColGameObjectIterator();
-            while (iterator.hasNext()) {
-                FreeColGameObject fcgo = iterator.next();
-                if (fcgo == null) {
-                    lb.add(" null-fcgo");
-                } else if (!fcgo.isInitialized()) {
-                    lb.add(" ", fcgo.getId(),
-                        "(", lastPart(fcgo.getClass().getName(), "."), ")");
-                } else {
-                    continue;
-                }
-                if (fix) {
-                    iterator.remove();
-                    result = Math.min(result, 0);
-                } else {
-                    result = -1;
-                }
+        for (FreeColGameObject fcgo : getFreeColGameObjectList()) {
+            if (fcgo.isInitialized()) continue;
+            lb.add(" ", fcgo.getId(),
+                "(", lastPart(fcgo.getClass().getName(), "."), ")");
+            if (fix) {
+                freeColGameObjects.remove(fcgo.getId());
+                notifyRemoveFreeColGameObject(fcgo.getId());
+                result = Math.min(result, 0);
+            } else {
+                result = -1;
             }
         }
         if (lb.grew("\n  Uninitialized game ids: ")) {
@@ -0,0 +1,502 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+
+/**
+ * The registry of all {@code FreeColGameObject}s in a {@link Game},
+ * weakly referenced by identifier.
+ *
+ * Identifiers of the usual {@code type:number} form are split, and
+ * each type has its own open addressed table keyed by the primitive
+ * number.  Other identifiers fall back to a concurrent hash map.
+ *
+ * Lookups do not lock: the tables are only ever replaced wholesale
+ * through volatile fields, and slots are atomic.  Changes lock the
+ * table concerned.  References to collected objects are queued by
+ * the garbage collector and removed in bulk by {@link #expunge},
+ * rather than being discovered by lookups and iteration.
+ *
+ * Size and churn statistics are kept for debugging.
+ */
+public final class GameObjectRegistry {
+
+    /** A weak reference to a registered object, keyed by its number. */
+    private static final class Ref extends WeakReference<FreeColGameObject> {
+
+        /** The full identifier. */
+        public final String id;
+
+        /** The numeric part of the identifier, or -1. */
+        public final int number;
+
+        /** The table containing this reference, or null if in others. */
+        public final Table table;
+
+
+        /**
+         * Create a new reference.
+         *
+         * @param fcgo The {@code FreeColGameObject} to refer to.
+         * @param queue The {@code ReferenceQueue} to register with.
+         * @param id The object identifier.
+         * @param number The numeric part of the identifier.
+         * @param table The containing {@code Table}.
+         */
+        public Ref(FreeColGameObject fcgo,
+                   ReferenceQueue<FreeColGameObject> queue,
+                   String id, int number, Table table) {
+            super(fcgo, queue);
+            this.id = id;
+            this.number = number;
+            this.table = table;
+        }
+    }
+
+    /** The marker for a removed slot. */
+    private static final Ref TOMBSTONE = new Ref(null, null, null, -1, null);
+
+    /** The objects with a given identifier type. */
+    private static final class Table {
+
+        /** The identifier type. */
+        public final String type;
+
+        /** The hash of the identifier type. */
+        public final int hash;
+
+        /** The slots, replaced when resized. */
+        public volatile AtomicReferenceArray<Ref> slots
+            = new AtomicReferenceArray<>(16);
+
+        /** The number of slots not null, including tombstones. */
+        public int used = 0;
+
+        /** The number of live slots. */
+        public int live = 0;
+
+
+        /**
+         * Create a new table.
+         *
+         * @param type The identifier type.
+         */
+        public Table(String type) {
+            this.type = type;
+            this.hash = type.hashCode();
+        }
+
+        /**
+         * Find a reference.  Does not lock.
+         *
+         * @param number The identifier number.
+         * @return The {@code Ref} found, or null.
+         */
+        public Ref get(int number) {
+            final AtomicReferenceArray<Ref> s = this.slots;
+            final int mask = s.length() - 1;
+            for (int i = mix(number) & mask;; i = (i + 1) & mask) {
+                final Ref r = s.get(i);
+                if (r == null) return null;
+                if (r.number == number) return r;
+            }
+        }
+
+        /**
+         * Add or replace a reference.
+         *
+         * @param ref The {@code Ref} to add.
+         * @return True if the number was not present.
+         */
+        public synchronized boolean put(Ref ref) {
+            AtomicReferenceArray<Ref> s = this.slots;
+            if (4 * (used + 1) > 3 * s.length()) s = resize();
+            final int mask = s.length() - 1;
+            int free = -1;
+            for (int i = mix(ref.number) & mask;; i = (i + 1) & mask) {
+                final Ref r = s.get(i);
+                if (r == null) {
+                    if (free < 0) {
+                        free = i;
+                        used++;
+                    }
+                    break;
+                }
+                if (r == TOMBSTONE) {
+                    if (free < 0) free = i;
+                } else if (r.number == ref.number) {
+                    s.set(i, ref);
+                    return false;
+                }
+            }
+            s.set(free, ref);
+            live++;
+            return true;
+        }
+
+        /**
+         * Remove a reference by number.
+         *
+         * @param number The identifier number.
+         * @param ref If not null, only remove this exact reference.
+         * @return True if a reference was removed.
+         */
+        public synchronized boolean remove(int number, Ref ref) {
+            final AtomicReferenceArray<Ref> s = this.slots;
+            final int mask = s.length() - 1;
+            for (int i = mix(number) & mask;; i = (i + 1) & mask) {
+                final Ref r = s.get(i);
+                if (r == null) return false;
+                if (r.number == number) {
+                    if (ref != null && r != ref) return false;
+                    s.set(i, TOMBSTONE);
+                    live--;
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * Collect the live references.
+         *
+         * @param refs A list to add to.
+         */
+        public void collect(List<Ref> refs) {
+            final AtomicReferenceArray<Ref> s = this.slots;
+            for (int i = 0; i < s.length(); i++) {
+                final Ref r = s.get(i);
+                if (r != null && r != TOMBSTONE) refs.add(r);
+            }
+        }
+
+        /**
+         * Rehash into a new slot array sized for the live entries,
+         * dropping tombstones.  Called with the table locked.
+         *
+         * @return The new slots.
+         */
+        private AtomicReferenceArray<Ref> resize() {
+            final AtomicReferenceArray<Ref> old = this.slots;
+            int capacity = 16;
+            while (capacity < 4 * (live + 1)) capacity <<= 1;
+            final AtomicReferenceArray<Ref> s
+                = new AtomicReferenceArray<>(capacity);
+            final int mask = capacity - 1;
+            for (int j = 0; j < old.length(); j++) {
+                final Ref r = old.get(j);
+                if (r == null || r == TOMBSTONE) continue;
+                int i = mix(r.number) & mask;
+                while (s.get(i) != null) i = (i + 1) & mask;
+                s.set(i, r);
+            }
+            this.used = this.live;
+            this.slots = s;
+            return s;
+        }
+    }
+
+    /**
+     * The tables, open addressed by identifier type hash.  Replaced
+     * when a type is added, which is rare.
+     */
+    private volatile Table[] tables = new Table[64];
+
+    /** Objects with identifiers not of the usual form. */
+    private final ConcurrentHashMap<String, Ref> others
+        = new ConcurrentHashMap<>();
+
+    /** The queue of references to collected objects. */
+    private final ReferenceQueue<FreeColGameObject> queue
+        = new ReferenceQueue<>();
+
+    /** The number of objects added. */
+    private final AtomicLong added = new AtomicLong();
+
+    /** The number of objects explicitly removed. */
+    private final AtomicLong removed = new AtomicLong();
+
+    /** The number of collected objects reclaimed. */
+    private final AtomicLong reclaimed = new AtomicLong();
+
+
+    /**
+     * Create a new registry.
+     */
+    public GameObjectRegistry() {}
+
+
+    /**
+     * Get an object by identifier.
+     *
+     * @param id The object identifier.
+     * @return The object, or null if not present or collected.
+     */
+    public FreeColGameObject get(String id) {
+        final int col = id.lastIndexOf(':');
+        final int number = parseNumber(id, col);
+        final Ref r;
+        if (number < 0) {
+            r = others.get(id);
+        } else {
+            final Table t = findTable(id, col);
+            r = (t == null) ? null : t.get(number);
+        }
+        return (r == null) ? null : r.get();
+    }
+
+    /**
+     * Add or replace an object.
+     *
+     * @param id The object identifier.
+     * @param fcgo The {@code FreeColGameObject} to add.
+     */
+    public void put(String id, FreeColGameObject fcgo) {
+        final int col = id.lastIndexOf(':');
+        final int number = parseNumber(id, col);
+        final boolean fresh;
+        if (number < 0) {
+            fresh = others.put(id, new Ref(fcgo, queue, id, -1, null)) == null;
+        } else {
+            Table t = findTable(id, col);
+            if (t == null) t = addTable(id, col);
+            fresh = t.put(new Ref(fcgo, queue, id, number, t));
+        }
+        if (fresh) added.incrementAndGet();
+    }
+
+    /**
+     * Remove an object.
+     *
+     * @param id The object identifier.
+     * @return True if an object was removed.
+     */
+    public boolean remove(String id) {
+        final int col = id.lastIndexOf(':');
+        final int number = parseNumber(id, col);
+        final boolean ret;
+        if (number < 0) {
+            ret = others.remove(id) != null;
+        } else {
+            final Table t = findTable(id, col);
+            ret = t != null && t.remove(number, null);
+        }
+        if (ret) removed.incrementAndGet();
+        return ret;
+    }
+
+    /**
+     * Remove all references to objects that have been collected.
+     *
+     * @param consumer A {@code Consumer} to pass the identifiers of
+     *     the reclaimed objects to.
+     * @return The number of references reclaimed.
+     */
+    public int expunge(Consumer<String> consumer) {
+        int count = 0;
+        Reference<? extends FreeColGameObject> ref;
+        while ((ref = queue.poll()) != null) {
+            final Ref r = (Ref)ref;
+            final boolean gone = (r.table == null)
+                ? others.remove(r.id, r)
+                : r.table.remove(r.number, r);
+            if (gone) {
+                count++;
+                consumer.accept(r.id);
+            }
+        }
+        if (count > 0) reclaimed.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Get all the live objects.
+     *
+     * @return A list of the registered objects.
+     */
+    public List<FreeColGameObject> getObjects() {
+        final List<Ref> refs = new ArrayList<>(size());
+        for (Table t : tables) if (t != null) t.collect(refs);
+        refs.addAll(others.values());
+        final List<FreeColGameObject> ret = new ArrayList<>(refs.size());
+        for (Ref r : refs) {
+            final FreeColGameObject fcgo = r.get();
+            if (fcgo != null) ret.add(fcgo);
+        }
+        return ret;
+    }
+
+    /**
+     * Get the number of registered objects, including any collected
+     * but not yet expunged.
+     *
+     * @return The registry size.
+     */
+    public int size() {
+        int ret = others.size();
+        for (Table t : tables) {
+            if (t == null) continue;
+            synchronized (t) {
+                ret += t.live;
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Get the number of identifier types.
+     *
+     * @return The number of per-type tables.
+     */
+    public int getTypeCount() {
+        int ret = 0;
+        for (Table t : tables) if (t != null) ret++;
+        return ret;
+    }
+
+    /**
+     * Get the number of objects added.
+     *
+     * @return The add count.
+     */
+    public long getAdded() {
+        return added.get();
+    }
+
+    /**
+     * Get the number of objects explicitly removed.
+     *
+     * @return The remove count.
+     */
+    public long getRemoved() {
+        return removed.get();
+    }
+
+    /**
+     * Get the number of collected objects reclaimed.
+     *
+     * @return The reclaim count.
+     */
+    public long getReclaimed() {
+        return reclaimed.get();
+    }
+
+
+    // Internals
+
+    /**
+     * Parse the number following the last colon of an identifier.
+     *
+     * @param id The identifier.
+     * @param col The index of the last colon, or -1.
+     * @return The number, or -1 if the identifier is not of the
+     *     canonical {@code type:number} form.
+     */
+    private static int parseNumber(String id, int col) {
+        final int len = id.length();
+        if (col <= 0 || col >= len - 1 || len - col - 1 > 9) return -1;
+        // Leading zeros would alias another identifier.
+        if (id.charAt(col + 1) == '0' && len - col - 1 > 1) return -1;
+        int n = 0;
+        for (int i = col + 1; i < len; i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') return -1;
+            n = 10 * n + (c - '0');
+        }
+        return n;
+    }
+
+    /**
+     * Find the table for the type part of an identifier, without
+     * creating a substring in the common case.
+     *
+     * @param id The identifier.
+     * @param col The index of the last colon.
+     * @return The {@code Table} found, or null if none.
+     */
+    private Table findTable(String id, int col) {
+        int h = 0;
+        for (int i = 0; i < col; i++) h = 31 * h + id.charAt(i);
+        final Table[] ts = this.tables;
+        final int mask = ts.length - 1;
+        for (int i = mix(h) & mask;; i = (i + 1) & mask) {
+            final Table t = ts[i];
+            if (t == null) return null;
+            if (t.hash == h && t.type.length() == col
+                && id.startsWith(t.type)) return t;
+        }
+    }
+
+    /**
+     * Add a table for the type part of an identifier.
+     *
+     * @param id The identifier.
+     * @param col The index of the last colon.
+     * @return The {@code Table} for the type.
+     */
+    private synchronized Table addTable(String id, int col) {
+        Table t = findTable(id, col);
+        if (t != null) return t;
+        t = new Table(id.substring(0, col));
+        final Table[] old = this.tables;
+        int count = 1;
+        for (Table o : old) if (o != null) count++;
+        final Table[] ts = new Table[(2 * count > old.length)
+            ? 2 * old.length : old.length];
+        final int mask = ts.length - 1;
+        for (Table o : old) if (o != null) insertTable(ts, mask, o);
+        insertTable(ts, mask, t);
+        this.tables = ts;
+        return t;
+    }
+
+    /**
+     * Insert a table into a table index.
+     *
+     * @param ts The table index.
+     * @param mask The index mask.
+     * @param t The {@code Table} to insert.
+     */
+    private static void insertTable(Table[] ts, int mask, Table t) {
+        int i = mix(t.hash) & mask;
+        while (ts[i] != null) i = (i + 1) & mask;
+        ts[i] = t;
+    }
+
+    /**
+     * Spread the bits of an identifier number or type hash.
+     *
+     * @param number The number.
+     * @return The hash.
+     */
+    private static int mix(int number) {
+        final int h = number * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
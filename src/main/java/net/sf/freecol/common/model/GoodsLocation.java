@@ -268,6 +268,16 @@ public abstract class GoodsLocation extends UnitLocation {
      * Invalidate any cache dependent on the goods levels.
      */
     public abstract void invalidateCache();
+
+    /**
+     * Invalidate any cache dependent on the level of a goods type.
+     * By default the whole cache is invalidated.
+     *
+     * @param type The {@code GoodsType} whose level changed.
+     */
+    public void invalidateCache(GoodsType type) {
+        invalidateCache();
+    }
     
     /**
      * Gets the maximum number of {@code Goods} this Location
@@ -289,7 +299,7 @@ public abstract class GoodsLocation extends UnitLocation {
             goodsContainer = new GoodsContainer(getGame(), this);
         }
         boolean ret = goodsContainer.addGoods(type, amount);
-        invalidateCache();
+        invalidateCache(type);
         return ret;
     }
 
@@ -304,7 +314,7 @@ public abstract class GoodsLocation extends UnitLocation {
     public Goods removeGoods(GoodsType type, int amount) {
         if (goodsContainer == null) return null;
         Goods ret = goodsContainer.removeGoods(type, amount);
-        invalidateCache();
+        invalidateCache(type);
         return ret;
     }
 
@@ -20,6 +20,8 @@
 package net.sf.freecol.common.model;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.logging.Level;
@@ -30,6 +32,8 @@ import javax.swing.ImageIcon;
 import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.client.gui.ImageLibrary;
+import net.sf.freecol.common.debug.FreeColDebugger;
+import net.sf.freecol.common.debug.Metrics;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
@@ -37,6 +41,7 @@ import net.sf.freecol.common.model.pathfinding.CostDecider;
 import net.sf.freecol.common.model.pathfinding.CostDeciders;
 import net.sf.freecol.common.model.pathfinding.GoalDecider;
 import net.sf.freecol.common.model.pathfinding.GoalDeciders;
+import net.sf.freecol.common.model.pathfinding.HierarchicalCostDecider;
 import net.sf.freecol.common.util.LogBuilder;
 import static net.sf.freecol.common.util.CollectionUtils.*;
 import static net.sf.freecol.common.util.RandomUtils.*;
@@ -68,6 +73,12 @@ public class Map extends FreeColGameObject implements Location {
      */
     public final static int POLAR_HEIGHT = 2;
 
+    /**
+     * The number of turns of a hierarchical path that are found with
+     * a full search.
+     */
+    private static final int REFINE_TURNS = 2;
+
     /**
      * The layers included in the map. The RIVERS layer includes all
      * natural tile improvements that are not resources.
@@ -266,6 +277,38 @@ public class Map extends FreeColGameObject implements Location {
     /** The search tracing status. */
     private boolean traceSearch = false;
 
+    /** Cache of paths found this turn. */
+    private final PathCache pathCache = new PathCache();
+
+    /**
+     * The connectivity and distance fields, built on demand and
+     * discarded when the terrain changes.
+     */
+    private volatile MapConnectivity connectivity = null;
+
+    /**
+     * The cluster abstraction for hierarchical path finding, built on
+     * demand and discarded along with the connectivity fields.
+     */
+    private volatile PathAbstraction pathAbstraction = null;
+
+    /**
+     * The costs of moving between neighbouring tiles, built on demand
+     * and updated as tiles change.
+     */
+    private volatile MoveCosts moveCosts = null;
+
+    /** The positions near each tile, built on demand. */
+    private volatile Neighbours neighbours = null;
+
+    /** Reusable working storage for the tile-indexed path search. */
+    private final AtomicReference<PathSearchState> searchState
+        = new AtomicReference<>();
+
+    /** The number of map searches run, and their total time in ns. */
+    private final AtomicLong searchCount = new AtomicLong(),
+        searchNanos = new AtomicLong();
+
     /**
      * A cache of all tiles as a set.  This is just a {@code Map}
      * local cache, and is unrelated to the player-specific caching
@@ -423,6 +466,11 @@ public class Map extends FreeColGameObject implements Location {
         if (isValid(x, y)) {
             this.tiles[x][y] = tile;
             this.cachedTilesValid = false;
+            final MoveCosts mc = moveCosts;
+            if (mc != null && tile != null) mc.invalidate(tile);
+            if (tile != null) {
+                forEachNeighbour(tile, 1, Tile::invalidateNeighbourFlags);
+            }
         }
     }
 
@@ -1002,7 +1050,14 @@ public class Map extends FreeColGameObject implements Location {
      */
     public Iterator<Tile> getCircleIterator(Tile center, boolean isFilled,
         int radius) {
-        return new CircleIterator(center, isFilled, radius);
+        final Neighbours nb = (center == null) ? null
+            : getNeighbours(center, radius);
+        if (nb == null) return new CircleIterator(center, isFilled, radius);
+        final int x = center.getX(), y = center.getY();
+        return new NeighbourIterator(nb,
+            (isFilled || radius == 1) ? nb.getStart(x, y)
+                : nb.getEnd(x, y, radius - 1),
+            nb.getEnd(x, y, radius));
     }
 
     /**
@@ -1024,6 +1079,185 @@ public class Map extends FreeColGameObject implements Location {
             }
         };
     }
+
+    /**
+     * An iterator over a range of entries in the neighbour table,
+     * returning the same tiles in the same order as a
+     * {@code CircleIterator} would.
+     */
+    private final class NeighbourIterator implements Iterator<Tile> {
+
+        /** The neighbour table. */
+        private final Neighbours neighbours;
+        /** The next entry. */
+        private int entry;
+        /** The entry after the last one. */
+        private final int end;
+
+
+        /**
+         * Create a new neighbour iterator.
+         *
+         * @param neighbours The {@code Neighbours} table to use.
+         * @param start The first entry.
+         * @param end The entry after the last one.
+         */
+        public NeighbourIterator(Neighbours neighbours, int start, int end) {
+            this.neighbours = neighbours;
+            this.entry = start;
+            this.end = end;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean hasNext() {
+            return entry < end;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public Tile next() throws NoSuchElementException {
+            if (!hasNext()) {
+                throw new NoSuchElementException("NeighbourIterator exhausted");
+            }
+            final int e = entry++;
+            return getTile(neighbours.getX(e), neighbours.getY(e));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Get the neighbour table, building it if necessary.
+     *
+     * @return The {@code Neighbours} for this map.
+     */
+    public Neighbours getNeighbours() {
+        Neighbours nb = neighbours;
+        if (nb == null || nb.getWidth() != width
+            || nb.getHeight() != height) {
+            neighbours = nb = new Neighbours(width, height);
+        }
+        return nb;
+    }
+
+    /**
+     * Get the neighbour table if it covers a radius around a tile.
+     *
+     * @param center The center {@code Tile}.
+     * @param radius The radius.
+     * @return The {@code Neighbours} for this map, or null if the
+     *     tiles around the center tile must be found by walking the
+     *     map.
+     */
+    private Neighbours getNeighbours(Tile center, int radius) {
+        if (radius <= 0 || radius > Neighbours.MAX_RADIUS) return null;
+        final Neighbours nb = getNeighbours();
+        return (nb.covers(center.getX(), center.getY(), radius)) ? nb
+            : null;
+    }
+
+    /**
+     * Find the first tile around a center tile that matches a predicate,
+     * in the same order as {@link #getCircleTiles}, without
+     * allocating an iterator when the neighbour table covers the
+     * radius.
+     *
+     * @param center The center {@code Tile}, which is not checked.
+     * @param radius The radius to search within.
+     * @param pred The {@code Predicate} to match.
+     * @return The first {@code Tile} found, or null if none matches.
+     */
+    public Tile findNeighbour(Tile center, int radius,
+                              Predicate<? super Tile> pred) {
+        final Neighbours nb = getNeighbours(center, radius);
+        if (nb == null) {
+            for (Tile t : getCircleTiles(center, true, radius)) {
+                if (t != null && pred.test(t)) return t;
+            }
+            return null;
+        }
+        final int x = center.getX(), y = center.getY();
+        final int end = nb.getEnd(x, y, radius);
+        for (int e = nb.getStart(x, y); e < end; e++) {
+            final Tile t = getTile(nb.getX(e), nb.getY(e));
+            if (t != null && pred.test(t)) return t;
+        }
+        return null;
+    }
+
+    /**
+     * Count the tiles around a center tile that match a predicate.
+     *
+     * @param center The center {@code Tile}, which is not counted.
+     * @param radius The radius to search within.
+     * @param pred The {@code Predicate} to match.
+     * @return The number of matching {@code Tile}s.
+     */
+    public int countNeighbours(Tile center, int radius,
+                               Predicate<? super Tile> pred) {
+        final Neighbours nb = getNeighbours(center, radius);
+        int count = 0;
+        if (nb == null) {
+            for (Tile t : getCircleTiles(center, true, radius)) {
+                if (t != null && pred.test(t)) count++;
+            }
+            return count;
+        }
+        final int x = center.getX(), y = center.getY();
+        final int end = nb.getEnd(x, y, radius);
+        for (int e = nb.getStart(x, y); e < end; e++) {
+            final Tile t = getTile(nb.getX(e), nb.getY(e));
+            if (t != null && pred.test(t)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Perform an action on each tile around a center tile.
+     *
+     * @param center The center {@code Tile}, which is skipped.
+     * @param radius The radius to search within.
+     * @param action The {@code Consumer} to apply.
+     */
+    public void forEachNeighbour(Tile center, int radius,
+                                 Consumer<? super Tile> action) {
+        final Neighbours nb = getNeighbours(center, radius);
+        if (nb == null) {
+            for (Tile t : getCircleTiles(center, true, radius)) {
+                if (t != null) action.accept(t);
+            }
+            return;
+        }
+        final int x = center.getX(), y = center.getY();
+        final int end = nb.getEnd(x, y, radius);
+        for (int e = nb.getStart(x, y); e < end; e++) {
+            final Tile t = getTile(nb.getX(e), nb.getY(e));
+            if (t != null) action.accept(t);
+        }
+    }
+
+    /**
+     * Are two tiles adjacent?
+     *
+     * @param tile The first {@code Tile}.
+     * @param other The second {@code Tile}.
+     * @return True if the tiles are adjacent on this map.
+     */
+    public boolean isAdjacent(Tile tile, Tile other) {
+        return getNeighbours().isAdjacent(tile.getX(), tile.getY(),
+                                          other.getX(), other.getY());
+    }
         
 
     // Path-finding/searching infrastructure and routines
@@ -1048,6 +1282,50 @@ public class Map extends FreeColGameObject implements Location {
         return (Tile tile) -> tile.getDistanceTo(endTile);
     }
 
+    /**
+     * Gets a search heuristic aiming for an end tile, improving on the
+     * Manhatten distance using the connectivity fields when available.
+     *
+     * A path from a land tile to a land end tile on a different
+     * landmass must reach water at least as far from the start as the
+     * nearest water, and then cross at least as many land tiles as
+     * separate the end from the nearest water.
+     *
+     * @param endTile The {@code Tile} to aim for.
+     * @return A new {@code SearchHeuristic} aiming for the end tile.
+     */
+    private SearchHeuristic getConnectivityHeuristic(final Tile endTile) {
+        final MapConnectivity mc = getConnectivity();
+        final int endComponent, endWater;
+        if (mc == null || !endTile.isLand()
+            || (endComponent = mc.getComponent(endTile)) < 0
+            || (endWater = mc.getWaterDistance(endTile))
+                == MapConnectivity.UNREACHABLE) {
+            return getManhattenHeuristic(endTile);
+        }
+        return (Tile tile) -> {
+            int h = tile.getDistanceTo(endTile), w;
+            if (tile.isLand() && mc.getComponent(tile) != endComponent
+                && (w = mc.getWaterDistance(tile))
+                    != MapConnectivity.UNREACHABLE) {
+                h = Math.max(h, w + endWater);
+            }
+            return h;
+        };
+    }
+
+    /**
+     * Gets a search heuristic aiming for the high seas.
+     *
+     * @return A new {@code SearchHeuristic} aiming for the high seas,
+     *     or null if no connectivity fields are available.
+     */
+    private SearchHeuristic getHighSeasHeuristic() {
+        final MapConnectivity mc = getConnectivity();
+        return (mc == null) ? null
+            : (Tile tile) -> Math.max(0, mc.getHighSeasDistance(tile));
+    }
+
     /**
      * Unified argument tests for full path searches, which then finds
      * the actual starting location for the path.  Deals with special
@@ -1156,7 +1434,8 @@ public class Map extends FreeColGameObject implements Location {
         if (costDecider == null)
             costDecider = CostDeciders.avoidSettlementsAndBlockingUnits();
         return searchMap(unit, tile, GoalDeciders.getHighSeasGoalDecider(),
-                         costDecider, INFINITY, carrier, null, null);
+                         costDecider, INFINITY, carrier,
+                         getHighSeasHeuristic(), null);
     }
 
     /**
@@ -1193,11 +1472,48 @@ public class Map extends FreeColGameObject implements Location {
      */
     private PathNode findMapPath(Unit unit, Tile start, Tile end, Unit carrier,
                                  CostDecider costDecider, LogBuilder lb) {
+        PathNode path = findMapPath(unit, start, end, carrier, costDecider,
+                                    lb, false);
+        if (FreeColDebugger.isInDebugMode(FreeColDebugger.DebugMode.SEARCH)) {
+            PathNode check = findMapPath(unit, start, end, carrier,
+                                         costDecider, null, true);
+            if (!PathNode.samePath(path, check)) {
+                logger.warning("Search storages disagree for " + unit
+                    + " from " + start + " to " + end + " with " + carrier
+                    + "\nTile-indexed:\n"
+                    + ((path == null) ? "null" : path.fullPathToString())
+                    + "\nLocation-keyed:\n"
+                    + ((check == null) ? "null" : check.fullPathToString()));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Find the quickest path for a unit (with optional carrier) from
+     * a start tile to an end tile, using a specified search storage.
+     *
+     * @param unit The {@code Unit} to find the path for.
+     * @param start The {@code Tile} in which the path starts from.
+     * @param end The {@code Tile} at the end of the path.
+     * @param carrier An optional naval carrier {@code Unit} to use.
+     * @param costDecider An optional {@code CostDecider} for
+     *     determining the movement costs (uses default cost deciders
+     *     for the unit/s if not provided).
+     * @param lb An optional {@code LogBuilder} to log to.
+     * @param legacy If true use location-keyed search storage.
+     * @return A path starting at the start tile and ending at the end
+     *     tile, or null if none found.
+     */
+    private PathNode findMapPath(Unit unit, Tile start, Tile end, Unit carrier,
+                                 CostDecider costDecider, LogBuilder lb,
+                                 boolean legacy) {
         final Unit offMapUnit = (carrier != null) ? carrier
             : (unit != null && unit.isNaval()) ? unit
             : null;
         final GoalDecider gd = GoalDeciders.getLocationGoalDecider(end);
-        final SearchHeuristic sh = getManhattenHeuristic(end);
+        final SearchHeuristic sh = getConnectivityHeuristic(end);
+        final MapConnectivity mc;
         Unit embarkTo;
 
         PathNode path;
@@ -1207,10 +1523,10 @@ public class Map extends FreeColGameObject implements Location {
             // without-carrier paths.  The latter will usually be
             // faster, but not always, e.g. mounted units on a good
             // road system.
-            path = searchMap(unit, start, gd, costDecider,
+            path = searchMap(legacy, unit, start, gd, costDecider,
                              INFINITY, null, sh, lb);
             PathNode carrierPath = (carrier == null) ? null
-                : searchMap(unit, start, gd, costDecider,
+                : searchMap(legacy, unit, start, gd, costDecider,
                             INFINITY, carrier, sh, lb);
             if (carrierPath != null
                 && (path == null
@@ -1223,16 +1539,19 @@ public class Map extends FreeColGameObject implements Location {
             // If there is an off-map unit then complex paths which
             // use settlements and inland lakes are possible, but hard
             // to capture with the contiguity test, so just allow the
-            // search to proceed.
-            path = searchMap(unit, start, gd, costDecider,
-                             INFINITY, carrier, sh, lb);
+            // search to proceed.  The exception is a lone naval unit,
+            // which the connectivity fields can quickly rule out.
+            path = (carrier == null && (mc = getConnectivity()) != null
+                && !mc.isNavalReachable(start, end)) ? null
+                : searchMap(legacy, unit, start, gd, costDecider,
+                            INFINITY, carrier, sh, lb);
 
         } else if (unit != null && unit.isOnCarrier()
             && !start.isLand() && end.isLand()
             && !start.getContiguityAdjacent(end.getContiguity()).isEmpty()) {
             // Special case where a land unit is trying to move off a
             // ship to adjacent land.
-            path = searchMap(unit, start, gd, costDecider, INFINITY,
+            path = searchMap(legacy, unit, start, gd, costDecider, INFINITY,
                              carrier, sh, lb);
 
         } else if (start.isLand() && !end.isLand()
@@ -1242,7 +1561,7 @@ public class Map extends FreeColGameObject implements Location {
             && (embarkTo = end.getCarrierForUnit(unit)) != null) {
             // Special case where a land unit is trying to move from
             // land to an adjacent ship.
-            path = searchMap(unit, start,
+            path = searchMap(legacy, unit, start,
                              GoalDeciders.getAdjacentLocationGoalDecider(end),
                              costDecider, INFINITY, null, null, lb);
             if (path != null) {
@@ -1301,6 +1620,103 @@ public class Map extends FreeColGameObject implements Location {
                              LogBuilder lb) {
         if (traceSearch) lb = new LogBuilder(1024);
 
+        // Hierarchical search is requested by a wrapping cost decider.
+        if (costDecider instanceof HierarchicalCostDecider) {
+            return findHierarchicalPath(unit, start, end, carrier,
+                ((HierarchicalCostDecider)costDecider).getCostDecider(), lb);
+        }
+
+        // Use the path cache when not logging.
+        if (lb == null && unit != null && isPathCacheEnabled()
+            && CostDeciders.isCacheable(costDecider)) {
+            final CostDecider cd = costDecider;
+            return pathCache.getPath(getGame().getTurn().getNumber(),
+                unit, start, end, carrier, costDecider,
+                () -> searchPath(unit, start, end, carrier, cd, null));
+        }
+        return searchPath(unit, start, end, carrier, costDecider, lb);
+    }
+
+    /**
+     * Find a path for a unit from a start location to an end location
+     * using the cluster abstraction.
+     *
+     * The abstract route is refined with real searches from the start
+     * to successive waypoints until the refined path covers
+     * {@code REFINE_TURNS} turns.  The rest of the route is appended
+     * as waypoint nodes with estimated turns.  Paths with a carrier,
+     * off the map, or within a single cluster use the full search.
+     *
+     * @param unit The {@code Unit} to find the path for.
+     * @param start The {@code Location} in which the path starts from.
+     * @param end The {@code Location} at the end of the path.
+     * @param carrier An optional naval carrier {@code Unit} to use.
+     * @param costDecider An optional {@code CostDecider} for
+     *     determining the movement costs.
+     * @param lb An optional {@code LogBuilder} to log to.
+     * @return A path starting at the start location and ending at the
+     *     end location, or null if none found.
+     */
+    private PathNode findHierarchicalPath(final Unit unit,
+                                          final Location start,
+                                          final Location end,
+                                          final Unit carrier,
+                                          CostDecider costDecider,
+                                          LogBuilder lb) {
+        final PathAbstraction pa;
+        final PathAbstraction.Route route;
+        if (unit == null || carrier != null || unit.isOnCarrier()
+            || unit.isAtSea() || start == null || end == null
+            || start.getTile() == null || end.getTile() == null
+            || (pa = getPathAbstraction()) == null
+            || (route = pa.route(start.getTile(), end.getTile())) == null) {
+            return findPath(unit, start, end, carrier, costDecider, lb);
+        }
+        final int moves = Math.max(1, unit.getInitialMovesLeft());
+        final int last = route.size() - 1;
+        for (int i = 0; i <= last; i++) {
+            if (i < last && route.getCost(i) < REFINE_TURNS * moves) continue;
+            PathNode path = findPath(unit, start, (i < last) ? route.getTile(i)
+                : end, null, costDecider, lb);
+            if (path == null) break;
+            if (i == last) return path;
+            PathNode node = path.getLastNode();
+            if (node.getTurns() < REFINE_TURNS) continue;
+            final int turns = node.getTurns(), base = route.getCost(i);
+            for (int j = i + 1; j <= last; j++) {
+                node.next = new PathNode((j < last) ? route.getTile(j) : end,
+                    moves, turns + (route.getCost(j) - base + moves - 1) / moves,
+                    false, node, null);
+                node = node.next;
+            }
+            return path;
+        }
+        // Refinement failed, perhaps due to blocking units or
+        // settlements the abstraction ignores.  Try a full search.
+        return findPath(unit, start, end, null, costDecider, lb);
+    }
+
+    /**
+     * Find the quickest path for a unit (with optional carrier) from
+     * a start location to an end location, without using the path cache.
+     *
+     * @param unit The {@code Unit} to find the path for.
+     * @param start The {@code Location} in which the path starts from.
+     * @param end The {@code Location} at the end of the path.
+     * @param carrier An optional naval carrier {@code Unit} to use.
+     * @param costDecider An optional {@code CostDecider} for
+     *     determining the movement costs (uses default cost deciders
+     *     for the unit/s if not provided).
+     * @param lb An optional {@code LogBuilder} to log to.
+     * @return A path starting at the start location and ending at the
+     *     end location, or null if none found.
+     * @throws IllegalArgumentException For many reasons, see
+     *     {@link #findRealStart}.
+     */
+    private PathNode searchPath(final Unit unit,
+                                final Location start, final Location end,
+                                final Unit carrier, CostDecider costDecider,
+                                LogBuilder lb) {
         // Validate the arguments, reducing to either Europe or a Tile.
         final Location realStart = findRealStart(unit, start, carrier);
         final Location realEnd;
@@ -1341,9 +1757,11 @@ public class Map extends FreeColGameObject implements Location {
 
         } else if (realStart instanceof Europe && realEnd instanceof Tile) {
             // 1: Europe->Tile
-            // Fail fast without an off map unit.
+            // Fail fast without an off map unit, or if it is a lone
+            // naval unit that can not reach the destination.
             if (offMapUnit == null
-                || !offMapUnit.getType().canMoveToHighSeas()) {
+                || !offMapUnit.getType().canMoveToHighSeas()
+                || !canReachHighSeas(unit, carrier, (Tile)realEnd)) {
                 path = null;
 
                 // Find the best place to enter the map from Europe
@@ -1390,13 +1808,15 @@ public class Map extends FreeColGameObject implements Location {
             // 2: Tile->Europe
             // Fail fast if Europe is unattainable.
             if (offMapUnit == null
-                || !offMapUnit.getType().canMoveToHighSeas()) {
+                || !offMapUnit.getType().canMoveToHighSeas()
+                || !canReachHighSeas(unit, carrier, (Tile)realStart)) {
                 path = null;
                 
                 // Search forwards to the high seas.
             } else if ((p = searchMap(unit, (Tile)realStart,
                         GoalDeciders.getHighSeasGoalDecider(),
-                        costDecider, INFINITY, carrier, null, lb)) == null) {
+                        costDecider, INFINITY, carrier,
+                        getHighSeasHeuristic(), lb)) == null) {
                 path = null;
 
             } else {
@@ -1499,6 +1919,111 @@ public class Map extends FreeColGameObject implements Location {
         return path;
     }
 
+    /**
+     * Gets the path cache for this map.
+     *
+     * @return The {@code PathCache}.
+     */
+    public PathCache getPathCache() {
+        return pathCache;
+    }
+
+    /**
+     * Is the path cache in use?  Only the server caches paths, as the
+     * client map is updated by reading new tile state which does not
+     * pass through the invalidation hooks.
+     *
+     * @return True if paths are cached.
+     */
+    private boolean isPathCacheEnabled() {
+        final Game game = getGame();
+        return game != null && game.isInServer() && game.getTurn() != null;
+    }
+
+    /**
+     * Invalidate cached paths following a change to the map that may
+     * affect movement.
+     */
+    public void invalidatePaths() {
+        pathCache.invalidate();
+    }
+
+    /**
+     * Get the connectivity and distance fields for this map, building
+     * them if necessary.  Like the path cache, these are only used in
+     * the server.
+     *
+     * @return The {@code MapConnectivity}, or null if not available.
+     */
+    public MapConnectivity getConnectivity() {
+        if (!isPathCacheEnabled()) return null;
+        MapConnectivity mc = connectivity;
+        if (mc == null) connectivity = mc = new MapConnectivity(this);
+        return mc;
+    }
+
+    /**
+     * Get the cluster abstraction of this map for hierarchical path
+     * finding, building it if necessary.  Server only.
+     *
+     * @return The {@code PathAbstraction}, or null if not available.
+     */
+    private PathAbstraction getPathAbstraction() {
+        if (!isPathCacheEnabled()) return null;
+        PathAbstraction pa = pathAbstraction;
+        if (pa == null) pathAbstraction = pa = new PathAbstraction(this);
+        return pa;
+    }
+
+    /**
+     * Discard the connectivity fields and cluster abstraction following
+     * a change to the terrain, regions, settlements or high seas.
+     */
+    public void invalidateConnectivity() {
+        connectivity = null;
+        pathAbstraction = null;
+    }
+
+    /**
+     * Get the costs of moving between neighbouring tiles, building
+     * them if necessary.  Like the path cache, these are only used in
+     * the server.
+     *
+     * @return The {@code MoveCosts}, or null if not available.
+     */
+    public MoveCosts getMoveCosts() {
+        if (!isPathCacheEnabled()) return null;
+        MoveCosts mc = moveCosts;
+        if (mc == null) moveCosts = mc = new MoveCosts(this);
+        return mc;
+    }
+
+    /**
+     * Discard the costs of moving onto a tile following a change to
+     * its type or items.
+     *
+     * @param tile The {@code Tile} that has changed.
+     */
+    public void invalidateMoveCosts(Tile tile) {
+        final MoveCosts mc = moveCosts;
+        if (mc != null) mc.invalidate(tile);
+    }
+
+    /**
+     * Check whether a lone naval unit could possibly reach the high
+     * seas from a tile.
+     *
+     * @param unit The {@code Unit} to travel.
+     * @param carrier An optional carrier {@code Unit}.
+     * @param tile The {@code Tile} to check.
+     * @return False if the unit definitely can not reach the high seas.
+     */
+    private boolean canReachHighSeas(Unit unit, Unit carrier, Tile tile) {
+        if (carrier != null || unit == null || !unit.isNaval()) return true;
+        final MapConnectivity mc = getConnectivity();
+        return mc == null || mc.canReachHighSeas(tile);
+    }
+
     /**
      * Gets the search tracing status.
      *
@@ -1615,44 +2140,15 @@ public class Map extends FreeColGameObject implements Location {
         /**
          * Replace a given path with that of this candidate move.
          *
-         * @param openMap The list of available nodes.
-         * @param openMapQueue The queue of available nodes.
-         * @param f The heuristic values for A*.
-         * @param sh A {@code SearchHeuristic} to apply.
-         */
-        public void improve(HashMap<String, PathNode> openMap,
-                            PriorityQueue<PathNode> openMapQueue,
-                            HashMap<String, Integer> f,
-                            SearchHeuristic sh) {
-            PathNode best = openMap.get(dst.getId());
-            if (best != null) {
-                openMap.remove(dst.getId());
-                openMapQueue.remove(best);
-            }
-            add(openMap, openMapQueue, f, sh);
-        }
-
-        /**
-         * Add this candidate to the open map+queue.
-         *
-         * @param openMap The list of available nodes.
-         * @param openMapQueue The queue of available nodes.
-         * @param cost The provisional cost for the path.
+         * @param storage The {@code SearchStorage} of the search.
          * @param sh A {@code SearchHeuristic} to apply.
          */
-        public void add(HashMap<String, PathNode> openMap,
-                        PriorityQueue<PathNode> openMapQueue,
-                        HashMap<String, Integer> f,
-                        SearchHeuristic sh) {
-            int fcost = this.cost;
-            if (this.dst.getTile() != null) {
-                fcost += sh.getValue(this.dst.getTile());
-            }
-            f.put(this.dst.getId(), fcost);
-            PathNode path = new PathNode(this.dst, this.movesLeft, this.turns,
-                this.onCarrier, this.current, null);
-            openMap.put(this.dst.getId(), path);
-            openMapQueue.offer(path);
+        public void improve(SearchStorage storage, SearchHeuristic sh) {
+            final Tile tile = this.dst.getTile();
+            storage.removeOpen(tile);
+            storage.offerOpen(tile, new PathNode(this.dst, this.movesLeft,
+                    this.turns, this.onCarrier, this.current, null),
+                this.cost + sh.getValue(tile));
         }
 
 
@@ -1679,20 +2175,15 @@ public class Map extends FreeColGameObject implements Location {
      * Searches for a path to a goal determined by the given
      * {@code GoalDecider}.
      *
-     * Using A* with a List (closedMap) for marking the visited nodes
-     * and using a PriorityQueue (openMapQueue) for getting the next
-     * edge with the least cost.  This implementation could be
-     * improved by having the visited attribute stored on each Tile in
-     * order to avoid both of the HashMaps currently being used to
-     * serve this purpose.
-     *
-     * If the SearchHeuristic is not supplied, then the algorithm
-     * degrades gracefully to Dijkstra's algorithm.
+     * Uses tile-indexed search storage, falling back to location-keyed
+     * storage only if the start tile is not covered by this map.
+     * Searches always start on a tile and only expand to surrounding
+     * tiles, so off-map locations such as Europe are handled by the
+     * callers.
      *
-     * The data structure for the open list is a combined structure: using a
-     * HashMap for membership tests and a PriorityQueue for getting the node
-     * with the minimal f (cost+heuristics). This gives O(1) on membership
-     * test and O(log N) for remove-best and insertions.
+     * With the SEARCH debug mode enabled, location searches are
+     * cross-checked against the location-keyed storage in
+     * {@link #findMapPath}.
      *
      * @param unit The {@code Unit} to find a path for.
      * @param start The {@code Tile} to start the search from.
@@ -1715,11 +2206,362 @@ public class Map extends FreeColGameObject implements Location {
                                final int maxTurns, final Unit carrier,
                                final SearchHeuristic searchHeuristic,
                                final LogBuilder lb) {
-        final HashMap<String, PathNode> openMap = new HashMap<>();
-        final HashMap<String, PathNode> closedMap = new HashMap<>();
-        final HashMap<String, Integer> f = new HashMap<>();
-        final PriorityQueue<PathNode> openMapQueue = new PriorityQueue<>(1024,
-            Comparator.comparingInt(p -> f.get(p.getLocation().getId())));
+        return searchMap(false, unit, start, goalDecider, costDecider,
+                         maxTurns, carrier, searchHeuristic, lb);
+    }
+
+    /**
+     * Searches for a path to a goal determined by the given
+     * {@code GoalDecider}, with a choice of search storage.
+     *
+     * @param legacy If true use location-keyed search storage.
+     * @param unit The {@code Unit} to find a path for.
+     * @param start The {@code Tile} to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given {@code PathNode} is a goal or not.
+     * @param costDecider An optional {@code CostDecider}
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     {@code Unit} is allowed to move. This is the
+     *     maximum search range for a goal.
+     * @param carrier An optional naval carrier {@code Unit} to use.
+     * @param searchHeuristic An optional {@code SearchHeuristic}.
+     * @param lb An optional {@code LogBuilder} to log to.
+     * @return A path to a goal determined by the given
+     *     {@code GoalDecider}.
+     */
+    private PathNode searchMap(final boolean legacy,
+                               final Unit unit, final Tile start,
+                               final GoalDecider goalDecider,
+                               final CostDecider costDecider,
+                               final int maxTurns, final Unit carrier,
+                               final SearchHeuristic searchHeuristic,
+                               final LogBuilder lb) {
+        final long t0 = System.nanoTime();
+        final PathSearchState state = (legacy) ? null : acquireSearchState();
+        try {
+            final SearchStorage storage
+                = (state == null || state.indexOf(start) < 0)
+                ? new LocationSearchStorage()
+                : new TileSearchStorage(state);
+            return search(storage, unit, start, goalDecider, costDecider,
+                          maxTurns, carrier, searchHeuristic, lb);
+        } finally {
+            if (state != null) releaseSearchState(state);
+            countSearch(t0);
+        }
+    }
+
+    /**
+     * Account for a completed search.
+     *
+     * @param start The {@code System.nanoTime} the search started at.
+     */
+    private void countSearch(long start) {
+        searchNanos.addAndGet(System.nanoTime() - start);
+        searchCount.incrementAndGet();
+        Metrics.stop("map.search", start);
+    }
+
+    /**
+     * Get the number of map searches run so far.
+     *
+     * @return The search count.
+     */
+    public long getSearchCount() {
+        return searchCount.get();
+    }
+
+    /**
+     * Get the total time spent in map searches so far.
+     *
+     * @return The search time in nanoseconds.
+     */
+    public long getSearchNanos() {
+        return searchNanos.get();
+    }
+
+    /**
+     * Gets a search state for this map, reusing a released one if
+     * possible.
+     *
+     * @return A {@code PathSearchState} sized for this map.
+     */
+    private PathSearchState acquireSearchState() {
+        PathSearchState state = searchState.getAndSet(null);
+        return (state != null && state.fits(getWidth(), getHeight())) ? state
+            : new PathSearchState(getWidth(), getHeight());
+    }
+
+    /**
+     * Releases a search state so that it can be reused.
+     *
+     * @param state The {@code PathSearchState} to release.
+     */
+    private void releaseSearchState(PathSearchState state) {
+        state.clear();
+        searchState.set(state);
+    }
+
+    /**
+     * The open and closed sets of a path search.  The search itself
+     * is independent of how these are stored.
+     */
+    private interface SearchStorage {
+
+        /**
+         * Is the open queue empty?
+         *
+         * @return True if there are no open nodes.
+         */
+        boolean isOpenEmpty();
+
+        /**
+         * Remove the open node with the lowest f-score.
+         *
+         * @return The removed {@code PathNode}.
+         */
+        PathNode pollOpen();
+
+        /**
+         * Get the open node at a tile.
+         *
+         * @param tile The {@code Tile} to check.
+         * @return The open {@code PathNode}, or null if none.
+         */
+        PathNode getOpen(Tile tile);
+
+        /**
+         * Add a node to the open set and queue.
+         *
+         * @param tile The {@code Tile} of the node.
+         * @param node The {@code PathNode} to add.
+         * @param fcost The f-score for the node.
+         */
+        void offerOpen(Tile tile, PathNode node, int fcost);
+
+        /**
+         * Remove any open node at a tile.
+         *
+         * @param tile The {@code Tile} to remove.
+         */
+        void removeOpen(Tile tile);
+
+        /**
+         * Get the closed node at a tile.
+         *
+         * @param tile The {@code Tile} to check.
+         * @return The closed {@code PathNode}, or null if none.
+         */
+        PathNode getClosed(Tile tile);
+
+        /**
+         * Set the closed node at a tile.
+         *
+         * @param tile The {@code Tile} to set.
+         * @param node The {@code PathNode} to close, or null to reopen.
+         */
+        void setClosed(Tile tile, PathNode node);
+    }
+
+    /**
+     * Search storage held in arrays indexed by tile position in a
+     * reusable {@code PathSearchState}, with the open queue an
+     * indexed binary heap, so improving an open node does not require
+     * a linear scan of the queue.
+     */
+    private static class TileSearchStorage implements SearchStorage {
+
+        /** The state to work in. */
+        private final PathSearchState state;
+
+
+        /**
+         * Create a new tile-indexed search storage.
+         *
+         * @param state The {@code PathSearchState} to work in.
+         */
+        public TileSearchStorage(PathSearchState state) {
+            this.state = state;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isOpenEmpty() {
+            return state.isOpenEmpty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PathNode pollOpen() {
+            return state.pollOpen();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PathNode getOpen(Tile tile) {
+            return state.getOpen(state.indexOf(tile));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void offerOpen(Tile tile, PathNode node, int fcost) {
+            state.offerOpen(state.indexOf(tile), node, fcost);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void removeOpen(Tile tile) {
+            state.removeOpen(state.indexOf(tile));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PathNode getClosed(Tile tile) {
+            return state.getClosed(state.indexOf(tile));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setClosed(Tile tile, PathNode node) {
+            state.setClosed(state.indexOf(tile), node);
+        }
+    }
+
+    /**
+     * Search storage keyed by location identifier, using a HashMap
+     * for membership tests and a PriorityQueue for getting the node
+     * with the minimal f (cost+heuristics).  This needs no knowledge
+     * of the map dimensions, so works for any start tile.
+     */
+    private static class LocationSearchStorage implements SearchStorage {
+
+        /** The open nodes, by location identifier. */
+        private final HashMap<String, PathNode> openMap = new HashMap<>();
+
+        /** The closed nodes, by location identifier. */
+        private final HashMap<String, PathNode> closedMap = new HashMap<>();
+
+        /** The f-scores, by location identifier. */
+        private final HashMap<String, Integer> f = new HashMap<>();
+
+        /** The open nodes ordered by f-score. */
+        private final PriorityQueue<PathNode> openMapQueue
+            = new PriorityQueue<>(1024,
+                Comparator.comparingInt(p -> f.get(p.getLocation().getId())));
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isOpenEmpty() {
+            return openMap.isEmpty();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PathNode pollOpen() {
+            final PathNode node = openMapQueue.poll();
+            openMap.remove(node.getLocation().getId());
+            return node;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PathNode getOpen(Tile tile) {
+            return openMap.get(tile.getId());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void offerOpen(Tile tile, PathNode node, int fcost) {
+            f.put(tile.getId(), fcost);
+            openMap.put(tile.getId(), node);
+            openMapQueue.offer(node);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void removeOpen(Tile tile) {
+            final PathNode node = openMap.remove(tile.getId());
+            if (node != null) openMapQueue.remove(node);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public PathNode getClosed(Tile tile) {
+            return closedMap.get(tile.getId());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void setClosed(Tile tile, PathNode node) {
+            if (node == null) {
+                closedMap.remove(tile.getId());
+            } else {
+                closedMap.put(tile.getId(), node);
+            }
+        }
+    }
+
+    /**
+     * Searches for a path to a goal determined by the given
+     * {@code GoalDecider}.
+     *
+     * Using A* with the open and closed sets held in a
+     * {@code SearchStorage}.  If the SearchHeuristic is not supplied,
+     * then the algorithm degrades gracefully to Dijkstra's algorithm.
+     *
+     * @param storage The {@code SearchStorage} to work in.
+     * @param unit The {@code Unit} to find a path for.
+     * @param start The {@code Tile} to start the search from.
+     * @param goalDecider The object responsible for determining whether a
+     *     given {@code PathNode} is a goal or not.
+     * @param costDecider An optional {@code CostDecider}
+     *     responsible for determining the path cost.
+     * @param maxTurns The maximum number of turns the given
+     *     {@code Unit} is allowed to move. This is the
+     *     maximum search range for a goal.
+     * @param carrier An optional naval carrier {@code Unit} to use.
+     * @param searchHeuristic An optional {@code SearchHeuristic}.
+     * @param lb An optional {@code LogBuilder} to log to.
+     * @return A path to a goal determined by the given
+     *     {@code GoalDecider}.
+     */
+    private PathNode search(final SearchStorage storage,
+                            final Unit unit, final Tile start,
+                            final GoalDecider goalDecider,
+                            final CostDecider costDecider,
+                            final int maxTurns, final Unit carrier,
+                            final SearchHeuristic searchHeuristic,
+                            final LogBuilder lb) {
         final SearchHeuristic sh = (searchHeuristic == null)
             ? trivialSearchHeuristic : searchHeuristic;
         final Unit offMapUnit = (carrier != null) ? carrier : unit;
@@ -1739,17 +2581,14 @@ public class Map extends FreeColGameObject implements Location {
         final PathNode firstNode = new PathNode(start,
             ((currentUnit != null) ? currentUnit.getMovesLeft() : -1),
             0, carrier != null && Objects.equals(currentUnit, carrier), null, null);
-        f.put(start.getId(), sh.getValue(start));
-        openMap.put(start.getId(), firstNode);
-        openMapQueue.offer(firstNode);
+        storage.offerOpen(start, firstNode, sh.getValue(start));
 
         PathNode best = null;
         int bestScore = INFINITY;
-ok:     while (!openMap.isEmpty()) {
+ok:     while (!storage.isOpenEmpty()) {
             // Choose the node with the lowest f.
-            final PathNode currentNode = openMapQueue.poll();
-            final Location currentLocation = currentNode.getLocation();
-            openMap.remove(currentLocation.getId());
+            final PathNode currentNode = storage.pollOpen();
+            final Tile currentTile = currentNode.getTile();
             if (lb != null) lb.add("\n  ", currentNode);
 
             // Reset current unit to that of this node.
@@ -1766,7 +2605,7 @@ ok:     while (!openMap.isEmpty()) {
             }
 
             // Valid candidate for the closed list.
-            closedMap.put(currentLocation.getId(), currentNode);
+            storage.setClosed(currentTile, currentNode);
             if (lb != null) lb.add(" closing");
 
             // Skip nodes that can not beat the current best path.
@@ -1787,15 +2626,6 @@ ok:     while (!openMap.isEmpty()) {
             final int currentTurns = currentNode.getTurns();
             final boolean currentOnCarrier = currentNode.isOnCarrier();
 
-            final Tile currentTile = currentNode.getTile();
-            if (currentTile == null) { // Must be in Europe.
-                // FIXME: Do not consider tiles "adjacent" to Europe, yet.
-                // There may indeed be cases where going to Europe and
-                // coming back on the other side of the map is faster.
-                if (lb != null) lb.add("...skip Europe");
-                continue;
-            }
-
             // Try the tiles in each direction
             PathNode closed;
             for (Tile moveTile : currentTile.getSurroundingTiles(1)) {
@@ -1808,7 +2638,7 @@ ok:     while (!openMap.isEmpty()) {
                 }
 
                 // Skip neighbouring tiles already too expensive.
-                closed = closedMap.get(moveTile.getId());
+                closed = storage.getClosed(moveTile);
                 if (closed != null) {
                     int cc = closed.getCost();
                     if (cc <= currentNode.getCost()) {
@@ -1996,15 +2826,15 @@ ok:     while (!openMap.isEmpty()) {
                 // Tighten the bounds on a previously seen case if possible
                 if (closed != null) {
                     if (move.canImprove(closed)) {
-                        closedMap.remove(moveTile.getId());
-                        move.improve(openMap, openMapQueue, f, sh);
+                        storage.setClosed(moveTile, null);
+                        move.improve(storage, sh);
                         stepLog += "^" + Integer.toString(move.getCost());
                     } else {
                         stepLog += "v";
                     }
                 } else {
-                    if (move.canImprove(openMap.get(moveTile.getId()))){
-                        move.improve(openMap, openMapQueue, f, sh);
+                    if (move.canImprove(storage.getOpen(moveTile))) {
+                        move.improve(storage, sh);
                         stepLog += "+" + Integer.toString(move.getCost());
                     } else {
                         stepLog += "-";
@@ -2025,6 +2855,7 @@ ok:     while (!openMap.isEmpty()) {
         return best;
     }
 
+
     /**
      * Searches for a tile within a radius of a starting tile.
      *
@@ -2122,6 +2953,7 @@ ok:     while (!openMap.isEmpty()) {
      * Sets the contiguity identifier for all tiles.
      */
     public void resetContiguity() {
+        invalidateConnectivity();
         // Create the water map.  It is an error for any tile not to
         // have a region at this point.
         final int xmax = getWidth(), ymax = getHeight();
@@ -2287,6 +3119,7 @@ ok:     while (!openMap.isEmpty()) {
      * tile.
      */
     public void resetHighSeasCount() {
+        invalidateConnectivity();
         List<Tile> curr = new ArrayList<>();
         List<Tile> next = new ArrayList<>();
         int hsc = 0;
@@ -0,0 +1,352 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+
+/**
+ * Precomputed connectivity and distance fields for a {@link Map},
+ * used to prune and guide path searches.
+ *
+ * All fields are int arrays indexed by {@code y * width + x}:
+ * <ul>
+ *   <li>component: the 8-connected land or water component of each
+ *       explored tile (land and water components are numbered
+ *       distinctly), or -1 for unexplored tiles,</li>
+ *   <li>water distance: the number of steps from each tile to the
+ *       nearest water (or unexplored) tile,</li>
+ *   <li>high seas distance: the number of steps from each tile to
+ *       the nearest tile directly connected to the high seas,</li>
+ *   <li>naval group: water components joined by any settlement that
+ *       touches more than one of them, as a ship may pass through a
+ *       coastal settlement.  Land tiles only have a naval group if
+ *       they hold a settlement.</li>
+ * </ul>
+ *
+ * Step counts ignore terrain, so they are lower bounds on the number
+ * of moves any unit needs, and thus admissible A* heuristics.  The
+ * naval groups over-approximate where a ship can go, so a search
+ * between different groups may be safely rejected.
+ *
+ * Instances are immutable once built.  The map discards its instance
+ * when the terrain, settlements or high seas change.
+ */
+public final class MapConnectivity {
+
+    /** Distance value for tiles that can not reach any source. */
+    public static final int UNREACHABLE = -1;
+
+    /** The map width. */
+    private final int width;
+
+    /** The map height. */
+    private final int height;
+
+    /** The land/water component of each tile. */
+    private final int[] component;
+
+    /** The steps to the nearest water tile. */
+    private final int[] waterDistance;
+
+    /** The steps to the nearest directly high seas connected tile. */
+    private final int[] highSeasDistance;
+
+    /** The naval group of each tile, or -1 if none. */
+    private final int[] navalGroup;
+
+    /** Can a naval group reach the high seas?  Indexed by group. */
+    private final boolean[] groupHighSeas;
+
+
+    /**
+     * Build the connectivity fields for a map.
+     *
+     * @param map The {@code Map} to analyze.
+     */
+    public MapConnectivity(Map map) {
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        final int size = width * height;
+        final Tile[] tiles = new Tile[size];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                tiles[y * width + x] = map.getTile(x, y);
+            }
+        }
+        final int[] queue = new int[size];
+
+        // Label the components.
+        this.component = new int[size];
+        Arrays.fill(this.component, -1);
+        int components = 0;
+        for (int i = 0; i < size; i++) {
+            if (component[i] >= 0 || !isExplored(tiles[i])) continue;
+            final boolean land = tiles[i].isLand();
+            int head = 0, tail = 0;
+            component[i] = components;
+            queue[tail++] = i;
+            while (head < tail) {
+                final int index = queue[head++];
+                final int x = index % width, y = index / width;
+                for (Direction d : Direction.allDirections) {
+                    final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                    if (n >= 0 && component[n] < 0
+                        && isExplored(tiles[n]) && tiles[n].isLand() == land) {
+                        component[n] = components;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            components++;
+        }
+
+        // Distance fields, treating unexplored tiles as potential water.
+        this.waterDistance = distanceField(tiles, queue,
+            t -> !t.isLand());
+        this.highSeasDistance = distanceField(tiles, queue,
+            Tile::isDirectlyHighSeasConnected);
+
+        // Join the water components through coastal settlements.
+        final int[] parent = new int[components];
+        for (int c = 0; c < components; c++) parent[c] = c;
+        for (int i = 0; i < size; i++) {
+            if (!isSettlement(tiles[i])) continue;
+            final int x = i % width, y = i / width;
+            int first = -1;
+            for (Direction d : Direction.allDirections) {
+                final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                if (n < 0 || !isWater(tiles[n])) continue;
+                if (first < 0) {
+                    first = component[n];
+                } else {
+                    parent[find(parent, component[n])] = find(parent, first);
+                }
+            }
+        }
+        this.navalGroup = new int[size];
+        Arrays.fill(this.navalGroup, -1);
+        this.groupHighSeas = new boolean[components];
+        for (int i = 0; i < size; i++) {
+            if (isWater(tiles[i])) {
+                navalGroup[i] = find(parent, component[i]);
+            } else if (isSettlement(tiles[i])) {
+                final int x = i % width, y = i / width;
+                for (Direction d : Direction.allDirections) {
+                    final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                    if (n >= 0 && isWater(tiles[n])) {
+                        navalGroup[i] = find(parent, component[n]);
+                        break;
+                    }
+                }
+            }
+            if (navalGroup[i] >= 0 && highSeasDistance[i] == 0) {
+                groupHighSeas[navalGroup[i]] = true;
+            }
+        }
+    }
+
+
+    /**
+     * Get the land/water component of a tile.
+     *
+     * @param tile The {@code Tile} to query.
+     * @return The component, or -1 if unexplored or not on this map.
+     */
+    public int getComponent(Tile tile) {
+        final int index = indexOf(tile);
+        return (index < 0) ? -1 : component[index];
+    }
+
+    /**
+     * Get the number of steps from a tile to the nearest water.
+     *
+     * @param tile The {@code Tile} to query.
+     * @return The distance, or {@code UNREACHABLE}.
+     */
+    public int getWaterDistance(Tile tile) {
+        final int index = indexOf(tile);
+        return (index < 0) ? UNREACHABLE : waterDistance[index];
+    }
+
+    /**
+     * Get the number of steps from a tile to the nearest tile
+     * directly connected to the high seas.
+     *
+     * @param tile The {@code Tile} to query.
+     * @return The distance, or {@code UNREACHABLE}.
+     */
+    public int getHighSeasDistance(Tile tile) {
+        final int index = indexOf(tile);
+        return (index < 0) ? UNREACHABLE : highSeasDistance[index];
+    }
+
+    /**
+     * Might a naval unit be able to travel between two tiles?
+     *
+     * A tile without a naval group of its own (land without a
+     * settlement) is considered reachable if it is adjacent to the
+     * group of the other tile, as ships may attack or trade with it.
+     *
+     * @param start The start {@code Tile}.
+     * @param end The end {@code Tile}.
+     * @return False if the trip is definitely impossible.
+     */
+    public boolean isNavalReachable(Tile start, Tile end) {
+        final int s = indexOf(start), e = indexOf(end);
+        if (s < 0 || e < 0 || navalGroup[s] < 0) return true;
+        final int group = navalGroup[s];
+        if (navalGroup[e] >= 0) return navalGroup[e] == group;
+        final int x = end.getX(), y = end.getY();
+        for (Direction d : Direction.allDirections) {
+            final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+            if (n >= 0 && navalGroup[n] == group) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Might a naval unit be able to travel between a tile and the
+     * high seas?
+     *
+     * @param tile The {@code Tile} to check.
+     * @return False if the high seas are definitely unreachable.
+     */
+    public boolean canReachHighSeas(Tile tile) {
+        final int index = indexOf(tile);
+        if (index < 0) return true;
+        if (navalGroup[index] >= 0) return groupHighSeas[navalGroup[index]];
+        final int x = tile.getX(), y = tile.getY();
+        boolean adjacent = false;
+        for (Direction d : Direction.allDirections) {
+            final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+            if (n < 0 || navalGroup[n] < 0) continue;
+            if (groupHighSeas[navalGroup[n]]) return true;
+            adjacent = true;
+        }
+        // Do not reject tiles with no naval access at all, the caller
+        // may have other means of travel.
+        return !adjacent;
+    }
+
+
+    // Internals
+
+    /**
+     * Get the index of a tile.
+     *
+     * @param tile The {@code Tile} to index.
+     * @return The index, or -1 if the tile is not on this map.
+     */
+    private int indexOf(Tile tile) {
+        return (tile == null) ? -1 : indexOf(tile.getX(), tile.getY());
+    }
+
+    /**
+     * Get the index of a map position.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The index, or -1 if the position is not on this map.
+     */
+    private int indexOf(int x, int y) {
+        return (x < 0 || x >= width || y < 0 || y >= height) ? -1
+            : y * width + x;
+    }
+
+    /**
+     * Breadth first search outwards from a set of source tiles.
+     *
+     * @param tiles The map tiles by index.
+     * @param queue Working storage for the queue.
+     * @param source A {@code Predicate} selecting the sources.
+     * @return The number of steps from each tile to a source.
+     */
+    private int[] distanceField(Tile[] tiles, int[] queue,
+                                Predicate<Tile> source) {
+        final int[] dist = new int[tiles.length];
+        Arrays.fill(dist, UNREACHABLE);
+        int head = 0, tail = 0;
+        for (int i = 0; i < tiles.length; i++) {
+            if (tiles[i] != null && source.test(tiles[i])) {
+                dist[i] = 0;
+                queue[tail++] = i;
+            }
+        }
+        while (head < tail) {
+            final int index = queue[head++];
+            final int x = index % width, y = index / width;
+            for (Direction d : Direction.allDirections) {
+                final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                if (n >= 0 && dist[n] < 0 && tiles[n] != null) {
+                    dist[n] = dist[index] + 1;
+                    queue[tail++] = n;
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Find the root of a union-find set, compressing the path.
+     *
+     * @param parent The parent array.
+     * @param c The element to look up.
+     * @return The root of the set containing the element.
+     */
+    private static int find(int[] parent, int c) {
+        while (parent[c] != c) {
+            parent[c] = parent[parent[c]];
+            c = parent[c];
+        }
+        return c;
+    }
+
+    /**
+     * Is a tile present and explored?
+     *
+     * @param tile The {@code Tile} to check.
+     * @return True if the tile is explored.
+     */
+    private static boolean isExplored(Tile tile) {
+        return tile != null && tile.isExplored();
+    }
+
+    /**
+     * Is a tile explored water?
+     *
+     * @param tile The {@code Tile} to check.
+     * @return True if the tile is water.
+     */
+    private static boolean isWater(Tile tile) {
+        return isExplored(tile) && !tile.isLand();
+    }
+
+    /**
+     * Is a tile land with a settlement on it?
+     *
+     * @param tile The {@code Tile} to check.
+     * @return True if the tile holds a settlement.
+     */
+    private static boolean isSettlement(Tile tile) {
+        return tile != null && tile.isLand() && tile.hasSettlement();
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+
+/**
+ * The cost for a land unit of moving between neighbouring tiles of a
+ * {@link Map}, before any adjustment for the moves the unit has left.
+ *
+ * The cost is the basic move cost of the target tile type, reduced
+ * by any complete road or river on the target tile connected in the
+ * direction of the source tile.  It depends on nothing else, so a
+ * single layer serves all land units.  Naval units only pay the
+ * basic move cost of the target tile type, which needs no layer.
+ *
+ * Costs are kept in a byte array indexed by
+ * {@code (y * width + x) * 8 + direction}, where x and y are the
+ * coordinates of the target tile and direction the ordinal of the
+ * {@code Direction} from the target to the source tile.  They are
+ * found when first needed, and the costs onto a tile are discarded
+ * when its type or items change.
+ *
+ * Concurrent readers may both find and store the same cost, which
+ * is harmless.
+ */
+public final class MoveCosts {
+
+    /** The number of directions from each tile. */
+    private static final int DIRECTIONS = Direction.allDirections.size();
+
+    /** Marker for a cost not yet found. */
+    private static final byte UNKNOWN = 0;
+
+    /** The map width. */
+    private final int width;
+
+    /** The map height. */
+    private final int height;
+
+    /** The land move costs. */
+    private final byte[] costs;
+
+
+    /**
+     * Create the move costs for a map.
+     *
+     * @param map The {@code Map} to find move costs on.
+     */
+    public MoveCosts(Map map) {
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        this.costs = new byte[width * height * DIRECTIONS];
+    }
+
+
+    /**
+     * Get the cost of moving between tiles, without consulting any
+     * cached costs.
+     *
+     * @param from The {@code Tile} to move from.
+     * @param target The {@code Tile} to move to.
+     * @param naval True if the moving unit is naval.
+     * @return The basic cost of the move.
+     */
+    public static int getBasicMoveCost(Tile from, Tile target,
+                                       boolean naval) {
+        int cost = target.getType().getBasicMoveCost();
+        if (target.isLand() && !naval) {
+            TileItemContainer container = target.getTileItemContainer();
+            if (container != null) {
+                cost = container.getMoveCost(from, target, cost);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Get the cost of moving between tiles.
+     *
+     * @param from The {@code Tile} to move from.
+     * @param target The {@code Tile} to move to.
+     * @param naval True if the moving unit is naval.
+     * @return The basic cost of the move.
+     */
+    public int getMoveCost(Tile from, Tile target, boolean naval) {
+        final int index = (naval) ? -1 : indexOf(target, from);
+        if (index < 0) return getBasicMoveCost(from, target, naval);
+        int cost = costs[index] & 0xFF;
+        if (cost == UNKNOWN) {
+            cost = getBasicMoveCost(from, target, false);
+            if (0 < cost && cost <= 0xFF) costs[index] = (byte)cost;
+        }
+        return cost;
+    }
+
+    /**
+     * Discard the costs of moving onto a tile.
+     *
+     * @param tile The {@code Tile} that has changed.
+     */
+    public void invalidate(Tile tile) {
+        final int x = tile.getX(), y = tile.getY();
+        if (x < 0 || x >= width || y < 0 || y >= height) return;
+        final int base = (y * width + x) * DIRECTIONS;
+        for (int d = 0; d < DIRECTIONS; d++) costs[base + d] = UNKNOWN;
+    }
+
+
+    // Internals
+
+    /**
+     * Get the index of the cost of moving between neighbouring tiles.
+     *
+     * @param target The {@code Tile} to move to.
+     * @param from The {@code Tile} to move from.
+     * @return The index of the cost, or negative if the tiles are
+     *     not neighbours on this map.
+     */
+    private int indexOf(Tile target, Tile from) {
+        if (from == null) return -1;
+        final int x = target.getX(), y = target.getY();
+        if (x < 0 || x >= width || y < 0 || y >= height) return -1;
+        final int fx = from.getX(), fy = from.getY();
+        for (int d = 0; d < DIRECTIONS; d++) {
+            final Direction direction = Direction.allDirections.get(d);
+            if (direction.stepX(x, y) == fx && direction.stepY(x, y) == fy) {
+                return (y * width + x) * DIRECTIONS + d;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+
+/**
+ * The positions near each position of a {@link Map}, out to
+ * {@link #MAX_RADIUS}.
+ *
+ * The positions are kept as indexes {@code y * width + x} in a single
+ * array, {@link #STRIDE} entries per map position, in the spiral
+ * order of {@code Map.getCircleIterator}: the ring at radius one
+ * clockwise from the north east, then the ring at radius two.
+ * Positions off the map are left out, so each map position records
+ * how many of its entries lie within each radius.
+ *
+ * The table only depends on the map size, so it never needs to be
+ * updated once built.
+ */
+public final class Neighbours {
+
+    /** The largest radius covered. */
+    public static final int MAX_RADIUS = 2;
+
+    /** The number of entries for each map position. */
+    private static final int STRIDE = 4 * MAX_RADIUS * (MAX_RADIUS + 1);
+
+    /** The directions taken around each ring, in order. */
+    private static final Direction[] RING = {
+        Direction.SE, Direction.SW, Direction.NW, Direction.NE
+    };
+
+    /** The map width. */
+    private final int width;
+
+    /** The map height. */
+    private final int height;
+
+    /** The neighbour indexes. */
+    private final int[] indexes;
+
+    /** The number of neighbours within each radius. */
+    private final byte[] counts;
+
+
+    /**
+     * Build the neighbour table for a map size.
+     *
+     * @param width The map width.
+     * @param height The map height.
+     */
+    public Neighbours(int width, int height) {
+        this.width = width;
+        this.height = height;
+        final int size = width * height;
+        this.indexes = new int[size * STRIDE];
+        this.counts = new byte[size * MAX_RADIUS];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int index = y * width + x;
+                int n = 0;
+                for (int r = 1; r <= MAX_RADIUS; r++) {
+                    n = addRing(x, y, r, index * STRIDE, n);
+                    this.counts[index * MAX_RADIUS + r - 1] = (byte)n;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Get the map width.
+     *
+     * @return The width.
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Get the map height.
+     *
+     * @return The height.
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Does this table cover a given position and radius?
+     *
+     * @param x The x-coordinate of the position.
+     * @param y The y-coordinate of the position.
+     * @param radius The radius.
+     * @return True if the neighbours are available here.
+     */
+    public boolean covers(int x, int y, int radius) {
+        return 0 < radius && radius <= MAX_RADIUS
+            && Map.isValid(x, y, width, height);
+    }
+
+    /**
+     * Get the index of the first entry for a position.
+     *
+     * @param x The x-coordinate of the position.
+     * @param y The y-coordinate of the position.
+     * @return The first entry.
+     */
+    public int getStart(int x, int y) {
+        return (y * width + x) * STRIDE;
+    }
+
+    /**
+     * Get the index after the last entry within a radius of a position.
+     *
+     * @param x The x-coordinate of the position.
+     * @param y The y-coordinate of the position.
+     * @param radius The radius, at least one and at most
+     *     {@link #MAX_RADIUS}.
+     * @return The entry after the last one within the radius.
+     */
+    public int getEnd(int x, int y, int radius) {
+        final int index = y * width + x;
+        return index * STRIDE + this.counts[index * MAX_RADIUS + radius - 1];
+    }
+
+    /**
+     * Get the x-coordinate of a neighbour.
+     *
+     * @param entry The entry of the neighbour.
+     * @return The x-coordinate.
+     */
+    public int getX(int entry) {
+        return this.indexes[entry] % width;
+    }
+
+    /**
+     * Get the y-coordinate of a neighbour.
+     *
+     * @param entry The entry of the neighbour.
+     * @return The y-coordinate.
+     */
+    public int getY(int entry) {
+        return this.indexes[entry] / width;
+    }
+
+    /**
+     * Are two positions adjacent?
+     *
+     * @param x The x-coordinate of the first position.
+     * @param y The y-coordinate of the first position.
+     * @param ox The x-coordinate of the second position.
+     * @param oy The y-coordinate of the second position.
+     * @return True if the positions are adjacent.
+     */
+    public boolean isAdjacent(int x, int y, int ox, int oy) {
+        if (!Map.isValid(x, y, width, height)
+            || !Map.isValid(ox, oy, width, height)) return false;
+        final int other = oy * width + ox;
+        final int end = getEnd(x, y, 1);
+        for (int e = getStart(x, y); e < end; e++) {
+            if (this.indexes[e] == other) return true;
+        }
+        return false;
+    }
+
+
+    // Internals
+
+    /**
+     * Add the positions of a ring to the table, following the same
+     * path as {@code Map.CircleIterator}.
+     *
+     * @param cx The x-coordinate of the center.
+     * @param cy The y-coordinate of the center.
+     * @param radius The radius of the ring.
+     * @param base The first entry for the center.
+     * @param n The number of entries already added for the center.
+     * @return The number of entries added for the center so far.
+     */
+    private int addRing(int cx, int cy, int radius, int base, int n) {
+        int x = cx, y = cy;
+        for (int i = 1; i < radius; i++) {
+            final int nx = Direction.N.stepX(x, y);
+            y = Direction.N.stepY(x, y);
+            x = nx;
+        }
+        final int side = 2 * radius;
+        for (int i = 0; i < 4 * side; i++) {
+            final Direction d = (i == 0) ? Direction.NE : RING[(i / side)];
+            final int nx = d.stepX(x, y);
+            y = d.stepY(x, y);
+            x = nx;
+            if (Map.isValid(x, y, width, height)) {
+                this.indexes[base + n++] = y * width + x;
+            }
+        }
+        return n;
+    }
+}
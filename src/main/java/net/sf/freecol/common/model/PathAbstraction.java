@@ -0,0 +1,582 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+
+/**
+ * A cluster-level abstraction of a {@link Map} for hierarchical
+ * (HPA*-style) path finding over long distances.
+ *
+ * The map is divided into clusters, each being a connected set of
+ * tiles of the same land/water kind that share a region and lie in
+ * the same {@code CLUSTER_SIZE} square block.  Regions follow the
+ * natural map features, and the blocks bound the cluster size where
+ * a region is very large (as oceans are).
+ *
+ * Where two clusters of the same kind touch, representative border
+ * tile pairs become entrances.  The entrances form the nodes of an
+ * abstract graph, with edges between adjacent entrances and between
+ * all the entrances of a cluster, costed by the cheapest route within
+ * the cluster using the basic tile move costs.  Units, settlements,
+ * roads and rivers are ignored, so abstract costs are estimates
+ * intended to select a corridor, which {@link Map} then refines with
+ * a real search.
+ *
+ * Instances are immutable once built, apart from the working storage
+ * reused by successive routes, which is handed out one per concurrent
+ * route.  The map discards its instance along with its
+ * {@link MapConnectivity}.
+ */
+final class PathAbstraction {
+
+    /** The side of the square blocks that bound cluster size. */
+    static final int CLUSTER_SIZE = 16;
+
+    /** Border runs longer than this contribute entrances at each end. */
+    private static final int LONG_BORDER = 6;
+
+    /** An abstract route from a start tile to an end tile. */
+    static final class Route {
+
+        /** The waypoint tiles, ending with the end tile. */
+        private final List<Tile> tiles;
+
+        /** The estimated move cost to each waypoint. */
+        private final int[] costs;
+
+
+        /**
+         * Create a new route.
+         *
+         * @param tiles The waypoint {@code Tile}s.
+         * @param costs The estimated cost to each waypoint.
+         */
+        Route(List<Tile> tiles, int[] costs) {
+            this.tiles = tiles;
+            this.costs = costs;
+        }
+
+
+        /**
+         * Get the number of waypoints.
+         *
+         * @return The number of waypoints.
+         */
+        int size() {
+            return tiles.size();
+        }
+
+        /**
+         * Get a waypoint.
+         *
+         * @param i The waypoint index.
+         * @return The waypoint {@code Tile}.
+         */
+        Tile getTile(int i) {
+            return tiles.get(i);
+        }
+
+        /**
+         * Get the estimated move cost to a waypoint.
+         *
+         * @param i The waypoint index.
+         * @return The estimated cost.
+         */
+        int getCost(int i) {
+            return costs[i];
+        }
+    }
+
+    /** Working storage for {@link #route}, reused between routes. */
+    private final class RouteState {
+
+        /** The best cost to each node. */
+        public final int[] g = new int[nodeTile.length + 2];
+
+        /** The predecessor of each node. */
+        public final int[] parent = new int[nodeTile.length + 2];
+
+        /** Whether each node is closed. */
+        public final boolean[] closed = new boolean[nodeTile.length + 2];
+
+        /** The cost to each tile in a cluster, -1 between uses. */
+        public final int[] dist = new int[tiles.length];
+
+        /** The cost from each entrance to the end, -1 between uses. */
+        public final int[] toEnd = new int[nodeTile.length];
+
+        /** The cost from the start to each entrance of its cluster. */
+        public final int[] fromStart = new int[maxClusterNodes];
+
+        /** The open queue of {cost, index} pairs. */
+        public final PriorityQueue<long[]> queue
+            = new PriorityQueue<>(64, (a, b) -> Long.compare(a[0], b[0]));
+
+        /** The tiles reached by a cluster search. */
+        public final List<Integer> reached = new ArrayList<>();
+
+
+        /**
+         * Create new route working storage.
+         */
+        public RouteState() {
+            Arrays.fill(this.dist, -1);
+            Arrays.fill(this.toEnd, -1);
+        }
+    }
+
+    /** The map width. */
+    private final int width;
+
+    /** The map height. */
+    private final int height;
+
+    /** The map tiles, by index. */
+    private final Tile[] tiles;
+
+    /** The basic move cost to enter each tile, or zero if impassable. */
+    private final int[] stepCost;
+
+    /** The smallest positive step cost. */
+    private final int minStepCost;
+
+    /** The cluster of each tile, or -1 if unexplored. */
+    private final int[] cluster;
+
+    /** The entrance node at each tile, or -1. */
+    private final int[] nodeAt;
+
+    /** The tile index of each entrance node. */
+    private final int[] nodeTile;
+
+    /** The entrance nodes of each cluster. */
+    private final int[][] clusterNodes;
+
+    /** The neighbours of each entrance node. */
+    private final int[][] edgeTo;
+
+    /** The cost of each edge in edgeTo. */
+    private final int[][] edgeCost;
+
+    /** The largest number of entrances of a cluster. */
+    private final int maxClusterNodes;
+
+    /** Route working storage, if released by the last route. */
+    private final AtomicReference<RouteState> routeState
+        = new AtomicReference<>();
+
+
+    /**
+     * Build the abstraction for a map.
+     *
+     * @param map The {@code Map} to abstract.
+     */
+    PathAbstraction(Map map) {
+        this.width = map.getWidth();
+        this.height = map.getHeight();
+        final int size = width * height;
+        this.tiles = new Tile[size];
+        this.stepCost = new int[size];
+        int min = Integer.MAX_VALUE;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                final int i = y * width + x;
+                final Tile t = tiles[i] = map.getTile(x, y);
+                if (t != null && t.isExplored()) {
+                    stepCost[i] = Math.max(1, t.getType().getBasicMoveCost());
+                    min = Math.min(min, stepCost[i]);
+                }
+            }
+        }
+        this.minStepCost = (min == Integer.MAX_VALUE) ? 1 : min;
+
+        // Label the clusters.
+        this.cluster = new int[size];
+        Arrays.fill(this.cluster, -1);
+        final int[] queue = new int[size];
+        int clusters = 0;
+        for (int i = 0; i < size; i++) {
+            if (cluster[i] >= 0 || stepCost[i] == 0) continue;
+            int head = 0, tail = 0;
+            cluster[i] = clusters;
+            queue[tail++] = i;
+            while (head < tail) {
+                final int index = queue[head++];
+                final int x = index % width, y = index / width;
+                for (Direction d : Direction.allDirections) {
+                    final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                    if (n >= 0 && cluster[n] < 0 && stepCost[n] > 0
+                        && sameCluster(i, n)) {
+                        cluster[n] = clusters;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            clusters++;
+        }
+
+        // Collect the borders between clusters of the same kind.
+        final LinkedHashMap<Long, List<int[]>> borders = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            if (cluster[i] < 0) continue;
+            final int x = i % width, y = i / width;
+            for (Direction d : Direction.allDirections) {
+                final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                if (n <= i || cluster[n] < 0 || cluster[n] == cluster[i]
+                    || tiles[n].isLand() != tiles[i].isLand()) continue;
+                final long key = ((long)Math.min(cluster[i], cluster[n]) << 32)
+                    | Math.max(cluster[i], cluster[n]);
+                borders.computeIfAbsent(key, k -> new ArrayList<>())
+                    .add(new int[] { i, n });
+            }
+        }
+
+        // Choose the entrances.
+        this.nodeAt = new int[size];
+        Arrays.fill(this.nodeAt, -1);
+        final List<Integer> nodes = new ArrayList<>();
+        final List<List<int[]>> edges = new ArrayList<>();
+        for (List<int[]> border : borders.values()) {
+            final int n = border.size();
+            addEntrance(border.get(n / 2), nodes, edges);
+            if (n > LONG_BORDER) {
+                addEntrance(border.get(0), nodes, edges);
+                addEntrance(border.get(n - 1), nodes, edges);
+            }
+        }
+        this.nodeTile = new int[nodes.size()];
+        for (int k = 0; k < nodeTile.length; k++) nodeTile[k] = nodes.get(k);
+
+        // Group the entrances by cluster.
+        final int[] counts = new int[clusters];
+        for (int t : nodeTile) counts[cluster[t]]++;
+        this.clusterNodes = new int[clusters][];
+        int maxNodes = 0;
+        for (int c = 0; c < clusters; c++) {
+            clusterNodes[c] = new int[counts[c]];
+            maxNodes = Math.max(maxNodes, counts[c]);
+        }
+        this.maxClusterNodes = maxNodes;
+        Arrays.fill(counts, 0);
+        for (int k = 0; k < nodeTile.length; k++) {
+            final int c = cluster[nodeTile[k]];
+            clusterNodes[c][counts[c]++] = k;
+        }
+
+        // Connect the entrances within each cluster.
+        final int[] dist = new int[size];
+        Arrays.fill(dist, -1);
+        final PriorityQueue<long[]> pq
+            = new PriorityQueue<>(64, (a, b) -> Long.compare(a[0], b[0]));
+        final List<Integer> reached = new ArrayList<>();
+        for (int k = 0; k < nodeTile.length; k++) {
+            clusterSearch(nodeTile[k], false, dist, pq, reached);
+            for (int other : clusterNodes[cluster[nodeTile[k]]]) {
+                final int d = dist[nodeTile[other]];
+                if (other != k && d >= 0) {
+                    edges.get(k).add(new int[] { other, d });
+                }
+            }
+            for (int t : reached) dist[t] = -1;
+        }
+        this.edgeTo = new int[nodeTile.length][];
+        this.edgeCost = new int[nodeTile.length][];
+        for (int k = 0; k < nodeTile.length; k++) {
+            final List<int[]> e = edges.get(k);
+            edgeTo[k] = new int[e.size()];
+            edgeCost[k] = new int[e.size()];
+            for (int j = 0; j < e.size(); j++) {
+                edgeTo[k][j] = e.get(j)[0];
+                edgeCost[k][j] = e.get(j)[1];
+            }
+        }
+    }
+
+
+    /**
+     * Get the number of clusters.
+     *
+     * @return The number of clusters.
+     */
+    int getClusterCount() {
+        return clusterNodes.length;
+    }
+
+    /**
+     * Get the number of entrance nodes.
+     *
+     * @return The number of entrances.
+     */
+    int getEntranceCount() {
+        return nodeTile.length;
+    }
+
+    /**
+     * Find an abstract route between two tiles.
+     *
+     * @param start The start {@code Tile}.
+     * @param end The end {@code Tile}.
+     * @return The {@code Route} found, or null if the tiles are in the
+     *     same cluster, of different kinds, or no route is found.
+     */
+    Route route(Tile start, Tile end) {
+        final int s = indexOf(start), e = indexOf(end);
+        if (s < 0 || e < 0 || cluster[s] < 0 || cluster[e] < 0
+            || cluster[s] == cluster[e]
+            || tiles[s].isLand() != tiles[e].isLand()) return null;
+
+        RouteState rs = routeState.getAndSet(null);
+        if (rs == null) rs = new RouteState();
+        final Route route = route(rs, s, e, end);
+        routeState.set(rs); // Only released if left clean
+        return route;
+    }
+
+
+    // Internals
+
+    /**
+     * Find an abstract route between two tiles in different clusters.
+     *
+     * @param rs The {@code RouteState} to work in, which is left ready
+     *     for reuse.
+     * @param s The start tile index.
+     * @param e The end tile index.
+     * @param end The end {@code Tile}.
+     * @return The {@code Route} found, or null if none.
+     */
+    private Route route(RouteState rs, int s, int e, Tile end) {
+        // The entrance nodes, plus the start and end.
+        final int n = nodeTile.length, startNode = n, endNode = n + 1;
+        final int[] g = rs.g, parent = rs.parent, dist = rs.dist,
+            fromStart = rs.fromStart, toEnd = rs.toEnd;
+        final boolean[] closed = rs.closed;
+        final PriorityQueue<long[]> open = rs.queue;
+        Arrays.fill(g, Integer.MAX_VALUE);
+        Arrays.fill(parent, -1);
+        Arrays.fill(closed, false);
+
+        // Link the start and end into their clusters.
+        final int[] startNodes = clusterNodes[cluster[s]],
+            endNodes = clusterNodes[cluster[e]];
+        clusterSearch(s, false, dist, open, rs.reached);
+        for (int j = 0; j < startNodes.length; j++) {
+            fromStart[j] = dist[nodeTile[startNodes[j]]];
+        }
+        for (int t : rs.reached) dist[t] = -1;
+        clusterSearch(e, true, dist, open, rs.reached);
+        for (int k : endNodes) toEnd[k] = dist[nodeTile[k]];
+        for (int t : rs.reached) dist[t] = -1;
+
+        // A* over the abstract graph.
+        g[startNode] = 0;
+        open.add(new long[] { heuristic(s, end), startNode });
+        while (!open.isEmpty()) {
+            final int node = (int)open.poll()[1];
+            if (closed[node]) continue;
+            closed[node] = true;
+            if (node == endNode) break;
+            if (node == startNode) {
+                for (int j = 0; j < startNodes.length; j++) {
+                    if (fromStart[j] >= 0) {
+                        relax(open, g, parent, closed, node,
+                              startNodes[j], fromStart[j], end);
+                    }
+                }
+                continue;
+            }
+            if (toEnd[node] >= 0) {
+                relax(open, g, parent, closed, node, endNode, toEnd[node],
+                      end);
+            }
+            for (int j = 0; j < edgeTo[node].length; j++) {
+                relax(open, g, parent, closed, node, edgeTo[node][j],
+                      edgeCost[node][j], end);
+            }
+        }
+        open.clear();
+        for (int k : endNodes) toEnd[k] = -1;
+        if (parent[endNode] < 0) return null;
+
+        // Collect the waypoints.
+        final List<Tile> route = new ArrayList<>();
+        final List<Integer> costs = new ArrayList<>();
+        for (int node = endNode; node != startNode; node = parent[node]) {
+            route.add(0, (node == endNode) ? end : tiles[nodeTile[node]]);
+            costs.add(0, g[node]);
+        }
+        final int[] c = new int[costs.size()];
+        for (int j = 0; j < c.length; j++) c[j] = costs.get(j);
+        return new Route(route, c);
+    }
+
+    /**
+     * Get the index of a tile.
+     *
+     * @param tile The {@code Tile} to index.
+     * @return The index, or -1 if the tile is not on this map.
+     */
+    private int indexOf(Tile tile) {
+        return (tile == null) ? -1 : indexOf(tile.getX(), tile.getY());
+    }
+
+    /**
+     * Get the index of a map position.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The index, or -1 if the position is not on this map.
+     */
+    private int indexOf(int x, int y) {
+        return (x < 0 || x >= width || y < 0 || y >= height) ? -1
+            : y * width + x;
+    }
+
+    /**
+     * Should two adjacent tiles be in the same cluster?
+     *
+     * @param i The index of the first tile.
+     * @param n The index of the second tile.
+     * @return True if the tiles share kind, region and block.
+     */
+    private boolean sameCluster(int i, int n) {
+        return tiles[i].isLand() == tiles[n].isLand()
+            && Objects.equals(tiles[i].getRegion(), tiles[n].getRegion())
+            && (i % width) / CLUSTER_SIZE == (n % width) / CLUSTER_SIZE
+            && (i / width) / CLUSTER_SIZE == (n / width) / CLUSTER_SIZE;
+    }
+
+    /**
+     * Add an entrance across a cluster border.
+     *
+     * @param pair The indexes of the tiles either side of the border.
+     * @param nodes The tile index of each node, to extend.
+     * @param edges The edges of each node, to extend.
+     */
+    private void addEntrance(int[] pair, List<Integer> nodes,
+                             List<List<int[]>> edges) {
+        final int a = getNode(pair[0], nodes, edges);
+        final int b = getNode(pair[1], nodes, edges);
+        edges.get(a).add(new int[] { b, stepCost[pair[1]] });
+        edges.get(b).add(new int[] { a, stepCost[pair[0]] });
+    }
+
+    /**
+     * Get or create the entrance node at a tile.
+     *
+     * @param index The tile index.
+     * @param nodes The tile index of each node, to extend.
+     * @param edges The edges of each node, to extend.
+     * @return The node.
+     */
+    private int getNode(int index, List<Integer> nodes,
+                        List<List<int[]>> edges) {
+        if (nodeAt[index] < 0) {
+            nodeAt[index] = nodes.size();
+            nodes.add(index);
+            edges.add(new ArrayList<>());
+        }
+        return nodeAt[index];
+    }
+
+    /**
+     * Find the cheapest costs between a tile and all other tiles in
+     * its cluster.
+     *
+     * @param source The source tile index.
+     * @param reverse If true, find the costs of reaching the source
+     *     rather than leaving it.
+     * @param dist The cost to each tile, initially all -1, to fill.
+     * @param queue An empty queue to work in, left empty.
+     * @param reached A list to fill with the tile indexes reached.
+     */
+    private void clusterSearch(int source, boolean reverse, int[] dist,
+                               PriorityQueue<long[]> queue,
+                               List<Integer> reached) {
+        final int c = cluster[source];
+        reached.clear();
+        dist[source] = 0;
+        reached.add(source);
+        queue.add(new long[] { 0, source });
+        while (!queue.isEmpty()) {
+            final long[] top = queue.poll();
+            final int index = (int)top[1];
+            if (top[0] > dist[index]) continue;
+            final int x = index % width, y = index / width;
+            for (Direction d : Direction.allDirections) {
+                final int n = indexOf(d.stepX(x, y), d.stepY(x, y));
+                if (n < 0 || cluster[n] != c) continue;
+                final int cost = dist[index]
+                    + ((reverse) ? stepCost[index] : stepCost[n]);
+                if (dist[n] < 0) {
+                    reached.add(n);
+                } else if (dist[n] <= cost) {
+                    continue;
+                }
+                dist[n] = cost;
+                queue.add(new long[] { cost, n });
+            }
+        }
+    }
+
+    /**
+     * Relax an abstract graph edge.
+     *
+     * @param open The open queue of {f, node} pairs.
+     * @param g The best cost to each node.
+     * @param parent The predecessor of each node.
+     * @param closed Whether each node is closed.
+     * @param from The node the edge leaves.
+     * @param to The node the edge enters.
+     * @param cost The edge cost.
+     * @param end The end {@code Tile}.
+     */
+    private void relax(PriorityQueue<long[]> open, int[] g, int[] parent,
+                       boolean[] closed, int from, int to, int cost,
+                       Tile end) {
+        if (closed[to]) return;
+        final int cand = g[from] + cost;
+        if (cand >= g[to]) return;
+        g[to] = cand;
+        parent[to] = from;
+        final int h = (to < nodeTile.length) ? heuristic(nodeTile[to], end)
+            : 0;
+        open.add(new long[] { (long)cand + h, to });
+    }
+
+    /**
+     * Estimate the cost between a tile and the end tile.
+     *
+     * @param index The tile index.
+     * @param end The end {@code Tile}.
+     * @return A lower bound on the abstract cost.
+     */
+    private int heuristic(int index, Tile end) {
+        return tiles[index].getDistanceTo(end) * minStepCost;
+    }
+}
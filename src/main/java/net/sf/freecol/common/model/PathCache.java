@@ -0,0 +1,352 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import net.sf.freecol.common.model.pathfinding.CostDecider;
+import net.sf.freecol.common.model.pathfinding.CostDeciders;
+
+
+/**
+ * A per-turn cache of the results of {@link Map#findPath}.
+ *
+ * Entries are keyed by the properties of the unit and carrier that
+ * influence a path search (type, role, owner, moves left and
+ * location), the start and end locations, and the cost decider
+ * class.  An entry is discarded when:
+ * <ul>
+ *   <li>the turn advances,</li>
+ *   <li>the map changes in a way that affects movement (tile type,
+ *       ownership, settlements, tile items or exploration),</li>
+ *   <li>a unit belonging to another player moves onto or off a tile,
+ *       and so may now block or unblock the path.</li>
+ * </ul>
+ *
+ * Only cost deciders accepted by {@link CostDeciders#isCacheable}
+ * may be used, as others may carry state not captured by their class.
+ *
+ * Paths are mutable and callers routinely extend or adjust them, so
+ * the cache stores and hands out private copies.
+ *
+ * Hit and miss counts are kept per player for the current turn.
+ */
+public final class PathCache {
+
+    /** The maximum number of paths to retain. */
+    private static final int MAX_ENTRIES = 4096;
+
+    /** The key for a cached path search. */
+    private static final class Key {
+
+        private final UnitType unitType;
+        private final Role role;
+        private final Player owner;
+        private final int movesLeft;
+        private final Location unitLocation;
+        private final boolean unitCargo;
+        private final boolean tradeRoute;
+        private final Location start;
+        private final Location end;
+        private final Unit carrier;
+        private final int carrierMovesLeft;
+        private final Location carrierLocation;
+        private final int carrierSpace;
+        private final boolean carrierCargo;
+        private final Class<?> deciderClass;
+        private final int hash;
+
+
+        /**
+         * Create a new key.
+         *
+         * @param unit The {@code Unit} to find a path for.
+         * @param start The start {@code Location}.
+         * @param end The end {@code Location}.
+         * @param carrier An optional carrier {@code Unit}.
+         * @param costDecider An optional {@code CostDecider}.
+         */
+        public Key(Unit unit, Location start, Location end, Unit carrier,
+                   CostDecider costDecider) {
+            this.unitType = unit.getType();
+            this.role = unit.getRole();
+            this.owner = unit.getOwner();
+            this.movesLeft = unit.getMovesLeft();
+            this.unitLocation = unit.getLocation();
+            this.unitCargo = unit.hasGoodsCargo();
+            this.tradeRoute = unit.getTradeRoute() != null;
+            this.start = start;
+            this.end = end;
+            this.carrier = carrier;
+            this.carrierMovesLeft = (carrier == null) ? 0
+                : carrier.getMovesLeft();
+            this.carrierLocation = (carrier == null) ? null
+                : carrier.getLocation();
+            this.carrierSpace = (carrier == null) ? 0
+                : carrier.getSpaceLeft();
+            this.carrierCargo = carrier != null && carrier.hasGoodsCargo();
+            this.deciderClass = (costDecider == null) ? null
+                : costDecider.getClass();
+            this.hash = Objects.hash(unitType, role, owner, movesLeft,
+                unitLocation, start, end, carrier, carrierMovesLeft,
+                carrierLocation, deciderClass);
+        }
+
+
+        // Override Object
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key k = (Key)o;
+            return this.hash == k.hash
+                && Objects.equals(this.unitType, k.unitType)
+                && Objects.equals(this.role, k.role)
+                && Objects.equals(this.owner, k.owner)
+                && this.movesLeft == k.movesLeft
+                && Objects.equals(this.unitLocation, k.unitLocation)
+                && this.unitCargo == k.unitCargo
+                && this.tradeRoute == k.tradeRoute
+                && Objects.equals(this.start, k.start)
+                && Objects.equals(this.end, k.end)
+                && Objects.equals(this.carrier, k.carrier)
+                && this.carrierMovesLeft == k.carrierMovesLeft
+                && Objects.equals(this.carrierLocation, k.carrierLocation)
+                && this.carrierSpace == k.carrierSpace
+                && this.carrierCargo == k.carrierCargo
+                && Objects.equals(this.deciderClass, k.deciderClass);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+
+    /** A cached path search result. */
+    private static final class CachedPath {
+
+        /** The path found, or null if the search failed. */
+        public final PathNode path;
+
+        /** The map generation when the path was found. */
+        public final int generation;
+
+        /** The count of moves by other players when the path was found. */
+        public final int foreignMoves;
+
+
+        /**
+         * Create a new entry.
+         *
+         * @param path The path found.
+         * @param generation The map generation.
+         * @param foreignMoves The count of moves by other players.
+         */
+        public CachedPath(PathNode path, int generation, int foreignMoves) {
+            this.path = path;
+            this.generation = generation;
+            this.foreignMoves = foreignMoves;
+        }
+    }
+
+    /** The cached paths, in least recently used order. */
+    private final LinkedHashMap<Key, CachedPath> entries
+        = new LinkedHashMap<Key, CachedPath>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                java.util.Map.Entry<Key, CachedPath> e) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+
+    /** The map generation, bumped by movement-affecting map changes. */
+    private int generation = 0;
+
+    /** The total number of unit moves onto or off tiles. */
+    private int unitMoves = 0;
+
+    /** The number of unit moves onto or off tiles, by owner. */
+    private final HashMap<Player, Integer> unitMovesBy = new HashMap<>();
+
+    /** The turn number the entries and statistics belong to. */
+    private int turn = -1;
+
+    /** Hit and miss counts for this turn, by player. */
+    private final HashMap<Player, int[]> stats = new HashMap<>();
+
+
+    /**
+     * Create a new path cache.
+     */
+    public PathCache() {}
+
+
+    /**
+     * Get a path, either from the cache or by performing a search.
+     *
+     * The search is performed outside the cache lock.  The result is
+     * stored against the map state observed before the search began,
+     * so a change made while searching invalidates it.
+     *
+     * @param turn The current turn number.
+     * @param unit The {@code Unit} to find a path for.
+     * @param start The start {@code Location}.
+     * @param end The end {@code Location}.
+     * @param carrier An optional carrier {@code Unit}.
+     * @param costDecider An optional {@code CostDecider}.
+     * @param search A {@code Supplier} to perform the search on a miss.
+     * @return The path found, or null if there is none.
+     */
+    public PathNode getPath(int turn, Unit unit, Location start,
+                            Location end, Unit carrier,
+                            CostDecider costDecider,
+                            Supplier<PathNode> search) {
+        final Player owner = unit.getOwner();
+        final Key key = new Key(unit, start, end, carrier, costDecider);
+        final int gen, foreign;
+        synchronized (this) {
+            checkTurn(turn);
+            final int[] s = stats.computeIfAbsent(owner, k -> new int[2]);
+            gen = this.generation;
+            foreign = getForeignMoves(owner);
+            final CachedPath entry = entries.get(key);
+            if (entry != null && entry.generation == gen
+                && entry.foreignMoves == foreign) {
+                s[0]++;
+                return copyPath(entry.path);
+            }
+            s[1]++;
+        }
+        final PathNode path = search.get();
+        synchronized (this) {
+            if (this.turn == turn) {
+                entries.put(key,
+                    new CachedPath(copyPath(path), gen, foreign));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Invalidate all cached paths following a movement-affecting
+     * change to the map.
+     */
+    public synchronized void invalidate() {
+        this.generation++;
+    }
+
+    /**
+     * Note that a unit has moved onto or off a tile.  This invalidates
+     * the cached paths of all other players.
+     *
+     * @param owner The {@code Player} that owns the unit.
+     */
+    public synchronized void unitMoved(Player owner) {
+        this.unitMoves++;
+        if (owner != null) unitMovesBy.merge(owner, 1, Integer::sum);
+    }
+
+    /**
+     * Get the number of cache hits for a player this turn.
+     *
+     * @param player The {@code Player} to query.
+     * @return The number of hits.
+     */
+    public synchronized int getHits(Player player) {
+        int[] s = stats.get(player);
+        return (s == null) ? 0 : s[0];
+    }
+
+    /**
+     * Get the number of cache misses for a player this turn.
+     *
+     * @param player The {@code Player} to query.
+     * @return The number of misses.
+     */
+    public synchronized int getMisses(Player player) {
+        int[] s = stats.get(player);
+        return (s == null) ? 0 : s[1];
+    }
+
+    /**
+     * Get the number of paths currently cached.
+     *
+     * @return The cache size.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    // Internals
+
+    /**
+     * Discard the entries and statistics if the turn has changed.
+     *
+     * @param turn The current turn number.
+     */
+    private void checkTurn(int turn) {
+        if (this.turn == turn) return;
+        this.turn = turn;
+        entries.clear();
+        stats.clear();
+        unitMovesBy.clear();
+        this.unitMoves = 0;
+    }
+
+    /**
+     * Get the number of unit moves by players other than a given one.
+     *
+     * @param owner The {@code Player} to exclude.
+     * @return The number of foreign moves.
+     */
+    private int getForeignMoves(Player owner) {
+        Integer own = unitMovesBy.get(owner);
+        return this.unitMoves - ((own == null) ? 0 : own);
+    }
+
+    /**
+     * Copy a path.
+     *
+     * @param path The first {@code PathNode} of the path to copy.
+     * @return A copy of the path.
+     */
+    private static PathNode copyPath(PathNode path) {
+        PathNode first = null, prev = null;
+        for (PathNode p = path; p != null; p = p.next) {
+            PathNode n = new PathNode(p.getLocation(), p.getMovesLeft(),
+                p.getTurns(), p.isOnCarrier(), prev, null);
+            if (prev == null) first = n; else prev.next = n;
+            prev = n;
+        }
+        return first;
+    }
+}
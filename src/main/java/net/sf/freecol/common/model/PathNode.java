@@ -351,6 +351,27 @@ public class PathNode {
                                   p, null);
         }
     }
+
+
+    /**
+     * Are two paths identical node by node?
+     *
+     * Used to cross-check the path search engines.
+     *
+     * @param p1 The first path, which may be null.
+     * @param p2 The second path, which may be null.
+     * @return True if the paths visit the same locations with the
+     *     same moves left, turns and carrier use.
+     */
+    public static boolean samePath(PathNode p1, PathNode p2) {
+        for (; p1 != null && p2 != null; p1 = p1.next, p2 = p2.next) {
+            if (p1.location != p2.location
+                || p1.movesLeft != p2.movesLeft
+                || p1.turns != p2.turns
+                || p1.onCarrier != p2.onCarrier) return false;
+        }
+        return p1 == null && p2 == null;
+    }
            
 
     // Override Object
@@ -0,0 +1,287 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+
+
+/**
+ * Reusable working storage for the tile-indexed A* search in
+ * {@link Map}.
+ *
+ * Tiles are indexed by {@code y * width + x}.  The open and closed
+ * sets are arrays of {@code PathNode}s indexed by tile, the f-scores
+ * are an int array, and the open queue is an indexed binary heap of
+ * tile indexes so that membership tests, removal and re-insertion of
+ * an improved node are all at worst O(log N).
+ *
+ * The heap deliberately reproduces the sift order of
+ * {@code java.util.PriorityQueue}, so that equal-cost ties are broken
+ * identically to the location-keyed search storage and both return
+ * the same paths.
+ *
+ * Only the entries touched by a search are reset when it completes,
+ * so a state can be reused cheaply by successive searches on the
+ * same map.  Instances are not thread safe, the map hands out one
+ * state per concurrent search.
+ */
+final class PathSearchState {
+
+    /** The map width, for index calculation. */
+    private final int width;
+
+    /** The number of tiles covered. */
+    private final int size;
+
+    /** The open node at each tile index, or null. */
+    private final PathNode[] open;
+
+    /** The closed node at each tile index, or null. */
+    private final PathNode[] closed;
+
+    /** The f-score (cost + heuristic) of each open tile index. */
+    private final int[] f;
+
+    /** The position of each tile index in the heap, or -1. */
+    private final int[] heapPos;
+
+    /** The heap of open tile indexes, ordered by f-score. */
+    private final int[] heap;
+
+    /** The number of entries in the heap. */
+    private int heapSize = 0;
+
+    /** The tile indexes touched by the current search. */
+    private int[] touched;
+
+    /** The number of entries in touched. */
+    private int touchedSize = 0;
+
+    /** Has the tile index been touched by the current search? */
+    private final boolean[] isTouched;
+
+
+    /**
+     * Create a new search state for a map.
+     *
+     * @param width The map width.
+     * @param height The map height.
+     */
+    PathSearchState(int width, int height) {
+        this.width = width;
+        this.size = width * height;
+        this.open = new PathNode[this.size];
+        this.closed = new PathNode[this.size];
+        this.f = new int[this.size];
+        this.heapPos = new int[this.size];
+        Arrays.fill(this.heapPos, -1);
+        this.heap = new int[this.size];
+        this.touched = new int[Math.min(this.size, 1024)];
+        this.isTouched = new boolean[this.size];
+    }
+
+
+    /**
+     * Does this state fit a map of the given dimensions?
+     *
+     * @param width The map width.
+     * @param height The map height.
+     * @return True if this state can be used for the map.
+     */
+    boolean fits(int width, int height) {
+        return this.width == width && this.size == width * height;
+    }
+
+    /**
+     * Get the index for a tile.
+     *
+     * @param tile The {@code Tile} to index.
+     * @return The tile index, or -1 if the tile is not covered.
+     */
+    int indexOf(Tile tile) {
+        final int x = tile.getX(), y = tile.getY();
+        if (x < 0 || x >= width || y < 0) return -1;
+        final int index = y * width + x;
+        return (index < size) ? index : -1;
+    }
+
+    /**
+     * Is the open queue empty?
+     *
+     * @return True if there are no open nodes.
+     */
+    boolean isOpenEmpty() {
+        return heapSize == 0;
+    }
+
+    /**
+     * Get the open node at a tile index.
+     *
+     * @param index The tile index.
+     * @return The open {@code PathNode}, or null if none.
+     */
+    PathNode getOpen(int index) {
+        return open[index];
+    }
+
+    /**
+     * Add a node to the open set and queue.
+     *
+     * @param index The tile index.
+     * @param node The {@code PathNode} to add.
+     * @param fcost The f-score for the node.
+     */
+    void offerOpen(int index, PathNode node, int fcost) {
+        touch(index);
+        f[index] = fcost;
+        open[index] = node;
+        siftUp(heapSize++, index);
+    }
+
+    /**
+     * Remove a node from the open set and queue.
+     *
+     * @param index The tile index.
+     */
+    void removeOpen(int index) {
+        final int pos = heapPos[index];
+        if (pos < 0) return;
+        open[index] = null;
+        heapPos[index] = -1;
+        final int s = --heapSize;
+        if (s != pos) {
+            final int moved = heap[s];
+            siftDown(pos, moved);
+            if (heap[pos] == moved) siftUp(pos, moved);
+        }
+    }
+
+    /**
+     * Remove the open node with the lowest f-score.
+     *
+     * @return The removed {@code PathNode}.
+     */
+    PathNode pollOpen() {
+        final int index = heap[0];
+        final PathNode result = open[index];
+        open[index] = null;
+        heapPos[index] = -1;
+        final int s = --heapSize;
+        if (s != 0) siftDown(0, heap[s]);
+        return result;
+    }
+
+    /**
+     * Get the closed node at a tile index.
+     *
+     * @param index The tile index.
+     * @return The closed {@code PathNode}, or null if none.
+     */
+    PathNode getClosed(int index) {
+        return closed[index];
+    }
+
+    /**
+     * Set the closed node at a tile index.
+     *
+     * @param index The tile index.
+     * @param node The {@code PathNode} to close, or null to reopen.
+     */
+    void setClosed(int index, PathNode node) {
+        touch(index);
+        closed[index] = node;
+    }
+
+    /**
+     * Reset all entries touched by the last search, readying this
+     * state for reuse.
+     */
+    void clear() {
+        for (int i = 0; i < touchedSize; i++) {
+            final int index = touched[i];
+            open[index] = closed[index] = null;
+            heapPos[index] = -1;
+            isTouched[index] = false;
+        }
+        touchedSize = heapSize = 0;
+    }
+
+
+    // Internals
+
+    /**
+     * Record that a tile index has been used by this search.
+     *
+     * @param index The tile index.
+     */
+    private void touch(int index) {
+        if (isTouched[index]) return;
+        isTouched[index] = true;
+        if (touchedSize == touched.length) {
+            touched = Arrays.copyOf(touched, Math.min(size, 2 * touchedSize));
+        }
+        touched[touchedSize++] = index;
+    }
+
+    /**
+     * Place an index into the heap, moving it towards the root.
+     *
+     * @param k The heap position to start at.
+     * @param index The tile index to place.
+     */
+    private void siftUp(int k, int index) {
+        final int fx = f[index];
+        while (k > 0) {
+            final int parent = (k - 1) >>> 1;
+            final int e = heap[parent];
+            if (fx >= f[e]) break;
+            heap[k] = e;
+            heapPos[e] = k;
+            k = parent;
+        }
+        heap[k] = index;
+        heapPos[index] = k;
+    }
+
+    /**
+     * Place an index into the heap, moving it towards the leaves.
+     *
+     * @param k The heap position to start at.
+     * @param index The tile index to place.
+     */
+    private void siftDown(int k, int index) {
+        final int fx = f[index];
+        final int half = heapSize >>> 1;
+        while (k < half) {
+            int child = (k << 1) + 1;
+            int c = heap[child];
+            final int right = child + 1;
+            if (right < heapSize && f[c] > f[heap[right]]) {
+                c = heap[child = right];
+            }
+            if (fx <= f[c]) break;
+            heap[k] = c;
+            heapPos[c] = k;
+            k = child;
+        }
+        heap[k] = index;
+        heapPos[index] = k;
+    }
+}
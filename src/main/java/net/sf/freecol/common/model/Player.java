@@ -275,13 +275,28 @@ public class Player extends FreeColGameObject implements Nameable {
     /** The settlements this player owns. */
     protected final List<Settlement> settlements = new ArrayList<>();
 
-    /** The tiles the player can see. */
-    private boolean[][] canSeeTiles = null;
-    /** Are the canSeeTiles valid or do they need to be recalculated? */
-    private boolean canSeeValid = false;
-    /** Do not access canSeeTiles without taking canSeeLock. */
+    /**
+     * The tiles the player can see, or null if they need to be
+     * recalculated.  Replaced whole, so readers need no lock.
+     */
+    private volatile CanSeeTiles canSeeTiles = null;
+    /**
+     * The number of observers of each tile by tile index, and the
+     * tile disc each observer contributed, from which the visible
+     * tiles are updated incrementally.  Do not access these, or
+     * replace canSeeTiles, without taking canSeeLock.
+     */
+    private int[] canSeeCounts = null;
+    private final java.util.Map<FreeColGameObject, Long> canSeeObservers
+        = new HashMap<>();
     private final Object canSeeLock = new Object();
 
+    /**
+     * How this player last saw each tile, server-side for European
+     * players only, created when first needed.
+     */
+    private TileSnapshots tileSnapshots = null;
+
     /** A container for the abilities and modifiers of this type. */
     protected final FeatureContainer featureContainer = new FeatureContainer();
 
@@ -2726,6 +2741,20 @@ public class Player extends FreeColGameObject implements Nameable {
         return tile.isExplored();
     }
 
+    /**
+     * Get the record of how this player last saw each tile.
+     *
+     * @return The {@code TileSnapshots}, or null if this player does
+     *     not keep one (is not European, or is in a client).
+     */
+    synchronized TileSnapshots getTileSnapshots() {
+        if (this.tileSnapshots == null && isEuropean()
+            && getGame().isInServer()) {
+            this.tileSnapshots = new TileSnapshots();
+        }
+        return this.tileSnapshots;
+    }
+
     /**
      * Forces an update of the {@code canSeeTiles}.
      *
@@ -2769,7 +2798,7 @@ public class Player extends FreeColGameObject implements Nameable {
      */
     public void invalidateCanSeeTiles() {
         synchronized (canSeeLock) {
-            canSeeValid = false;
+            canSeeTiles = null;
         }
     }
 
@@ -2786,14 +2815,9 @@ public class Player extends FreeColGameObject implements Nameable {
         final Map map = getGame().getMap();
         if (map == null) return false;
 
-        synchronized (canSeeLock) {
-            if (!canSeeValid) {
-                // Build new visibility and mark as valid
-                canSeeTiles = makeCanSeeTiles(map);
-                canSeeValid = true;
-            }
-            return canSeeTiles[tile.getX()][tile.getY()];
-        }
+        CanSeeTiles cst = canSeeTiles;
+        if (cst == null || !cst.fits(map)) cst = updateCanSeeTiles(map);
+        return cst.get(tile.getX(), tile.getY());
     }
 
     /**
@@ -2835,28 +2859,167 @@ public class Player extends FreeColGameObject implements Nameable {
         return tiles;
     }
 
+    /** The packed visibility of the tiles of a map. */
+    private static final class CanSeeTiles {
+
+        /** The map dimensions. */
+        private final int width, height;
+
+        /** The visibility bits, by tile index. */
+        private final long[] bits;
+
+
+        /**
+         * Create a new visibility bitmap.
+         *
+         * @param width The map width.
+         * @param height The map height.
+         */
+        public CanSeeTiles(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.bits = new long[(width * height + 63) >>> 6];
+        }
+
+        /**
+         * Is this bitmap for a map of the given size?
+         *
+         * @param map The {@code Map} to check.
+         * @return True if the map dimensions match.
+         */
+        public boolean fits(Map map) {
+            return map.getWidth() == width && map.getHeight() == height;
+        }
+
+        /**
+         * Mark a tile visible.
+         *
+         * @param index The tile index.
+         */
+        public void set(int index) {
+            bits[index >>> 6] |= 1L << index;
+        }
+
+        /**
+         * Is a tile visible?
+         *
+         * @param x The tile x coordinate.
+         * @param y The tile y coordinate.
+         * @return True if the tile is visible.
+         */
+        public boolean get(int x, int y) {
+            if (x < 0 || x >= width || y < 0 || y >= height) return false;
+            final int index = y * width + x;
+            return (bits[index >>> 6] & (1L << index)) != 0;
+        }
+    }
+
     /**
-     * Builds a canSeeTiles array.
+     * Bring the canSeeTiles up to date.
+     *
+     * Under fog of war, the tiles in the line of sight of each unit,
+     * settlement and mission that lets the player see are counted.
+     * Only observers that have appeared, moved, changed their line of
+     * sight or gone since the last update are recounted.
      *
      * @param map The {@code Map} to use.
-     * @return A new visibility array.
+     * @return The new {@code CanSeeTiles}.
      */
-    private boolean[][] makeCanSeeTiles(Map map) {
-        final Specification spec = getSpecification();
-        boolean[][] cST = new boolean[map.getWidth()][map.getHeight()];
-        Set<Tile> visible = getVisibleTileSet();
-        if (spec.getBoolean(GameOptions.FOG_OF_WAR)) {
-            for (Tile t : getVisibleTileSet()) {
-                cST[t.getX()][t.getY()] = true;
-                // Set the PET for visible tiles to the tile itself.
-                t.seeTile(this);
+    private CanSeeTiles updateCanSeeTiles(Map map) {
+        synchronized (canSeeLock) {
+            CanSeeTiles cst = canSeeTiles;
+            if (cst != null && cst.fits(map)) return cst; // Raced
+
+            final int width = map.getWidth(), height = map.getHeight();
+            cst = new CanSeeTiles(width, height);
+            if (!getSpecification().getBoolean(GameOptions.FOG_OF_WAR)) {
+                // Without fog it is just the explored tiles
+                canSeeCounts = null;
+                canSeeObservers.clear();
+                for (Tile t : map.getAllTilesSet()) {
+                    if (hasExplored(t)) cst.set(t.getY() * width + t.getX());
+                }
+                canSeeTiles = cst;
+                return cst;
             }
-        } else {
-            for (Tile t : getVisibleTileSet()) {
-                cST[t.getX()][t.getY()] = true;
+
+            if (canSeeCounts == null || canSeeCounts.length != width * height) {
+                canSeeCounts = new int[width * height];
+                canSeeObservers.clear();
+            }
+            final java.util.Map<FreeColGameObject, Long> old
+                = new HashMap<>(canSeeObservers);
+            canSeeObservers.clear();
+            List<? extends Settlement> settlements
+                = (hasAbility(Ability.SEE_ALL_COLONIES))
+                ? getGame().getAllColoniesList(null)
+                : getSettlementList();
+            for (Settlement s : settlements) {
+                observe(map, s, s.getTile(), s.getLineOfSight(), old);
+            }
+            for (Unit u : getUnitList()) {
+                if (u.getLocation() instanceof Tile) {
+                    observe(map, u, u.getTile(), u.getLineOfSight(), old);
+                }
+            }
+            if (isEuropean()
+                && getSpecification().getBoolean(GameOptions.ENHANCED_MISSIONARIES)) {
+                for (IndianSettlement is : getIndianSettlementsWithMissionaryList(this)) {
+                    observe(map, is, is.getTile(), is.getLineOfSight(), old);
+                }
+            }
+            for (Long disc : old.values()) countDisc(map, disc, -1);
+
+            for (int i = 0; i < canSeeCounts.length; i++) {
+                if (canSeeCounts[i] <= 0) continue;
+                cst.set(i);
+                // Set the PET for visible tiles to the tile itself.
+                map.getTile(i % width, i / width).seeTile(this);
             }
+            canSeeTiles = cst;
+            return cst;
+        }
+    }
+
+    /**
+     * Record an observer of tiles, updating the counts if it has
+     * changed since the last update.
+     *
+     * @param map The {@code Map} to use.
+     * @param observer The observing {@code FreeColGameObject}.
+     * @param tile The {@code Tile} the observer is on.
+     * @param lineOfSight The observer line of sight.
+     * @param old The observer discs from the last update, from which
+     *     this observer is removed.
+     */
+    private void observe(Map map, FreeColGameObject observer, Tile tile,
+                         int lineOfSight,
+                         java.util.Map<FreeColGameObject, Long> old) {
+        if (tile == null) return;
+        final long disc = ((long)(tile.getY() * map.getWidth() + tile.getX())
+            << 32) | (lineOfSight & 0xFFFFFFFFL);
+        if (canSeeObservers.putIfAbsent(observer, disc) != null) return;
+        final Long was = old.remove(observer);
+        if (was != null && was == disc) return;
+        if (was != null) countDisc(map, was, -1);
+        countDisc(map, disc, 1);
+    }
+
+    /**
+     * Add to the observer counts of the tiles in a disc.
+     *
+     * @param map The {@code Map} to use.
+     * @param disc The disc, packed as tile index and line of sight.
+     * @param delta The amount to add.
+     */
+    private void countDisc(Map map, long disc, int delta) {
+        final int width = map.getWidth();
+        final int index = (int)(disc >>> 32);
+        final Tile tile = map.getTile(index % width, index / width);
+        if (tile == null) return;
+        for (Tile t : tile.getSurroundingTiles(0, (int)disc)) {
+            canSeeCounts[t.getY() * width + t.getX()] += delta;
         }
-        return cST;
     }
 
 
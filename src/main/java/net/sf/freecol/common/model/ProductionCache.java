@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -38,9 +39,60 @@ import static net.sf.freecol.common.util.CollectionUtils.*;
  * buildings, as well as the consumption of all units, buildings and
  * build queues.
  *
+ * Updates are incremental where possible.  The production of colony
+ * tiles and buildings is retained between updates, and only recomputed
+ * when the work location has been explicitly invalidated, or (for
+ * buildings) when the goods available to it have changed, which is how
+ * changes propagate to the goods types downstream.  Units and build
+ * queues are cheap, and are always recomputed.  A full invalidation
+ * discards everything.
+ *
+ * The number of full and partial updates, and of work locations
+ * recomputed and reused, are counted for the current turn.
  */
 public class ProductionCache {
 
+    /** The retained production of a work location. */
+    private static final class Entry {
+
+        /** The production info. */
+        public final ProductionInfo info;
+
+        /** The input goods available when calculated, or null. */
+        public final List<AbstractGoods> inputs;
+
+        /** The output goods available when calculated, or null. */
+        public final List<AbstractGoods> outputs;
+
+
+        /**
+         * Create a new entry.
+         *
+         * @param info The {@code ProductionInfo} calculated.
+         * @param inputs The input goods available.
+         * @param outputs The output goods available.
+         */
+        public Entry(ProductionInfo info, List<AbstractGoods> inputs,
+                     List<AbstractGoods> outputs) {
+            this.info = info;
+            this.inputs = inputs;
+            this.outputs = outputs;
+        }
+
+        /**
+         * Was this entry calculated with the given goods available?
+         *
+         * @param inputs The input goods available.
+         * @param outputs The output goods available.
+         * @return True if the inputs and outputs are unchanged.
+         */
+        public boolean matches(List<AbstractGoods> inputs,
+                               List<AbstractGoods> outputs) {
+            return Objects.equals(this.inputs, inputs)
+                && Objects.equals(this.outputs, outputs);
+        }
+    }
+
     /**
      * The colony whose production is being cached. The goods stored
      * in the colony may need to be considered in order to prevent
@@ -59,6 +111,12 @@ public class ProductionCache {
     /** A set of the goods used by the colony. */
     private final Set<GoodsType> goodsUsed = new HashSet<>();
 
+    /** The retained work location production. */
+    private Map<WorkLocation, Entry> entries = new HashMap<>();
+
+    /** Work locations whose retained production is invalid. */
+    private final Set<WorkLocation> dirty = new HashSet<>();
+
     /**
      * Flag to indicate whether the cache is up to date, or not and
      * needs {@link #update} to be called.
@@ -66,6 +124,24 @@ public class ProductionCache {
      */
     private boolean upToDate = false;
 
+    /** Flag to indicate that the retained production is all invalid. */
+    private boolean fullUpdate = true;
+
+    /** The turn number the counters belong to. */
+    private int turn = -1;
+
+    /** The number of full updates this turn. */
+    private int fullUpdates = 0;
+
+    /** The number of partial updates this turn. */
+    private int partialUpdates = 0;
+
+    /** The number of work location recalculations this turn. */
+    private int recomputed = 0;
+
+    /** The number of work locations reused this turn. */
+    private int reused = 0;
+
 
     /**
      * Creates a new {@code ProductionCache} instance.
@@ -85,10 +161,52 @@ public class ProductionCache {
      */
     private synchronized void update() {
         if (upToDate) return; // nothing to do
+        checkTurn();
+        if (fullUpdate) {
+            entries.clear();
+            fullUpdates++;
+        } else {
+            partialUpdates++;
+        }
         reallyUpdate();
+        dirty.clear();
+        fullUpdate = false;
         upToDate = true;
     }
 
+    /**
+     * Reset the counters if the turn has changed.  Production may
+     * depend on the turn, so the retained production is discarded too.
+     */
+    private void checkTurn() {
+        final Turn t = colony.getGame().getTurn();
+        final int number = (t == null) ? -1 : t.getNumber();
+        if (number != this.turn) {
+            this.turn = number;
+            fullUpdates = partialUpdates = recomputed = reused = 0;
+            fullUpdate = true;
+        }
+    }
+
+    /**
+     * Get retained production for a work location.
+     *
+     * @param wl The {@code WorkLocation} to look up.
+     * @param inputs The input goods available.
+     * @param outputs The output goods available.
+     * @return The retained {@code ProductionInfo}, or null if it
+     *     needs to be recalculated.
+     */
+    private ProductionInfo getRetained(WorkLocation wl,
+                                       List<AbstractGoods> inputs,
+                                       List<AbstractGoods> outputs) {
+        if (dirty.contains(wl)) return null;
+        final Entry entry = entries.get(wl);
+        if (entry == null || !entry.matches(inputs, outputs)) return null;
+        reused++;
+        return entry.info;
+    }
+
     /**
      * Really update everything.
      *
@@ -108,6 +226,7 @@ public class ProductionCache {
     private void reallyUpdate() {
         final Specification spec = colony.getSpecification();
         final GoodsType bells = spec.getGoodsType("model.goods.bells");
+        final Map<WorkLocation, Entry> retained = new HashMap<>();
 
         productionAndConsumption.clear();
         netProduction.clear();
@@ -115,7 +234,12 @@ public class ProductionCache {
         ProductionMap production = new ProductionMap();
 
         for (ColonyTile colonyTile : colony.getColonyTiles()) {
-            ProductionInfo info = colonyTile.getBasicProductionInfo();
+            ProductionInfo info = getRetained(colonyTile, null, null);
+            if (info == null) {
+                info = colonyTile.getBasicProductionInfo();
+                recomputed++;
+            }
+            retained.put(colonyTile, new Entry(info, null, null));
             production.add(info.getProduction());
             productionAndConsumption.put(colonyTile, info);
             for (AbstractGoods goods : info.getProduction()) {
@@ -135,11 +259,10 @@ public class ProductionCache {
         productionAndConsumption.put(this, bellsInfo);
         netProduction.incrementCount(bells, amount);
 
-        List<AbstractGoods> goods = new ArrayList<>();
         for (Consumer consumer : colony.getConsumers()) {
             List<Modifier> modifiers = toList(consumer
                 .getModifiers(Modifier.CONSUME_ONLY_SURPLUS_PRODUCTION));
-            goods.clear();
+            List<AbstractGoods> goods = new ArrayList<>();
             for (AbstractGoods g : consumer.getConsumedGoods()) {
                 goodsUsed.add(g.getType());
                 AbstractGoods surplus
@@ -168,7 +291,12 @@ public class ProductionCache {
                                                         alwaysTrue(), mapper);
                 goodsUsed.addAll(transform(outputs, alwaysTrue(),
                                            AbstractGoods::getType));
-                info = building.getAdjustedProductionInfo(goods, outputs);
+                info = getRetained(building, goods, outputs);
+                if (info == null) {
+                    info = building.getAdjustedProductionInfo(goods, outputs);
+                    recomputed++;
+                }
+                retained.put(building, new Entry(info, goods, outputs));
             } else if (consumer instanceof Unit) {
                 info = ((Unit)consumer).getProductionInfo(goods);
             } else if (consumer instanceof BuildQueue) {
@@ -188,6 +316,7 @@ public class ProductionCache {
                 productionAndConsumption.put(consumer, info);
             }
         }
+        entries = retained;
     }
 
 
@@ -211,6 +340,7 @@ public class ProductionCache {
      */
     public synchronized void invalidate() {
         upToDate = false;
+        fullUpdate = true;
     }
 
     /**
@@ -218,14 +348,72 @@ public class ProductionCache {
      * given GoodsType. This method needs to be called whenever goods
      * are added to or removed from the colony.
      *
+     * Only the consumers are reconsidered, and only those whose
+     * available goods actually changed are recalculated.
+     *
      * @param goodsType a {@code GoodsType} value
      */
     public synchronized void invalidate(GoodsType goodsType) {
-        if (goodsUsed.contains(goodsType)) {
+        if (goodsUsed.contains(goodsType)
+            || goodsUsed.contains(goodsType.getStoredAs())) {
             upToDate = false;
         }
     }
 
+    /**
+     * Invalidates the production of a single work location.  This
+     * method needs to be called whenever the units, production type
+     * or tile of the work location change.
+     *
+     * @param workLocation The {@code WorkLocation} that changed.
+     */
+    public synchronized void invalidate(WorkLocation workLocation) {
+        dirty.add(workLocation);
+        upToDate = false;
+    }
+
+    /**
+     * Get the number of full updates this turn.
+     *
+     * @return The full update count.
+     */
+    public synchronized int getFullUpdates() {
+        checkTurn();
+        return fullUpdates;
+    }
+
+    /**
+     * Get the number of partial updates this turn.
+     *
+     * @return The partial update count.
+     */
+    public synchronized int getPartialUpdates() {
+        checkTurn();
+        return partialUpdates;
+    }
+
+    /**
+     * Get the number of work location production recalculations
+     * this turn.
+     *
+     * @return The recalculation count.
+     */
+    public synchronized int getRecomputed() {
+        checkTurn();
+        return recomputed;
+    }
+
+    /**
+     * Get the number of times retained work location production was
+     * reused this turn.
+     *
+     * @return The reuse count.
+     */
+    public synchronized int getReused() {
+        checkTurn();
+        return reused;
+    }
+
     /**
      * Does this production cache contain production of a goods type?
      *
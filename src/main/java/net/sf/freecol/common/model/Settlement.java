@@ -341,8 +341,7 @@ public abstract class Settlement extends GoodsLocation
      * @return True if the settlement is connected to the high seas.
      */
     public boolean isConnectedPort() {
-        return any(getTile().getSurroundingTiles(1, 1),
-                   t -> !t.isLand() && t.isHighSeasConnected());
+        return getTile().isHighSeasCoast();
     }
 
     /**
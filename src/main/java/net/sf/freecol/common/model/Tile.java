@@ -21,12 +21,12 @@ package net.sf.freecol.common.model;
 
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.ToIntFunction;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import javax.xml.stream.XMLStreamException;
@@ -50,6 +50,12 @@ public final class Tile extends UnitLocation implements Named, Ownable {
 
     private static final Logger logger = Logger.getLogger(Tile.class.getName());
 
+    /** Bits of the cached neighbour flags. */
+    private static final int NEIGHBOURS_VALID = 1,
+        NEIGHBOURS_SHORE = 2,
+        NEIGHBOURS_LAND_LOCKED = 4,
+        NEIGHBOURS_HIGH_SEAS_COAST = 8;
+
     public static final String TAG = "tile";
 
     /** Comparator to sort tiles by increasing distance from the edge. */
@@ -196,9 +202,6 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     private int contiguity = -1;
 
-    /** A map of cached tiles for each European player, null in clients. */
-    private final java.util.Map<Player, Tile> cachedTiles;
-
     // Do not serialize below
 
     /**
@@ -207,6 +210,14 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     private final java.util.Map<Player, IndianSettlementInternals> playerIndianSettlements;
 
+    /**
+     * Facts about this tile and its neighbours, found when first
+     * needed and discarded when this tile or a neighbour changes
+     * between land and water, or the high seas connection of a
+     * neighbour changes.  See the NEIGHBOURS_* bits.
+     */
+    private volatile int neighbourFlags = 0;
+
 
     /**
      * The main tile constructor.
@@ -225,13 +236,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         this.owningSettlement = null;
         this.settlement = null;
 
-        if (game.isInServer()) {
-            this.cachedTiles = new HashMap<>();
-            this.playerIndianSettlements = new HashMap<>();
-        } else {
-            this.cachedTiles = null;
-            this.playerIndianSettlements = null;
-        }
+        this.playerIndianSettlements = (game.isInServer()) ? new HashMap<>()
+            : null;
     }
 
     /**
@@ -245,13 +251,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     public Tile(Game game, String id) {
         super(game, id);
 
-        if (game.isInServer()) {
-            this.cachedTiles = new HashMap<>();
-            this.playerIndianSettlements = new HashMap<>();
-        } else {
-            this.cachedTiles = null;
-            this.playerIndianSettlements = null;
-        }
+        this.playerIndianSettlements = (game.isInServer()) ? new HashMap<>()
+            : null;
     }
 
 
@@ -276,7 +277,14 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @param t The new {@code TileType} for this {@code Tile}.
      */
     public void setType(TileType t) {
+        final boolean land = isLand(), explored = isExplored();
         type = t;
+        if (land != isLand() || explored != isExplored()) {
+            invalidateSurroundings();
+        }
+        invalidateMoveCosts();
+        invalidatePaths();
+        invalidateConnectivity();
     }
 
     /**
@@ -333,6 +341,101 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         return getGame().getMap();
     }
 
+    /**
+     * Invalidate the cached paths on the enclosing map following a
+     * change to this tile that may affect movement.
+     */
+    private void invalidatePaths() {
+        final Game game = getGame();
+        final Map map = (game == null) ? null : game.getMap();
+        if (map != null) map.invalidatePaths();
+    }
+
+    /**
+     * Invalidate the costs of moving onto this tile on the enclosing
+     * map following a change to its type or items.
+     */
+    void invalidateMoveCosts() {
+        final Game game = getGame();
+        final Map map = (game == null) ? null : game.getMap();
+        if (map != null) map.invalidateMoveCosts(this);
+    }
+
+    /**
+     * Discard the cached neighbour flags of this tile.
+     */
+    void invalidateNeighbourFlags() {
+        this.neighbourFlags = 0;
+    }
+
+    /**
+     * Discard the cached neighbour flags of this tile and its
+     * neighbours following a change to this tile.
+     */
+    private void invalidateSurroundings() {
+        invalidateNeighbourFlags();
+        final Game game = getGame();
+        final Map map = (game == null) ? null : game.getMap();
+        if (map != null) {
+            map.forEachNeighbour(this, 1, Tile::invalidateNeighbourFlags);
+        }
+    }
+
+    /**
+     * Get the cached neighbour flags, finding them if necessary.
+     *
+     * @return The neighbour flags.
+     */
+    private int getNeighbourFlags() {
+        int flags = this.neighbourFlags;
+        if ((flags & NEIGHBOURS_VALID) == 0) {
+            final boolean land = isLand();
+            flags = NEIGHBOURS_VALID | ((land) ? NEIGHBOURS_LAND_LOCKED : 0);
+            final Map map = getMap();
+            final Neighbours nb = map.getNeighbours();
+            if (nb.covers(x, y, 1)) {
+                final int end = nb.getEnd(x, y, 1);
+                for (int e = nb.getStart(x, y); e < end; e++) {
+                    final Tile t = map.getTile(nb.getX(e), nb.getY(e));
+                    if (t == null) continue;
+                    final boolean tLand = t.isLand();
+                    if (tLand != land) flags |= NEIGHBOURS_SHORE;
+                    if (!tLand) {
+                        flags &= ~NEIGHBOURS_LAND_LOCKED;
+                        if (t.isHighSeasConnected()) {
+                            flags |= NEIGHBOURS_HIGH_SEAS_COAST;
+                        }
+                    }
+                }
+            }
+            this.neighbourFlags = flags;
+        }
+        return flags;
+    }
+
+    /**
+     * Discard the connectivity fields of the enclosing map following a
+     * change to the terrain, region, settlement or high seas status of
+     * this tile.
+     */
+    private void invalidateConnectivity() {
+        final Game game = getGame();
+        final Map map = (game == null) ? null : game.getMap();
+        if (map != null) map.invalidateConnectivity();
+    }
+
+    /**
+     * Tell the path cache on the enclosing map that a unit has arrived
+     * at or left this tile.
+     *
+     * @param unit The {@code Unit} that moved.
+     */
+    private void unitMoved(Unit unit) {
+        final Game game = getGame();
+        final Map map = (game == null) ? null : game.getMap();
+        if (map != null) map.getPathCache().unitMoved(unit.getOwner());
+    }
+
     /**
      * Gets the settlement on this tile.
      *
@@ -358,6 +461,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setSettlement(Settlement settlement) {
         this.settlement = settlement;
+        invalidatePaths();
+        invalidateConnectivity();
     }
 
     /**
@@ -407,6 +512,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setTileItemContainer(TileItemContainer newTileItemContainer) {
         tileItemContainer = newTileItemContainer;
+        invalidateMoveCosts();
     }
 
     /**
@@ -437,6 +543,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setRegion(final Region newRegion) {
         this.region = newRegion;
+        invalidateConnectivity();
     }
 
     /**
@@ -472,6 +579,9 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @param count The new high seas count value.
      */
     public void setHighSeasCount(final int count) {
+        if ((count >= 0) != (this.highSeasCount >= 0)) {
+            invalidateSurroundings();
+        }
         this.highSeasCount = count;
     }
 
@@ -501,6 +611,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     public void setMoveToEurope(Boolean moveToEurope) {
         this.moveToEurope = moveToEurope;
+        invalidateConnectivity();
     }
 
     /**
@@ -604,9 +715,11 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @return A set of {@code Tile}s with the required contiguity.
      */
     public Set<Tile> getContiguityAdjacent(final int contiguity) {
-        return transform(getSurroundingTiles(1, 1),
-                         matchKey(contiguity, Tile::getContiguity),
-                         Function.identity(), Collectors.toSet());
+        final Set<Tile> ret = new HashSet<>();
+        forEachSurroundingTile(1, t -> {
+                if (t.getContiguity() == contiguity) ret.add(t);
+            });
+        return ret;
     }
 
     /**
@@ -619,12 +732,10 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             = getSpecification().getTileType("model.tile.greatRiver");
         final TileType ocean
             = getSpecification().getTileType("model.tile.ocean");
-        boolean ret = Objects.equals(getType(), greatRiver);
-        for (Tile t : getSurroundingTiles(1)) {
-            if (Objects.equals(t.getType(), ocean)) return false;
-            ret |= Objects.equals(t.getType(), greatRiver);
-        }
-        return ret;
+        return !anySurroundingTile(1, t -> Objects.equals(t.getType(), ocean))
+            && (Objects.equals(getType(), greatRiver)
+                || anySurroundingTile(1,
+                    t -> Objects.equals(t.getType(), greatRiver)));
     }
 
     /**
@@ -810,6 +921,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             tileItemContainer = new TileItemContainer(getGame(), this);
         }
         TileItem added = tileItemContainer.tryAddTileItem(item);
+        if (added != null) invalidatePaths();
         return added != null;
     }
 
@@ -824,7 +936,9 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      */
     private <T extends TileItem> T removeTileItem(T item) {
         if (item == null || tileItemContainer == null) return null;
-        return tileItemContainer.removeTileItem(item);
+        T removed = tileItemContainer.removeTileItem(item);
+        if (removed != null) invalidatePaths();
+        return removed;
     }
 
     /**
@@ -1183,7 +1297,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      *     {@code Tile}.
      */
     public boolean isAdjacent(Tile tile) {
-        return (tile != null) && any(getSurroundingTiles(1, 1), matchKey(tile));
+        return (tile != null) && getMap().isAdjacent(this, tile);
     }
 
     /**
@@ -1201,7 +1315,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @return True if land locked.
      */
     public boolean isLandLocked() {
-        return (isLand()) && all(getSurroundingTiles(1, 1), Tile::isLand);
+        return (getNeighbourFlags() & NEIGHBOURS_LAND_LOCKED) != 0;
     }
 
     /**
@@ -1214,7 +1328,17 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @return True if this {@code Tile} is on the shore.
      */
     public boolean isShore() {
-        return any(getSurroundingTiles(1, 1), t -> t.isLand() != this.isLand());
+        return (getNeighbourFlags() & NEIGHBOURS_SHORE) != 0;
+    }
+
+    /**
+     * Is this tile adjacent to water that is connected to the high seas?
+     *
+     * @return True if a neighbouring {@code Tile} is high seas
+     *     connected water.
+     */
+    public boolean isHighSeasCoast() {
+        return (getNeighbourFlags() & NEIGHBOURS_HIGH_SEAS_COAST) != 0;
     }
 
 
@@ -1248,21 +1372,67 @@ public final class Tile extends UnitLocation implements Named, Ownable {
 
         if (rangeMin == 0) result.add(this);
 
-        if (rangeMax > 0) {
-            for (Tile t : getSurroundingTiles(rangeMax)) {
-                // add all tiles up to rangeMax
-                result.add(t);
-            }
-        }
-        if (rangeMin > 1) {
-            for (Tile t : getSurroundingTiles(rangeMin - 1)) {
-                // remove the tiles closer than rangeMin
-                result.remove(t);
-            }
+        // Add each ring from rangeMin out to rangeMax
+        final Map map = getMap();
+        for (int r = Math.max(1, rangeMin); r <= rangeMax; r++) {
+            for (Tile t : map.getCircleTiles(this, false, r)) result.add(t);
         }
         return result;
     }
 
+    /**
+     * Perform an action on each tile surrounding this tile within
+     * the given range, without building a list.  The center tile is
+     * not included.
+     *
+     * @param range How far away do we need to go starting from this.
+     * @param action The {@code Consumer} to apply to each {@code Tile}.
+     */
+    public void forEachSurroundingTile(int range,
+                                       Consumer<? super Tile> action) {
+        getMap().forEachNeighbour(this, range, action);
+    }
+
+    /**
+     * Does any tile surrounding this tile within the given range
+     * match a predicate?  The center tile is not included.
+     *
+     * @param range How far away do we need to go starting from this.
+     * @param pred The {@code Predicate} to match.
+     * @return True if a surrounding {@code Tile} matches.
+     */
+    public boolean anySurroundingTile(int range,
+                                      Predicate<? super Tile> pred) {
+        return getMap().findNeighbour(this, range, pred) != null;
+    }
+
+    /**
+     * Do all the tiles surrounding this tile within the given range
+     * match a predicate?  The center tile is not included.
+     *
+     * @param range How far away do we need to go starting from this.
+     * @param pred The {@code Predicate} to match.
+     * @return True if all the surrounding {@code Tile}s match.
+     */
+    public boolean allSurroundingTiles(int range,
+                                       Predicate<? super Tile> pred) {
+        return getMap().findNeighbour(this, range, t -> !pred.test(t))
+            == null;
+    }
+
+    /**
+     * Count the tiles surrounding this tile within the given range
+     * that match a predicate.  The center tile is not included.
+     *
+     * @param range How far away do we need to go starting from this.
+     * @param pred The {@code Predicate} to match.
+     * @return The number of matching surrounding {@code Tile}s.
+     */
+    public int countSurroundingTiles(int range,
+                                     Predicate<? super Tile> pred) {
+        return getMap().countNeighbours(this, range, pred);
+    }
+
     /**
      * Determine whether this tile has adjacent tiles that are unexplored.
      *
@@ -1270,7 +1440,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      *     unexplored.
      */
     public boolean hasUnexploredAdjacent() {
-        return !all(getSurroundingTiles(1, 1), Tile::isExplored);
+        return !allSurroundingTiles(1, Tile::isExplored);
     }
 
     /**
@@ -1280,8 +1450,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @return The number of adjacent available tiles.
      */
     public int getAvailableAdjacentCount() {
-        return count(getSurroundingTiles(1, 1),
-                     matchKey(isLand(), Tile::isLand));
+        final boolean land = isLand();
+        return countSurroundingTiles(1, t -> t.isLand() == land);
     }
 
     /**
@@ -1459,6 +1629,10 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         if (!isLand()) settlement = null;
 
         updateColonyTiles();
+        if (getOwningSettlement() instanceof Colony) {
+            final Colony colony = (Colony)getOwningSettlement();
+            colony.invalidateCache(colony.getColonyTile(this));
+        }
     }
 
     /**
@@ -1804,49 +1978,29 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         if (wl != null) wl.updateProductionType();
     }
 
-    /**
-     * Get the cached tile map.
-     *
-     * @return The map of cached tiles.
-     */
-    private java.util.Map<Player, Tile> getCachedTiles() {
-        return this.cachedTiles;
-    }
-
-    /**
-     * Get the cached tile map.
-     *
-     * @param cachedTiles The new map of cached {@code Tile}s.
-     */
-    private void setCachedTiles(java.util.Map<Player, Tile> cachedTiles) {
-        if (this.cachedTiles != null) {
-            this.cachedTiles.clear();
-            if (cachedTiles != null) this.cachedTiles.putAll(cachedTiles);
-        }
-    }
-
     /**
      * Get a players view of this tile.
      *
      * @param player The {@code Player} who owns the view.
-     * @return The view of this {@code Tile}.
+     * @return The view of this {@code Tile}, or null in clients or
+     *     if the player has not explored it.
      */
     private Tile getCachedTile(Player player) {
-        return (cachedTiles == null) ? null
-            : (player.isEuropean()) ? cachedTiles.get(player)
-            : this;
+        if (!getGame().isInServer()) return null;
+        final TileSnapshots ts = player.getTileSnapshots();
+        return (ts == null) ? this : ts.get(this);
     }
 
     /**
-     * Set a players view of this tile.
+     * Set a players view of this tile to a snapshot of it.
      *
      * @param player The {@code Player} who owns the view.
-     * @param tile The view of the {@code Tile} (either this
-     *     tile, or an uninterned copy of it).
+     * @param tile The snapshot, an uninterned copy of this tile made
+     *     with {@link #getTileToCache}.
      */
     public void setCachedTile(Player player, Tile tile) {
-        if (cachedTiles == null || !player.isEuropean()) return;
-        cachedTiles.put(player, tile);
+        final TileSnapshots ts = player.getTileSnapshots();
+        if (ts != null) ts.setSnapshot(this, tile);
     }
 
     /**
@@ -1867,7 +2021,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @param player The {@code Player} who owns the view.
      */
     public void seeTile(Player player) {
-        setCachedTile(player, this);
+        final TileSnapshots ts = player.getTileSnapshots();
+        if (ts != null) ts.setLive(this);
     }
 
     /**
@@ -1923,17 +2078,22 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * needed.  Use the copied tile if supplied (which should have
      * been created previously with {@link #getTileToCache}.
      *
+     * Only players that saw the tile as it is are given the copy,
+     * which they all share, those with an older snapshot keep it.
+     *
      * @param player A {@code Player} that currently may not be able
      *     to see the tile, but will as a result of the change, and so
      *     should not cache it.
      * @param copied An optional {@code Tile} to cache.
      */
     public void cacheUnseen(Player player, Tile copied) {
-        if (cachedTiles == null) return;
+        if (!getGame().isInServer()) return;
         for (Player p : transform(getGame().getLiveEuropeanPlayers(player),
-                p -> !p.canSee(this) && Objects.equals(getCachedTile(p), this))) {
+                                  p -> !p.canSee(this))) {
+            final TileSnapshots ts = p.getTileSnapshots();
+            if (ts == null || !ts.isLive(this)) continue;
             if (copied == null) copied = getTileToCache();
-            setCachedTile(p, copied);
+            ts.setSnapshot(this, copied);
         }
     }
 
@@ -2006,7 +2166,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      *     by the given {@code Player}.
      */
     public boolean isExploredBy(Player player) {
-        return (!player.isEuropean()) || ((isExplored()) && ((cachedTiles == null) || getCachedTile(player) != null));
+        return (!player.isEuropean()) || ((isExplored())
+            && (!getGame().isInServer() || getCachedTile(player) != null));
     }
 
     /**
@@ -2016,11 +2177,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
      * @param reveal The exploration state.
      */
     public void setExplored(Player player, boolean reveal) {
-        if (cachedTiles == null || !player.isEuropean()) return;
+        final TileSnapshots ts = player.getTileSnapshots();
+        if (ts == null) return;
         if (reveal) {
-            seeTile(player);
+            if (!isExploredBy(player)) invalidatePaths();
+            ts.setLive(this);
         } else {
-            cachedTiles.remove(player);
+            ts.clear(this);
         }
     }
 
@@ -2184,6 +2347,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         } else if (locatable instanceof Unit) {
             if (super.add(locatable)) {
                 ((Unit)locatable).setState(Unit.UnitState.ACTIVE);
+                unitMoved((Unit)locatable);
                 return true;
             }
             return false;
@@ -2204,6 +2368,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             return removeTileItem((TileItem)locatable)
                 == locatable;//-til
 
+        } else if (locatable instanceof Unit) {
+            if (super.remove(locatable)) {
+                unitMoved((Unit)locatable);
+                return true;
+            }
+            return false;
+
         } else {
             return super.remove(locatable);
         }
@@ -2307,6 +2478,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
     @Override
     public void setOwner(Player owner) {
         this.owner = owner;
+        invalidatePaths();
     }
 
 
@@ -2392,13 +2564,15 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         this.owningSettlement = game.updateRef(o.getOwningSettlement());
         // Allow TIC creation, might be the first time we see the tile
         this.tileItemContainer = game.update(o.getTileItemContainer(), true);
+        invalidateMoveCosts();
         this.region = game.updateRef(o.getRegion());
         this.highSeasCount = o.getHighSeasCount();
+        invalidateSurroundings();
         this.moveToEurope = o.getMoveToEurope();
         this.style = o.getStyle();
         this.contiguity = o.getContiguity();
         // Do not need to update the cached tiles, they live server-side
-        this.setCachedTiles(o.getCachedTiles());
+        // with the players
         return true;
     }
 
@@ -2559,12 +2733,13 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         if (tileItemContainer != null) tileItemContainer.toXML(xw);
 
         // Save the cached tiles to saved games.
-        if (xw.validForSave() && cachedTiles != null) {
+        if (xw.validForSave() && getGame().isInServer()) {
             for (Player p : getGame().getLiveEuropeanPlayerList()) {
-                Tile t = getCachedTile(p);
-                if (t == null) continue;
+                final TileSnapshots ts = p.getTileSnapshots();
+                if (ts == null || ts.get(this) == null) continue;
+                Tile t = ts.getSnapshot(this);
 
-                if (Objects.equals(t, this) && getIndianSettlement() != null) {
+                if (t == null && getIndianSettlement() != null) {
                     // Always save client view of native settlements
                     // because of the hidden information.
                     t = getTileToCache();
@@ -2576,8 +2751,8 @@ public final class Tile extends UnitLocation implements Named, Ownable {
 
                 xw.writeAttribute(PLAYER_TAG, p);
 
-                xw.writeAttribute(COPIED_TAG, !Objects.equals(t, this));
-                if (!Objects.equals(t, this)) {
+                xw.writeAttribute(COPIED_TAG, t != null);
+                if (t != null) {
                     // Only write copied tiles, with limited scope.
                     FreeColXMLWriter.WriteScope ws
                         = xw.replaceScope(FreeColXMLWriter.WriteScope.toClient(p));
@@ -2610,6 +2785,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
         y = xr.getAttribute(Y_TAG, 0);
 
         type = xr.getType(spec, TYPE_TAG, TileType.class, null);
+        invalidateNeighbourFlags();
         if (type == null) { // Unexplored tile.
             style = 0;
             highSeasCount = -1;
@@ -2709,7 +2885,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
                     xr.replaceScope(rs);
                 }
             } else {
-                setCachedTile(player, this);
+                seeTile(player);
             }
 
             xr.closeTag(CACHED_TILE_TAG);
@@ -2726,7 +2902,7 @@ public final class Tile extends UnitLocation implements Named, Ownable {
             Player player = xr.findFreeColGameObject(game, PLAYER_TAG, 
                 Player.class, null, true);
             xr.swallowTag(OLD_PLAYER_EXPLORED_TILE_TAG);
-            if (player != null) setCachedTile(player, this);
+            if (player != null) seeTile(player);
         // end @compat 0.11.0
 
         } else if (TileItemContainer.TAG.equals(tag)
@@ -207,6 +207,7 @@ public class TileImprovement extends TileItem implements Named {
      */
     public void setTurnsToComplete(int turns) {
         turnsToComplete = turns;
+        invalidateMoveCosts();
     }
 
     /**
@@ -310,6 +311,16 @@ public class TileImprovement extends TileItem implements Named {
                 updated.append(old.charAt(index));
         }
         style = TileImprovementStyle.getInstance(updated.toString());
+        invalidateMoveCosts();
+    }
+
+    /**
+     * Invalidate the costs of moving onto the tile of this improvement,
+     * following a change in completion or connections.
+     */
+    private void invalidateMoveCosts() {
+        final Tile tile = getTile();
+        if (tile != null) tile.invalidateMoveCosts();
     }
 
     /**
@@ -708,6 +719,7 @@ public class TileImprovement extends TileItem implements Named {
         this.magnitude = o.getMagnitude();
         this.style = o.getStyle();
         this.virtual = o.isVirtual();
+        invalidateMoveCosts();
         return true;
     }
 
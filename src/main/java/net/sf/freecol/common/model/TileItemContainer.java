@@ -106,13 +106,14 @@ public class TileItemContainer extends FreeColGameObject {
     }
 
     /**
-     * Invalidate the production cache of the owning colony if any
-     * but only if the tile is actually being used.
+     * Invalidate the production of the tile in the cache of the
+     * owning colony if any, and the costs of moving onto the tile.
      */
     private void invalidateCache() {
-        final Colony colony = tile.getColony();
-        if (colony != null && colony.isTileInUse(tile)) {
-            colony.invalidateCache();
+        tile.invalidateMoveCosts();
+        if (tile.getOwningSettlement() instanceof Colony) {
+            final Colony colony = (Colony)tile.getOwningSettlement();
+            colony.invalidateCache(colony.getColonyTile(tile));
         }
     }
 
@@ -224,6 +225,7 @@ public class TileItemContainer extends FreeColGameObject {
         synchronized (tileItems) {
             removeInPlace(tileItems, ti -> c.isInstance(ti));
         }
+        invalidateCache();
     }
 
     /**
@@ -0,0 +1,154 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model;
+
+import java.util.Arrays;
+
+
+/**
+ * The server record of how a European player last saw each tile of
+ * the map, which is what the player is shown of tiles it can not
+ * currently see.
+ *
+ * Each position holds one of:
+ * <ul>
+ *   <li>nothing, if the player has not explored the tile,</li>
+ *   <li>a live marker, if the player sees the tile as it is,</li>
+ *   <li>or a snapshot, an uninterned copy of the tile made with
+ *       {@link Tile#getTileToCache} when the tile was about to change
+ *       out of sight of the player.</li>
+ * </ul>
+ * A snapshot is made once per change and shared by all the players
+ * who lost sight of the same state, and it is dropped as soon as the
+ * player sees the tile again.  The store is indexed by position in
+ * rows grown as needed, so it does not depend on the map being in
+ * place, as it is not while a game is being read.
+ */
+final class TileSnapshots {
+
+    /** The marker for a tile seen live. */
+    private static final Object LIVE = new Object();
+
+    /** An empty row. */
+    private static final Object[] NO_ROW = new Object[0];
+
+    /** The views by row and column. */
+    private Object[][] rows = new Object[0][];
+
+
+    /**
+     * Get the view of a tile.
+     *
+     * @param tile The {@code Tile} to look up.
+     * @return The tile itself if seen live, the snapshot, or null if
+     *     the tile is unexplored.
+     */
+    public synchronized Tile get(Tile tile) {
+        final Object o = lookup(tile.getX(), tile.getY());
+        return (o == null) ? null : (o == LIVE) ? tile : (Tile)o;
+    }
+
+    /**
+     * Is a tile seen live?
+     *
+     * @param tile The {@code Tile} to check.
+     * @return True if the tile is seen as it is.
+     */
+    public synchronized boolean isLive(Tile tile) {
+        return lookup(tile.getX(), tile.getY()) == LIVE;
+    }
+
+    /**
+     * Get the snapshot of a tile.
+     *
+     * @param tile The {@code Tile} to look up.
+     * @return The snapshot {@code Tile}, or null if the tile is
+     *     unexplored or seen live.
+     */
+    public synchronized Tile getSnapshot(Tile tile) {
+        final Object o = lookup(tile.getX(), tile.getY());
+        return (o == null || o == LIVE) ? null : (Tile)o;
+    }
+
+    /**
+     * Mark a tile as seen live.
+     *
+     * @param tile The {@code Tile} seen.
+     */
+    public synchronized void setLive(Tile tile) {
+        store(tile.getX(), tile.getY(), LIVE);
+    }
+
+    /**
+     * Set the snapshot of a tile.
+     *
+     * @param tile The {@code Tile} at the position.
+     * @param snapshot The snapshot {@code Tile}.
+     */
+    public synchronized void setSnapshot(Tile tile, Tile snapshot) {
+        store(tile.getX(), tile.getY(), snapshot);
+    }
+
+    /**
+     * Forget a tile, making it unexplored.
+     *
+     * @param tile The {@code Tile} to forget.
+     */
+    public synchronized void clear(Tile tile) {
+        final int x = tile.getX(), y = tile.getY();
+        if (lookup(x, y) != null) this.rows[y][x] = null;
+    }
+
+
+    // Internals
+
+    /**
+     * Get the entry at a position.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The entry, or null if none.
+     */
+    private Object lookup(int x, int y) {
+        return (y < 0 || y >= this.rows.length || x < 0
+            || x >= this.rows[y].length) ? null : this.rows[y][x];
+    }
+
+    /**
+     * Set the entry at a position, growing the rows as needed.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @param o The new entry.
+     */
+    private void store(int x, int y, Object o) {
+        if (x < 0 || y < 0) return;
+        if (y >= this.rows.length) {
+            final int n = this.rows.length;
+            this.rows = Arrays.copyOf(this.rows, y + 1);
+            Arrays.fill(this.rows, n, y + 1, NO_ROW);
+        }
+        if (x >= this.rows[y].length) {
+            this.rows[y] = Arrays.copyOf(this.rows[y],
+                Math.max(x + 1, 2 * this.rows[y].length));
+        }
+        this.rows[y][x] = o;
+    }
+}
@@ -505,6 +505,8 @@ public class Unit extends GoodsLocation
             getTeacher().setStudent(null);
             setTeacher(null);
         }
+        WorkLocation wl = getWorkLocation();
+        if (wl != null) wl.getColony().invalidateCache(wl);
         return true;
     }
 
@@ -1117,7 +1119,10 @@ public class Unit extends GoodsLocation
         setWorkType(type);
         if (type != null) experienceType = type;
         WorkLocation wl = getWorkLocation();
-        if (wl != null) wl.updateProductionType();
+        if (wl != null) {
+            wl.updateProductionType();
+            wl.getColony().invalidateCache(wl);
+        }
     }
 
     /**
@@ -2035,13 +2040,11 @@ public class Unit extends GoodsLocation
         // Remember to also change map.findPath(...) if you change anything
         // here.
 
-        int cost = target.getType().getBasicMoveCost();
-        if (target.isLand() && !isNaval()) {
-            TileItemContainer container = target.getTileItemContainer();
-            if (container != null) {
-                cost = container.getMoveCost(from, target, cost);
-            }
-        }
+        final Map map = getGame().getMap();
+        final MoveCosts moveCosts = (map == null) ? null : map.getMoveCosts();
+        int cost = (moveCosts == null)
+            ? MoveCosts.getBasicMoveCost(from, target, isNaval())
+            : moveCosts.getMoveCost(from, target, isNaval());
 
         if (isBeached(from)) {
             // Ship on land due to it was in a colony which was abandoned
@@ -4196,6 +4199,29 @@ public class Unit extends GoodsLocation
     @Override
     public Stream <Ability> getAbilities(String id, FreeColSpecObjectType fcgot,
                                          Turn turn) {
+        final Game game = getGame();
+        return concat((id == null || game == null)
+            ? getOwnAbilities(id, fcgot, turn)
+            : game.getFeatureCache().getAbilities(this, id, fcgot, turn,
+                () -> getOwnAbilities(id, fcgot, turn)),
+            // Location abilities may apply.
+            getLocationAbilities(id, turn));
+    }
+
+    /**
+     * Get the abilities this unit has from its type, role and owner.
+     * These do not depend on the unit location, and are cached in
+     * the {@link FeatureCache}.
+     *
+     * @param id The identifier to check.
+     * @param fcgot An optional {@code FreeColSpecObjectType} the
+     *     abilities apply to.
+     * @param turn The turn that applies.
+     * @return A stream of {@code Ability}s found.
+     */
+    private Stream<Ability> getOwnAbilities(String id,
+                                            FreeColSpecObjectType fcgot,
+                                            Turn turn) {
         final Player owner = getOwner();
         final UnitType unitType = getType();
 
@@ -4207,10 +4233,7 @@ public class Unit extends GoodsLocation
             role.getAbilities(id, fcgot, turn),
 
             // The player's abilities require more qualification.
-            owner.getAbilities(id, fcgot, turn),
-
-            // Location abilities may apply.
-            getLocationAbilities(id, turn));
+            owner.getAbilities(id, fcgot, turn));
     }
 
     /**
@@ -4247,6 +4270,26 @@ public class Unit extends GoodsLocation
     @Override
     public Stream<Modifier> getModifiers(String id, FreeColSpecObjectType fcgot,
                                          Turn turn) {
+        final Game game = getGame();
+        return (id == null || game == null)
+            ? getOwnModifiers(id, fcgot, turn)
+            : game.getFeatureCache().getModifiers(this, id, fcgot, turn,
+                () -> getOwnModifiers(id, fcgot, turn));
+    }
+
+    /**
+     * Get the modifiers this unit has from its type, owner and role.
+     * These are cached in the {@link FeatureCache}.
+     *
+     * @param id The identifier to check.
+     * @param fcgot An optional {@code FreeColSpecObjectType} the
+     *     modifiers apply to.
+     * @param turn The turn that applies.
+     * @return A stream of {@code Modifier}s found.
+     */
+    private Stream<Modifier> getOwnModifiers(String id,
+                                             FreeColSpecObjectType fcgot,
+                                             Turn turn) {
         final Player owner = getOwner();
         final UnitType unitType = getType();
 
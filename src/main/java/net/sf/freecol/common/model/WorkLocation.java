@@ -156,7 +156,7 @@ public abstract class WorkLocation extends UnitLocation
     public final void setProductionType(final ProductionType newProductionType) {
         if (!Utils.equals(newProductionType, this.productionType)) {
             this.productionType = newProductionType;
-            getColony().invalidateCache();
+            getColony().invalidateCache(this);
             logger.fine("Production type at " + this
                 + " is now: " + newProductionType);
         }
@@ -698,7 +698,7 @@ public abstract class WorkLocation extends UnitLocation
         // Choose a sensible work type, which should update production type.
         setWorkFor(unit);
 
-        getColony().invalidateCache();
+        getColony().invalidateCache(this);
         return true;
     }
 
@@ -720,7 +720,7 @@ public abstract class WorkLocation extends UnitLocation
         // Switch to unattended production if possible.
         if (isEmpty()) updateProductionType();
 
-        getColony().invalidateCache();
+        getColony().invalidateCache(this);
         return true;
     }
 
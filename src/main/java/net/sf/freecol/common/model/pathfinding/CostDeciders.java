@@ -287,6 +287,38 @@ public final class CostDeciders {
         };
     }
 
+    /**
+     * Gets a cost decider requesting hierarchical path finding, which
+     * is much faster for long distances but only fully resolves the
+     * first few turns of the path.
+     *
+     * @param costDecider The {@code CostDecider} to cost moves with,
+     *     or null for the unit default.
+     * @return A new {@code HierarchicalCostDecider}.
+     */
+    public static CostDecider hierarchical(CostDecider costDecider) {
+        return (costDecider instanceof HierarchicalCostDecider) ? costDecider
+            : new HierarchicalCostDecider(costDecider);
+    }
+
+    /**
+     * Is a cost decider fully determined by its class, so that paths
+     * found with it can be cached by cost decider class?
+     *
+     * This holds for the shared cost deciders provided here, but not
+     * for composed cost deciders which wrap arbitrary others.
+     *
+     * @param costDecider The {@code CostDecider} to check (null means
+     *     the default for the unit, which is acceptable).
+     * @return True if the cost decider is cacheable.
+     */
+    public static boolean isCacheable(CostDecider costDecider) {
+        return costDecider == null
+            || costDecider instanceof BaseCostDecider
+            || costDecider == trivialCostDecider
+            || costDecider == legalTileCountDecider;
+    }
+
     /**
      * Selects a default {@code CostDecider} for the given unit
      * depending on the owner of the unit and if the unit can attack
@@ -332,7 +332,7 @@ public final class GoalDeciders {
                 };
                 final ToDoubleFunction<Tile> tileScorer = cacheDouble(t ->
                     (t.getDefenceValue() / (1.0 + map.getDistance(target, t))
-                        + ((none(t.getSurroundingTiles(1, 1), dangerPred))
+                        + ((!t.anySurroundingTile(1, dangerPred))
                             ? NO_DANGER_BONUS : 0.0)));
                 Tile best = maximize(tile.getSurroundingTiles(1, 1), dockPred,
                                      Comparator.comparingDouble(tileScorer));
@@ -0,0 +1,107 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.model.pathfinding;
+
+import net.sf.freecol.common.model.Location;
+import net.sf.freecol.common.model.Unit;
+
+
+/**
+ * A {@code CostDecider} that requests hierarchical path finding
+ * from {@link net.sf.freecol.common.model.Map#findPath}.
+ *
+ * Moves are costed by the wrapped cost decider, but long distance
+ * paths are first routed between map clusters, and only the first
+ * few turns of the path are found with a full search.  The remainder
+ * of such a path is a sequence of waypoint tiles with estimated turn
+ * counts, which are not necessarily adjacent.  This suits callers
+ * that only follow a path for the current turn and search again on
+ * the next, as the AI missions do.
+ */
+public final class HierarchicalCostDecider implements CostDecider {
+
+    /** The wrapped cost decider, null means the unit default. */
+    private final CostDecider costDecider;
+
+    /** The cost decider that costed the last move. */
+    private CostDecider current = null;
+
+
+    /**
+     * Create a new hierarchical cost decider.
+     *
+     * @param costDecider The {@code CostDecider} to wrap.
+     */
+    HierarchicalCostDecider(CostDecider costDecider) {
+        this.costDecider = costDecider;
+    }
+
+
+    /**
+     * Get the wrapped cost decider.
+     *
+     * @return The wrapped {@code CostDecider}, or null for the unit default.
+     */
+    public CostDecider getCostDecider() {
+        return costDecider;
+    }
+
+    /**
+     * Get the cost decider that actually costs moves for a unit,
+     * which is the same default as the full search uses.
+     *
+     * @param unit The {@code Unit} to move.
+     * @return The effective {@code CostDecider}.
+     */
+    private CostDecider getEffective(Unit unit) {
+        return (costDecider != null) ? costDecider
+            : CostDeciders.defaultCostDeciderFor(unit);
+    }
+
+
+    // Implement CostDecider
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getCost(Unit unit, Location oldLocation, Location newLocation,
+                       int movesLeftBefore) {
+        current = getEffective(unit);
+        return current.getCost(unit, oldLocation, newLocation,
+                               movesLeftBefore);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getMovesLeft() {
+        return (current == null) ? 0 : current.getMovesLeft();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNewTurns() {
+        return (current == null) ? 0 : current.getNewTurns();
+    }
+}
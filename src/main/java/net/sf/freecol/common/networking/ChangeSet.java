@@ -242,6 +242,19 @@ public class ChangeSet {
             return check(serverPlayer) == SeeCheck.VISIBLE;
         }
 
+        /**
+         * Can an AI player skip this Change?
+         *
+         * AI players work directly on the server game, and ignore the
+         * messages that only update or animate objects, so there is
+         * no need to build those messages for them.
+         *
+         * @return True if an AI player ignores this {@code Change}.
+         */
+        public boolean isIgnoredByAI() {
+            return false;
+        }
+
         /**
          * Are the secondary changes consequent to this Change?
          *
@@ -351,6 +364,14 @@ public class ChangeSet {
                     && serverPlayer.canSee(defender.getTile()));
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -471,6 +492,14 @@ public class ChangeSet {
             return check(serverPlayer) == SeeCheck.VISIBLE;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -623,6 +652,14 @@ public class ChangeSet {
                 : null;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -720,14 +757,29 @@ public class ChangeSet {
             return false;
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public UpdateMessage toMessage(ServerPlayer serverPlayer) {
-            return (!isNotifiable(serverPlayer)) ? null
-                : new UpdateMessage(serverPlayer,
+            if (!isNotifiable(serverPlayer)) return null;
+            // AI players ignore updates, so do not bother with deltas
+            if (this.fcgo == null || serverPlayer.isAI()) {
+                return new UpdateMessage(serverPlayer,
                     Collections.singletonList(this.fcgo));
+            }
+            List<FreeColGameObject> objects
+                = serverPlayer.getUpdateSnapshot().update(this.fcgo);
+            return (objects.isEmpty()) ? null
+                : new UpdateMessage(serverPlayer, objects);
         }
 
 
@@ -772,11 +824,21 @@ public class ChangeSet {
         }
 
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
         @Override
         public PartialMessage toMessage(ServerPlayer serverPlayer) {
+            serverPlayer.getUpdateSnapshot()
+                .forget(this.map.get(PartialMessage.ID_TAG));
             return new PartialMessage(this.map);
         }
 
@@ -821,6 +883,14 @@ public class ChangeSet {
         }
 
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -919,6 +989,14 @@ public class ChangeSet {
                     || serverPlayer.owns(settlement));
         }
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -926,6 +1004,9 @@ public class ChangeSet {
         public RemoveMessage toMessage(ServerPlayer serverPlayer) {
             final String divertId = (tile != null) ? tile.getId()
                 : serverPlayer.getId();
+            for (FreeColGameObject fcgo : this.contents) {
+                serverPlayer.getUpdateSnapshot().forget(fcgo.getId());
+            }
             // The main object may be visible, but the contents are
             // only visible if the deeper ownership test succeeds.
             return new RemoveMessage(divertId,
@@ -1029,6 +1110,14 @@ public class ChangeSet {
         }
 
 
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean isIgnoredByAI() {
+            return true;
+        }
+
         /**
          * {@inheritDoc}
          */
@@ -1505,9 +1594,29 @@ public class ChangeSet {
         this.changes.addAll(other.changes);
     }
 
+    /**
+     * Objects sent other than by an object change may change what a
+     * player knows, so drop them from the update snapshot.
+     *
+     * @param serverPlayer The {@code ServerPlayer} to send to.
+     * @param message The {@code Message} to send.
+     */
+    private static void forget(ServerPlayer serverPlayer, Message message) {
+        if (!(message instanceof ObjectMessage)) return;
+        for (FreeColObject fco : ((ObjectMessage)message).getChildren()) {
+            if (fco instanceof FreeColGameObject) {
+                serverPlayer.getUpdateSnapshot().forget(fco.getId());
+            }
+        }
+    }
+
     /**
      * Build an update message.
      *
+     * AI players are connected in-process and share the server game,
+     * so the changes they would ignore are not built at all, which
+     * leaves most of their replies empty.
+     *
      * @param serverPlayer The {@code ServerPlayer} to send the update to.
      * @return A {@code Message} encapsulating an update of the objects to
      *     consider, or null if there is nothing to report.
@@ -1519,14 +1628,19 @@ public class ChangeSet {
         // splitting out trivial mergeable attribute changes.
         List<Message> messages = new ArrayList<>();
         List<Message> diverted = new ArrayList<>();
+        final boolean ai = serverPlayer.isAI();
         for (Change c : this.changes) {
+            if (ai && c.isIgnoredByAI()) continue;
             if (!c.isNotifiable(serverPlayer)) continue;
             Message m = c.toMessage(serverPlayer);
-            List<Message> onto = (m.canMerge()) ? diverted : messages;
-            onto.add(m);
+            if (m != null) { // Null if an object update is not needed
+                if (!(c instanceof ObjectChange)) forget(serverPlayer, m);
+                List<Message> onto = (m.canMerge()) ? diverted : messages;
+                onto.add(m);
+            }
             if ((c = c.consequence(serverPlayer)) != null) {
                 m = c.toMessage(serverPlayer);
-                onto = (m.canMerge()) ? diverted : messages;
+                List<Message> onto = (m.canMerge()) ? diverted : messages;
                 onto.add(m);
             }
         }
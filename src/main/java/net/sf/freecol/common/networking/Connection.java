@@ -19,12 +19,11 @@
 
 package net.sf.freecol.common.networking;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStream;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -32,7 +31,13 @@ import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -40,6 +45,9 @@ import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.debug.FreeColDebugger;
+import net.sf.freecol.common.debug.Metrics;
+import net.sf.freecol.common.io.BinaryXMLStreamReader;
+import net.sf.freecol.common.io.BinaryXMLStreamWriter;
 import net.sf.freecol.common.io.FreeColDirectories;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
@@ -49,6 +57,21 @@ import net.sf.freecol.common.util.Utils;
 /**
  * A network connection.
  * Responsible for both sending and receiving network messages.
+ *
+ * Messages are sent as newline terminated XML by default.  Once both
+ * ends have agreed (see {@link LoginMessage}), messages are instead
+ * sent as length-prefixed binary frames from
+ * {@link BinaryXMLStreamWriter}.  The two forms are distinguished by
+ * their first byte, so either may be received at any time.
+ *
+ * Messages are encoded by the sender, and the bytes queued to a
+ * {@link SendingThread} that writes them to the socket, so a slow
+ * socket never holds up the sender.  If the queue fills, the client
+ * has missed messages and the connection is failed.
+ *
+ * Connections accepted on a socket with a channel use the
+ * {@link NioTransport} instead of reading and writing threads of
+ * their own, see {@link #open}.
  */
 public class Connection implements Closeable {
 
@@ -77,14 +100,26 @@ public class Connection implements Closeable {
     /** A lock for the input side. */
     private final Object inputLock = new Object();
     /** The wrapped version of the input side of the socket. */
-    private BufferedReader br;
-    /** An XML stream wrapping of an input line. */
+    private BufferedInputStream bis;
+    /** An XML stream wrapping of an input line or frame. */
     private FreeColXMLReader xr;
+    /** A buffer for input lines. */
+    private byte[] lineBuffer = new byte[BUFFER_SIZE];
+    /** The string table for binary input. */
+    private final List<String> inputStrings = new ArrayList<>();
 
     /** A lock for the output side. */
     private final Object outputLock = new Object();
     /** Main message writer. */
     private FreeColXMLWriter xw;
+    /** The buffer messages are encoded into. */
+    private ByteArrayOutputStream os;
+    /** The binary encoder, holding the string table for output. */
+    private BinaryXMLStreamWriter bw;
+    /** The message writer for binary output. */
+    private FreeColXMLWriter bxw;
+    /** Send binary frames rather than XML? */
+    private boolean binary = false;
 
     /** A lock for the logging routines. */
     private final Object logLock = new Object();
@@ -94,11 +129,14 @@ public class Connection implements Closeable {
     /** The subthread to read the input. */
     private ReceivingThread receivingThread;
 
+    /** The queue of output to write. */
+    private OutputQueue outputQueue;
+
     /** The message handler to process incoming messages with. */
     private MessageHandler messageHandler;
 
     /** Is there an active connection. */
-    private boolean connected = false;
+    private volatile boolean connected = false;
     
 
     /**
@@ -110,11 +148,15 @@ public class Connection implements Closeable {
         this.name = name;
 
         setSocket(null);
-        this.br = null;
+        this.bis = null;
         this.xr = null;
         this.receivingThread = null;
+        this.outputQueue = null;
         this.messageHandler = null;
         this.xw = null;
+        this.os = null;
+        this.bw = null;
+        this.bxw = null;
 
         // Make a (pretty printing) transformer, but only make the log
         // writer in COMMS-debug mode.
@@ -134,14 +176,39 @@ public class Connection implements Closeable {
         this(name);
 
         setSocket(socket);
-        this.br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        this.bis = new BufferedInputStream(socket.getInputStream(),
+                                           BUFFER_SIZE);
         this.receivingThread = new ReceivingThread(this, name);
-        this.xw = new FreeColXMLWriter(socket.getOutputStream(),
-            FreeColXMLWriter.WriteScope.toSave(), false);
+        SendingThread sendingThread
+            = new SendingThread(this, socket.getOutputStream(), name);
+        this.outputQueue = sendingThread;
+        createWriters();
         this.connected = true;
+        sendingThread.start();
         this.receivingThread.start();
     }
 
+    /**
+     * Creates a new {@code Connection} on a channel of the NIO
+     * transport.
+     *
+     * @param channel The {@code SocketChannel} to the client.
+     * @param name The connection name.
+     * @param transport The {@code NioTransport} to use.
+     * @exception IOException if the channel can not be registered.
+     */
+    Connection(SocketChannel channel, String name, NioTransport transport)
+        throws IOException {
+        this(name);
+
+        setSocket(channel.socket());
+        this.receivingThread = new ReceivingThread(this, name,
+                                                   transport.getExecutor());
+        createWriters();
+        this.connected = true;
+        this.outputQueue = transport.register(channel, this);
+    }
+
     /**
      * Sets up a new socket with specified host and port and uses
      * {@link #Connection(Socket, MessageHandler, String)}.
@@ -156,6 +223,24 @@ public class Connection implements Closeable {
     }
 
 
+    /**
+     * Make a connection on an accepted socket.  If the socket has a
+     * channel, as it does when accepted by a server socket from
+     * {@link NioTransport#openServerSocket}, the connection uses the
+     * NIO transport, otherwise it has its own threads.
+     *
+     * @param socket The accepted {@code Socket}.
+     * @param name The connection name.
+     * @return The new {@code Connection}.
+     * @exception IOException if the connection can not be made.
+     */
+    public static Connection open(Socket socket, String name)
+        throws IOException {
+        final SocketChannel channel = socket.getChannel();
+        return (channel == null) ? new Connection(socket, name)
+            : NioTransport.getInstance().accept(channel, name);
+    }
+
     /**
      * Creates a socket to communication with a given host, port pair.
      *
@@ -172,6 +257,20 @@ public class Connection implements Closeable {
         return socket;
     }
 
+    /**
+     * Create the message writers.
+     *
+     * @exception IOException if the writers can not be created.
+     */
+    private void createWriters() throws IOException {
+        this.os = new ByteArrayOutputStream(BUFFER_SIZE);
+        this.xw = new FreeColXMLWriter(this.os,
+            FreeColXMLWriter.WriteScope.toSave(), false);
+        this.bw = new BinaryXMLStreamWriter();
+        this.bxw = new FreeColXMLWriter(this.bw,
+            FreeColXMLWriter.WriteScope.toSave());
+    }
+
     /**
      * Get the socket.
      *
@@ -211,6 +310,17 @@ public class Connection implements Closeable {
         }
     }
 
+    /**
+     * The sending thread could not write.  Close the socket, so that
+     * the receiving thread reaches the end of the stream and passes a
+     * disconnect to the handler, as the NIO transport does when a
+     * write fails.
+     */
+    void outputFailed() {
+        this.connected = false;
+        closeSocket();
+    }
+
     /**
      * Close and clear the output stream.
      */
@@ -220,6 +330,9 @@ public class Connection implements Closeable {
                 this.xw.close();
                 this.xw = null;
             }
+            this.os = null;
+            this.bw = null;
+            this.bxw = null;
         }
     }
 
@@ -228,14 +341,14 @@ public class Connection implements Closeable {
      */
     private void closeInputStream() {
         synchronized (this.inputLock) {
-            if (this.br != null) {
+            if (this.bis != null) {
                 try {
-                    this.br.close();
+                    this.bis.close();
                 } catch (IOException ioe) {
                     logger.log(Level.WARNING, "Error closing buffered input",
                         ioe);
                 } finally {
-                    this.br = null;
+                    this.bis = null;
                 }
             }
         }
@@ -309,6 +422,30 @@ public class Connection implements Closeable {
     public void setWriteScope(FreeColXMLWriter.WriteScope ws) {
         synchronized (this.outputLock) {
             if (this.xw != null) this.xw.setWriteScope(ws);
+            if (this.bxw != null) this.bxw.setWriteScope(ws);
+        }
+    }
+
+    /**
+     * Are messages sent as binary frames?
+     *
+     * @return True if binary output is enabled.
+     */
+    public boolean isBinary() {
+        synchronized (this.outputLock) {
+            return this.binary;
+        }
+    }
+
+    /**
+     * Set whether messages are sent as binary frames.  Only enable
+     * this when the other end is known to accept them.
+     *
+     * @param binary If true, send binary frames.
+     */
+    public void setBinary(boolean binary) {
+        synchronized (this.outputLock) {
+            this.binary = binary;
         }
     }
 
@@ -373,22 +510,80 @@ public class Connection implements Closeable {
     }
 
     public String startListen() throws XMLStreamException {
-        String line;
         try {
-            line = this.br.readLine();
+            final int first = this.bis.read();
+            if (first < 0) return DisconnectMessage.TAG;
+            if (first == BinaryXMLStreamWriter.FRAME_MAGIC) {
+                byte[] frame = BinaryXMLStreamReader.readFrame(this.bis);
+                this.xr = new FreeColXMLReader(new BinaryXMLStreamReader(frame,
+                        this.inputStrings));
+            } else {
+                String line = readLine(first);
+                if (line == null) return DisconnectMessage.TAG;
+                this.xr = new FreeColXMLReader(new StringReader(line));
+            }
         } catch (IOException ioe) {
-            line = null;
-        }
-        if (line == null) return DisconnectMessage.TAG;
-        try {
-            this.xr = new FreeColXMLReader(new StringReader(line));
-        } catch (Exception ex) {
             return DisconnectMessage.TAG;
+        } catch (XMLStreamException xse) {
+            if (this.xr == null) return DisconnectMessage.TAG;
+            throw xse;
         }
         this.xr.nextTag();
         return this.xr.getLocalName();
     }
 
+    /**
+     * Start listening to a message read by the {@link NioTransport}.
+     *
+     * @param data The message bytes, a text line without the
+     *     terminator or the content of a binary frame.
+     * @param binary True if the message is a binary frame.
+     * @return The message tag.
+     * @exception XMLStreamException if the message can not be read.
+     */
+    String startListen(byte[] data, boolean binary)
+        throws XMLStreamException {
+        this.xr = (binary)
+            ? new FreeColXMLReader(new BinaryXMLStreamReader(data,
+                    this.inputStrings))
+            : new FreeColXMLReader(new StringReader(new String(data,
+                        StandardCharsets.UTF_8)));
+        this.xr.nextTag();
+        return this.xr.getLocalName();
+    }
+
+    /**
+     * Receive a message read by the {@link NioTransport}.
+     *
+     * @param data The message bytes, or null at end of stream.
+     * @param binary True if the message is a binary frame.
+     */
+    void receive(byte[] data, boolean binary) {
+        final ReceivingThread rt = this.receivingThread;
+        if (rt != null) rt.receive(data, binary);
+    }
+
+    /**
+     * Read the rest of an input line.
+     *
+     * @param first The first byte of the line.
+     * @return The line, without the terminator, or null at end of stream.
+     * @exception IOException if the stream fails.
+     */
+    private String readLine(int first) throws IOException {
+        int n = 0, b = first;
+        while (b != END_OF_STREAM) {
+            if (b < 0) return null;
+            if (n == this.lineBuffer.length) {
+                this.lineBuffer = Arrays.copyOf(this.lineBuffer, 2 * n);
+            }
+            this.lineBuffer[n++] = (byte)b;
+            b = this.bis.read();
+        }
+        if (n > 0 && this.lineBuffer[n - 1] == '\r') n--;
+        return new String(this.lineBuffer, 0, n, StandardCharsets.UTF_8);
+    }
+
     public int getReplyId() {
         return (this.xr == null) ? -1
             : this.xr.getAttribute(NETWORK_REPLY_ID_TAG, -1);
@@ -424,7 +619,7 @@ public class Connection implements Closeable {
         QuestionMessage qm = new QuestionMessage(replyId, message);
         NetworkReplyObject nro
             = this.receivingThread.waitForNetworkReply(replyId);
-        if (!sendMessage(qm)) return null;
+        if (!sendMessage(qm)) throw new IOException("Failed to send: " + tag);
 
         // Block waiting for the reply to occur.  Expect a reply
         // message, except on shutdown.
@@ -454,16 +649,119 @@ public class Connection implements Closeable {
     public boolean sendMessage(Message message)
         throws FreeColException, IOException, XMLStreamException {
         if (message == null) return true;
-        final String tag = message.getType();
         synchronized (this.outputLock) {
             if (this.xw == null) return false;
+            // Queue while still holding the lock, so that messages
+            // arrive in the order their binary string tables assume.
+            if (!enqueue(encode(message))) return false;
+        }
+        logMessage(message, true);
+        return true;
+    }
+
+    /**
+     * Send a message that is also being sent to other connections.
+     * Text messages are encoded only once for each write scope, and
+     * the bytes shared.  Binary messages are always encoded for each
+     * connection, as each has its own string table.
+     *
+     * @param message The {@code Message} to send.
+     * @param shared A map of the encoded messages by write scope, to
+     *     be used for this message only, updated here.
+     * @return True if the message was null or successfully sent.
+     * @exception FreeColException on extreme confusion.
+     * @exception IOException on failure to send.
+     * @exception XMLStreamException on stream problem.
+     */
+    public boolean sendShared(Message message,
+                              Map<FreeColXMLWriter.WriteScope, byte[]> shared)
+        throws FreeColException, IOException, XMLStreamException {
+        if (message == null) return true;
+        synchronized (this.outputLock) {
+            if (this.xw == null || this.binary) return sendMessage(message);
+            final FreeColXMLWriter.WriteScope ws = this.xw.getWriteScope();
+            byte[] bytes = shared.get(ws);
+            if (bytes == null) {
+                bytes = encode(message);
+                shared.put(ws, bytes);
+            }
+            if (!enqueue(bytes)) return false;
+        }
+        logMessage(message, true);
+        return true;
+    }
+
+    /**
+     * Encode a message as it is to be sent on this connection.
+     *
+     * Call this while holding the output lock.
+     *
+     * @param message The {@code Message} to encode.
+     * @return The encoded bytes.
+     * @exception IOException on failure to encode.
+     * @exception XMLStreamException on stream problem.
+     */
+    private byte[] encode(Message message)
+        throws IOException, XMLStreamException {
+        this.os.reset();
+        if (this.binary) {
+            try {
+                message.toXML(this.bxw);
+                this.bw.writeFrame(this.os);
+            } catch (IOException | XMLStreamException ex) {
+                this.bw.reset();
+                throw ex;
+            }
+        } else {
             message.toXML(this.xw);
             this.xw.writeCharacters(END_OF_STREAM_ARRAY, 0,
                                     END_OF_STREAM_ARRAY.length);
             this.xw.flush();
         }
-        logMessage(message, true);
-        return true;
+        Metrics.record("message.size." + message.getType(), this.os.size());
+        return this.os.toByteArray();
+    }
+
+    /**
+     * Queue encoded bytes for output.
+     *
+     * A binary frame only commits the strings it added to the string
+     * table once it is queued.  If it is dropped they are discarded,
+     * so that later frames still match the table of the reader.
+     * Queueing never waits.  The bytes are refused only once the
+     * connection has failed, including by its queue filling.
+     *
+     * Call this while holding the output lock.
+     *
+     * @param bytes The bytes from {@link #encode}.
+     * @return True if the bytes were queued.
+     */
+    private boolean enqueue(byte[] bytes) {
+        final boolean ret = this.outputQueue.enqueue(bytes);
+        if (this.binary) {
+            if (ret) this.bw.commit(); else this.bw.reset();
+        }
+        return ret;
+    }
+
+    /**
+     * Get statistics of the output of this connection.
+     *
+     * @return A map of the statistics, empty if messages are not
+     *     queued on this connection.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> stats = new HashMap<>();
+        final OutputQueue st = this.outputQueue;
+        if (st == null) return stats;
+        stats.put("queueDepth", Integer.toString(st.getDepth()));
+        stats.put("maximumQueueDepth", Integer.toString(st.getMaximumDepth()));
+        stats.put("written", Long.toString(st.getWritten()));
+        stats.put("bytesWritten", Long.toString(st.getBytesWritten()));
+        stats.put("meanWriteLatency", Long.toString(st.getMeanLatency()));
+        stats.put("maximumWriteLatency",
+                  Long.toString(st.getMaximumLatency()));
+        return stats;
     }
 
     /**
@@ -596,6 +894,10 @@ public class Connection implements Closeable {
             this.receivingThread.interrupt();
             this.receivingThread = null;
         }
+        // Let the messages already queued, such as a disconnect, go.
+        if (this.outputQueue != null) {
+            this.outputQueue.askToStop();
+        }
 
         // Close the socket before the input stream.  Socket closure will
         // terminate any existing I/O and release the locks.
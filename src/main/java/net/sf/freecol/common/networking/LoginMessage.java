@@ -47,6 +47,7 @@ import net.sf.freecol.server.model.ServerPlayer;
 public class LoginMessage extends ObjectMessage {
 
     public static final String TAG = "login";
+    private static final String BINARY_TAG = "binary";
     private static final String CURRENT_PLAYER_TAG = "currentPlayer";
     private static final String SINGLE_PLAYER_TAG = "singlePlayer";
     private static final String STATE_TAG = "state";
@@ -92,7 +93,7 @@ public class LoginMessage extends ObjectMessage {
     public LoginMessage(Game game, FreeColXMLReader xr)
         throws XMLStreamException {
         super(TAG, xr, USER_NAME_TAG, VERSION_TAG, STATE_TAG,
-              SINGLE_PLAYER_TAG, CURRENT_PLAYER_TAG);
+              SINGLE_PLAYER_TAG, CURRENT_PLAYER_TAG, BINARY_TAG);
 
         game = null;
         while (xr.moreTags()) {
@@ -134,6 +135,37 @@ public class LoginMessage extends ObjectMessage {
         return getChild(0, Game.class);
     }
 
+    private boolean getBinary() {
+        return getBooleanAttribute(BINARY_TAG, false);
+    }
+
+    /**
+     * Set whether binary messages are to be used.  From the client
+     * this offers to accept them, and in the server reply it confirms
+     * that they will be sent.  Peers that do not know about binary
+     * messages ignore the attribute, and XML continues to be used.
+     *
+     * @param binary The new binary state.
+     * @return This message.
+     */
+    public LoginMessage setBinary(boolean binary) {
+        setBooleanAttribute(BINARY_TAG, binary);
+        return this;
+    }
+
+    /**
+     * Enable binary messages on a newly logged in connection if the
+     * client offered to accept them.
+     *
+     * @param connection The {@code Connection} to check.
+     * @return True if binary messages were enabled.
+     */
+    private boolean negotiateBinary(Connection connection) {
+        final boolean ret = getBinary() && connection != null;
+        if (ret) connection.setBinary(true);
+        return ret;
+    }
+
     /**
      * Get the player (if any) with the current name in a given game.
      *
@@ -158,6 +190,10 @@ public class LoginMessage extends ObjectMessage {
      */
     @Override
     public void clientHandler(FreeColClient freeColClient) {
+        if (getBinary()) {
+            Connection conn = freeColClient.askServer().getConnection();
+            if (conn != null) conn.setBinary(true);
+        }
         Game game = getGame();
         freeColClient.getConnectController()
             .login(getState(), game, getUserName(),
@@ -240,7 +276,8 @@ public class LoginMessage extends ObjectMessage {
                                  freeColServer.getServerState(),
                                  freeColServer.getSinglePlayer(),
                                  Objects.equals(serverGame.getCurrentPlayer(), serverPlayer),
-                                 serverGame));
+                                 serverGame)
+                    .setBinary(negotiateBinary(conn)));
         }
         return ret;
     }
@@ -309,7 +346,8 @@ public class LoginMessage extends ObjectMessage {
                     freeColServer.getServerState(),
                     freeColServer.getSinglePlayer(),
                     Objects.equals(serverGame.getCurrentPlayer(), present),
-                    serverGame));
+                    serverGame)
+                    .setBinary(negotiateBinary(connection)));
         }
         return ret;
     }
@@ -363,7 +401,8 @@ public class LoginMessage extends ObjectMessage {
                                  freeColServer.getServerState(),
                                  freeColServer.getSinglePlayer(),
                                  Objects.equals(serverGame.getCurrentPlayer(), present),
-                                 serverGame));
+                                 serverGame)
+                    .setBinary(negotiateBinary(connection)));
         }
         return ret;
     }
@@ -34,7 +34,6 @@ import java.util.Set;
 import java.util.function.Consumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.lang.reflect.Constructor;
 
 import javax.xml.stream.XMLStreamException;
 
@@ -45,6 +44,7 @@ import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.model.FreeColObject;
 import net.sf.freecol.common.model.Game;
 import static net.sf.freecol.common.util.CollectionUtils.*;
+import net.sf.freecol.common.util.Factory;
 import net.sf.freecol.common.util.Introspector;
 import static net.sf.freecol.common.util.StringUtils.*;
 import net.sf.freecol.server.FreeColServer;
@@ -62,12 +62,12 @@ public abstract class Message {
     protected static final Logger logger = Logger.getLogger(Message.class.getName());
 
     /**
-     * A map of message name to message constructors, built on the fly
+     * A map of message name to message factories, built on the fly
      * as new messages are encountered and suitable constructors found.
      */
-    private final static Map<String, Constructor<? extends Message>> builders
+    private final static Map<String, Factory<? extends Message>> builders
         = Collections.synchronizedMap(new HashMap<String,
-            Constructor<? extends Message>>());
+            Factory<? extends Message>>());
 
     // Convenient way to specify the relative priorities of the messages
     // types in one place.
@@ -630,20 +630,17 @@ public abstract class Message {
         throws FreeColException {
         final String tag = xr.getLocalName();
         Message ret = null;
-        Constructor<? extends Message> mb = builders.get(tag);
+        Factory<? extends Message> mb = builders.get(tag);
         if (mb == null) {
             final String className = "net.sf.freecol.common.networking."
                 + capitalize(tag) + "Message";
-            @SuppressWarnings("unchecked")
-            final Class<? extends Message> cl
-                = (Class<? extends Message>)Introspector.getClassByName(className);
-            if (cl == null) {
+            if (Introspector.getClassByName(className) == null) {
                 throw new FreeColException("No class for: " + tag)
                     .preserveDebug();
             }
 
-            final Class[] types = { Game.class, FreeColXMLReader.class };
-            mb = Introspector.getConstructor(cl, types);
+            mb = Factory.get(className, Message.class,
+                             Game.class, FreeColXMLReader.class);
             if (mb == null) {
                 throw new FreeColException("No constructor for: " + tag)
                     .preserveDebug();
@@ -652,7 +649,7 @@ public abstract class Message {
         }
 
         try {
-            ret = Introspector.construct(mb, new Object[] { game, xr });
+            ret = mb.create(game, xr);
         } catch (Introspector.IntrospectorException ie) {
             throw new FreeColException(ie);
         }
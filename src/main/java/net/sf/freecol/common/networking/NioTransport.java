@@ -0,0 +1,696 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.io.BinaryXMLStreamReader;
+import net.sf.freecol.common.io.BinaryXMLStreamWriter;
+
+
+/**
+ * A non-blocking transport for server connections.
+ *
+ * Rather than each connection having a thread to read and another
+ * to write, a small number of event loops share all the channels.
+ * A loop reads what is available, splits it into messages (newline
+ * terminated text or binary frames), and writes queued output when a
+ * channel can take it.  The messages of each connection are passed
+ * to its {@link ReceivingThread#receive} one at a time and in order
+ * by a small receiver pool, and the message handlers then run on a
+ * bounded worker pool, so the question/reply protocol of
+ * {@link Connection} is unchanged.
+ *
+ * Handlers may block, for example asking a client a question and
+ * waiting for the reply.  Replies are delivered by the receivers,
+ * which never block, so a handler can always be answered however
+ * busy the workers are.  When all {@link #WORKERS} workers are busy
+ * further messages wait for one to become free.
+ *
+ * The transport is used for connections accepted on a server socket
+ * made with {@link #openServerSocket}, see {@link Connection#open}.
+ */
+public final class NioTransport {
+
+    private static final Logger logger = Logger.getLogger(NioTransport.class.getName());
+
+    /** The number of event loops, and of receivers. */
+    private static final int LOOPS = Math.max(1,
+        Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    /**
+     * The maximum number of workers.  Each connected player normally
+     * has at most a couple of handlers running, so this covers a
+     * full game with room to spare.
+     */
+    private static final int WORKERS = 32;
+
+    /** How long an idle receiver or worker lingers, in seconds. */
+    private static final long IDLE_TIMEOUT = 60;
+
+    /** A received message. */
+    private static final class Frame {
+
+        /** The message bytes, null at end of stream. */
+        public final byte[] data;
+
+        /** Is this a binary frame? */
+        public final boolean binary;
+
+
+        /**
+         * Create a new frame.
+         *
+         * @param data The message bytes.
+         * @param binary True for a binary frame.
+         */
+        public Frame(byte[] data, boolean binary) {
+            this.data = data;
+            this.binary = binary;
+        }
+    }
+
+    /** A queued output message. */
+    private static final class Item {
+
+        /** The encoded message. */
+        public final byte[] bytes;
+
+        /** When the item was queued. */
+        public final long queued;
+
+
+        /**
+         * Create a new queue item.
+         *
+         * @param bytes The encoded message.
+         */
+        public Item(byte[] bytes) {
+            this.bytes = bytes;
+            this.queued = System.nanoTime();
+        }
+    }
+
+    /** The transport state of a connection. */
+    private final class Channel implements OutputQueue {
+
+        /** The loop serving the channel. */
+        private final Loop loop;
+
+        /** The channel. */
+        private final SocketChannel sc;
+
+        /** The connection to pass messages to. */
+        private final Connection connection;
+
+        /** The selection key, only used by the loop. */
+        private SelectionKey key = null;
+
+        /** The input not yet split into messages, only used by the loop. */
+        private ByteBuffer in = ByteBuffer.allocate(Connection.BUFFER_SIZE);
+
+        /** The output being written, only used by the loop. */
+        private ByteBuffer writing = null;
+
+        /** Messages waiting to be received. */
+        private final Deque<Frame> inbox = new ArrayDeque<>();
+
+        /** Is a worker receiving messages from the inbox? */
+        private boolean receiving = false;
+
+        /** Messages waiting to be written, the first being written. */
+        private final Deque<Item> out = new ArrayDeque<>();
+
+        /** Set once no more messages are accepted for output. */
+        private boolean stopped = false;
+
+        /** Set once the channel has failed or reached end of stream. */
+        private boolean closed = false;
+
+        /** Set if the output queue filled, so the loop should close. */
+        private boolean overflowed = false;
+
+        /** Statistics. */
+        private long written = 0, bytesWritten = 0, latency = 0,
+            maximumLatency = 0;
+        private int maximumDepth = 0;
+
+
+        /**
+         * Create the state for a new channel.
+         *
+         * @param loop The {@code Loop} to serve the channel.
+         * @param sc The {@code SocketChannel}.
+         * @param connection The {@code Connection} to pass messages to.
+         */
+        public Channel(Loop loop, SocketChannel sc, Connection connection) {
+            this.loop = loop;
+            this.sc = sc;
+            this.connection = connection;
+        }
+
+
+        /**
+         * Register the channel, or bring its interest up to date.
+         * Called by the loop.
+         *
+         * @param selector The {@code Selector} of the loop.
+         */
+        public void update(Selector selector) {
+            if (this.key == null) {
+                try {
+                    this.key = this.sc.register(selector,
+                                                SelectionKey.OP_READ, this);
+                } catch (ClosedChannelException cce) {
+                    close();
+                    return;
+                }
+            }
+            if (!this.key.isValid()) return;
+            boolean pending, overflow;
+            synchronized (this) {
+                pending = !this.out.isEmpty();
+                overflow = this.overflowed;
+            }
+            if (overflow) { // Treat as a failed write
+                close();
+                return;
+            }
+            this.key.interestOps((pending)
+                ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+        }
+
+        /**
+         * Read what is available, and pass on the complete messages.
+         * Called by the loop.
+         */
+        public void read() {
+            int n;
+            try {
+                n = this.sc.read(this.in);
+            } catch (IOException ioe) {
+                n = -1;
+            }
+            if (n < 0) {
+                close();
+                return;
+            }
+            this.in.flip();
+            try {
+                for (Frame f = split(); f != null; f = split()) deliver(f);
+            } catch (IOException ioe) {
+                logger.log(Level.WARNING, this.connection.getName()
+                    + ": bad input", ioe);
+                close();
+                return;
+            }
+            this.in.compact();
+            if (!this.in.hasRemaining()) { // Full, a long message
+                ByteBuffer b = ByteBuffer.allocate(2 * this.in.capacity());
+                this.in.flip();
+                b.put(this.in);
+                this.in = b;
+            }
+        }
+
+        /**
+         * Write queued output until done or the channel is full.
+         * Called by the loop.
+         */
+        public void write() {
+            for (;;) {
+                Item item;
+                synchronized (this) {
+                    item = this.out.peek();
+                }
+                if (item == null) break;
+                if (this.writing == null) {
+                    this.writing = ByteBuffer.wrap(item.bytes);
+                }
+                try {
+                    this.sc.write(this.writing);
+                } catch (IOException ioe) {
+                    logger.log(Level.WARNING, this.connection.getName()
+                        + ": write failed", ioe);
+                    close();
+                    return;
+                }
+                if (this.writing.hasRemaining()) return; // Wait for room
+                this.writing = null;
+                synchronized (this) {
+                    this.out.poll();
+                    record(item);
+                    notifyAll();
+                }
+            }
+            update(this.key.selector());
+        }
+
+        /**
+         * The channel has failed or ended.  Tell the connection, and
+         * drop any output.  Called by the loop.
+         */
+        public void close() {
+            synchronized (this) {
+                if (this.closed) return;
+                this.closed = true;
+                this.stopped = true;
+                this.out.clear();
+                notifyAll();
+            }
+            if (this.key != null) this.key.cancel();
+            deliver(new Frame(null, false));
+        }
+
+
+        // Internals
+
+        /**
+         * Split the next complete message from the input.
+         *
+         * @return The next {@code Frame}, or null if none is complete.
+         * @exception IOException if a frame header is corrupt.
+         */
+        private Frame split() throws IOException {
+            final ByteBuffer b = this.in;
+            final int p = b.position(), lim = b.limit();
+            if (p >= lim) return null;
+            if ((b.get(p) & 0xFF) == BinaryXMLStreamWriter.FRAME_MAGIC) {
+                int length = 0, i = p + 1;
+                for (int shift = 0;; shift += 7) {
+                    if (i >= lim) return null;
+                    if (shift > 28) throw new IOException("Bad frame header");
+                    final int v = b.get(i++) & 0xFF;
+                    length |= (v & 0x7F) << shift;
+                    if ((v & 0x80) == 0) break;
+                }
+                if (length < 0 || length > BinaryXMLStreamReader.MAX_FRAME) {
+                    throw new IOException("Bad frame length: " + length);
+                }
+                if (lim - i < length) return null;
+                final byte[] data = new byte[length];
+                b.position(i);
+                b.get(data);
+                return new Frame(data, true);
+            }
+            for (int i = p; i < lim; i++) {
+                if (b.get(i) != Connection.END_OF_STREAM) continue;
+                int end = i;
+                if (end > p && b.get(end - 1) == '\r') end--;
+                final byte[] data = new byte[end - p];
+                b.get(data);
+                b.position(i + 1);
+                return new Frame(data, false);
+            }
+            return null;
+        }
+
+        /**
+         * Pass a message to the connection, through the inbox so that
+         * messages are received in order.
+         *
+         * @param f The {@code Frame} to deliver.
+         */
+        private void deliver(Frame f) {
+            synchronized (this.inbox) {
+                this.inbox.add(f);
+                if (this.receiving) return;
+                this.receiving = true;
+            }
+            receivers.execute(this::receive);
+        }
+
+        /**
+         * Receive the messages in the inbox.  Called by a worker.
+         */
+        private void receive() {
+            for (;;) {
+                Frame f;
+                synchronized (this.inbox) {
+                    f = this.inbox.poll();
+                    if (f == null) {
+                        this.receiving = false;
+                        return;
+                    }
+                }
+                try {
+                    this.connection.receive(f.data, f.binary);
+                } catch (RuntimeException re) {
+                    logger.log(Level.WARNING, this.connection.getName()
+                        + ": receive failed", re);
+                }
+            }
+        }
+
+        /**
+         * Record a written message.
+         *
+         * @param item The {@code Item} written.
+         */
+        private void record(Item item) {
+            final long t = System.nanoTime() - item.queued;
+            this.written++;
+            this.bytesWritten += item.bytes.length;
+            this.latency += t;
+            if (t > this.maximumLatency) this.maximumLatency = t;
+        }
+
+
+        // Implement OutputQueue
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public boolean enqueue(byte[] bytes) {
+            if (bytes.length == 0) return false;
+            boolean first, full;
+            synchronized (this) {
+                if (this.stopped) return false;
+                full = this.out.size() >= QUEUE_SIZE;
+                if (full) {
+                    this.stopped = this.overflowed = true;
+                    first = false;
+                } else {
+                    first = this.out.isEmpty();
+                    this.out.add(new Item(bytes));
+                    if (this.out.size() > this.maximumDepth) {
+                        this.maximumDepth = this.out.size();
+                    }
+                }
+            }
+            if (full) {
+                logger.warning(this.connection.getName()
+                    + ": queue full, failing connection");
+                this.loop.change(this);
+                return false;
+            }
+            if (first) this.loop.change(this);
+            return true;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void askToStop() {
+            final long end = System.nanoTime() + DRAIN_TIMEOUT * 1000000L;
+            synchronized (this) {
+                this.stopped = true;
+                if (Thread.currentThread() == this.loop) return;
+                while (!this.closed && !this.out.isEmpty()) {
+                    final long wait = (end - System.nanoTime()) / 1000000L;
+                    if (wait <= 0) break;
+                    try {
+                        wait(wait);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized int getDepth() {
+            return this.out.size();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized int getMaximumDepth() {
+            return this.maximumDepth;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized long getWritten() {
+            return this.written;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized long getBytesWritten() {
+            return this.bytesWritten;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized long getMeanLatency() {
+            return (this.written == 0) ? 0
+                : this.latency / this.written / 1000L;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public synchronized long getMaximumLatency() {
+            return this.maximumLatency / 1000L;
+        }
+    }
+
+    /** An event loop. */
+    private static final class Loop extends Thread {
+
+        /** The selector for the channels of this loop. */
+        private final Selector selector;
+
+        /** Channels to register or update the interest of. */
+        private final Queue<Channel> changes = new ConcurrentLinkedQueue<>();
+
+
+        /**
+         * Create a new event loop.
+         *
+         * @param n The loop number.
+         * @exception IOException if the selector can not be opened.
+         */
+        public Loop(int n) throws IOException {
+            super("NioTransport-loop-" + n);
+
+            this.selector = Selector.open();
+            setDaemon(true);
+        }
+
+
+        /**
+         * Ask the loop to register a channel or update its interest.
+         *
+         * @param channel The {@code Channel} that changed.
+         */
+        public void change(Channel channel) {
+            this.changes.add(channel);
+            this.selector.wakeup();
+        }
+
+
+        // Override Thread
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void run() {
+            for (;;) {
+                try {
+                    this.selector.select();
+                    for (Channel c = this.changes.poll(); c != null;
+                         c = this.changes.poll()) c.update(this.selector);
+                    Iterator<SelectionKey> it
+                        = this.selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        final SelectionKey key = it.next();
+                        it.remove();
+                        final Channel c = (Channel)key.attachment();
+                        if (key.isValid() && key.isReadable()) c.read();
+                        if (key.isValid() && key.isWritable()) c.write();
+                    }
+                } catch (ClosedSelectorException cse) {
+                    break;
+                } catch (IOException|RuntimeException ex) {
+                    logger.log(Level.WARNING, getName() + ": loop fail", ex);
+                }
+            }
+        }
+    }
+
+    /** The shared transport, created when first used. */
+    private static NioTransport instance = null;
+
+    /** The event loops. */
+    private final Loop[] loops = new Loop[LOOPS];
+
+    /** The next loop to give a channel to. */
+    private final AtomicInteger nextLoop = new AtomicInteger(0);
+
+    /** The pool passing received messages to the connections. */
+    private final ExecutorService receivers;
+
+    /** The pool handling messages. */
+    private final ExecutorService workers;
+
+
+    /**
+     * Create the transport, and start its loops.
+     *
+     * @exception IOException if a loop can not be created.
+     */
+    private NioTransport() throws IOException {
+        this.receivers = newPool(LOOPS, "NioTransport-receiver-");
+        this.workers = newPool(WORKERS, "NioTransport-worker-");
+        for (int i = 0; i < LOOPS; i++) {
+            this.loops[i] = new Loop(i);
+            this.loops[i].start();
+        }
+    }
+
+    /**
+     * Get the shared transport.
+     *
+     * @return The {@code NioTransport}.
+     * @exception IOException if the transport can not be started.
+     */
+    public static synchronized NioTransport getInstance() throws IOException {
+        if (instance == null) instance = new NioTransport();
+        return instance;
+    }
+
+    /**
+     * Open a server socket whose accepted sockets have channels, and
+     * so will use this transport.  The socket accepts in blocking
+     * mode as usual.
+     *
+     * @param address The {@code InetAddress} to bind to, or null for
+     *     any address.
+     * @param port The port to bind to.
+     * @param backlog The connection backlog.
+     * @return The new {@code ServerSocket}.
+     * @exception IOException if the socket can not be opened.
+     */
+    public static ServerSocket openServerSocket(InetAddress address,
+                                                int port, int backlog)
+        throws IOException {
+        ServerSocketChannel ssc = ServerSocketChannel.open();
+        ServerSocket ss = ssc.socket();
+        ss.setReuseAddress(true);
+        ss.bind(new InetSocketAddress(address, port), backlog);
+        return ss;
+    }
+
+    /**
+     * Make a connection on an accepted channel.
+     *
+     * @param channel The {@code SocketChannel} accepted.
+     * @param name The connection name.
+     * @return The new {@code Connection}.
+     * @exception IOException if the channel can not be used.
+     */
+    public Connection accept(SocketChannel channel, String name)
+        throws IOException {
+        return new Connection(channel, name, this);
+    }
+
+    /**
+     * Make a pool of daemon threads, which starts threads as needed up
+     * to a limit, then queues the tasks.  Idle threads are let go.
+     *
+     * @param size The maximum number of threads.
+     * @param prefix The prefix of the thread names.
+     * @return The new {@code ExecutorService}.
+     */
+    private static ExecutorService newPool(int size, String prefix) {
+        final AtomicInteger count = new AtomicInteger(0);
+        final ThreadFactory factory = r -> {
+            Thread t = new Thread(r, prefix + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size,
+            IDLE_TIMEOUT, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Get the executor that handles messages.
+     *
+     * @return The worker {@code Executor}.
+     */
+    Executor getExecutor() {
+        return this.workers;
+    }
+
+    /**
+     * Add a channel to one of the loops.
+     *
+     * @param channel The {@code SocketChannel} to add.
+     * @param connection The {@code Connection} to pass messages to.
+     * @return The {@code OutputQueue} for the channel.
+     * @exception IOException if the channel can not be made
+     *     non-blocking.
+     */
+    OutputQueue register(SocketChannel channel, Connection connection)
+        throws IOException {
+        channel.configureBlocking(false);
+        final Loop loop = this.loops[Math.floorMod(
+                this.nextLoop.getAndIncrement(), LOOPS)];
+        final Channel c = new Channel(loop, channel, connection);
+        loop.change(c);
+        return c;
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+
+/**
+ * The queue of encoded messages waiting to be written to a
+ * connection, implemented by {@link SendingThread} for sockets and
+ * by {@link NioTransport} for channels.
+ *
+ * The queue is bounded, and never makes a sender wait.  A client
+ * that falls so far behind that its queue fills has already missed
+ * too much to be trusted, so a full queue fails the connection just
+ * as a failed write does, and the message is refused.
+ */
+interface OutputQueue {
+
+    /** The maximum number of messages waiting to be written. */
+    int QUEUE_SIZE = 1024;
+
+    /** How long to wait for the queue to drain on close. */
+    long DRAIN_TIMEOUT = 1000L;
+
+
+    /**
+     * Queue an encoded message to be written, without waiting.
+     * If the queue is full the connection is failed.
+     *
+     * @param bytes The bytes to write.
+     * @return True if the message was queued.
+     */
+    boolean enqueue(byte[] bytes);
+
+    /**
+     * Stop accepting messages, and wait briefly for those already
+     * queued to be written.
+     */
+    void askToStop();
+
+    /**
+     * Get the number of messages waiting to be written.
+     *
+     * @return The queue depth.
+     */
+    int getDepth();
+
+    /**
+     * Get the largest number of messages that have been waiting.
+     *
+     * @return The maximum queue depth.
+     */
+    int getMaximumDepth();
+
+    /**
+     * Get the number of messages written.
+     *
+     * @return The number of messages written.
+     */
+    long getWritten();
+
+    /**
+     * Get the number of bytes written.
+     *
+     * @return The number of bytes written.
+     */
+    long getBytesWritten();
+
+    /**
+     * Get the mean time from queueing a message to writing it.
+     *
+     * @return The mean write latency in microseconds.
+     */
+    long getMeanLatency();
+
+    /**
+     * Get the longest time from queueing a message to writing it.
+     *
+     * @return The maximum write latency in microseconds.
+     */
+    long getMaximumLatency();
+}
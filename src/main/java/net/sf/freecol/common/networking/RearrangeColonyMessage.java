@@ -118,8 +118,12 @@ public class RearrangeColonyMessage extends AttributeMessage {
                                                         List<Unit> workers,
                                                         Colony scratch) {
             List<Arrangement> ret = new ArrayList<>();
+            final Map<String, Unit> scratchUnits = new HashMap<>();
+            for (Unit su : scratch.getAllUnitsList()) {
+                scratchUnits.put(su.getId(), su);
+            }
             for (Unit u : workers) {
-                Unit su = scratch.getCorresponding(u);
+                Unit su = scratchUnits.get(u.getId());
                 if (u.getLocation().getId().equals(su.getLocation().getId())
                     && Objects.equals(u.getWorkType(), su.getWorkType())
                     && Objects.equals(u.getRole(), su.getRole())
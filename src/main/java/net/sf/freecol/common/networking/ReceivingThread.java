@@ -25,6 +25,7 @@ import java.io.InputStream;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,6 +39,11 @@ import org.xml.sax.SAXException;
 
 /**
  * The thread that checks for incoming messages.
+ *
+ * Connections on the {@link NioTransport} do not run this thread.
+ * The transport reads their messages and passes them to
+ * {@link #receive}, and the messages are handled by the worker pool
+ * of the transport rather than a new thread each.
  */
 final class ReceivingThread extends Thread {
 
@@ -59,6 +65,9 @@ final class ReceivingThread extends Thread {
     /** A counter for reply ids. */
     private int nextNetworkReplyId;
 
+    /** An executor to handle messages with, if not a thread each. */
+    private final Executor executor;
+
 
     /**
      * The constructor to use.
@@ -68,11 +77,26 @@ final class ReceivingThread extends Thread {
      * @param threadName The base name for the thread.
      */
     public ReceivingThread(Connection connection, String threadName) {
+        this(connection, threadName, null);
+    }
+
+    /**
+     * Create a receiver that handles messages with an executor.
+     *
+     * @param connection The {@code Connection} this
+     *     {@code ReceivingThread} belongs to.
+     * @param threadName The base name for the thread.
+     * @param executor An optional {@code Executor} to handle messages
+     *     with.
+     */
+    public ReceivingThread(Connection connection, String threadName,
+                           Executor executor) {
         super("ReceivingThread-" + threadName);
 
         this.connection = connection;
         this.shouldRun = true;
         this.nextNetworkReplyId = 1;
+        this.executor = executor;
     }
 
     /**
@@ -145,13 +169,13 @@ final class ReceivingThread extends Thread {
     }
 
     /**
-     * Create a thread to handle an incoming question message.
+     * Create a task to handle an incoming question message.
      *
      * @param qm The {@code QuestionMessage} to handle.
      * @param replyId The network reply.
-     * @return A new {@code Thread} to do the work, or null if none required.
+     * @return A {@code Runnable} to do the work, or null if none required.
      */
-    private Thread messageQuestion(final QuestionMessage qm,
+    private Runnable messageQuestion(final QuestionMessage qm,
                                    final int replyId) {
         final Connection conn = this.connection;
         final Message query = qm.getMessage();
@@ -159,61 +183,55 @@ final class ReceivingThread extends Thread {
         final String tag = query.getType();
         final String name = getName() + "-question-" + replyId + "-" + tag;
 
-        return new Thread(name) {
-            @Override
-            public void run() {
-                Message reply;
-                try {
-                    reply = conn.handle(query);
-                } catch (FreeColException fce) {
-                    logger.log(Level.WARNING, name + ": handler fail", fce);
-                    return;
-                }
+        return () -> {
+            Message reply;
+            try {
+                reply = conn.handle(query);
+            } catch (FreeColException fce) {
+                logger.log(Level.WARNING, name + ": handler fail", fce);
+                return;
+            }
 
-                final String replyTag = (reply == null) ? "null"
-                    : reply.getType();
-                try {
-                    conn.sendMessage(new ReplyMessage(replyId, reply));
-                    logger.log(Level.FINEST, name + " -> " + replyTag);
-                } catch (Exception ex) {
-                    logger.log(Level.WARNING, name + ": response " + replyTag
-                        + "fail", ex);
-                }
+            final String replyTag = (reply == null) ? "null"
+                : reply.getType();
+            try {
+                conn.sendMessage(new ReplyMessage(replyId, reply));
+                logger.log(Level.FINEST, name + " -> " + replyTag);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, name + ": response " + replyTag
+                    + "fail", ex);
             }
         };
     }
 
     /**
-     * Create a thread to handle an incoming ordinary message.
+     * Create a task to handle an incoming ordinary message.
      *
      * @param message The {@code Message} to handle.
-     * @return A new {@code Thread} to do the work, or null if none required.
+     * @return A {@code Runnable} to do the work, or null if none required.
      */
-    private Thread messageUpdate(final Message message) {
+    private Runnable messageUpdate(final Message message) {
         if (message == null) return null;
         final String inTag = message.getType();
         final Connection conn = this.connection;
         final String name = getName() + "-update-" + inTag;
         
-        return new Thread(name) {
-            @Override
-            public void run() {
-                Message reply;
-                try {
-                    reply = conn.handle(message);
-                } catch (FreeColException fce) {
-                    logger.log(Level.WARNING, name + ": handler fail", fce);
-                    return;
-                }
+        return () -> {
+            Message reply;
+            try {
+                reply = conn.handle(message);
+            } catch (FreeColException fce) {
+                logger.log(Level.WARNING, name + ": handler fail", fce);
+                return;
+            }
 
-                final String outTag = (reply == null) ? "null"
-                    : reply.getType();
-                try {
-                    conn.sendMessage(reply);
-                    logger.log(Level.FINEST, name + " -> " + outTag);
-                } catch (Exception ex) {
-                    logger.log(Level.WARNING, name + ": send exception", ex);
-                }
+            final String outTag = (reply == null) ? "null"
+                : reply.getType();
+            try {
+                conn.sendMessage(reply);
+                logger.log(Level.FINEST, name + " -> " + outTag);
+            } catch (Exception ex) {
+                logger.log(Level.WARNING, name + ": send exception", ex);
             }
         };
     }
@@ -229,7 +247,6 @@ final class ReceivingThread extends Thread {
      */
     private void listen() {
         String tag;
-        int replyId = -1;
         try {
             tag = this.connection.startListen();
         } catch (XMLStreamException xse) {
@@ -237,9 +254,44 @@ final class ReceivingThread extends Thread {
             logger.log(Level.WARNING, getName() + ": listen fail", xse);
             tag = DisconnectMessage.TAG;
         }
+        dispatch(tag);
+    }
 
-        // Read the message, optionally create a thread to handle it
-        Thread t = null;
+    /**
+     * Receive a message read by the {@link NioTransport}.  Messages
+     * from a connection must be received one at a time, in order.
+     *
+     * @param data The message bytes, or null at end of stream.
+     * @param binary True if the message is a binary frame.
+     */
+    void receive(byte[] data, boolean binary) {
+        if (!shouldRun()) return;
+        String tag;
+        if (data == null) {
+            tag = DisconnectMessage.TAG;
+        } else {
+            try {
+                tag = this.connection.startListen(data, binary);
+            } catch (XMLStreamException xse) {
+                if (!shouldRun()) return;
+                logger.log(Level.WARNING, getName() + ": listen fail", xse);
+                tag = DisconnectMessage.TAG;
+            }
+        }
+        dispatch(tag);
+    }
+
+    /**
+     * Read the message the connection is listening to, and start
+     * handling it.
+     *
+     * @param tag The message tag.
+     */
+    private void dispatch(String tag) {
+        int replyId = -1;
+
+        // Read the message, optionally create a task to handle it
+        Runnable t = null;
         switch (tag) {
         case DisconnectMessage.TAG:
             // Do not actually read the message, it might be a fake one
@@ -269,7 +321,7 @@ final class ReceivingThread extends Thread {
             break;
 
         case Connection.QUESTION_TAG:
-            // A question.  Build a thread to handle it and send a reply.
+            // A question.  Build a task to handle it and send a reply.
 
             replyId = this.connection.getReplyId();
             try {
@@ -284,7 +336,7 @@ final class ReceivingThread extends Thread {
             
         default:
             // An ordinary update message.
-            // Build a thread to handle it and possibly respond.
+            // Build a task to handle it and possibly respond.
 
             try {
                 t = messageUpdate(this.connection.reader());
@@ -295,8 +347,14 @@ final class ReceivingThread extends Thread {
             break;
         }
 
-        // Start the thread
-        if (t != null) t.start();
+        // Run the task, in a new thread if there is no executor
+        if (t != null) {
+            if (this.executor == null) {
+                new Thread(t, getName() + "-" + tag).start();
+            } else {
+                this.executor.execute(t);
+            }
+        }
 
         this.connection.endListen(); // Clean up
     }
@@ -0,0 +1,236 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * The thread that writes encoded messages to a connection.
+ *
+ * Senders queue the bytes of a message and continue, so a slow
+ * socket never holds up the senders.  The queue is bounded, and if
+ * it fills the connection is failed as if a write had failed.  The
+ * same bytes may be queued to several connections, see
+ * {@link Connection#sendShared}.
+ */
+final class SendingThread extends Thread implements OutputQueue {
+
+    private static final Logger logger = Logger.getLogger(SendingThread.class.getName());
+
+    /** A queued message. */
+    private static final class Item {
+
+        /** The encoded message, empty to stop the thread. */
+        public final byte[] bytes;
+
+        /** When the item was queued. */
+        public final long queued;
+
+
+        /**
+         * Create a new queue item.
+         *
+         * @param bytes The encoded message.
+         */
+        public Item(byte[] bytes) {
+            this.bytes = bytes;
+            this.queued = System.nanoTime();
+        }
+    }
+
+    /** The messages waiting to be written. */
+    private final BlockingQueue<Item> queue
+        = new ArrayBlockingQueue<>(QUEUE_SIZE);
+
+    /** The connection writing with this thread. */
+    private final Connection connection;
+
+    /** The stream to write to. */
+    private final OutputStream os;
+
+    /** Set once the thread stops accepting messages. */
+    private volatile boolean stopped = false;
+
+    /** Statistics. */
+    private long written = 0, bytesWritten = 0, latency = 0,
+        maximumLatency = 0;
+    private int maximumDepth = 0;
+
+
+    /**
+     * Create a new sending thread.
+     *
+     * @param connection The {@code Connection} writing with this thread.
+     * @param os The {@code OutputStream} to write to.
+     * @param threadName The base name for the thread.
+     */
+    public SendingThread(Connection connection, OutputStream os,
+                         String threadName) {
+        super("SendingThread-" + threadName);
+
+        this.connection = connection;
+        this.os = new BufferedOutputStream(os, Connection.BUFFER_SIZE);
+        setDaemon(true);
+    }
+
+
+    // Implement OutputQueue
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean enqueue(byte[] bytes) {
+        if (this.stopped || bytes.length == 0) return false;
+        if (!this.queue.offer(new Item(bytes))) {
+            this.stopped = true;
+            logger.warning(getName() + ": queue full, failing connection");
+            this.connection.outputFailed();
+            return false;
+        }
+        final int depth = this.queue.size();
+        synchronized (this) {
+            if (depth > this.maximumDepth) this.maximumDepth = depth;
+        }
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void askToStop() {
+        if (this.stopped) return;
+        this.stopped = true;
+        if (!this.queue.offer(new Item(new byte[0]))) interrupt();
+        if (Thread.currentThread() == this) return;
+        try {
+            join(DRAIN_TIMEOUT);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        if (isAlive()) interrupt();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getDepth() {
+        return this.queue.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized int getMaximumDepth() {
+        return this.maximumDepth;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getWritten() {
+        return this.written;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getBytesWritten() {
+        return this.bytesWritten;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getMeanLatency() {
+        return (this.written == 0) ? 0
+            : this.latency / this.written / 1000L;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized long getMaximumLatency() {
+        return this.maximumLatency / 1000L;
+    }
+
+
+    // Internals
+
+    /**
+     * Record a written message.
+     *
+     * @param item The {@code Item} written.
+     */
+    private synchronized void record(Item item) {
+        final long t = System.nanoTime() - item.queued;
+        this.written++;
+        this.bytesWritten += item.bytes.length;
+        this.latency += t;
+        if (t > this.maximumLatency) this.maximumLatency = t;
+    }
+
+
+    // Override Thread
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void run() {
+        try {
+            for (;;) {
+                Item item = this.queue.take();
+                if (item.bytes.length == 0) break;
+                this.os.write(item.bytes);
+                // Flush only when nothing else is ready, so that bursts
+                // of small messages share socket writes.
+                if (this.queue.isEmpty()) this.os.flush();
+                record(item);
+            }
+            this.os.flush();
+        } catch (InterruptedException ie) {
+            logger.fine(getName() + ": interrupted");
+        } catch (IOException ioe) {
+            if (!this.stopped) {
+                logger.log(Level.WARNING, getName() + ": write failed", ioe);
+                this.stopped = true;
+                this.connection.outputFailed();
+            }
+        } finally {
+            this.stopped = true;
+            this.queue.clear();
+        }
+    }
+}
@@ -625,7 +625,8 @@ public abstract class ServerAPI {
     public boolean login(String userName, String version,
                          boolean single, boolean current) {
         return ask(new LoginMessage(null, userName, version, null,
-                                    single, current, null));
+                                    single, current, null)
+            .setBinary(true));
     }
 
     /**
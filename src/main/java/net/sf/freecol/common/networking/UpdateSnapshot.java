@@ -0,0 +1,273 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.networking;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.io.HashingXMLStreamWriter;
+import net.sf.freecol.common.model.FreeColGameObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Ownable;
+import net.sf.freecol.server.model.ServerPlayer;
+
+
+/**
+ * The server record of the objects last sent to a player, used to
+ * reduce object updates to what has actually changed.
+ *
+ * For each object sent, the hash of its client view is kept, where
+ * the view of each contained object owned by the player is hashed
+ * separately (see {@link HashingXMLStreamWriter}).  When an update
+ * is due:
+ * <ul>
+ *   <li>if the object has changed in itself, it is sent in full,</li>
+ *   <li>otherwise only the outermost changed contained objects are
+ *       sent, such as the one building of a colony that changed,</li>
+ *   <li>and if nothing has changed, nothing is sent.</li>
+ * </ul>
+ * The client applies updates of contained objects directly, so no
+ * new message type is needed.
+ *
+ * The record must not claim the client has something it does not.
+ * Objects sent by other means, partially updated or removed must be
+ * forgotten, and the whole record is cleared when the player
+ * connection changes.
+ */
+public final class UpdateSnapshot {
+
+    private static final Logger logger = Logger.getLogger(UpdateSnapshot.class.getName());
+
+    /** The record of one object. */
+    private static final class Entry {
+
+        /** The hash of the object view. */
+        public final long hash;
+
+        /** The identifiers of the separately hashed contained objects. */
+        public final List<String> children;
+
+
+        /**
+         * Create a new entry.
+         *
+         * @param hash The view hash.
+         * @param children The contained object identifiers.
+         */
+        public Entry(long hash, List<String> children) {
+            this.hash = hash;
+            this.children = children;
+        }
+    }
+
+    /** The player the updates are for. */
+    private final ServerPlayer serverPlayer;
+
+    /** The entries by object identifier. */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** Update statistics. */
+    private long fullUpdates = 0, partialUpdates = 0, skippedUpdates = 0;
+
+
+    /**
+     * Create a new update snapshot.
+     *
+     * @param serverPlayer The {@code ServerPlayer} the updates are for.
+     */
+    public UpdateSnapshot(ServerPlayer serverPlayer) {
+        this.serverPlayer = serverPlayer;
+    }
+
+
+    /**
+     * Get the number of updates that sent the whole object.
+     *
+     * @return The number of full updates.
+     */
+    public synchronized long getFullUpdates() {
+        return this.fullUpdates;
+    }
+
+    /**
+     * Get the number of updates that sent only contained objects.
+     *
+     * @return The number of partial updates.
+     */
+    public synchronized long getPartialUpdates() {
+        return this.partialUpdates;
+    }
+
+    /**
+     * Get the number of updates that sent nothing.
+     *
+     * @return The number of skipped updates.
+     */
+    public synchronized long getSkippedUpdates() {
+        return this.skippedUpdates;
+    }
+
+    /**
+     * Get the number of objects recorded.
+     *
+     * @return The number of entries.
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Find the objects to send to bring the player view of an object
+     * up to date, and record them as sent.
+     *
+     * @param fcgo The {@code FreeColGameObject} to update.
+     * @return A list of the objects to send, which is empty if the
+     *     player is already up to date.
+     */
+    public synchronized List<FreeColGameObject> update(FreeColGameObject fcgo) {
+        final Game game = fcgo.getGame();
+        final HashingXMLStreamWriter hw = new HashingXMLStreamWriter(id -> {
+                FreeColGameObject o = game.getFreeColGameObject(id);
+                return o instanceof Ownable
+                    && this.serverPlayer.owns((Ownable)o);
+            });
+        try {
+            fcgo.toXML(new FreeColXMLWriter(hw,
+                    FreeColXMLWriter.WriteScope.toClient(this.serverPlayer)));
+        } catch (XMLStreamException xse) {
+            logger.log(Level.WARNING, "Snapshot failed for " + fcgo, xse);
+            forget(fcgo.getId());
+            this.fullUpdates++;
+            return Collections.singletonList(fcgo);
+        }
+
+        // Collect the hashes and children by identifier.  An object
+        // that appears more than once is hashed over all appearances.
+        final int n = hw.getNodeCount();
+        final String rootId = fcgo.getId();
+        final String[] ids = new String[n];
+        final Map<String, Long> hashes = new HashMap<>();
+        final Map<String, List<String>> children = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            ids[i] = (i == n - 1) ? rootId : hw.getId(i);
+            hashes.merge(ids[i], hw.getHash(i),
+                         (a, b) -> 31 * a + b);
+            children.computeIfAbsent(ids[i], k -> new ArrayList<>());
+        }
+        for (int i = 0; i < n - 1; i++) {
+            children.get(ids[hw.getParent(i)]).add(ids[i]);
+        }
+
+        if (isChanged(rootId, hashes)) {
+            record(rootId, hashes, children, new HashSet<>());
+            this.fullUpdates++;
+            return Collections.singletonList(fcgo);
+        }
+        List<FreeColGameObject> result = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        seen.add(rootId);
+        List<String> todo = new ArrayList<>(children.get(rootId));
+        while (!todo.isEmpty()) {
+            String id = todo.remove(todo.size() - 1);
+            if (!seen.add(id)) continue;
+            if (isChanged(id, hashes)) {
+                FreeColGameObject o = game.getFreeColGameObject(id);
+                if (o == null) { // Can not happen, split needs an object
+                    record(rootId, hashes, children, new HashSet<>());
+                    this.fullUpdates++;
+                    return Collections.singletonList(fcgo);
+                }
+                result.add(o);
+                record(id, hashes, children, seen);
+            } else {
+                todo.addAll(children.get(id));
+            }
+        }
+        if (result.isEmpty()) {
+            this.skippedUpdates++;
+        } else {
+            this.partialUpdates++;
+        }
+        return result;
+    }
+
+    /**
+     * Forget an object and its contents, as the player may now have
+     * a different view of them.
+     *
+     * @param id The object identifier.
+     */
+    public synchronized void forget(String id) {
+        Entry e = this.entries.remove(id);
+        if (e != null) {
+            for (String c : e.children) forget(c);
+        }
+    }
+
+    /**
+     * Forget everything.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+
+    // Internals
+
+    /**
+     * Does the player view of an object differ from the last one sent?
+     *
+     * @param id The object identifier.
+     * @param hashes The current view hashes.
+     * @return True if the object has changed.
+     */
+    private boolean isChanged(String id, Map<String, Long> hashes) {
+        Entry e = this.entries.get(id);
+        return e == null || e.hash != hashes.get(id);
+    }
+
+    /**
+     * Record an object and its contents as sent.
+     *
+     * @param id The object identifier.
+     * @param hashes The current view hashes.
+     * @param children The current contained object identifiers.
+     * @param seen The identifiers already handled, updated here.
+     */
+    private void record(String id, Map<String, Long> hashes,
+                        Map<String, List<String>> children,
+                        Set<String> seen) {
+        List<String> c = children.get(id);
+        this.entries.put(id, new Entry(hashes.get(id), c));
+        for (String s : c) {
+            if (seen.add(s)) record(s, hashes, children, seen);
+        }
+    }
+}
@@ -0,0 +1,288 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.common.util;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+/**
+ * A constructor bound to a lambda, for creating objects of a class
+ * found at run time without the cost of reflection.
+ *
+ * Factories are registered when first asked for, and the same
+ * factory is returned for the same class and argument types from
+ * then on, as are failures to find one.  Only public constructors of
+ * public classes are found, like {@link Introspector#instantiate}.
+ * Constructors of up to two arguments are spun into a
+ * {@code Supplier}, {@code Function} or {@code BiFunction}, which
+ * the JIT compiles like a plain {@code new}.  Failing that, the
+ * constructor method handle is used directly.
+ *
+ * @param <T> The type of object to create.
+ */
+public final class Factory<T> {
+
+    /** The registered factories, by class and argument types. */
+    private static final ConcurrentHashMap<List<Object>, Factory<?>> factories
+        = new ConcurrentHashMap<>();
+
+    /** The registered factories, by class name and argument types. */
+    private static final ConcurrentHashMap<List<Object>, Factory<?>> named
+        = new ConcurrentHashMap<>();
+
+    /** Registered for classes or constructors that do not exist. */
+    private static final Factory<Object> NONE
+        = new Factory<>(Object.class, null, null);
+
+    /** The interfaces the constructors are spun into, by arity. */
+    private static final Class<?>[] LAMBDAS = {
+        Supplier.class, Function.class, BiFunction.class
+    };
+
+    /** The methods of the lambda interfaces, by arity. */
+    private static final String[] METHODS = { "get", "apply", "apply" };
+
+    /** The class to create. */
+    private final Class<T> type;
+
+    /** The constructor, with the arguments and result as Objects. */
+    private final MethodHandle handle;
+
+    /** The constructor as a lambda, or null if not available. */
+    private final Object lambda;
+
+
+    /**
+     * Create a new factory.
+     *
+     * @param type The class to create.
+     * @param handle The constructor handle.
+     * @param lambda The constructor as a lambda, or null.
+     */
+    private Factory(Class<T> type, MethodHandle handle, Object lambda) {
+        this.type = type;
+        this.handle = handle;
+        this.lambda = lambda;
+    }
+
+
+    /**
+     * Get the factory for a class and constructor argument types.
+     *
+     * @param <T> The type of object to create.
+     * @param type The class to create.
+     * @param types The types of the constructor arguments.
+     * @return The {@code Factory}, or null if there is no suitable
+     *     constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Factory<T> get(Class<T> type, Class<?>... types) {
+        final List<Object> key = makeKey(type, types);
+        Factory<?> f = factories.get(key);
+        if (f == null) {
+            f = factories.computeIfAbsent(key, k -> bind(type, types));
+        }
+        return (f == NONE) ? null : (Factory<T>)f;
+    }
+
+    /**
+     * Get the factory for a class name and constructor argument types.
+     *
+     * @param <T> The type of object to create.
+     * @param name The name of the class to create.
+     * @param base A class the named class must extend.
+     * @param types The types of the constructor arguments.
+     * @return The {@code Factory}, or null if there is no such class,
+     *     it does not extend the base class, or there is no suitable
+     *     constructor.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> Factory<? extends T> get(String name, Class<T> base,
+                                               Class<?>... types) {
+        final List<Object> key = makeKey(name, types);
+        Factory<?> f = named.get(key);
+        if (f == null) {
+            f = named.computeIfAbsent(key, k -> {
+                    Class<?> c = Introspector.getClassByName(name);
+                    if (c == null || !base.isAssignableFrom(c)) return NONE;
+                    Factory<?> ret = get(c, types);
+                    return (ret == null) ? NONE : ret;
+                });
+        }
+        return (f == NONE) ? null : (Factory<? extends T>)f;
+    }
+
+    /**
+     * Get the class this factory creates.
+     *
+     * @return The class.
+     */
+    public Class<T> getType() {
+        return this.type;
+    }
+
+    /**
+     * Get the number of constructor arguments.
+     *
+     * @return The number of arguments.
+     */
+    public int getArity() {
+        return this.handle.type().parameterCount();
+    }
+
+    /**
+     * Create an object with the trivial constructor.
+     *
+     * @return The new object.
+     * @exception Introspector.IntrospectorException if the constructor
+     *     fails.
+     */
+    @SuppressWarnings("unchecked")
+    public T create() throws Introspector.IntrospectorException {
+        try {
+            return this.type.cast((this.lambda != null)
+                ? ((Supplier<Object>)this.lambda).get()
+                : (Object)this.handle.invokeExact());
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw fail(t);
+        }
+    }
+
+    /**
+     * Create an object with a one argument constructor.
+     *
+     * @param arg The constructor argument.
+     * @return The new object.
+     * @exception Introspector.IntrospectorException if the constructor
+     *     fails.
+     */
+    @SuppressWarnings("unchecked")
+    public T create(Object arg) throws Introspector.IntrospectorException {
+        try {
+            return this.type.cast((this.lambda != null)
+                ? ((Function<Object, Object>)this.lambda).apply(arg)
+                : (Object)this.handle.invokeExact(arg));
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw fail(t);
+        }
+    }
+
+    /**
+     * Create an object with a two argument constructor.
+     *
+     * @param arg1 The first constructor argument.
+     * @param arg2 The second constructor argument.
+     * @return The new object.
+     * @exception Introspector.IntrospectorException if the constructor
+     *     fails.
+     */
+    @SuppressWarnings("unchecked")
+    public T create(Object arg1, Object arg2)
+        throws Introspector.IntrospectorException {
+        try {
+            return this.type.cast((this.lambda != null)
+                ? ((BiFunction<Object, Object, Object>)this.lambda)
+                    .apply(arg1, arg2)
+                : (Object)this.handle.invokeExact(arg1, arg2));
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw fail(t);
+        }
+    }
+
+
+    // Internals
+
+    /**
+     * Make a registry key.
+     *
+     * @param type The class or class name.
+     * @param types The types of the constructor arguments.
+     * @return A key for the class and argument types.
+     */
+    private static List<Object> makeKey(Object type, Class<?>[] types) {
+        List<Object> key = new ArrayList<>(types.length + 1);
+        key.add(type);
+        key.addAll(Arrays.asList(types));
+        return key;
+    }
+
+    /**
+     * Bind a constructor to a lambda and a method handle.
+     *
+     * @param <T> The type of object to create.
+     * @param type The class to create.
+     * @param types The types of the constructor arguments.
+     * @return A new {@code Factory}, or {@code NONE} if there is no
+     *     accessible constructor.
+     */
+    private static <T> Factory<?> bind(Class<T> type, Class<?>[] types) {
+        final MethodHandle mh;
+        try {
+            Constructor<T> c = type.getDeclaredConstructor(types);
+            mh = MethodHandles.publicLookup().unreflectConstructor(c);
+        } catch (NoSuchMethodException | SecurityException
+                 | IllegalAccessException ex) {
+            return NONE;
+        }
+        final int n = types.length;
+        final MethodType generic = MethodType.genericMethodType(n);
+        Object lambda = null;
+        if (n < LAMBDAS.length) {
+            try {
+                lambda = LambdaMetafactory.metafactory(MethodHandles.lookup(),
+                    METHODS[n], MethodType.methodType(LAMBDAS[n]),
+                    generic, mh, mh.type()).getTarget().invoke();
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable t) {
+                lambda = null; // Fall back to the method handle
+            }
+        }
+        return new Factory<>(type, mh.asType(generic), lambda);
+    }
+
+    /**
+     * Wrap a failure of a constructor.
+     *
+     * @param t The {@code Throwable} thrown.
+     * @return An {@code IntrospectorException} to throw.
+     */
+    private Introspector.IntrospectorException fail(Throwable t) {
+        return new Introspector.IntrospectorException("Failed to construct "
+            + this.type.getName(), t);
+    }
+}
@@ -37,8 +37,11 @@ import java.io.Writer;
 import java.nio.CharBuffer;
 import java.nio.charset.StandardCharsets;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -343,4 +346,22 @@ public class Utils {
             }
         }
     }
+
+    /**
+     * Run tasks concurrently and wait for them all to finish.
+     *
+     * The tasks run on the common fork/join pool, so no more run at
+     * once than it has threads.  The tasks must not change anything
+     * another task reads, and nothing else may change it until this
+     * returns.
+     *
+     * @param tasks The {@code Runnable}s to run.
+     */
+    public static void runConcurrently(List<Runnable> tasks) {
+        List<ForkJoinTask<?>> running = new ArrayList<>(tasks.size());
+        for (Runnable r : tasks) {
+            running.add(ForkJoinPool.commonPool().submit(r));
+        }
+        for (ForkJoinTask<?> t : running) t.join();
+    }
 }
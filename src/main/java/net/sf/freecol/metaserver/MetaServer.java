@@ -31,6 +31,7 @@ import java.util.logging.Logger;
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.metaserver.ServerInfo;
 import net.sf.freecol.common.networking.Connection;
+import net.sf.freecol.common.networking.NioTransport;
 
 
 /**
@@ -71,10 +72,24 @@ public final class MetaServer extends Thread {
      * @throws IOException if the public socket cannot be created.
      */
     public MetaServer(int port) throws IOException {
+        this(port, false);
+    }
+
+    /**
+     * Creates a new network server, optionally serving its
+     * connections with the non-blocking transport.
+     * 
+     * @param port The TCP port to use for the public socket.
+     * @param nio If true, use the {@code NioTransport}.
+     * @throws IOException if the public socket cannot be created.
+     */
+    public MetaServer(int port, boolean nio) throws IOException {
         this.port = port;
         final MetaRegister mr = new MetaRegister();
         this.metaServerHandler = new MetaServerHandler(this, mr);
-        this.serverSocket = new ServerSocket(port);
+        this.serverSocket = (nio)
+            ? NioTransport.openServerSocket(null, port, 50)
+            : new ServerSocket(port);
     }
 
     /**
@@ -154,7 +169,7 @@ public final class MetaServer extends Thread {
                 clientSocket = serverSocket.accept();
                 logger.info("Client connection from: "
                     + clientSocket.getInetAddress().toString());
-                Connection connection = new Connection(clientSocket,
+                Connection connection = Connection.open(clientSocket,
                     FreeCol.METASERVER_THREAD)
                     .setMessageHandler(getMetaServerHandler());
                 this.connections.put(clientSocket, connection);
@@ -173,17 +188,19 @@ public final class MetaServer extends Thread {
      */
     public static void main(String[] args) {
         int port = -1;
+        boolean nio = false;
         try {
             port = Integer.parseInt(args[0]);
+            nio = args.length > 1 && "--nio".equals(args[1]);
         } catch (ArrayIndexOutOfBoundsException|NumberFormatException e) {
             System.out.println("Usage: " + MetaServer.class.getName()
-                + " PORT_NUMBER");
+                + " PORT_NUMBER [--nio]");
             System.exit(1);
         }
 
         MetaServer metaServer = null;
         try {
-            metaServer = new MetaServer(port);
+            metaServer = new MetaServer(port, nio);
         } catch (IOException e) {
             logger.log(Level.SEVERE, "Could not create MetaServer!", e);
             System.exit(1);
@@ -626,7 +626,7 @@ public final class FreeColServer {
      */
     public void addNewUserConnection(Socket socket) throws IOException {
         final String name = socket.getInetAddress() + ":" + socket.getPort();
-        Connection c = new Connection(socket, FreeCol.SERVER_THREAD + name)
+        Connection c = Connection.open(socket, FreeCol.SERVER_THREAD + name)
             .setMessageHandler(this.userConnectionHandler);
         getServer().addConnection(c);
         // Short delay here improves reliability
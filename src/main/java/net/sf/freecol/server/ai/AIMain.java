@@ -45,6 +45,7 @@ import static net.sf.freecol.common.util.CollectionUtils.*;
 import net.sf.freecol.common.util.LogBuilder;
 import static net.sf.freecol.common.util.RandomUtils.*;
 import static net.sf.freecol.common.util.StringUtils.*;
+import net.sf.freecol.common.util.Utils;
 import net.sf.freecol.server.FreeColServer;
 import net.sf.freecol.server.model.ServerPlayer;
 
@@ -60,6 +61,18 @@ public class AIMain extends FreeColObject
 
     public static final String TAG = "aiMain";
 
+    /**
+     * The number of identifiers reserved for each AI player when
+     * planning in parallel.
+     */
+    private static final int PLAN_ID_BLOCK = 1 << 12;
+
+    /**
+     * The identifier range reserved for the AI player planning in
+     * the current thread, if any, as {next, limit}.
+     */
+    private static final ThreadLocal<int[]> planIds = new ThreadLocal<>();
+
     /** The server that this AI is operating within. */
     private final FreeColServer freeColServer;
 
@@ -126,9 +139,51 @@ public class AIMain extends FreeColObject
      * @return A unique identifier.
      */
     public String getNextId() {
-        String id = Integer.toString(nextId);
-        nextId++;
-        return id;
+        final int[] range = planIds.get();
+        if (range != null) {
+            if (range[0] < range[1]) return Integer.toString(range[0]++);
+            logger.warning("AI planning identifiers exhausted");
+        }
+        synchronized (this) {
+            return Integer.toString(nextId++);
+        }
+    }
+
+    /**
+     * Plan the coming turn of all the live AI players, concurrently.
+     *
+     * Must be called while the game is not changing, so that all the
+     * players plan against the same state.  Each player draws its AI
+     * object identifiers from its own reserved range, so the outcome
+     * does not depend on the order the plans run in.
+     */
+    public void planTurns() {
+        final List<AIPlayer> aiPlayers = transform(getGame()
+            .getLivePlayers(), Player::isAI, p -> getAIPlayer(p),
+            toListNoNulls());
+        if (aiPlayers.isEmpty()) return;
+        final int base;
+        synchronized (this) {
+            base = nextId;
+            nextId += aiPlayers.size() * PLAN_ID_BLOCK;
+        }
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < aiPlayers.size(); i++) {
+            final AIPlayer aip = aiPlayers.get(i);
+            final int start = base + i * PLAN_ID_BLOCK;
+            tasks.add(() -> {
+                    planIds.set(new int[] { start, start + PLAN_ID_BLOCK });
+                    try {
+                        aip.planTurn();
+                    } catch (RuntimeException re) {
+                        logger.log(Level.WARNING, "Planning failed for "
+                            + aip.getPlayer().getDebugName(), re);
+                    } finally {
+                        planIds.remove();
+                    }
+                });
+        }
+        Utils.runConcurrently(tasks);
     }
 
     /**
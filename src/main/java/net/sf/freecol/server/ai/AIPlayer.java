@@ -26,6 +26,7 @@ import java.util.logging.Logger;
 import javax.xml.stream.XMLStreamException;
 
 import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.debug.Metrics;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.model.Colony;
@@ -40,6 +41,7 @@ import net.sf.freecol.common.model.Monarch.MonarchAction;
 import net.sf.freecol.common.model.NationSummary;
 import net.sf.freecol.common.model.NativeTrade;
 import net.sf.freecol.common.model.NativeTrade.NativeTradeAction;
+import net.sf.freecol.common.model.PathCache;
 import net.sf.freecol.common.model.Player;
 import net.sf.freecol.common.model.Region;
 import net.sf.freecol.common.model.Settlement;
@@ -249,6 +251,17 @@ public abstract class AIPlayer extends AIObject {
             .getStanceFromTension(player.getTension(other));
     }
 
+    /**
+     * Log the path cache statistics for this player this turn.
+     *
+     * @param lb A {@code LogBuilder} to log to.
+     */
+    protected void logPathCache(LogBuilder lb) {
+        final PathCache pc = getGame().getMap().getPathCache();
+        lb.add("\n  Path cache: hits=", pc.getHits(player),
+               " misses=", pc.getMisses(player));
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -524,7 +537,9 @@ public abstract class AIPlayer extends AIObject {
     public void setCurrentPlayerHandler(Player currentPlayer) {
         if (getPlayer().getId().equals(currentPlayer.getId())) {
             invoke(() -> {
+                    final long start = Metrics.start();
                     startWorking();
+                    Metrics.stop("ai.startWorking", start);
                     AIMessage.askEndTurn(this);
                 });
         }
@@ -540,6 +555,17 @@ public abstract class AIPlayer extends AIObject {
      */
     public abstract void startWorking();
 
+    /**
+     * Plan ahead for the coming turn.
+     *
+     * Called at the start of a new turn, concurrently with the other
+     * AI players, so implementations may change only this player's
+     * AI state and must otherwise only read the game.  The plan is
+     * used by {@link #startWorking} if still valid when the turn of
+     * this player comes.
+     */
+    public void planTurn() {}
+
     /**
      * Decide whether to accept an Indian demand, or not.  Or for native
      * players, return the result of the demand.
@@ -31,6 +31,7 @@ import net.sf.freecol.common.model.AbstractGoods;
 import net.sf.freecol.common.model.BuildableType;
 import net.sf.freecol.common.model.BuildingType;
 import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.ColonyWhatIf;
 import net.sf.freecol.common.model.FreeColObject;
 import net.sf.freecol.common.model.GoodsContainer;
 import net.sf.freecol.common.model.GoodsType;
@@ -1140,14 +1141,16 @@ public class ColonyPlan {
         List<WorkLocationPlan> foodPlans = getFoodPlans();
         List<WorkLocationPlan> workPlans = getWorkPlans();
 
-        // Make a scratch colony to work on.
-        Colony col = colony.copyColony();
+        // Make a scratch colony to work on.  Trial placements are
+        // made through the sandbox so that they can be rolled back.
+        final ColonyWhatIf whatIf = new ColonyWhatIf(colony);
+        Colony col = whatIf.getScratch();
         Tile tile = col.getTile();
 
         // Replace the given workers with those in the scratch colony.
         List<Unit> otherWorkers = new ArrayList<>(workers);
         workers.clear();
-        for (Unit u : otherWorkers) workers.add(col.getCorresponding(u));
+        for (Unit u : otherWorkers) workers.add(whatIf.getCorresponding(u));
 
         // Move all workers to the tile.
         // Also remove equipment, which is safe because no missionaries
@@ -1250,7 +1253,7 @@ public class ColonyPlan {
 
                 String err = null;
                 goodsType = wlp.getGoodsType();
-                wl = col.getCorresponding(wlp.getWorkLocation());
+                wl = whatIf.getCorresponding(wlp.getWorkLocation());
                 best = null;
                 lb.add("    ", LogBuilder.wide(2, col.getUnitCount()),
                        ": ", LogBuilder.wide(-15, goodsType.getSuffix()),
@@ -1272,11 +1275,12 @@ public class ColonyPlan {
                 }
 
                 // Found a suitable worker, place it.
-                best.setLocation(wl);
+                final int trial = whatIf.mark();
+                whatIf.place(best, wl);
 
                 // Did the placement break the production bonus?
                 if (col.getProductionBonus() < 0) {
-                    best.setLocation(tile);
+                    whatIf.rollback(trial);
                     done = true;
                     lb.add("    broke production bonus\n");
                     break;
@@ -1290,7 +1294,7 @@ public class ColonyPlan {
                         // Too close for comfort.  Back out the
                         // placement and try a food plan, unless this
                         // was already a food plan.
-                        best.setLocation(tile);
+                        whatIf.rollback(trial);
                         wlp = null;
                         if (goodsType.isFoodType()) {
                             lb.add("    starvation (", count, "/", net, ")\n");
@@ -1335,7 +1339,7 @@ public class ColonyPlan {
 
                 // Yes, we need more of the raw material.  Pull the
                 // unit out again and see if we can make more.
-                best.setLocation(tile);
+                whatIf.rollback(trial);
 
                 WorkLocationPlan rawWlp = findPlan(raw, workPlans);
                 if (rawWlp != null) {
@@ -1390,18 +1394,17 @@ locations:      for (WorkLocation wl : col.getAvailableWorkLocationsList()) {
             } else {
 plans:          for (WorkLocationPlan w : getFoodPlans()) {
                     GoodsType goodsType = w.getGoodsType();
-                    WorkLocation wl = col.getCorresponding(w.getWorkLocation());
+                    WorkLocation wl = whatIf.getCorresponding(w.getWorkLocation());
                     for (Unit u : new ArrayList<>(workers)) {
-                        GoodsType oldWork = u.getWorkType();
-                        u.setLocation(wl);
-                        u.changeWorkType(goodsType);
+                        final int trial = whatIf.mark();
+                        whatIf.place(u, wl);
+                        whatIf.setWorkType(u, goodsType);
                         if (col.getAdjustedNetProductionOf(foodType) >= 0) {
                             lb.add("    Subsist with ", u, "\n");
                             workers.remove(u);
                             break plans;
                         }
-                        u.setLocation(tile);
-                        u.changeWorkType(oldWork);
+                        whatIf.rollback(trial);
                     }
                 }
             }
@@ -252,6 +252,15 @@ public class EuropeanAIPlayer extends MissionAIPlayer {
     /** Count of the number of transports needing a naval unit. */
     private int nNavalCarrier = 0;
 
+    /** The turn number planned for by planTurn, or -1 if none. */
+    private volatile int plannedTurn = -1;
+
+    /** The colonies the plan covered. */
+    private List<AIColony> plannedColonies = null;
+
+    /** The log of the planning. */
+    private String plannedLog = null;
+
 
     /**
      * Creates a new {@code EuropeanAIPlayer}.
@@ -2300,12 +2309,17 @@ public class EuropeanAIPlayer extends MissionAIPlayer {
                 }
             }
 
-            lb.add("\n  Update colonies:");
-            for (AIColony aic : getAIColonies()) aic.update(lb);
+            if (!usePlan(turn, lb)) {
+                lb.add("\n  Update colonies:");
+                for (AIColony aic : getAIColonies()) aic.update(lb);
 
-            buildTipMap(lb);
-            buildWishMaps(lb);
+                buildTipMap(lb);
+                buildWishMaps(lb);
+            }
         }
+        plannedTurn = -1;
+        plannedColonies = null;
+        plannedLog = null;
         cheat(lb);
         buildTransportMaps(lb);
 
@@ -2321,6 +2335,7 @@ public class EuropeanAIPlayer extends MissionAIPlayer {
             if (aiUnits.isEmpty()) break;
             aiUnits = doMissions(aiUnits, lb);
         }
+        logPathCache(lb);
         lb.log(logger, Level.FINE);
 
         clearAIUnits();
@@ -2332,6 +2347,41 @@ public class EuropeanAIPlayer extends MissionAIPlayer {
         workerWishes.clear();
     }
 
+    /**
+     * Can the plan made by planTurn be used?
+     *
+     * The plan is valid if it is for this turn and the player still
+     * has the same colonies.  Other players may have moved since, but
+     * the missions check their targets anyway.
+     *
+     * @param turn The current {@code Turn}.
+     * @param lb A {@code LogBuilder} to log to.
+     * @return True if the plan is used.
+     */
+    private boolean usePlan(Turn turn, LogBuilder lb) {
+        if (plannedTurn != turn.getNumber()
+            || !getAIColonies().equals(plannedColonies)) return false;
+        lb.add(plannedLog);
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void planTurn() {
+        final List<AIColony> aiColonies = getAIColonies();
+        if (aiColonies.isEmpty()) return;
+        LogBuilder lb = new LogBuilder(256);
+        lb.add("\n  Update colonies (planned):");
+        for (AIColony aic : aiColonies) aic.update(lb);
+        buildTipMap(lb);
+        buildWishMaps(lb);
+        plannedLog = lb.toString();
+        plannedColonies = aiColonies;
+        plannedTurn = getGame().getTurn().getNumber();
+    }
+
     /**
      * {@inheritDoc}
      */
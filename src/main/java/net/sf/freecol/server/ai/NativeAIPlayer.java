@@ -754,6 +754,7 @@ public class NativeAIPlayer extends MissionAIPlayer {
             doMissions(more, lb);
         }
         clearAIUnits();
+        logPathCache(lb);
         lb.log(logger, Level.FINEST);
     }
 
@@ -397,7 +397,8 @@ public class BuildColonyMission extends Mission {
         for (;;) {
             // Go there.
             Unit.MoveType mt = travelToTarget(getTarget(),
-                CostDeciders.avoidSettlementsAndBlockingUnits(), lb);
+                CostDeciders.hierarchical(CostDeciders
+                    .avoidSettlementsAndBlockingUnits()), lb);
             switch (mt) {
             case MOVE: // Arrived
                 break;
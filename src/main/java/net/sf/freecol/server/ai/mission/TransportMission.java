@@ -20,6 +20,9 @@
 package net.sf.freecol.server.ai.mission;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Objects;
 import java.util.logging.Logger;
@@ -83,6 +86,14 @@ public class TransportMission extends Mission {
      */
     private static final int DESTINATION_UPPER_BOUND = 4;
 
+    /**
+     * The largest number of stops for which the best visiting order
+     * is found.  The search is exponential in the number of stops,
+     * but only over subsets, so this can well exceed the bound on
+     * destinations.
+     */
+    private static final int ROUTE_UPPER_BOUND = 10;
+
     private static final int MINIMUM_GOLD_TO_STAY_IN_EUROPE = 600;
 
     /** A list of {@code Cargo}s to work on. */
@@ -91,6 +102,16 @@ public class TransportMission extends Mission {
     /** The current target location to travel to. */
     private Location target;
 
+    /** The turn in which the travel times were found. */
+    private int travelTurn = -1;
+
+    /** The carrier location from which the travel times were found. */
+    private Location travelFrom = null;
+
+    /** The carrier travel times between cargo stops. */
+    private final java.util.Map<Location, java.util.Map<Location, Integer>>
+        travelTimes = new HashMap<>();
+
 
     /**
      * Creates a mission for the given {@code AIUnit}.
@@ -1061,43 +1082,153 @@ public class TransportMission extends Mission {
     }
 
     /**
-     * Calculates a score for a proposed list of
-     * {@code Cargo}s using the current unit.  Disallows
-     * routes that would overfill the carrier.
+     * Get the number of turns the carrier takes to travel between
+     * two cargo stops.  The answers are remembered until the turn
+     * changes or the carrier moves, as the stops of a carrier are
+     * visited over many turns and the routes between them rarely
+     * change, but the carrier position and moves left feed into the
+     * time to travel.
      *
-     * Useful for comparing proposed cargo delivery routes.  The
-     * score is based primarily on the number of turns it takes, but
-     * to break ties we also consider the hold*turn product to reduce
-     * the risk of losses due to enemy action.
+     * @param from The {@code Location} to start from.
+     * @param to The {@code Location} to travel to.
+     * @return The number of turns to travel, or {@code MANY_TURNS}.
+     */
+    private int getTravelTurns(Location from, Location to) {
+        final Unit carrier = getUnit();
+        final int turn = carrier.getGame().getTurn().getNumber();
+        final Location loc = carrier.getLocation();
+        if (this.travelTurn != turn || this.travelFrom != loc) {
+            this.travelTimes.clear();
+            this.travelTurn = turn;
+            this.travelFrom = loc;
+        }
+        java.util.Map<Location, Integer> times = this.travelTimes.get(from);
+        if (times == null) {
+            times = new HashMap<>();
+            this.travelTimes.put(from, times);
+        }
+        Integer turns = times.get(to);
+        if (turns == null) {
+            turns = carrier.getTurnsToReach(from, to);
+            times.put(to, turns);
+        }
+        return turns;
+    }
+
+    /**
+     * Find the best order to visit a list of cargoes in, using the
+     * current unit.  Disallows routes that would overfill the carrier.
+     *
+     * The score of a route is based primarily on the number of turns
+     * it takes, but to break ties we also consider the hold*turn
+     * product to reduce the risk of losses due to enemy action, with
+     * a slight preference for large loads first.  The cost of each
+     * leg only depends on the cargoes already visited and the last
+     * of them, so rather than scoring every permutation the best
+     * route to each such state is built up over subsets of the
+     * cargoes (the Held-Karp method).  The travel times between the
+     * cargo stops are only found again when the turn changes or the
+     * carrier moves.
      *
      * @param initialLocation The initial {@code Location}.
-     * @param order An ordering of {@code Cargo}s.
-     * @return A score for the cargo ordering.
+     * @param ts The list of {@code Cargo}s to order.
+     * @return The best ordering of the cargoes, or null if none is
+     *     acceptable.
      */
-    private float scoreCargoOrder(Location initialLocation, List<Cargo> order) {
+    private List<Cargo> findBestCargoOrder(Location initialLocation,
+                                           List<Cargo> ts) {
         final Unit carrier = getUnit();
         final int maxHolds = carrier.getCargoCapacity();
-        int holds = carrier.getCargoSpaceTaken();
-        Location now = initialLocation;
-        float totalHoldTurns = 0.0f;
-        float totalTurns = 0.0f;
-        float favourEarly = 1.0f;
-
-        for (Cargo cargo : order) {
-            int turns = carrier.getTurnsToReach(now, cargo.getCarrierTarget());
-            totalTurns += turns; // Might be MANY_TURNS!
-            totalHoldTurns += holds * turns * favourEarly;
-            holds += cargo.getNewSpace();
-            if (holds < 0 || holds > maxHolds) return -1.0f;
-            now = cargo.getCarrierTarget();
-            favourEarly += 0.1f; // Slight preference for large loads first
+        final int n = ts.size(), all = (1 << n) - 1;
+
+        // The travel times, the holds used after visiting each subset,
+        // and the preference for early loads after each number of stops.
+        final int[] first = new int[n];
+        final int[][] legs = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            final Location from = ts.get(i).getCarrierTarget();
+            first[i] = carrier.getTurnsToReach(initialLocation, from);
+            for (int j = 0; j < n; j++) {
+                if (i != j) {
+                    legs[i][j] = getTravelTurns(from,
+                                                ts.get(j).getCarrierTarget());
+                }
+            }
+        }
+        final int[] holds = new int[all + 1];
+        holds[0] = carrier.getCargoSpaceTaken();
+        for (int s = 1; s <= all; s++) {
+            final int low = Integer.numberOfTrailingZeros(s);
+            holds[s] = holds[s & (s - 1)] + ts.get(low).getNewSpace();
         }
-        return totalTurns + 0.001f * totalHoldTurns;
+        final float[] favourEarly = new float[n];
+        favourEarly[0] = 1.0f;
+        for (int i = 1; i < n; i++) {
+            favourEarly[i] = favourEarly[i-1] + 0.1f;
+        }
+
+        // The best route visiting a subset and ending at a cargo,
+        // kept as its total turns and hold-turns, and the previous
+        // cargo on the route.
+        final float[][] turns = new float[all + 1][n];
+        final float[][] holdTurns = new float[all + 1][n];
+        final int[][] previous = new int[all + 1][n];
+        for (float[] t : turns) Arrays.fill(t, -1.0f);
+        for (int i = 0; i < n; i++) {
+            final int s = 1 << i;
+            if (holds[s] < 0 || holds[s] > maxHolds) continue;
+            turns[s][i] = first[i];
+            holdTurns[s][i] = holds[0] * first[i] * favourEarly[0];
+            previous[s][i] = -1;
+        }
+        for (int s = 1; s < all; s++) {
+            final int size = Integer.bitCount(s);
+            for (int i = 0; i < n; i++) {
+                if (turns[s][i] < 0.0f) continue;
+                for (int j = 0; j < n; j++) {
+                    final int t = s | (1 << j);
+                    if (t == s || holds[t] < 0 || holds[t] > maxHolds) {
+                        continue;
+                    }
+                    final float tt = turns[s][i] + legs[i][j];
+                    final float ht = holdTurns[s][i]
+                        + holds[s] * legs[i][j] * favourEarly[size];
+                    if (turns[t][j] < 0.0f
+                        || tt + 0.001f * ht
+                        < turns[t][j] + 0.001f * holdTurns[t][j]) {
+                        turns[t][j] = tt;
+                        holdTurns[t][j] = ht;
+                        previous[t][j] = i;
+                    }
+                }
+            }
+        }
+
+        int last = -1;
+        float bestValue = INFINITY;
+        for (int i = 0; i < n; i++) {
+            if (turns[all][i] < 0.0f) continue;
+            final float value = turns[all][i] + 0.001f * holdTurns[all][i];
+            if (value > 0.0f && bestValue > value) {
+                bestValue = value;
+                last = i;
+            }
+        }
+        if (last < 0) return null;
+        List<Cargo> best = new ArrayList<>(n);
+        for (int s = all, i = last; i >= 0; ) {
+            best.add(ts.get(i));
+            final int p = previous[s][i];
+            s &= ~(1 << i);
+            i = p;
+        }
+        Collections.reverse(best);
+        return best;
     }
 
     /**
      * Sets the current target.
-     * Tries all permutations of cargoes and picks the fastest/safest one.
+     * Finds the fastest/safest order to deliver the cargoes in.
      *
      * Leaves the cargoes in the order they are expected to
      * execute, with valid spaceLeft values.
@@ -1112,25 +1243,16 @@ public class TransportMission extends Mission {
         // that need consideration.
         List<Cargo> ts = wrapCargoes();
         List<Cargo> best = null;
-        if (1 < ts.size() && ts.size() <= DESTINATION_UPPER_BOUND) {
-            // Try all the permutations of visiting order for the
-            // locations, and set the target to the first location
-            // of the best scoring route.
+        if (1 < ts.size() && ts.size() <= ROUTE_UPPER_BOUND) {
+            // Find the best visiting order for the locations, and
+            // set the target to the first location of the route.
             //
             // The target may get recomputed every time a cargo change
             // occurs, so there is no guarantee that the route chosen
             // here is actually executed.  This seems rather
             // inefficient, but we need to be adaptable.
             //
-            final Location current = getUnit().getLocation();
-            float bestValue = INFINITY;
-            for (List<Cargo> tl : getPermutations(ts)) {
-                float value = scoreCargoOrder(current, tl);
-                if (value > 0.0f && bestValue > value) {
-                    bestValue = value;
-                    best = tl;
-                }
-            }
+            best = findBestCargoOrder(getUnit().getLocation(), ts);
         }
         if (best != null) {
             tSet(unwrapCargoes(best), true);
@@ -1403,7 +1525,8 @@ public class TransportMission extends Mission {
         final CostDecider fallBackDecider
             = CostDeciders.avoidSettlementsAndBlockingUnits();
         final EuropeanAIPlayer euaip = getEuropeanAIPlayer();
-        CostDecider costDecider = CostDeciders.defaultCostDeciderFor(unit);
+        CostDecider costDecider = CostDeciders
+            .hierarchical(CostDeciders.defaultCostDeciderFor(unit));
         for (;;) {
             Unit.MoveType mt = travelToTarget(target, costDecider, lb);
             switch (mt) {
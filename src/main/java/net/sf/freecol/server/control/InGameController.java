@@ -29,6 +29,7 @@ import java.util.stream.Collectors;
 
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.debug.FreeColDebugger;
+import net.sf.freecol.common.debug.Metrics;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.model.Ability;
 import net.sf.freecol.common.model.AbstractGoods;
@@ -2053,6 +2054,22 @@ public final class InGameController extends Controller {
      * @return A {@code ChangeSet} encapsulating the end of turn changes.
      */
     public ChangeSet endTurn(ServerPlayer serverPlayer) {
+        final long start = Metrics.start();
+        try {
+            return csEndTurn(serverPlayer);
+        } finally {
+            Metrics.stop("server.endTurn", start);
+        }
+    }
+
+    /**
+     * Ends the turn of the given player, and starts the turn of the
+     * next player to move, beginning a new game turn if needed.
+     *
+     * @param serverPlayer The {@code ServerPlayer} to end the turn of.
+     * @return A {@code ChangeSet} encapsulating the end of turn changes.
+     */
+    private ChangeSet csEndTurn(ServerPlayer serverPlayer) {
         final FreeColServer freeColServer = getFreeColServer();
         final ServerGame serverGame = getGame();
         ServerPlayer winner = (ServerPlayer)serverGame.checkForWinner();
@@ -2071,11 +2088,15 @@ public final class InGameController extends Controller {
 
             // Check for new turn
             if (serverGame.isNextPlayerInNewTurn()) {
+                long start = Metrics.start();
                 serverGame.csNextTurn(cs);
+                Metrics.stop("server.csNextTurn", start);
 
                 LogBuilder lb = new LogBuilder(512);
                 lb.add("New turn ", serverGame.getTurn(), " for ");
+                start = Metrics.start();
                 serverGame.csNewTurn(random, lb, cs);
+                Metrics.stop("server.csNewTurn", start);
                 lb.shrink(", ");
                 lb.log(logger, Level.FINEST);
                 if (debugOnlyAITurns > 0) {
@@ -2086,8 +2107,17 @@ public final class InGameController extends Controller {
                         FreeColDebugger.signalEndDebugRun();
                     }
                 }
+                start = Metrics.start();
                 serverGame.sendToAll(cs); // Flush changes
+                Metrics.stop("server.sendNewTurn", start);
                 cs.clear();
+
+                // With the new turn settled, let the AIs plan ahead
+                if (FreeCol.getParallelAI()) {
+                    start = Metrics.start();
+                    freeColServer.getAIMain().planTurns();
+                    Metrics.stop("ai.planTurns", start);
+                }
             }
 
             if ((current = (ServerPlayer)serverGame.getNextPlayer()) == null) {
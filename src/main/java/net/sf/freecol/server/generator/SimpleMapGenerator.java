@@ -476,8 +476,7 @@ public class SimpleMapGenerator implements MapGenerator {
         randomShuffle(logger, "Settlements", settlements, random);
         for (IndianSettlement is : settlements) {
             List<Tile> tiles = transform(is.getOwnedTiles(),
-                t -> any(t.getSurroundingTiles(1, 1),
-                         isNull(Tile::getOwningSettlement)));
+                t -> t.anySurroundingTile(1, isNull(Tile::getOwningSettlement)));
             randomShuffle(logger, "Settlement tiles", tiles, random);
             int minGrow = is.getType().getMinimumGrowth();
             int maxGrow = is.getType().getMaximumGrowth();
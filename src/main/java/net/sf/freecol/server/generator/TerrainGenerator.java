@@ -452,7 +452,7 @@ public class TerrainGenerator {
                 // Do not add hills too close to the ocean/lake, as
                 // this helps with good locations for building
                 // colonies on shore.
-                && none(tile.getSurroundingTiles(1, 1), t -> !t.isLand())) {
+                && tile.allSurroundingTiles(1, Tile::isLand)) {
                 return tile;
             }
         }
@@ -583,7 +583,7 @@ public class TerrainGenerator {
                 if (!riverType.isTileTypeAllowed(tile.getType())) continue;
 
                 // check the river source/spring is not too close to the ocean
-                if (!all(tile.getSurroundingTiles(1, 2), Tile::isLand))
+                if (!tile.allSurroundingTiles(2, Tile::isLand))
                     continue;
 
                 if (riverMap.get(tile) == null) {
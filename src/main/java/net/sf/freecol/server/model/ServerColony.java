@@ -650,6 +650,23 @@ public class ServerColony extends Colony implements TurnTaker {
     }
 
 
+    /**
+     * Prepare for a new turn by bringing the production cache up to
+     * date, so that {@link #csNewTurn} finds it ready.
+     *
+     * Called concurrently for all the colonies of a player before any
+     * of them take their turn, so this must not change anything
+     * outside the production cache of this colony.  The cache is
+     * discarded as usual by anything that changes the production, so
+     * the turn itself sees the same production either way.
+     */
+    public void prepareNewTurn() {
+        if (getUnitCount() <= 0) return; // Will be disposed of
+        getProductionCache().getNetProductionOf(getSpecification()
+            .getPrimaryFoodType());
+    }
+
+
     // Implement TurnTaker
 
     /**
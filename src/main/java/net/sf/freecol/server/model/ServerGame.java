@@ -19,7 +19,6 @@
 
 package net.sf.freecol.server.model;
 
-import java.lang.reflect.InvocationTargetException;
 import java.util.*;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
@@ -34,6 +33,7 @@ import java.util.logging.Logger;
 
 import javax.xml.stream.XMLStreamException;
 
+import net.sf.freecol.common.debug.Metrics;
 import net.sf.freecol.common.i18n.NameCache;
 import net.sf.freecol.common.io.FreeColXMLReader;
 import net.sf.freecol.common.model.Colony;
@@ -70,6 +70,8 @@ import net.sf.freecol.common.networking.NewTurnMessage;
 import net.sf.freecol.common.networking.TrivialMessage;
 import net.sf.freecol.common.option.GameOptions;
 import static net.sf.freecol.common.util.CollectionUtils.*;
+import net.sf.freecol.common.util.Factory;
+import net.sf.freecol.common.util.Introspector.IntrospectorException;
 import net.sf.freecol.common.util.LogBuilder;
 import static net.sf.freecol.common.util.StringUtils.*;
 
@@ -218,21 +220,20 @@ public class ServerGame extends Game implements TurnTaker {
      * @param type The server object tag.
      * @param id The object identifier.
      * @return A trivial server object.
-     * @exception ClassNotFoundException if there is no such type.
-     * @exception IllegalAccessException if the target exists but is hidden.
-     * @exception InstantiationException if the instantiation fails.
-     * @exception InvocationTargetException if the target in not available.
-     * @exception NoSuchMethodException if the tag does not refer to a
-     *      server type.
+     * @exception IntrospectorException if the tag does not refer to a
+     *      server type, or the instantiation fails.
      */
-    private Object makeServerObject(String type, String id)
-        throws ClassNotFoundException, IllegalAccessException,
-               InstantiationException, InvocationTargetException,
-               NoSuchMethodException {
+    private FreeColGameObject makeServerObject(String type, String id)
+        throws IntrospectorException {
         type = "net.sf.freecol.server.model." + capitalize(type);
-        Class<?> c = Class.forName(type);
-        return c.getConstructor(Game.class, String.class)
-            .newInstance(this, id);
+        Factory<? extends FreeColGameObject> factory
+            = Factory.get(type, FreeColGameObject.class,
+                          Game.class, String.class);
+        if (factory == null) {
+            throw new IntrospectorException("No server type: " + type,
+                                            null);
+        }
+        return factory.create(this, id);
     }
 
     /**
@@ -679,7 +680,9 @@ public class ServerGame extends Game implements TurnTaker {
     public void csNewTurn(Random random, LogBuilder lb, ChangeSet cs) {
         lb.add("GAME ", getId(), ", ");
         for (Player player : getLivePlayerList()) {
+            final long start = Metrics.start();
             ((ServerPlayer)player).csNewTurn(random, lb, cs);
+            Metrics.stop("turn.player", start);
         }
 
         final Specification spec = getSpecification();
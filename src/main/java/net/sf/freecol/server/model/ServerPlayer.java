@@ -32,6 +32,7 @@ import java.util.stream.Stream;
 import net.sf.freecol.FreeCol;
 import net.sf.freecol.common.FreeColException;
 import net.sf.freecol.common.debug.FreeColDebugger;
+import net.sf.freecol.common.debug.Metrics;
 import net.sf.freecol.common.i18n.Messages;
 import net.sf.freecol.common.i18n.NameCache;
 import net.sf.freecol.common.model.Ability;
@@ -95,10 +96,12 @@ import net.sf.freecol.common.networking.LootCargoMessage;
 import net.sf.freecol.common.networking.Message;
 import net.sf.freecol.common.networking.MonarchActionMessage;
 import net.sf.freecol.common.networking.SetDeadMessage;
+import net.sf.freecol.common.networking.UpdateSnapshot;
 import net.sf.freecol.common.option.GameOptions;
 import net.sf.freecol.common.option.IntegerOption;
 import net.sf.freecol.common.util.LogBuilder;
 import net.sf.freecol.common.util.RandomChoice;
+import net.sf.freecol.common.util.Utils;
 import static net.sf.freecol.common.util.CollectionUtils.*;
 import static net.sf.freecol.common.util.RandomUtils.*;
 
@@ -155,6 +158,9 @@ public class ServerPlayer extends Player implements TurnTaker {
     /** Accumulate extra trades here. */
     private final List<AbstractGoods> extraTrades = new ArrayList<>();
 
+    /** What this player has been sent of the game objects. */
+    private final UpdateSnapshot updateSnapshot = new UpdateSnapshot(this);
+
 
     /**
      * Trivial constructor for Game.newInstance.
@@ -286,6 +292,16 @@ public class ServerPlayer extends Player implements TurnTaker {
      */
     public void setConnection(Connection connection) {
         this.connection = connection;
+        this.updateSnapshot.clear();
+    }
+
+    /**
+     * Get the record of the game objects sent to this player.
+     *
+     * @return The {@code UpdateSnapshot}.
+     */
+    public UpdateSnapshot getUpdateSnapshot() {
+        return this.updateSnapshot;
     }
 
     /**
@@ -303,7 +319,17 @@ public class ServerPlayer extends Player implements TurnTaker {
      * @return True if the message was sent.
      */
     public boolean send(ChangeSet cs) {
-        return (isConnected()) && this.connection.request(cs.build(this));
+        if (!isConnected()) return false;
+        final long start = Metrics.start();
+        try {
+            if (this.connection.request(cs.build(this))) return true;
+            // The update snapshot was brought up to date when the
+            // message was built, but the client may not have it.
+            this.updateSnapshot.clear();
+            return false;
+        } finally {
+            Metrics.stop("changeSet.send", start);
+        }
     }
 
     /**
@@ -4410,6 +4436,43 @@ outer:  for (Effect effect : effects) {
     }
 
 
+    /**
+     * Prepare the colonies of this player for a new turn, concurrently.
+     *
+     * Only the production caches are filled in, so the turns that
+     * follow still run one colony at a time in settlement order, and
+     * use the random number source and change set exactly as they
+     * would have without this step.
+     *
+     * The production of each colony is computed from state the
+     * colonies share: the player, its market and the feature
+     * containers of the specification.  This is only safe because
+     * nothing changes that state until every colony is prepared, so
+     * this must only be called from {@link #csNewTurn} before any
+     * settlement takes its turn.  The shared caches read on the way,
+     * such as the {@code FeatureCache}, are thread safe.
+     *
+     * @param settlements The {@code Settlement}s about to take a turn.
+     */
+    private void prepareColonies(List<Settlement> settlements) {
+        final List<ServerColony> colonies = transform(settlements,
+            s -> s instanceof ServerColony, s -> (ServerColony)s);
+        if (colonies.size() < 2) return;
+        List<Runnable> tasks = new ArrayList<>();
+        for (ServerColony sc : colonies) {
+            tasks.add(() -> {
+                    try {
+                        sc.prepareNewTurn();
+                    } catch (RuntimeException re) {
+                        logger.log(Level.WARNING, "Preparing "
+                            + sc.getName() + " failed", re);
+                    }
+                });
+        }
+        Utils.runConcurrently(tasks);
+    }
+
+
     // Implement TurnTaker
 
     /**
@@ -4429,8 +4492,18 @@ outer:  for (Effect effect : effects) {
 
         // Settlements
         List<Settlement> settlements = getSettlementList();
+        long start = Metrics.start();
+        if (FreeCol.getParallelColonies()) {
+            // No settlement has taken its turn yet, so nothing is
+            // changing the player, market or features the
+            // concurrent production calculations read.
+            prepareColonies(settlements);
+            Metrics.stop("turn.prepareColonies", start);
+        }
         for (Settlement settlement : settlements) {
+            start = Metrics.start();
             ((TurnTaker)settlement).csNewTurn(random, lb, cs);
+            Metrics.stop("turn.settlement", start);
             newSoL += settlement.getSoL();
         }
 
@@ -4452,6 +4525,7 @@ outer:  for (Effect effect : effects) {
         newLiberty = getLiberty() - oldLiberty;
         
         // Units.
+        start = Metrics.start();
         for (Unit unit : getUnitList()) {
             try {
                 ((TurnTaker)unit).csNewTurn(random, lb, cs);
@@ -4460,6 +4534,7 @@ outer:  for (Effect effect : effects) {
                            cce);
             }
         }
+        Metrics.stop("turn.units", start);
 
         // Europe.
         if (europe != null) {
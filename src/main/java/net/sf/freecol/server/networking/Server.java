@@ -24,13 +24,16 @@ import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
 import java.util.HashMap;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import net.sf.freecol.FreeCol;
+import net.sf.freecol.common.io.FreeColXMLWriter;
 import net.sf.freecol.common.networking.Connection;
 import net.sf.freecol.common.networking.Message;
 import net.sf.freecol.common.networking.MessageHandler;
+import net.sf.freecol.common.networking.NioTransport;
 import static net.sf.freecol.common.util.CollectionUtils.*;
 import net.sf.freecol.server.FreeColServer;
 
@@ -95,8 +98,11 @@ public final class Server extends Thread {
         this.freeColServer = freeColServer;
         this.host = host;
         this.port = port;
-        this.serverSocket = new ServerSocket(port, BACKLOG_DEFAULT,
-                                             InetAddress.getByName(host));
+        this.serverSocket = (FreeCol.getNioTransport())
+            ? NioTransport.openServerSocket(InetAddress.getByName(host),
+                                            port, BACKLOG_DEFAULT)
+            : new ServerSocket(port, BACKLOG_DEFAULT,
+                               InetAddress.getByName(host));
         this.serverSocket.setReuseAddress(true);
     }
 
@@ -173,16 +179,21 @@ public final class Server extends Thread {
     /**
      * Sends a network message to all connections with an optional exception.
      *
+     * The message is encoded once for all the connections that share
+     * a write scope, and queued to each of them.
+     *
      * @param message The {@code Message} to send.
      * @param exceptConnection An optional {@code Connection} not
      *     to send to.
      */
     public void sendToAll(Message message, Connection exceptConnection) {
+        final Map<FreeColXMLWriter.WriteScope, byte[]> shared
+            = new HashMap<>();
         for (Connection conn : transform(connections.values(),
                                          c -> c != exceptConnection)) {
             if (conn.isAlive()) {
                 try {
-                    conn.sendMessage(message);
+                    conn.sendShared(message, shared);
                 } catch (Exception ex) {
                     logger.log(Level.WARNING, "Unable to send to: " + conn, ex);
                 }
@@ -193,6 +204,23 @@ public final class Server extends Thread {
         }
     }
 
+    /**
+     * Get the output statistics of the connections.
+     *
+     * @return A map of the statistics of each connection, keyed by
+     *     the connection name and the statistic name.
+     */
+    public Map<String, String> getStatistics() {
+        Map<String, String> stats = new HashMap<>();
+        for (Connection conn : transform(connections.values(),
+                                         Connection::isAlive)) {
+            forEachMapEntry(conn.getStatistics(),
+                e -> stats.put("connection." + conn.getName() + "."
+                    + e.getKey(), e.getValue()));
+        }
+        return stats;
+    }
+
     /**
      * Sends a network message to all connections.
      *
@@ -0,0 +1,204 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.io.FreeColDirectories;
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.model.FreeColGameObject;
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.common.option.MapGeneratorOptions;
+import net.sf.freecol.common.option.OptionGroup;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.model.ServerGame;
+
+
+/**
+ * Time reading saved games.
+ *
+ * Usage: LoadBenchmark [--rounds N] [--tc NAME] savegame|WIDTHxHEIGHT...
+ *
+ * Each game is a saved game (.fsg), or a size such as 40x100 for a
+ * new game on a generated map, which is saved to a temporary file
+ * first.  Run from the top level directory so that the data
+ * directory is found.  Each game is read in full, including its
+ * specification, and again using the specification already read,
+ * which isolates the time spent creating and reading game objects.
+ * Finally the creation of empty objects of the same classes as all
+ * those in the game is timed on its own.
+ */
+public class LoadBenchmark {
+
+    /** Warmup rounds. */
+    private static final int WARMUP = 3;
+
+    private static int rounds = 10;
+    private static String tc = "freecol";
+
+
+    public static void main(String[] args) throws Exception {
+        List<String> games = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--rounds".equals(args[i]) && i + 1 < args.length) {
+                rounds = Integer.parseInt(args[++i]);
+            } else if ("--tc".equals(args[i]) && i + 1 < args.length) {
+                tc = args[++i];
+            } else if (args[i].startsWith("--")) {
+                usage();
+            } else {
+                games.add(args[i]);
+            }
+        }
+        if (games.isEmpty()) usage();
+
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        FreeColDirectories.setDataDirectory(null);
+        FreeColTcFile.loadTCs();
+
+        System.out.println(String.format(Locale.ROOT,
+                "%-24s %8s %12s %12s %12s",
+                "game", "objects", "full(ms)", "game(ms)", "create(ms)"));
+        for (String g : games) {
+            final File file = (g.endsWith(".fsg")) ? new File(g) : makeGame(g);
+            final ServerGame game = read(file, null);
+            final Specification spec = game.getSpecification();
+            final long full = time(file, null);
+            final long part = time(file, spec);
+            final List<Class<? extends FreeColObject>> classes
+                = new ArrayList<>();
+            for (FreeColGameObject fcgo : game.getFreeColGameObjectList()) {
+                if (!(fcgo instanceof Game)) classes.add(fcgo.getClass());
+            }
+            final long create = time(game, classes);
+            System.out.println(String.format(Locale.ROOT,
+                    "%-24s %8d %12.2f %12.2f %12.2f", g, classes.size(),
+                    full / 1.0e6 / rounds, part / 1.0e6 / rounds,
+                    create / 1.0e6 / rounds));
+            if (!g.endsWith(".fsg")) file.delete();
+        }
+        System.exit(0);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: LoadBenchmark [--rounds N] [--tc NAME]"
+            + " savegame|WIDTHxHEIGHT...");
+        System.exit(1);
+    }
+
+    /**
+     * Start a new game on a generated map and save it.
+     *
+     * @param g The map size, as WIDTHxHEIGHT.
+     * @return The saved game {@code File}.
+     * @exception Exception on failure.
+     */
+    private static File makeGame(String g) throws Exception {
+        final int x = g.indexOf('x');
+        if (x < 0) usage();
+        Specification spec = FreeColTcFile.getFreeColTcFile(tc)
+            .getSpecification();
+        spec.prepare(null, "model.difficulty.medium");
+        OptionGroup mgo = spec.getMapGeneratorOptions();
+        mgo.setFile(MapGeneratorOptions.IMPORT_FILE, null);
+        mgo.setInteger(MapGeneratorOptions.MAP_WIDTH,
+                       Integer.parseInt(g.substring(0, x)));
+        mgo.setInteger(MapGeneratorOptions.MAP_HEIGHT,
+                       Integer.parseInt(g.substring(x + 1)));
+        FreeColServer server = new FreeColServer(false, true, spec, -1,
+                                                 "LoadBenchmark");
+        server.setServerRandom(new Random(1L));
+        server.getInGameController().setRandom(server.getServerRandom());
+        server.startGame();
+        File file = File.createTempFile("LoadBenchmark", ".fsg");
+        server.saveGame(file, null, null);
+        server.shutdown();
+        return file;
+    }
+
+    /**
+     * Read a saved game.
+     *
+     * @param file The saved game {@code File}.
+     * @param spec An optional {@code Specification} to use.
+     * @return The {@code ServerGame} read.
+     * @exception Exception on failure.
+     */
+    private static ServerGame read(File file, Specification spec)
+        throws Exception {
+        return FreeColServer.readGame(new FreeColSavegameFile(file),
+                                      spec, null);
+    }
+
+    /**
+     * Time reading a saved game.
+     *
+     * @param file The saved game {@code File}.
+     * @param spec An optional {@code Specification} to use.
+     * @return The total time in nanoseconds.
+     * @exception Exception on failure.
+     */
+    private static long time(File file, Specification spec)
+        throws Exception {
+        for (int i = 0; i < WARMUP; i++) read(file, spec);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) read(file, spec);
+        return System.nanoTime() - t0;
+    }
+
+    /**
+     * Time creating empty objects, as happens when reading a game.
+     *
+     * @param game The {@code Game} to create the objects in.
+     * @param classes The classes of the objects to create.
+     * @return The total time in nanoseconds.
+     */
+    private static long time(Game game,
+                             List<Class<? extends FreeColObject>> classes) {
+        for (int i = 0; i < WARMUP; i++) create(game, classes);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) create(game, classes);
+        return System.nanoTime() - t0;
+    }
+
+    /**
+     * Create empty objects.
+     *
+     * @param game The {@code Game} to create the objects in.
+     * @param classes The classes of the objects to create.
+     */
+    private static void create(Game game,
+                               List<Class<? extends FreeColObject>> classes) {
+        for (Class<? extends FreeColObject> c : classes) {
+            if (Game.newInstance(game, c, false) == null) {
+                throw new RuntimeException("Failed to create " + c);
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import net.sf.freecol.common.i18n.Messages;
+import net.sf.freecol.common.io.FreeColDirectories;
+import net.sf.freecol.common.model.StringTemplate;
+
+
+/**
+ * Time the localization of every message in the message bundle.
+ *
+ * Usage: MessagesBenchmark [--rounds N] [--output FILE] [language...]
+ *
+ * Run from the top level directory so that the data directory is
+ * found.  The default language is English.  Each message is used
+ * as a template with its variables filled in, once for each of a
+ * range of amounts so that the plural choices vary, and once as a
+ * plain key.
+ *
+ * The first pass, which compiles the messages, is timed separately
+ * from the later passes.  With --output the localized strings are
+ * written to a file, one per line, so that the results of two builds
+ * can be compared.
+ */
+public class MessagesBenchmark {
+
+    /** The amounts to fill the variables with. */
+    private static final int[] AMOUNTS = { 0, 1, 2, 3, 5, 11, 21, 101 };
+
+    /** A variable in a message. */
+    private static final Pattern VARIABLE = Pattern.compile("%[A-Za-z]+%");
+
+    /** Warmup rounds. */
+    private static final int WARMUP = 5;
+
+
+    public static void main(String[] args) throws Exception {
+        int rounds = 20;
+        File output = null;
+        List<String> languages = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if ("--rounds".equals(args[i]) && i + 1 < args.length) {
+                rounds = Integer.parseInt(args[++i]);
+            } else if ("--output".equals(args[i]) && i + 1 < args.length) {
+                output = new File(args[++i]);
+            } else if (args[i].startsWith("--")) {
+                System.err.println("Usage: MessagesBenchmark [--rounds N] [--output FILE] [language...]");
+                System.exit(1);
+            } else {
+                languages.add(args[i]);
+            }
+        }
+        if (languages.isEmpty()) languages.add("en");
+
+        // Broken messages log warnings on every use
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        FreeColDirectories.setDataDirectory(null);
+
+        System.out.println(String.format(Locale.ROOT,
+                "%-8s %8s %8s %12s %12s", "language", "keys", "calls",
+                "first(ms)", "later(ms)"));
+        try (PrintWriter out = (output == null) ? null
+                : new PrintWriter(new OutputStreamWriter(
+                        new FileOutputStream(output), StandardCharsets.UTF_8))) {
+            for (String language : languages) {
+                final Locale locale = Messages.getLocale(language);
+                Messages.loadMessageBundle(locale);
+                final Map<String, String> bundle = readBundle(locale);
+                final List<StringTemplate> work = makeWork(bundle);
+
+                long t0 = System.nanoTime();
+                final List<String> result = run(work);
+                final long first = System.nanoTime() - t0;
+                if (out != null) {
+                    for (String r : result) out.println(r);
+                }
+
+                final long later = time(work, rounds);
+                System.out.println(String.format(Locale.ROOT,
+                        "%-8s %8d %8d %12.2f %12.2f", language,
+                        bundle.size(), work.size(), first / 1.0e6,
+                        later / 1.0e6 / rounds));
+            }
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Read the keys and messages of the bundle for a locale, as
+     * {@link Messages#loadMessages} does.
+     *
+     * @param locale The {@code Locale} to read.
+     * @return A map of key to message.
+     * @exception IOException if a file can not be read.
+     */
+    private static Map<String, String> readBundle(Locale locale)
+        throws IOException {
+        Map<String, String> bundle = new LinkedHashMap<>();
+        for (File f : FreeColDirectories.getI18nMessageFileList(locale)) {
+            if (!f.canRead()) continue;
+            try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(f), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    line = line.trim();
+                    if (line.startsWith("#")) continue;
+                    int index = line.indexOf('=');
+                    if (index > 0) {
+                        bundle.put(line.substring(0, index).trim(),
+                                   line.substring(index + 1).trim());
+                    }
+                }
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * Make the templates to localize.
+     *
+     * @param bundle The keys and messages.
+     * @return A list of {@code StringTemplate}s.
+     */
+    private static List<StringTemplate> makeWork(Map<String, String> bundle) {
+        List<StringTemplate> work = new ArrayList<>();
+        for (Map.Entry<String, String> e : bundle.entrySet()) {
+            final String key = e.getKey(), value = e.getValue();
+            work.add(StringTemplate.key(key));
+            List<String> variables = new ArrayList<>();
+            Matcher m = VARIABLE.matcher(value);
+            while (m.find()) {
+                if (!variables.contains(m.group())) variables.add(m.group());
+            }
+            if (variables.isEmpty() && !value.contains("{{")) continue;
+            for (int amount : AMOUNTS) {
+                StringTemplate t = StringTemplate.template(key);
+                for (String v : variables) {
+                    if (value.contains("|" + v + "}}")) {
+                        t.addStringTemplate(v, StringTemplate.key(key));
+                    } else {
+                        t.addAmount(v, amount);
+                    }
+                }
+                work.add(t);
+            }
+        }
+        return work;
+    }
+
+    /**
+     * Localize all the templates.
+     *
+     * @param work The {@code StringTemplate}s to localize.
+     * @return The localized strings.
+     */
+    private static List<String> run(List<StringTemplate> work) {
+        List<String> ret = new ArrayList<>(work.size());
+        for (StringTemplate t : work) ret.add(Messages.message(t));
+        return ret;
+    }
+
+    /**
+     * Time localizing all the templates.
+     *
+     * @param work The {@code StringTemplate}s to localize.
+     * @param rounds The number of rounds to time.
+     * @return The total time in nanoseconds.
+     */
+    private static long time(List<StringTemplate> work, int rounds) {
+        for (int i = 0; i < WARMUP; i++) run(work);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) run(work);
+        return System.nanoTime() - t0;
+    }
+}
@@ -0,0 +1,600 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import net.sf.freecol.common.io.FreeColDirectories;
+import net.sf.freecol.common.io.FreeColSavegameFile;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.model.Colony;
+import net.sf.freecol.common.model.FreeColObject;
+import net.sf.freecol.common.model.Game;
+import net.sf.freecol.common.model.GoodsType;
+import net.sf.freecol.common.model.Map;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.model.Unit;
+import net.sf.freecol.common.model.WorkLocation;
+import net.sf.freecol.common.model.pathfinding.GoalDeciders;
+import net.sf.freecol.common.networking.ChangeSet;
+import net.sf.freecol.common.option.MapGeneratorOptions;
+import net.sf.freecol.common.option.OptionGroup;
+import net.sf.freecol.common.util.LogBuilder;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.ai.AIMain;
+import net.sf.freecol.server.ai.AIPlayer;
+import net.sf.freecol.server.model.ServerGame;
+import net.sf.freecol.server.model.ServerPlayer;
+import static net.sf.freecol.common.util.CollectionUtils.*;
+
+
+/**
+ * Measure the server turn throughput of an all-AI game.
+ *
+ * Usage: TurnBenchmark [options] game...
+ *
+ * Each game is a saved game (.fsg), a map to import (.fsm), or a
+ * size such as 40x100 for a generated map.  The options are:
+ * <dl>
+ *   <dt>--turns N</dt><dd>the number of turns to run (default 10)</dd>
+ *   <dt>--seed S</dt><dd>the random seed (default 1)</dd>
+ *   <dt>--tc NAME</dt><dd>the rules to use for new games
+ *       (default freecol)</dd>
+ *   <dt>--format text|json|csv</dt><dd>the result format</dd>
+ *   <dt>--output FILE</dt><dd>write the results to a file</dd>
+ *   <dt>--parallel-ai</dt><dd>plan the AI turns concurrently</dd>
+ *   <dt>--micro</dt><dd>also time single map searches, colony
+ *       production cache updates and object copies, and check the
+ *       copies against copying through XML text</dd>
+ * </dl>
+ *
+ * Run from the top level directory so that the data directory is
+ * found.  Each turn is split into phases: the AI players moving
+ * ("ai"), the concurrent AI planning ("planning", only with
+ * --parallel-ai), the new turn ("newTurn"), and the delivery of the
+ * resulting changes ("delivery").  The time spent in path searches
+ * ("pathfinding") is included in the other phases, and is reported
+ * separately.  Allocation is the total over all live threads, so it
+ * misses threads that have ended.
+ */
+public class TurnBenchmark {
+
+    private static final Logger logger = Logger.getLogger(TurnBenchmark.class.getName());
+
+    /** The phases of a turn. */
+    private static final String[] PHASES = {
+        "ai", "planning", "newTurn", "delivery", "pathfinding"
+    };
+
+    /** Warmup and measurement rounds for the micro benchmarks. */
+    private static final int MICRO_WARMUP = 5, MICRO_ROUNDS = 10;
+
+    private static int turns = 10;
+    private static long seed = 1L;
+    private static String tc = "freecol";
+    private static String format = "text";
+    private static String output = null;
+    private static boolean micro = false;
+
+
+    /** The results for one game. */
+    private static final class Result {
+
+        /** The game description. */
+        public final String game;
+
+        /** The map size. */
+        public int width, height;
+
+        /** The number of AI players. */
+        public int players;
+
+        /** The number of turns run. */
+        public int turns = 0;
+
+        /** The total time of each phase, in ns. */
+        public final long[] phaseNanos = new long[PHASES.length];
+
+        /** The number of map searches. */
+        public long searches = 0;
+
+        /** Total wall time, in ns. */
+        public long wallNanos = 0;
+
+        /** Bytes allocated. */
+        public long allocated = 0;
+
+        /** Heap use after the run, and the peak heap use, in bytes. */
+        public long heapUsed = 0, heapPeak = 0;
+
+        /** The number of copies checked, and how many differed. */
+        public int copyChecked = 0, copyMismatches = 0;
+
+        /** Micro benchmark results, ns per operation. */
+        public final java.util.Map<String, Double> micro
+            = new LinkedHashMap<>();
+
+
+        /**
+         * Create a new result.
+         *
+         * @param game The game description.
+         */
+        public Result(String game) {
+            this.game = game;
+        }
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        List<String> games = new ArrayList<>();
+        boolean parallel = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+            case "--turns": turns = Integer.parseInt(args[++i]); break;
+            case "--seed": seed = Long.parseLong(args[++i]); break;
+            case "--tc": tc = args[++i]; break;
+            case "--format": format = args[++i]; break;
+            case "--output": output = args[++i]; break;
+            case "--parallel-ai": parallel = true; break;
+            case "--micro": micro = true; break;
+            default:
+                if (args[i].startsWith("--")) usage();
+                games.add(args[i]);
+                break;
+            }
+        }
+        if (games.isEmpty()) usage();
+
+        // The AI logs heavily at lower levels
+        Logger.getLogger("").setLevel(Level.SEVERE);
+        FreeColDirectories.setDataDirectory(null);
+        FreeColTcFile.loadTCs();
+
+        List<Result> results = new ArrayList<>();
+        for (String g : games) {
+            System.err.println("Running " + g);
+            results.add(run(g, parallel));
+        }
+
+        PrintWriter out = (output == null)
+            ? new PrintWriter(new OutputStreamWriter(System.out,
+                    StandardCharsets.UTF_8))
+            : new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(output), StandardCharsets.UTF_8));
+        switch (format) {
+        case "json": writeJSON(out, results); break;
+        case "csv": writeCSV(out, results); break;
+        default: writeText(out, results); break;
+        }
+        out.flush();
+        if (output != null) out.close();
+        System.exit(0);
+    }
+
+    private static void usage() {
+        System.err.println("Usage: TurnBenchmark [--turns N] [--seed S]"
+            + " [--tc NAME] [--format text|json|csv] [--output FILE]"
+            + " [--parallel-ai] [--micro] savegame|map|WIDTHxHEIGHT...");
+        System.exit(1);
+    }
+
+    /**
+     * Create a server for a game description.
+     *
+     * @param g The game description.
+     * @return A new {@code FreeColServer} with a started game.
+     * @exception Exception on failure.
+     */
+    private static FreeColServer makeServer(String g) throws Exception {
+        FreeColServer server;
+        if (g.endsWith(".fsg")) {
+            server = new FreeColServer(new FreeColSavegameFile(new File(g)),
+                                       null, -1, "TurnBenchmark");
+        } else {
+            Specification spec = FreeColTcFile.getFreeColTcFile(tc)
+                .getSpecification();
+            spec.prepare(null, "model.difficulty.medium");
+            OptionGroup mgo = spec.getMapGeneratorOptions();
+            if (g.endsWith(".fsm")) {
+                mgo.setFile(MapGeneratorOptions.IMPORT_FILE, new File(g));
+            } else {
+                int x = g.indexOf('x');
+                if (x < 0) usage();
+                mgo.setFile(MapGeneratorOptions.IMPORT_FILE, null);
+                mgo.setInteger(MapGeneratorOptions.MAP_WIDTH,
+                               Integer.parseInt(g.substring(0, x)));
+                mgo.setInteger(MapGeneratorOptions.MAP_HEIGHT,
+                               Integer.parseInt(g.substring(x + 1)));
+            }
+            server = new FreeColServer(false, true, spec, -1,
+                                       "TurnBenchmark");
+        }
+        server.setServerRandom(new Random(seed));
+        server.getInGameController().setRandom(server.getServerRandom());
+        server.startGame();
+        return server;
+    }
+
+    /**
+     * Run one game.
+     *
+     * @param g The game description.
+     * @param parallel If true, plan the AI turns concurrently.
+     * @return The {@code Result} of the run.
+     * @exception Exception on failure.
+     */
+    private static Result run(String g, boolean parallel) throws Exception {
+        final FreeColServer server = makeServer(g);
+        final ServerGame game = server.getGame();
+        final Map map = game.getMap();
+        final AIMain aiMain = server.getAIMain();
+        final Random random = server.getServerRandom();
+        final Result r = new Result(g);
+        r.width = map.getWidth();
+        r.height = map.getHeight();
+        r.players = count(game.getLivePlayers(), Player::isAI);
+
+        final long[] t = r.phaseNanos;
+        resetPeaks();
+        final long alloc0 = allocatedBytes();
+        final long search0 = map.getSearchNanos();
+        final long count0 = map.getSearchCount();
+        final long wall0 = System.nanoTime();
+        for (int turn = 0; turn < turns; turn++) {
+            for (Player p : game.getLivePlayerList()) {
+                final ServerPlayer sp = (ServerPlayer)p;
+                if (sp.isREF() && sp.getEntryTile() == null) continue;
+                game.setCurrentPlayer(sp);
+                ChangeSet cs = new ChangeSet();
+                sp.csStartTurn(random, cs);
+                long t0 = System.nanoTime();
+                game.sendToAll(cs);
+                long t1 = System.nanoTime();
+                AIPlayer aip = server.getAIPlayer(sp);
+                if (aip != null) {
+                    try {
+                        aip.startWorking();
+                    } catch (RuntimeException re) {
+                        logger.log(Level.WARNING, "AI failure", re);
+                    }
+                }
+                long t2 = System.nanoTime();
+                t[3] += t1 - t0;
+                t[0] += t2 - t1;
+            }
+
+            ChangeSet cs = new ChangeSet();
+            long t0 = System.nanoTime();
+            game.csNextTurn(cs);
+            game.csNewTurn(random, new LogBuilder(-1), cs);
+            long t1 = System.nanoTime();
+            game.sendToAll(cs);
+            long t2 = System.nanoTime();
+            if (parallel) aiMain.planTurns();
+            long t3 = System.nanoTime();
+            t[2] += t1 - t0;
+            t[3] += t2 - t1;
+            t[1] += t3 - t2;
+            r.turns++;
+            System.err.println("  turn " + game.getTurn()
+                + " " + (t3 - wall0) / 1000000L + "ms");
+        }
+        r.wallNanos = System.nanoTime() - wall0;
+        t[4] = map.getSearchNanos() - search0;
+        r.searches = map.getSearchCount() - count0;
+        r.allocated = allocatedBytes() - alloc0;
+        r.heapPeak = peakHeap();
+        System.gc();
+        r.heapUsed = ManagementFactory.getMemoryMXBean()
+            .getHeapMemoryUsage().getUsed();
+
+        if (micro) runMicro(game, r);
+        server.getServer().shutdown();
+        return r;
+    }
+
+    /**
+     * Run the micro benchmarks on a game.
+     *
+     * @param game The {@code ServerGame} to use.
+     * @param r The {@code Result} to add to.
+     */
+    private static void runMicro(ServerGame game, Result r) {
+        final Map map = game.getMap();
+        final Random random = new Random(seed);
+        final List<Tile> land = transform(map.getAllTiles(), Tile::isLand);
+        final Unit unit = find(flatten(game.getLiveEuropeanPlayers(),
+                                       Player::getUnits),
+                               u -> !u.isNaval() && u.hasTile());
+        if (unit != null && land.size() > 1) {
+            final int n = 50;
+            final Tile[] from = new Tile[n], to = new Tile[n];
+            for (int i = 0; i < n; i++) {
+                from[i] = land.get(random.nextInt(land.size()));
+                to[i] = land.get(random.nextInt(land.size()));
+            }
+            r.micro.put("Map.search", measure(n, i ->
+                    map.search(unit, from[i],
+                        GoalDeciders.getLocationGoalDecider(to[i]),
+                        null, Map.INFINITY, null, null)));
+        }
+
+        final List<Colony> colonies = game.getAllColoniesList(null);
+        if (!colonies.isEmpty()) {
+            final GoodsType food = game.getSpecification()
+                .getPrimaryFoodType();
+            final int n = colonies.size();
+            r.micro.put("ProductionCache.update.full", measure(n, i -> {
+                        Colony c = colonies.get(i);
+                        c.invalidateCache();
+                        return c.getNetProductionOf(food);
+                    }));
+            r.micro.put("ProductionCache.update.partial", measure(n, i -> {
+                        Colony c = colonies.get(i);
+                        WorkLocation wl = first(c.getCurrentWorkLocationsList());
+                        c.invalidateCache(wl);
+                        return c.getNetProductionOf(food);
+                    }));
+        }
+
+        // Check the structural copy against the XML text copy, then
+        // time both.
+        final List<Tile> tiles = new ArrayList<>();
+        for (int i = 0; i < Math.min(200, land.size()); i++) {
+            tiles.add(land.get(random.nextInt(land.size())));
+        }
+        for (Colony c : colonies) tiles.add(c.getTile());
+        for (Colony c : colonies) checkCopy(game, c, Colony.class, r);
+        for (Tile t : tiles) checkCopy(game, t, Tile.class, r);
+        if (!colonies.isEmpty()) {
+            final int n = colonies.size();
+            r.micro.put("copy.colony.xml", measure(n, i ->
+                    xmlCopy(game, colonies.get(i), Colony.class)));
+            r.micro.put("copy.colony", measure(n, i ->
+                    colonies.get(i).copy(game, Colony.class)));
+        }
+        if (!tiles.isEmpty()) {
+            final int n = tiles.size();
+            r.micro.put("copy.tile.xml", measure(n, i ->
+                    xmlCopy(game, tiles.get(i), Tile.class)));
+            r.micro.put("copy.tile", measure(n, i ->
+                    tiles.get(i).copy(game, Tile.class)));
+        }
+    }
+
+    /**
+     * Copy an object through XML text, as {@code FreeColObject.copy}
+     * used to.
+     *
+     * @param game The {@code Game} to copy into.
+     * @param o The object to copy.
+     * @param cls The object class.
+     * @return The copy.
+     */
+    private static <T extends FreeColObject> T xmlCopy(Game game, T o,
+                                                       Class<T> cls) {
+        try (FreeColXMLReader xr
+             = new FreeColXMLReader(new StringReader(o.serialize()))) {
+            return xr.copy(game, cls);
+        } catch (Exception e) {
+            throw new RuntimeException("XML copy failed: " + o, e);
+        }
+    }
+
+    /**
+     * Check that the structural and XML text copies of an object are
+     * equivalent, that is, serialize identically.
+     *
+     * @param game The {@code Game} to copy into.
+     * @param o The object to copy.
+     * @param cls The object class.
+     * @param r The {@code Result} to record the check in.
+     */
+    private static <T extends FreeColObject> void checkCopy(Game game, T o,
+        Class<T> cls, Result r) {
+        r.copyChecked++;
+        try {
+            T copy = o.copy(game, cls);
+            String a = xmlCopy(game, o, cls).serialize();
+            String b = (copy == null) ? null : copy.serialize();
+            if (a.equals(b)) return;
+            System.err.println("Copy mismatch for " + o.getId()
+                + "\n  xml:  " + a + "\n  copy: " + b);
+        } catch (Exception e) {
+            System.err.println("Copy check failed for " + o.getId()
+                + ": " + e);
+        }
+        r.copyMismatches++;
+    }
+
+    /**
+     * Time an operation with warmup rounds.
+     *
+     * @param n The number of operations per round.
+     * @param op The operation, taking the operation number.
+     * @return The mean time per operation over the measured rounds, in ns.
+     */
+    private static double measure(int n,
+                                  java.util.function.IntFunction<Object> op) {
+        Object sink = null;
+        for (int round = 0; round < MICRO_WARMUP; round++) {
+            for (int i = 0; i < n; i++) sink = op.apply(i);
+        }
+        long total = 0;
+        for (int round = 0; round < MICRO_ROUNDS; round++) {
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) sink = op.apply(i);
+            total += System.nanoTime() - t0;
+        }
+        if (sink == op) System.err.println(); // Keep the results live
+        return (double)total / (n * MICRO_ROUNDS);
+    }
+
+    /**
+     * Get the bytes allocated so far by all live threads.
+     *
+     * @return The allocated bytes, or zero if not supported.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean tmx = ManagementFactory.getThreadMXBean();
+        if (!(tmx instanceof com.sun.management.ThreadMXBean)) return 0L;
+        com.sun.management.ThreadMXBean stmx
+            = (com.sun.management.ThreadMXBean)tmx;
+        if (!stmx.isThreadAllocatedMemorySupported()) return 0L;
+        long total = 0L;
+        for (long b : stmx.getThreadAllocatedBytes(stmx.getAllThreadIds())) {
+            if (b > 0) total += b;
+        }
+        return total;
+    }
+
+    /**
+     * Reset the peak usage of the heap memory pools.
+     */
+    private static void resetPeaks() {
+        for (MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (mp.getType() == MemoryType.HEAP) mp.resetPeakUsage();
+        }
+    }
+
+    /**
+     * Get the peak heap use since the last reset.
+     *
+     * @return The sum of the heap memory pool peaks, in bytes.
+     */
+    private static long peakHeap() {
+        long total = 0L;
+        for (MemoryPoolMXBean mp : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (mp.getType() == MemoryType.HEAP) {
+                total += mp.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+
+    private static double ms(long ns) {
+        return ns / 1.0e6;
+    }
+
+    private static void writeText(PrintWriter out, List<Result> results) {
+        for (Result r : results) {
+            out.println(r.game + ": " + r.width + "x" + r.height
+                + ", " + r.players + " AI players, " + r.turns + " turns");
+            out.println(String.format("  %-12s %12s %12s", "phase",
+                    "total(ms)", "turn(ms)"));
+            for (int i = 0; i < PHASES.length; i++) {
+                out.println(String.format("  %-12s %12.1f %12.2f", PHASES[i],
+                        ms(r.phaseNanos[i]),
+                        ms(r.phaseNanos[i]) / Math.max(1, r.turns)));
+            }
+            out.println(String.format("  %-12s %12.1f %12.2f", "wall",
+                    ms(r.wallNanos), ms(r.wallNanos) / Math.max(1, r.turns)));
+            out.println(String.format("  searches %d, allocated %.1fMB"
+                    + " (%.1fMB/s), heap %.1fMB, peak %.1fMB",
+                    r.searches, r.allocated / 1.0e6,
+                    r.allocated / 1.0e6 / Math.max(1e-9, r.wallNanos / 1.0e9),
+                    r.heapUsed / 1.0e6, r.heapPeak / 1.0e6));
+            if (r.copyChecked > 0) {
+                out.println("  copies checked " + r.copyChecked
+                    + ", mismatches " + r.copyMismatches);
+            }
+            for (java.util.Map.Entry<String, Double> e : r.micro.entrySet()) {
+                out.println(String.format("  %-32s %12.0f ns/op",
+                        e.getKey(), e.getValue()));
+            }
+        }
+    }
+
+    private static void writeCSV(PrintWriter out, List<Result> results) {
+        out.println("game,width,height,players,turns,"
+            + String.join(",", PHASES)
+            + ",wall,searches,allocated,heapUsed,heapPeak");
+        for (Result r : results) {
+            StringBuilder sb = new StringBuilder(128);
+            sb.append(r.game).append(',').append(r.width)
+                .append(',').append(r.height).append(',').append(r.players)
+                .append(',').append(r.turns);
+            for (long ns : r.phaseNanos) sb.append(',').append(ns);
+            sb.append(',').append(r.wallNanos).append(',').append(r.searches)
+                .append(',').append(r.allocated).append(',').append(r.heapUsed)
+                .append(',').append(r.heapPeak);
+            out.println(sb.toString());
+        }
+    }
+
+    private static void writeJSON(PrintWriter out, List<Result> results) {
+        out.println("[");
+        for (int k = 0; k < results.size(); k++) {
+            final Result r = results.get(k);
+            StringBuilder sb = new StringBuilder(256);
+            sb.append("  {\"game\": \"")
+                .append(r.game.replace("\\", "\\\\").replace("\"", "\\\""))
+                .append("\", \"width\": ").append(r.width)
+                .append(", \"height\": ").append(r.height)
+                .append(", \"players\": ").append(r.players)
+                .append(", \"turns\": ").append(r.turns)
+                .append(", \"phaseNanos\": {");
+            for (int i = 0; i < PHASES.length; i++) {
+                if (i > 0) sb.append(", ");
+                sb.append('"').append(PHASES[i]).append("\": ")
+                    .append(r.phaseNanos[i]);
+            }
+            sb.append("}, \"wallNanos\": ").append(r.wallNanos)
+                .append(", \"searches\": ").append(r.searches)
+                .append(", \"allocatedBytes\": ").append(r.allocated)
+                .append(", \"heapUsedBytes\": ").append(r.heapUsed)
+                .append(", \"heapPeakBytes\": ").append(r.heapPeak)
+                .append(", \"copyChecked\": ").append(r.copyChecked)
+                .append(", \"copyMismatches\": ").append(r.copyMismatches)
+                .append(", \"microNanosPerOp\": {");
+            boolean first = true;
+            for (java.util.Map.Entry<String, Double> e : r.micro.entrySet()) {
+                if (!first) sb.append(", ");
+                first = false;
+                sb.append('"').append(e.getKey()).append("\": ")
+                    .append(String.format(Locale.ROOT, "%.1f", e.getValue()));
+            }
+            sb.append("}}");
+            if (k < results.size() - 1) sb.append(',');
+            out.println(sb.toString());
+        }
+        out.println("]");
+    }
+}
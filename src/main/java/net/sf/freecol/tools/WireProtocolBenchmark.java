@@ -0,0 +1,180 @@
+/**
+ *  Copyright (C) 2002-2017   The FreeCol Team
+ *
+ *  This file is part of FreeCol.
+ *
+ *  FreeCol is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 2 of the License, or
+ *  (at your option) any later version.
+ *
+ *  FreeCol is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with FreeCol.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.sf.freecol.tools;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.freecol.common.io.BinaryXMLStreamReader;
+import net.sf.freecol.common.io.BinaryXMLStreamWriter;
+import net.sf.freecol.common.io.FreeColDirectories;
+import net.sf.freecol.common.io.FreeColTcFile;
+import net.sf.freecol.common.io.FreeColXMLReader;
+import net.sf.freecol.common.io.FreeColXMLWriter;
+import net.sf.freecol.common.model.FreeColGameObject;
+import net.sf.freecol.common.model.Nation;
+import net.sf.freecol.common.model.Player;
+import net.sf.freecol.common.model.Specification;
+import net.sf.freecol.common.model.Tile;
+import net.sf.freecol.common.networking.Message;
+import net.sf.freecol.common.networking.UpdateMessage;
+import net.sf.freecol.server.FreeColServer;
+import net.sf.freecol.server.model.ServerGame;
+import net.sf.freecol.server.model.ServerPlayer;
+import static net.sf.freecol.common.util.CollectionUtils.*;
+
+
+/**
+ * Compare the size and speed of the XML and binary message encodings
+ * for a full new-turn update: every tile of the map, and the units and
+ * settlements of one player.
+ *
+ * Usage: WireProtocolBenchmark savegame-or-map [iterations]
+ *
+ * Run from the top level directory so that the data directory is found.
+ * If the game has no European player, one is added and shown the
+ * whole map.  The binary encoding is measured with an empty string
+ * table, as on the first message of a connection, and the size is
+ * also given for a primed table, as on later messages.
+ */
+public class WireProtocolBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: WireProtocolBenchmark savegame-or-map [iterations]");
+            System.exit(1);
+        }
+        final int iterations = (args.length > 1) ? Integer.parseInt(args[1])
+            : 50;
+        FreeColDirectories.setDataDirectory(null);
+        FreeColTcFile.loadTCs();
+        Specification spec = FreeColTcFile.getFreeColTcFile("classic")
+            .getSpecification();
+        spec.prepare(null, "model.difficulty.medium");
+        final ServerGame game = FreeColServer.readGame(new File(args[0]),
+                                                       spec, null);
+
+        ServerPlayer player = (ServerPlayer)first(game.getLiveEuropeanPlayerList());
+        if (player == null) {
+            Nation nation = find(spec.getEuropeanNations(),
+                                 n -> game.getPlayerByNation(n) == null);
+            player = new ServerPlayer(game, false, nation);
+            game.addPlayer(player);
+            player.exploreTiles(toList(game.getMap().getAllTiles()));
+        }
+        final List<FreeColGameObject> objects = new ArrayList<>();
+        for (Tile t : toList(game.getMap().getAllTiles())) objects.add(t);
+        objects.addAll(player.getUnitList());
+        objects.addAll(player.getSettlementList());
+        final UpdateMessage message = new UpdateMessage(player, objects);
+        final FreeColXMLWriter.WriteScope scope
+            = FreeColXMLWriter.WriteScope.toClient(player);
+        System.out.println("Update for " + player.getName() + ": "
+            + objects.size() + " objects, " + iterations + " iterations");
+
+        // Warm up and check both encodings decode.
+        String xml = null;
+        byte[] frame = null;
+        for (int i = 0; i < 5; i++) {
+            xml = encodeXML(message, scope);
+            frame = encodeBinary(new BinaryXMLStreamWriter(), message, scope);
+            decodeXML(game, xml);
+            decodeBinary(game, frame);
+        }
+        final BinaryXMLStreamWriter primed = new BinaryXMLStreamWriter();
+        encodeBinary(primed, message, scope);
+        final int primedSize = encodeBinary(primed, message, scope).length;
+
+        long xmlEncode = 0, xmlDecode = 0, binEncode = 0, binDecode = 0;
+        for (int i = 0; i < iterations; i++) {
+            long t0 = System.nanoTime();
+            xml = encodeXML(message, scope);
+            long t1 = System.nanoTime();
+            decodeXML(game, xml);
+            long t2 = System.nanoTime();
+            frame = encodeBinary(new BinaryXMLStreamWriter(), message, scope);
+            long t3 = System.nanoTime();
+            decodeBinary(game, frame);
+            long t4 = System.nanoTime();
+            xmlEncode += t1 - t0;
+            xmlDecode += t2 - t1;
+            binEncode += t3 - t2;
+            binDecode += t4 - t3;
+        }
+        final int xmlSize = xml.getBytes(StandardCharsets.UTF_8).length + 1;
+        System.out.println(String.format("%-8s %12s %12s %12s", "format",
+                "bytes", "encode(ms)", "decode(ms)"));
+        System.out.println(String.format("%-8s %12d %12.2f %12.2f", "xml",
+                xmlSize, xmlEncode / 1.0e6 / iterations,
+                xmlDecode / 1.0e6 / iterations));
+        System.out.println(String.format("%-8s %12d %12.2f %12.2f", "binary",
+                frame.length, binEncode / 1.0e6 / iterations,
+                binDecode / 1.0e6 / iterations));
+        System.out.println(String.format("%-8s %12d", "primed", primedSize));
+        System.exit(0);
+    }
+
+    private static String encodeXML(Message message,
+                                    FreeColXMLWriter.WriteScope scope)
+        throws Exception {
+        StringWriter sw = new StringWriter();
+        try (FreeColXMLWriter xw = new FreeColXMLWriter(sw, scope)) {
+            message.toXML(xw);
+        }
+        return sw.toString();
+    }
+
+    private static byte[] encodeBinary(BinaryXMLStreamWriter bw,
+                                       Message message,
+                                       FreeColXMLWriter.WriteScope scope)
+        throws Exception {
+        FreeColXMLWriter xw = new FreeColXMLWriter(bw, scope);
+        message.toXML(xw);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bw.size() + 8);
+        bw.writeFrame(out);
+        bw.commit();
+        return out.toByteArray();
+    }
+
+    private static Message decodeXML(ServerGame game, String xml)
+        throws Exception {
+        FreeColXMLReader xr = new FreeColXMLReader(new StringReader(xml));
+        xr.nextTag();
+        return Message.read(game, xr);
+    }
+
+    private static Message decodeBinary(ServerGame game, byte[] frame)
+        throws Exception {
+        ByteArrayInputStream in = new ByteArrayInputStream(frame);
+        if (in.read() != BinaryXMLStreamWriter.FRAME_MAGIC) {
+            throw new IllegalStateException("Not a binary frame");
+        }
+        FreeColXMLReader xr = new FreeColXMLReader(new BinaryXMLStreamReader(
+                BinaryXMLStreamReader.readFrame(in), new ArrayList<String>()));
+        xr.nextTag();
+        return Message.read(game, xr);
+    }
+}